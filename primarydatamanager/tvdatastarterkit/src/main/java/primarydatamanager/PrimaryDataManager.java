@@ -108,6 +108,16 @@ public class PrimaryDataManager {
   }
 
 
+  /**
+   * Sets the number of threads that process the raw files concurrently.
+   *
+   * @param count The number of threads.
+   */
+  public void setThreadCount(int count) {
+    mRawDataProcessor.setThreadCount(count);
+  }
+
+
   public void createGroupFiles() throws PreparationException {
 
     /* A groupname file contains the name of the group in
@@ -559,7 +569,7 @@ public class PrimaryDataManager {
 
     // Start the update
     if (args.length == 0) {
-      System.out.println("USAGE: PrimaryDataManager [-maxDeletedFrames value] [-forceCompleteUpdate [channel{;channel}]] groups...");
+      System.out.println("USAGE: PrimaryDataManager [-maxDeletedFrames value] [-threads count] [-forceCompleteUpdate [channel{;channel}]] groups...");
       System.exit(1);
     } else {
       try {
@@ -585,6 +595,24 @@ public class PrimaryDataManager {
               }
             }
           }
+          else if (args[i].equalsIgnoreCase("-threads")) {
+            if ((i + 1) >= args.length) {
+              System.out.println("threads needs the number of threads that process the raw files");
+              System.exit(1);
+            } else {
+              try {
+                int count = Integer.parseInt(args[i+1]);
+                if (count < 1) {
+                  throw new NumberFormatException();
+                }
+                manager.setThreadCount(count);
+                i++;
+              } catch (NumberFormatException e) {
+                System.out.println("Value has to be a number greater than 0");
+                System.exit(1);
+              }
+            }
+          }
           else if (args[i].equalsIgnoreCase("-forceCompleteUpdate")) {
             if ((i + 1) >= args.length) {
               System.out.println("You have to specify a colon separated " +
@@ -25,9 +25,20 @@
  */
 package primarydatamanager;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import tvbrowserdataservice.file.ChannelList;
@@ -72,6 +83,18 @@ public class RawDataProcessor {
 
   private int mQuarantineCount;
 
+  /** The number of threads that process the raw files concurrently */
+  private int mThreadCount = 1;
+
+  /** The locks for the day programs that are processed, by date, country and channel */
+  private ConcurrentHashMap<String, Object> mDayProgramLocks = new ConcurrentHashMap<String, Object>();
+
+  /** The number of bytes of the processed raw files */
+  private AtomicLong mReadBytes = new AtomicLong();
+
+  /** The number of bytes of the written day program files */
+  private AtomicLong mWrittenBytes = new AtomicLong();
+
 
   public RawDataProcessor() {
     mDeadlineDay = new Date().addDays(-2);
@@ -87,9 +110,35 @@ public class RawDataProcessor {
   }
 
 
-  public int getQuarantineCount() {
+  public synchronized int getQuarantineCount() {
     return mQuarantineCount;
   }
+
+
+  private synchronized void increaseQuarantineCount() {
+    mQuarantineCount++;
+  }
+
+
+  /**
+   * Sets the number of threads that process the raw files concurrently.
+   *
+   * @param count The number of threads, <code>1</code> processes the files
+   *        one by one.
+   */
+  public void setThreadCount(int count) {
+    mThreadCount = Math.max(1, count);
+  }
+
+
+  /**
+   * Gets the number of threads that process the raw files concurrently.
+   *
+   * @return The number of threads.
+   */
+  public int getThreadCount() {
+    return mThreadCount;
+  }
   
   /**
    * Sets the percentage of the number of frames that must stay in the version
@@ -120,11 +169,12 @@ public class RawDataProcessor {
         + rawDir.getAbsolutePath());
     }
 
-    // Go through the raw files and process them one by one
+    // Go through the raw files and collect the ones to process
     File[] fileArr = rawDir.listFiles();
     if (fileArr == null) {
       return;
     }
+    ArrayList<RawFileJob> jobList = new ArrayList<RawFileJob>();
     for (File element : fileArr) {
       String fileName = element.getName();
 
@@ -159,25 +209,8 @@ public class RawDataProcessor {
 
         // Ensure that the file is not outdated
         if (date.compareTo(mDeadlineDay) >= 0) {
-          // Load the file
-          DayProgramFile rawFile;
-          try {
-            rawFile = new DayProgramFile();
-            rawFile.readFromFile(element);
-          }
-          catch (Exception exc) {
-            throw new PreparationException("Loading raw file failed: "
-              + fileName, exc);
-          }
-
-          // Process the file
-          try {
-            processRawFile(rawFile, date, country, channel, preparedDir, workDir);
-          }
-          catch (PreparationException exc) {
-            throw new PreparationException("Processing raw file failed: "
-              + element.getAbsolutePath(), exc);
-          }
+          jobList.add(new RawFileJob(element, date, country, channel,
+            preparedDir, workDir));
         }
         else {
           element.delete();
@@ -185,6 +218,147 @@ public class RawDataProcessor {
       }
     }
 
+    // Process the files
+    long startTime = System.currentTimeMillis();
+    mReadBytes.set(0);
+    mWrittenBytes.set(0);
+
+    int threadCount = Math.min(mThreadCount, jobList.size());
+    if (threadCount <= 1) {
+      for (RawFileJob job : jobList) {
+        job.call();
+      }
+    }
+    else {
+      processConcurrently(jobList, threadCount);
+    }
+
+    printThroughput(jobList.size(), System.currentTimeMillis() - startTime);
+  }
+
+
+  /**
+   * Processes the raw files with several threads, the first failure
+   * stops the processing.
+   */
+  private void processConcurrently(ArrayList<RawFileJob> jobList, int threadCount)
+    throws PreparationException
+  {
+    ExecutorService threadPool = Executors.newFixedThreadPool(threadCount);
+    try {
+      ArrayList<Future<Object>> futureList = new ArrayList<Future<Object>>();
+      for (RawFileJob job : jobList) {
+        futureList.add(threadPool.submit(job));
+      }
+
+      for (Future<Object> future : futureList) {
+        try {
+          future.get();
+        }
+        catch (ExecutionException exc) {
+          if (exc.getCause() instanceof PreparationException) {
+            throw (PreparationException) exc.getCause();
+          }
+          throw new PreparationException("Processing raw file failed", exc.getCause());
+        }
+        catch (InterruptedException exc) {
+          throw new PreparationException("Processing raw files was interrupted", exc);
+        }
+      }
+    }
+    finally {
+      threadPool.shutdownNow();
+    }
+  }
+
+
+  private void printThroughput(int fileCount, long millis) {
+    double seconds = Math.max(millis, 1) / 1000.0;
+    double readMB = mReadBytes.get() / (1024.0 * 1024.0);
+    double writtenMB = mWrittenBytes.get() / (1024.0 * 1024.0);
+
+    mLog.info("Processed " + fileCount + " raw files with " + Math.min(mThreadCount, Math.max(fileCount, 1))
+      + " threads in " + millis + " ms: "
+      + String.format("%.1f files/s, %.2f MB/s read (%.2f MB), %.2f MB/s written (%.2f MB)",
+          fileCount / seconds, readMB / seconds, readMB, writtenMB / seconds, writtenMB));
+  }
+
+
+  /**
+   * Loads and processes one raw file. Only one thread at a time processes
+   * the day program of a date, country and channel.
+   */
+  private void processRawFile(File rawFile, Date date, String country,
+    String channel, File preparedDir, File workDir)
+    throws PreparationException
+  {
+    String key = date.getDateString() + "_" + country + "_" + channel;
+    Object lock = mDayProgramLocks.get(key);
+    if (lock == null) {
+      Object newLock = new Object();
+      lock = mDayProgramLocks.putIfAbsent(key, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+
+    synchronized (lock) {
+      // Load the file
+      DayProgramFile rawProg;
+      try {
+        rawProg = new DayProgramFile();
+        rawProg.readFromFile(rawFile);
+        mReadBytes.addAndGet(rawFile.length());
+      }
+      catch (Exception exc) {
+        throw new PreparationException("Loading raw file failed: "
+          + rawFile.getName(), exc);
+      }
+
+      // Process the file
+      try {
+        processRawFile(rawProg, date, country, channel, preparedDir, workDir);
+      }
+      catch (PreparationException exc) {
+        throw new PreparationException("Processing raw file failed: "
+          + rawFile.getAbsolutePath(), exc);
+      }
+    }
+  }
+
+
+  /**
+   * Writes a day program file. The compressed data is buffered, so it
+   * is streamed to the disk in big blocks.
+   */
+  private void writeDayProgramFile(DayProgramFile prog, File file)
+    throws IOException, FileFormatException
+  {
+    OutputStream stream = new BufferedOutputStream(new FileOutputStream(file), 0x10000);
+    try {
+      prog.writeToStream(stream, file);
+    }
+    catch (IOException exc) {
+      closeQuietly(stream);
+      file.delete();
+      throw exc;
+    }
+    catch (FileFormatException exc) {
+      closeQuietly(stream);
+      file.delete();
+      throw new FileFormatException("Writing file failed "
+        + file.getAbsolutePath(), exc);
+    }
+    finally {
+      closeQuietly(stream);
+    }
+
+    mWrittenBytes.addAndGet(file.length());
+  }
+
+
+  private static void closeQuietly(OutputStream stream) {
+    try { stream.close(); } catch (IOException exc) {}
   }
 
   public static boolean channelBelongsToGroup(ChannelList list, String channelId, String country) {
@@ -259,7 +433,7 @@ public class RawDataProcessor {
     if (quarantine) {
       mLog.warning("Putting day program file in quarantine: "
         + date + ", " + country + ", " + channel);
-      mQuarantineCount++;
+      increaseQuarantineCount();
 
       targetDir = new File(workDir, "quarantine");
       if (! targetDir.exists()) {
@@ -286,7 +460,7 @@ public class RawDataProcessor {
         if (newLevelProgArr[i].getProgramFrameCount() != 0) {
           File file = new File(targetDir, levelFileNameArr[i]);
           try {
-            newLevelProgArr[i].writeToFile(file);
+            writeDayProgramFile(newLevelProgArr[i], file);
 
             mLog.fine("Created new day program file: " + levelFileNameArr[i]);
           }
@@ -322,6 +496,10 @@ public class RawDataProcessor {
             + (levelProgArr[i].getVersion() + 1) + ": " + levelFileNameArr[i]);
         }
       }
+
+      // The level is written, so its programs are not needed any more
+      levelProgArr[i] = null;
+      newLevelProgArr[i] = null;
     }
   }
 
@@ -707,7 +885,7 @@ public class RawDataProcessor {
       channel, level);
     File file = new File(targetDir, completeFilename);
     try {
-      newProg.writeToFile(file);
+      writeDayProgramFile(newProg, file);
     }
     catch (Exception exc) {
       throw new PreparationException("Writing complete file failed: "
@@ -723,7 +901,7 @@ public class RawDataProcessor {
       channel, level, lastProg.getVersion());
     file = new File(targetDir, newUpdateFileName);
     try {
-      newUpdateFile.writeToFile(file);
+      writeDayProgramFile(newUpdateFile, file);
     }
     catch (Exception exc) {
       throw new PreparationException("Writing new update file failed: "
@@ -911,7 +1089,7 @@ public class RawDataProcessor {
       // Save the update file
       file = new File(targetDir, updateFileName);
       try {
-        updateFile.writeToFile(file);
+        writeDayProgramFile(updateFile, file);
       }
       catch (Exception exc) {
         throw new PreparationException("Writing update file for version "
@@ -940,4 +1118,33 @@ public class RawDataProcessor {
     return (deletedCount > maxDeletedFrames);
   }
 
+
+  /**
+   * Processes one raw file.
+   */
+  private class RawFileJob implements Callable<Object> {
+    private File mRawFile;
+    private Date mDate;
+    private String mCountry;
+    private String mChannel;
+    private File mPreparedDir;
+    private File mWorkDir;
+
+    public RawFileJob(File rawFile, Date date, String country, String channel,
+      File preparedDir, File workDir)
+    {
+      mRawFile = rawFile;
+      mDate = date;
+      mCountry = country;
+      mChannel = channel;
+      mPreparedDir = preparedDir;
+      mWorkDir = workDir;
+    }
+
+    public Object call() throws PreparationException {
+      processRawFile(mRawFile, mDate, mCountry, mChannel, mPreparedDir, mWorkDir);
+      return null;
+    }
+  }
+
 }
\ No newline at end of file
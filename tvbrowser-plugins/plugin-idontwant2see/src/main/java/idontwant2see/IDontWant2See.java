@@ -106,7 +106,7 @@ public final class IDontWant2See extends Plugin implements AWTEventListener {
   private static final String DONT_WANT_TO_SEE_IMPORT_SYNC_ADDRESS = "http://android.tvbrowser.org/data/scripts/syncDown.php?type=dontWantToSee";
   
   private static final boolean PLUGIN_IS_STABLE = true;
-  private static final Version PLUGIN_VERSION = new Version(0, 15, 8, PLUGIN_IS_STABLE);
+  private static final Version PLUGIN_VERSION = new Version(0, 15, 9, PLUGIN_IS_STABLE);
 
   private static final String RECEIVE_TARGET_EXCLUDE_EXACT = "target_exclude_exact";
 
@@ -118,6 +118,8 @@ public final class IDontWant2See extends Plugin implements AWTEventListener {
   private static IDontWant2See mInstance;
   private boolean mDateWasSet;
   private IDontWant2SeeSettings mSettings;
+  /** Finds the matching entries of the exclusion list */
+  private volatile IDontWant2SeeMatcher mMatcher;
 
   private boolean mCtrlPressed;
 
@@ -182,6 +184,8 @@ public final class IDontWant2See extends Plugin implements AWTEventListener {
     synchronized (mMatchCache) {
       mMatchCache = new HashMap<Program, Boolean>(1000);  
     }
+    // the entries of the list may have been changed
+    mMatcher = null;
   }
 
   private static void setCurrentDate() {
@@ -219,10 +223,8 @@ public final class IDontWant2See extends Plugin implements AWTEventListener {
       // calculate lower case title only once, not for each entry again
       final String title = program.getTitle();
       final String lowerCaseTitle = title.toLowerCase();
-      for(IDontWant2SeeListEntry entry : mSettings.getSearchList()) {
-        if (entry.matchesProgramTitle(title, lowerCaseTitle)) {
-          return putCache(program, false);
-        }
+      if (getMatcher().getFirstMatchingIndex(title, lowerCaseTitle) != -1) {
+        return putCache(program, false);
       }
   
       return putCache(program, true);
@@ -252,17 +254,28 @@ public final class IDontWant2See extends Plugin implements AWTEventListener {
     if (program != null) {
       // calculate lower case title only once, not for each entry again
       final String title = program.getTitle();
-      final String lowerCaseTitle = title.toLowerCase();
-      for(int i = 0; i < mSettings.getSearchList().size(); i++) {
-        if (mSettings.getSearchList().get(i).matchesProgramTitle(title, lowerCaseTitle)) {
-          return i;
-        }
-      }
+      return getMatcher().getFirstMatchingIndex(title, title.toLowerCase());
     }
 
     return -1;
   }
 
+  /**
+   * Gets the matcher for the current exclusion list, it is created
+   * again if the list was changed.
+   */
+  private IDontWant2SeeMatcher getMatcher() {
+    final ArrayList<IDontWant2SeeListEntry> list = mSettings.getSearchList();
+    IDontWant2SeeMatcher matcher = mMatcher;
+
+    if (matcher == null || !matcher.isValidFor(list)) {
+      matcher = new IDontWant2SeeMatcher(list);
+      mMatcher = matcher;
+    }
+
+    return matcher;
+  }
+
   public ActionMenu getButtonAction() {
     
 
@@ -857,6 +870,9 @@ public final class IDontWant2See extends Plugin implements AWTEventListener {
       }
     });
 
+    // the indices of the entries have changed
+    mMatcher = null;
+
     out.writeInt(9); //version
     out.writeInt(mSettings.getSearchList().size());
 
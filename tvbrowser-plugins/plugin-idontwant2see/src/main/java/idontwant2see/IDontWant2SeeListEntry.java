@@ -133,6 +133,15 @@ public class IDontWant2SeeListEntry {
     return mCaseSensitive;
   }
 
+  /**
+   * @return The part of a wild card search text the title must contain,
+   * in lower case if not case sensitive, <code>null</code> if the complete
+   * title is compared.
+   */
+  protected String getPreSearchPart() {
+    return mPreSearchPart;
+  }
+
   protected void setValues(final String searchText, final boolean caseSensitive) {
     mPreSearchPart = null;
     mSearchPattern = null;
@@ -0,0 +1,200 @@
+/*
+ * IDontWant2See - Plugin for TV-Browser
+ * Copyright (C) 2014 René Mach
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * SVN information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package idontwant2see;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import util.misc.AhoCorasick;
+
+/**
+ * Finds the first entry of the exclusion list that matches a title
+ * with one pass over the title for all entries.
+ * <p>
+ * The entries for a complete title are looked up in hash maps, the
+ * entries with wild cards are found with one automaton over the title
+ * for all of their pre search parts. Only the found entries check
+ * the title, so they update their last matched date like before.
+ *
+ * @since 0.15.9
+ */
+class IDontWant2SeeMatcher {
+  private static final String SUFFIX_CONTINUATION = " (Fortsetzung)";
+
+  private List<IDontWant2SeeListEntry> mList;
+  private IDontWant2SeeListEntry[] mEntries;
+
+  /** The indices of the case sensitive entries for a complete title */
+  private HashMap<String, List<Integer>> mTitles = new HashMap<String, List<Integer>>();
+  /** The indices of the case insensitive entries for a complete title, the keys are folded */
+  private HashMap<String, List<Integer>> mFoldedTitles = new HashMap<String, List<Integer>>();
+
+  /** The pre search parts of the case sensitive wild card entries */
+  private AhoCorasick mParts;
+  private int[] mPartEntries;
+
+  /** The pre search parts of the case insensitive wild card entries, in lower case */
+  private AhoCorasick mLowerCaseParts;
+  private int[] mLowerCasePartEntries;
+
+  /** The entries that must always check the title */
+  private BitSet mAlwaysCheck = new BitSet();
+
+  IDontWant2SeeMatcher(final List<IDontWant2SeeListEntry> list) {
+    mList = list;
+    mEntries = list.toArray(new IDontWant2SeeListEntry[list.size()]);
+
+    final ArrayList<String> parts = new ArrayList<String>();
+    final ArrayList<Integer> partEntries = new ArrayList<Integer>();
+    final ArrayList<String> lowerCaseParts = new ArrayList<String>();
+    final ArrayList<Integer> lowerCasePartEntries = new ArrayList<Integer>();
+
+    for (int i = 0; i < mEntries.length; i++) {
+      final IDontWant2SeeListEntry entry = mEntries[i];
+      final String preSearchPart = entry.getPreSearchPart();
+
+      if (preSearchPart == null) {
+        if (entry.isCaseSensitive()) {
+          addTitle(mTitles, entry.getSearchText(), i);
+        } else {
+          addTitle(mFoldedTitles, fold(entry.getSearchText()), i);
+        }
+      } else if (preSearchPart.length() == 0) {
+        mAlwaysCheck.set(i);
+      } else if (entry.isCaseSensitive()) {
+        parts.add(preSearchPart);
+        partEntries.add(i);
+      } else {
+        lowerCaseParts.add(preSearchPart);
+        lowerCasePartEntries.add(i);
+      }
+    }
+
+    mParts = new AhoCorasick(parts.toArray(new String[parts.size()]));
+    mPartEntries = toArray(partEntries);
+    mLowerCaseParts = new AhoCorasick(lowerCaseParts.toArray(new String[lowerCaseParts.size()]));
+    mLowerCasePartEntries = toArray(lowerCasePartEntries);
+  }
+
+  private static void addTitle(final HashMap<String, List<Integer>> titles,
+      final String title, final int index) {
+    List<Integer> indices = titles.get(title);
+
+    if (indices == null) {
+      indices = new ArrayList<Integer>(1);
+      titles.put(title, indices);
+    }
+
+    indices.add(index);
+  }
+
+  private static int[] toArray(final List<Integer> list) {
+    final int[] result = new int[list.size()];
+
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+
+    return result;
+  }
+
+  /**
+   * Folds the case of the given text, two texts have the same folded
+   * text if they are equal with {@link String#equalsIgnoreCase(String)}.
+   */
+  private static String fold(final String text) {
+    final char[] chars = text.toCharArray();
+
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+    }
+
+    return new String(chars);
+  }
+
+  /**
+   * Checks if this matcher was created for the current state of the given list.
+   */
+  boolean isValidFor(final List<IDontWant2SeeListEntry> list) {
+    return mList == list && mEntries.length == list.size();
+  }
+
+  /**
+   * Gets the index of the first entry that matches the title.
+   *
+   * @param title The title to check.
+   * @param lowerCaseTitle The title in lower case.
+   * @return The index of the entry or <code>-1</code> if no entry matches.
+   */
+  int getFirstMatchingIndex(final String title, final String lowerCaseTitle) {
+    final BitSet candidates = (BitSet) mAlwaysCheck.clone();
+
+    addTitleCandidates(candidates, title);
+
+    if (title.endsWith(SUFFIX_CONTINUATION)) {
+      addTitleCandidates(candidates, title.substring(0, title.length() - SUFFIX_CONTINUATION.length()));
+    }
+
+    addPartCandidates(candidates, mParts, mPartEntries, title);
+    addPartCandidates(candidates, mLowerCaseParts, mLowerCasePartEntries, lowerCaseTitle);
+
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      if (mEntries[i].matchesProgramTitle(title, lowerCaseTitle)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private void addTitleCandidates(final BitSet candidates, final String title) {
+    addIndices(candidates, mTitles.get(title));
+
+    if (!mFoldedTitles.isEmpty()) {
+      addIndices(candidates, mFoldedTitles.get(fold(title)));
+    }
+  }
+
+  private static void addIndices(final BitSet candidates, final List<Integer> indices) {
+    if (indices != null) {
+      for (int index : indices) {
+        candidates.set(index);
+      }
+    }
+  }
+
+  private static void addPartCandidates(final BitSet candidates,
+      final AhoCorasick automaton, final int[] entries, final String text) {
+    if (entries.length > 0) {
+      final BitSet found = new BitSet(entries.length);
+      automaton.findAll(text, found);
+
+      for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+        candidates.set(entries[i]);
+      }
+    }
+  }
+}
@@ -17,6 +17,8 @@ package imdbplugin;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.UUID;
 
 import org.apache.lucene.analysis.SimpleAnalyzer;
@@ -25,7 +27,9 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriter.MaxFieldLength;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
@@ -36,6 +40,8 @@ import org.apache.lucene.store.FSDirectory;
 
 public final class ImdbDatabase {
   private static final int MAX_FIELD_LENGTH = 200;
+  /** The size of the RAM buffer of the writer while the lists are imported */
+  private static final double BULK_IMPORT_RAM_BUFFER_MB = 48;
   private static final String[] TITLE_SUFFIX = { "(Fortsetzung)", "(Teil 1)", "(Teil 2)", "(Teil 3)", "(Teil 4)", "Part 1", "Part 2", "Part 3", "Part 4", "(Part 1)", "(Part 2)", "(Part 3)", "(Part 4)", "(1)", "(2)", "(3)", "(4)" };
   private static final String ITEM_TYPE = "ITEM_TYPE";
   private static final String TYPE_MOVIE = "TYPE_MOVIE";
@@ -56,6 +62,9 @@ public final class ImdbDatabase {
   private File mCurrentPath;
 
   private IndexSearcher mSearcher = null;
+  /** The documents of the ratings in the index of mRatingDocsReader, created on first use */
+  private BitSet mRatingDocs = null;
+  private IndexReader mRatingDocsReader = null;
   private IndexWriter mWriter = null;
   private ArrayList<Document> mCandidates = null;
   private String mCandidatesYear;
@@ -99,21 +108,8 @@ public final class ImdbDatabase {
   public String addTitle(final String movieTitle, final String episode, final int year) {
     String movieID = null;
     try {
-      final Document doc = new Document();
       movieID = UUID.randomUUID().toString();
-      doc.add(new Field(MOVIE_ID, movieID, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-      doc.add(new Field(ITEM_TYPE, TYPE_MOVIE, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-      doc.add(new Field(MOVIE_TITLE, movieTitle, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-      doc.add(new Field(MOVIE_TITLE_NORMALISED, normalise(movieTitle), Field.Store.YES, Field.Index.NOT_ANALYZED,
-          Field.TermVector.NO));
-      doc.add(new Field(MOVIE_YEAR, Integer.toString(year), Field.Store.YES, Field.Index.NOT_ANALYZED,
-          Field.TermVector.NO));
-      if (episode != null && episode.length() > 0) {
-        doc.add(new Field(EPISODE_TITLE, episode, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-        doc.add(new Field(EPISODE_TITLE_NORMALISED, normalise(episode), Field.Store.YES, Field.Index.NOT_ANALYZED,
-            Field.TermVector.NO));
-      }
-      mWriter.addDocument(doc);
+      mWriter.addDocument(createMovieDocument(movieID, movieTitle, episode, year));
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -123,26 +119,72 @@ public final class ImdbDatabase {
 
   public void addAkaTitle(final String movieId, final String title, final String episode, final int year) {
     try {
-      final Document doc = new Document();
-      doc.add(new Field(MOVIE_ID, movieId, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-      doc.add(new Field(ITEM_TYPE, TYPE_AKA, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-      doc.add(new Field(MOVIE_TITLE, title, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-      doc.add(new Field(MOVIE_TITLE_NORMALISED, normalise(title), Field.Store.YES, Field.Index.NOT_ANALYZED,
-          Field.TermVector.NO));
-      doc.add(new Field(MOVIE_YEAR, Integer.toString(year), Field.Store.YES, Field.Index.NOT_ANALYZED,
-          Field.TermVector.NO));
-      if (episode != null && episode.length() > 0) {
-        doc.add(new Field(EPISODE_TITLE, episode, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-        doc.add(new Field(EPISODE_TITLE_NORMALISED, normalise(episode), Field.Store.YES, Field.Index.NOT_ANALYZED,
-            Field.TermVector.NO));
-      }
-      mWriter.addDocument(doc);
+      mWriter.addDocument(createAkaDocument(movieId, title, episode, year));
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
-  private String normalise(final String str) {
+  /**
+   * Adds the given documents with one call, the documents are created by
+   * the <code>create...Document</code> methods, maybe by several threads.
+   *
+   * @param documents The documents to add.
+   * @throws IOException
+   * @since 1.7
+   */
+  public void addDocuments(final List<Document> documents) throws IOException {
+    for (Document document : documents) {
+      mWriter.addDocument(document);
+    }
+  }
+
+  /**
+   * Sets if the writer should be tuned for adding a lot of documents.
+   * A bigger RAM buffer flushes fewer and bigger segments, so less merging
+   * is needed. Needs to be set again after {@link #openForWriting()}.
+   *
+   * @param bulkImport <code>true</code> while the lists are imported.
+   * @since 1.7
+   */
+  @SuppressWarnings("deprecation")
+  public void setBulkImport(final boolean bulkImport) {
+    if (mWriter != null) {
+      mWriter.setRAMBufferSizeMB(bulkImport ? BULK_IMPORT_RAM_BUFFER_MB : IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+    }
+  }
+
+  static Document createMovieDocument(final String movieId, final String title, final String episode, final int year) {
+    return createTitleDocument(TYPE_MOVIE, movieId, title, episode, year);
+  }
+
+  static Document createAkaDocument(final String movieId, final String title, final String episode, final int year) {
+    return createTitleDocument(TYPE_AKA, movieId, title, episode, year);
+  }
+
+  private static Document createTitleDocument(final String itemType, final String movieId, final String title,
+      final String episode, final int year) {
+    final Document doc = new Document();
+    doc.add(new Field(MOVIE_ID, movieId, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
+    doc.add(new Field(ITEM_TYPE, itemType, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
+    doc.add(new Field(MOVIE_TITLE, title, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
+    doc.add(new Field(MOVIE_TITLE_NORMALISED, normalise(title), Field.Store.YES, Field.Index.NOT_ANALYZED,
+        Field.TermVector.NO));
+    doc.add(new Field(MOVIE_YEAR, Integer.toString(year), Field.Store.YES, Field.Index.NOT_ANALYZED,
+        Field.TermVector.NO));
+    if (episode != null && episode.length() > 0) {
+      doc.add(new Field(EPISODE_TITLE, episode, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
+      doc.add(new Field(EPISODE_TITLE_NORMALISED, normalise(episode), Field.Store.YES, Field.Index.NOT_ANALYZED,
+          Field.TermVector.NO));
+    }
+    return doc;
+  }
+
+  /**
+   * Normalises a title for the lookup, has no state, so it may be called
+   * by several threads at once.
+   */
+  static String normalise(final String str) {
     if (str == null) {
       return "";
     }
@@ -208,21 +250,25 @@ public final class ImdbDatabase {
 
   public void addRating(final String movieId, final int rating, final int votes, final String distribution) {
     try {
-      final Document doc = new Document();
-      doc.add(new Field(MOVIE_ID, movieId, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-      doc.add(new Field(ITEM_TYPE, TYPE_RATING, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
-      doc.add(new Field(MOVIE_RATING, Integer.toString(rating), Field.Store.YES, Field.Index.NOT_ANALYZED,
-          Field.TermVector.NO));
-      doc.add(new Field(MOVIE_VOTES, Integer.toString(votes), Field.Store.YES, Field.Index.NOT_ANALYZED,
-          Field.TermVector.NO));
-      doc.add(new Field(MOVIE_DISTRIBUTION, distribution, Field.Store.YES, Field.Index.NOT_ANALYZED,
-          Field.TermVector.NO));
-      mWriter.addDocument(doc);
+      mWriter.addDocument(createRatingDocument(movieId, rating, votes, distribution));
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
+  static Document createRatingDocument(final String movieId, final int rating, final int votes, final String distribution) {
+    final Document doc = new Document();
+    doc.add(new Field(MOVIE_ID, movieId, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
+    doc.add(new Field(ITEM_TYPE, TYPE_RATING, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
+    doc.add(new Field(MOVIE_RATING, Integer.toString(rating), Field.Store.YES, Field.Index.NOT_ANALYZED,
+        Field.TermVector.NO));
+    doc.add(new Field(MOVIE_VOTES, Integer.toString(votes), Field.Store.YES, Field.Index.NOT_ANALYZED,
+        Field.TermVector.NO));
+    doc.add(new Field(MOVIE_DISTRIBUTION, distribution, Field.Store.YES, Field.Index.NOT_ANALYZED,
+        Field.TermVector.NO));
+    return doc;
+  }
+
   public void optimizeIndex() throws IOException {
     mWriter.commit();
     try {
@@ -547,18 +593,24 @@ public final class ImdbDatabase {
       return null;
     }
     try {
-      final BooleanQuery bQuery = new BooleanQuery();
-      bQuery.add(new TermQuery(new Term(ITEM_TYPE, TYPE_RATING)), BooleanClause.Occur.MUST);
-      bQuery.add(new TermQuery(new Term(MOVIE_ID, id)), BooleanClause.Occur.MUST);
-
-      final TopDocs topDocs = mSearcher.search(bQuery, null, 1);
+      // the few documents of the movie are read directly from the index,
+      // the rating is the one that is known as rating document
+      final IndexReader reader = mSearcher.getIndexReader();
+      final BitSet ratingDocs = getRatingDocs(reader);
+      final TermDocs termDocs = reader.termDocs(new Term(MOVIE_ID, id));
 
-      if (topDocs.totalHits > 0) {
-        final Document document = mSearcher.doc(topDocs.scoreDocs[0].doc);
+      try {
+        while (termDocs.next()) {
+          if (ratingDocs.get(termDocs.doc())) {
+            final Document document = reader.document(termDocs.doc());
 
-        return new ImdbRating(Integer.parseInt(document.getField(MOVIE_RATING).stringValue()), Integer
-            .parseInt(document.getField(MOVIE_VOTES).stringValue()), document.getField(MOVIE_DISTRIBUTION)
-            .stringValue(), id);
+            return new ImdbRating(Integer.parseInt(document.getField(MOVIE_RATING).stringValue()), Integer
+                .parseInt(document.getField(MOVIE_VOTES).stringValue()), document.getField(MOVIE_DISTRIBUTION)
+                .stringValue(), id);
+          }
+        }
+      } finally {
+        termDocs.close();
       }
     } catch (IOException e) {
       e.printStackTrace();
@@ -567,6 +619,30 @@ public final class ImdbDatabase {
     return null;
   }
 
+  /**
+   * Gets the documents of the ratings, so finding the rating of a movie
+   * doesn't need a query over the item type.
+   */
+  private synchronized BitSet getRatingDocs(final IndexReader reader) throws IOException {
+    if (mRatingDocs == null || mRatingDocsReader != reader) {
+      final BitSet ratingDocs = new BitSet(reader.maxDoc());
+      final TermDocs termDocs = reader.termDocs(new Term(ITEM_TYPE, TYPE_RATING));
+
+      try {
+        while (termDocs.next()) {
+          ratingDocs.set(termDocs.doc());
+        }
+      } finally {
+        termDocs.close();
+      }
+
+      mRatingDocs = ratingDocs;
+      mRatingDocsReader = reader;
+    }
+
+    return mRatingDocs;
+  }
+
   public ImdbMovie getMovieForId(final String id) {
     if (id == null || !isInitialised()) {
       return null;
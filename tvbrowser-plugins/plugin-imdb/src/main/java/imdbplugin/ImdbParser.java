@@ -22,13 +22,27 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.document.Document;
 
 import util.io.IOUtilities;
 import util.ui.Localizer;
@@ -46,11 +60,23 @@ public class ImdbParser {
       .compile("^(.*?)(?:\\W\\(\\#.*\\))?$");
   private static final Pattern MOVIE_PREFIX_PATTERN = Pattern.compile("(.*), ([A-Z][a-z']{0,2})");
 
-  private static final int STEPS_TO_REPORT_PROGRESS = 1000;
+  /** The number of lines of a list that are parsed at once by one thread */
+  private static final int LINES_PER_CHUNK = 2000;
+  private static final int MAX_PARSE_THREADS = 4;
+  /** The number of chunks that may be parsed or written at once */
+  private static final int MAX_PENDING_CHUNKS = 16;
 
   private ImdbDatabase mDatabase;
   private String mServer;
-  private boolean mRunParser = true;
+  private volatile boolean mRunParser = true;
+
+  /**
+   * The IDs of the movies of the aka titles list, so the ratings don't need
+   * a search in the database for their movie.
+   */
+  private ConcurrentHashMap<String, String> mMovieIds;
+  /** The IDs of the movies for their title and year only */
+  private ConcurrentHashMap<String, String> mMovieIdsWithoutEpisode;
 
   public ImdbParser(final ImdbDatabase db, final String server) {
     mDatabase = db;
@@ -60,6 +86,9 @@ public class ImdbParser {
   public void startParsing(final ProgressMonitor monitor) throws IOException {
     int ratingCount = 0;
     mDatabase.deleteDatabase();
+    mDatabase.setBulkImport(true);
+    mMovieIds = new ConcurrentHashMap<String, String>();
+    mMovieIdsWithoutEpisode = new ConcurrentHashMap<String, String>();
 
     monitor.setMaximum(getFileSize(mServer));
 
@@ -76,9 +105,12 @@ public class ImdbParser {
     mDatabase.close();
     if (mRunParser) {
       mDatabase.openForWriting();
+      mDatabase.setBulkImport(true);
       progressInputStream = new ProgressInputStream(ratingsFile, monitor, progressInputStream.getCurrentPosition());
       ratingCount = parseRatings(new GZIPInputStream(progressInputStream), monitor);
     }
+    mMovieIds = null;
+    mMovieIdsWithoutEpisode = null;
 
     if (mRunParser) {
       optimizeDatabase(monitor);
@@ -152,69 +184,81 @@ public class ImdbParser {
 
   private void parseAkaTitles(final InputStream inputStream,
       final ProgressMonitor monitor) throws IOException {
-    final BufferedReader reader = new BufferedReader(new InputStreamReader(
-        inputStream, "ISO-8859-15"));
-    String line = reader.readLine();
-
     final Pattern moviePattern = Pattern
         .compile("^(.*)\\((?:(\\d{4,4}).*|\\?\\?\\?\\?)\\)(?:\\W*\\((.*)\\))?(?:\\W\\{(.*)\\})?.*$");
     final Pattern akaPattern = Pattern
         .compile("^\\(aka (.*) \\((?:(\\d{4,4}).*|\\?\\?\\?\\?)\\)(?:\\W\\((.*)\\))?(?:\\W\\{(.*)\\})?\\).*$");
 
-    String movieId = null;
-    boolean startFound = false;
-    int count = 0;
-    while (line != null && mRunParser) {
-      line = line.trim();
-      if (!startFound && line.startsWith("==========")) {
-        startFound = true;
-      } else if (startFound) {
-
-        if (line.length() > 0) {
-          if (line.startsWith("(aka ")) {
-            if (movieId != null) {
-              final Matcher matcher = akaPattern.matcher(line);
+    importList(inputStream, "aka-titles.list", new ListImport() {
+      private boolean mStartFound = false;
+
+      @Override
+      boolean isListLine(final String line) {
+        if (!mStartFound && line.startsWith("==========")) {
+          mStartFound = true;
+          return false;
+        }
+        return mStartFound;
+      }
+
+      @Override
+      boolean isChunkStart(final String line) {
+        // the alternative titles need the movie before them
+        return line.length() == 0;
+      }
+
+      @Override
+      void progress(final int count) {
+        monitor.setMessage(mLocalizer.msg("akaTitles", "Alternative title {0}", count));
+      }
+
+      @Override
+      ParsedChunk parse(final List<String> lines) {
+        final ParsedChunk chunk = new ParsedChunk(lines.size());
+        String movieId = null;
+
+        for (String line : lines) {
+          if (line.length() > 0) {
+            if (line.startsWith("(aka ")) {
+              if (movieId != null) {
+                final Matcher matcher = akaPattern.matcher(line);
+                if (matcher.matches()) {
+                  final String title = cleanMovieTitle(matcher.group(1).trim());
+                  int year = -1;
+                  if (matcher.group(2) != null) {
+                    year = Integer.parseInt(matcher.group(2));
+                  }
+                  final String episode = cleanEpisodeTitle(matcher.group(4));
+
+                  chunk.mDocuments.add(ImdbDatabase.createAkaDocument(movieId, title, episode, year));
+                  chunk.mCount++;
+                }
+              }
+              else {
+                mLog.severe("Parse error: movieId unknown for alternative title");
+              }
+            } else {
+              final Matcher matcher = moviePattern.matcher(line);
               if (matcher.matches()) {
-                final String title = cleanMovieTitle(matcher.group(1).trim());
+                final String movieTitle = cleanMovieTitle(matcher.group(1).trim());
                 int year = -1;
                 if (matcher.group(2) != null) {
                   year = Integer.parseInt(matcher.group(2));
                 }
                 final String episode = cleanEpisodeTitle(matcher.group(4));
-
-                mDatabase.addAkaTitle(movieId, title, episode, year);
-                if (++count % STEPS_TO_REPORT_PROGRESS == 0 || count == 1) {
-                  monitor.setMessage(mLocalizer.msg("akaTitles",
-                      "Alternative title {0}", count));
-                }
-              }
-            }
-            else {
-              mLog.severe("Parse error: movieId unknown for alternative title");
-            }
-          } else {
-            final Matcher matcher = moviePattern.matcher(line);
-            if (matcher.matches()) {
-              final String movieTitle = cleanMovieTitle(matcher.group(1).trim());
-              int year = -1;
-              if (matcher.group(2) != null) {
-                year = Integer.parseInt(matcher.group(2));
+                movieId = getOrCreateMovieId(movieTitle, episode, year, chunk, true);
               }
-              final String episode = cleanEpisodeTitle(matcher.group(4));
-              movieId = mDatabase.getOrCreateMovieId(movieTitle, episode, year);
             }
           }
-        }
-        else {
-          // blank line, prepare for new movie
-          movieId = null;
+          else {
+            // blank line, prepare for new movie
+            movieId = null;
+          }
         }
 
+        return chunk;
       }
-
-      line = reader.readLine();
-    }
-    reader.close();
+    });
   }
 
   private int parseRatings(final InputStream inputStream,
@@ -223,67 +267,244 @@ public class ImdbParser {
         .compile("^(.*)(?:\\W\\((\\d{4,4}|\\?\\?\\?\\?).*?\\))(?:\\W\\((.*)\\))?(?:\\W\\{(.*)\\})?$");
     final ImdbHistogram histogram = new ImdbHistogram();
 
-    final BufferedReader reader = new BufferedReader(new InputStreamReader(
-        inputStream, "ISO-8859-15"));
-    String line = reader.readLine();
-
-    boolean startFound = false;
-    int count = 0;
-    while (line != null && mRunParser) {
-      line = line.trim();
-      if (!startFound && line.startsWith("MOVIE RATINGS REPORT")) {
-        startFound = true;
-      } else if (startFound && line.startsWith("-------------")) {
-        startFound = false;
-      } else if (startFound && line.startsWith("New  Distribution  Votes  Rank  Title")) {
-        // Ignore this line!
-      } else if (startFound && line.length() > 0) {
-        final String distribution = line.substring(0, 10);
-        final int votes = Integer.parseInt(line.substring(11, 19).trim());
-        final String ratingStr = line.substring(20, 25).trim();
-        final int rating = Integer.parseInt(ratingStr.replaceAll("\\.", ""));
-        final String title = line.substring(25).trim();
-
-        final Matcher matcher = ratingPattern.matcher(title);
-        if (matcher.matches()) {
-          final String movieTitle = cleanMovieTitle(matcher.group(1).trim());
-          int year = -1;
-          String yearString = matcher.group(2);
-          if (yearString != null) {
-            if (!yearString.equals("????")) {
-              try {
-                year = Integer.parseInt(yearString);
-              } catch (NumberFormatException e) {
-                mLog.warning("unexpected year: " + yearString);
+    final int ratingCount = importList(inputStream, "ratings.list", new ListImport() {
+      private boolean mStartFound = false;
+
+      @Override
+      boolean isListLine(final String line) {
+        if (!mStartFound && line.startsWith("MOVIE RATINGS REPORT")) {
+          mStartFound = true;
+        } else if (mStartFound && line.startsWith("-------------")) {
+          mStartFound = false;
+        } else if (mStartFound && line.startsWith("New  Distribution  Votes  Rank  Title")) {
+          // Ignore this line!
+        } else if (mStartFound && line.length() > 0) {
+          return true;
+        }
+        return false;
+      }
+
+      @Override
+      boolean isChunkStart(final String line) {
+        return true;
+      }
+
+      @Override
+      void progress(final int count) {
+        monitor.setMessage(mLocalizer.msg("ratings", "Rating {0}", count));
+      }
+
+      @Override
+      void written(final ParsedChunk chunk) {
+        for (int[] ratingVotes : chunk.mRatings) {
+          histogram.addRating(ratingVotes[0], ratingVotes[1]);
+        }
+      }
+
+      @Override
+      ParsedChunk parse(final List<String> lines) {
+        final ParsedChunk chunk = new ParsedChunk(lines.size());
+
+        for (String line : lines) {
+          final String distribution = line.substring(0, 10);
+          final int votes = Integer.parseInt(line.substring(11, 19).trim());
+          final String ratingStr = line.substring(20, 25).trim();
+          final int rating = Integer.parseInt(ratingStr.replaceAll("\\.", ""));
+          final String title = line.substring(25).trim();
+
+          final Matcher matcher = ratingPattern.matcher(title);
+          if (matcher.matches()) {
+            final String movieTitle = cleanMovieTitle(matcher.group(1).trim());
+            int year = -1;
+            String yearString = matcher.group(2);
+            if (yearString != null) {
+              if (!yearString.equals("????")) {
+                try {
+                  year = Integer.parseInt(yearString);
+                } catch (NumberFormatException e) {
+                  mLog.warning("unexpected year: " + yearString);
+                }
               }
             }
+            else {
+              mLog.warning("unexpected null year");
+            }
+            final String episode = cleanEpisodeTitle(matcher.group(4));
+
+            final String movieId = getOrCreateMovieId(movieTitle, episode, year, chunk, false);
+            chunk.mDocuments.add(ImdbDatabase.createRatingDocument(movieId, rating, votes, distribution));
+
+            if (StringUtils.isEmpty(episode)) {
+              chunk.mRatings.add(new int[] {rating, votes});
+            }
+            chunk.mCount++;
           }
           else {
-            mLog.warning("unexpected null year");
+            mLog.warning("Non matching line: " + line);
           }
-          final String episode = cleanEpisodeTitle(matcher.group(4));
+        }
+
+        return chunk;
+      }
+    });
 
-          mDatabase.addRating(mDatabase.getOrCreateMovieId(movieTitle, episode, year), rating, votes, distribution);
+    ImdbPlugin.getInstance().storeHistogram(histogram);
+    return ratingCount;
+  }
 
-          if (StringUtils.isEmpty(episode)) {
-            histogram.addRating(rating, votes);
+  /**
+   * Imports the lines of a list with a pipeline: this thread decompresses
+   * and reads the lines, several threads parse the chunks of lines and
+   * create the documents with the normalised titles, one thread writes the
+   * documents of the chunks in the order of the list.
+   *
+   * @return The number of imported items.
+   */
+  private int importList(final InputStream inputStream, final String name,
+      final ListImport listImport) throws IOException {
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(
+        inputStream, "ISO-8859-15"));
+    final int threadCount = Math.max(1, Math.min(MAX_PARSE_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+    final ExecutorService parseService = Executors.newFixedThreadPool(threadCount, new ImportThreadFactory("IMDb parse"));
+    final ExecutorService writeService = Executors.newSingleThreadExecutor(new ImportThreadFactory("IMDb write"));
+    final LinkedList<Future<?>> pendingWrites = new LinkedList<Future<?>>();
+    final int[] count = new int[1];
+    final long start = System.currentTimeMillis();
+    int lineCount = 0;
+
+    try {
+      ArrayList<String> lines = new ArrayList<String>(LINES_PER_CHUNK);
+      String line = reader.readLine();
+
+      while (mRunParser && (line != null || !lines.isEmpty())) {
+        if (line != null) {
+          line = line.trim();
+          if (!listImport.isListLine(line)) {
+            line = reader.readLine();
+            continue;
           }
-          if (++count % STEPS_TO_REPORT_PROGRESS == 0 || count == 1) {
-            monitor.setMessage(mLocalizer.msg("ratings", "Rating {0}", count));
+          lineCount++;
+        }
+
+        if (line == null || (lines.size() >= LINES_PER_CHUNK && listImport.isChunkStart(line))) {
+          final List<String> chunkLines = lines;
+          final Future<ParsedChunk> parsed = parseService.submit(new Callable<ParsedChunk>() {
+            public ParsedChunk call() throws Exception {
+              return listImport.parse(chunkLines);
+            }
+          });
+
+          pendingWrites.add(writeService.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+              final ParsedChunk chunk = parsed.get();
+
+              if (mRunParser) {
+                mDatabase.addDocuments(chunk.mDocuments);
+                listImport.written(chunk);
+                count[0] += chunk.mCount;
+                listImport.progress(count[0]);
+              }
+              return null;
+            }
+          }));
+
+          // don't read more than the threads can handle
+          while (pendingWrites.size() > MAX_PENDING_CHUNKS) {
+            waitFor(pendingWrites.removeFirst());
           }
+
+          lines = new ArrayList<String>(LINES_PER_CHUNK);
         }
-        else {
-          mLog.warning("Non matching line: " + line);
+
+        if (line != null) {
+          lines.add(line);
+          line = reader.readLine();
         }
       }
 
+      while (!pendingWrites.isEmpty()) {
+        waitFor(pendingWrites.removeFirst());
+      }
+    } finally {
+      // only left over after an error
+      for (Future<?> write : pendingWrites) {
+        write.cancel(false);
+      }
+      parseService.shutdown();
+      writeService.shutdown();
+      reader.close();
+    }
+
+    final long duration = Math.max(1, System.currentTimeMillis() - start);
+    mLog.info("Imported " + count[0] + " items from " + lineCount + " lines of " + name + " in "
+        + duration + " ms with " + threadCount + " parser threads (" + (lineCount * 1000L / duration) + " lines/s)");
+
+    return count[0];
+  }
 
-      line = reader.readLine();
+  private void waitFor(final Future<?> future) throws IOException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      mRunParser = false;
+      throw new InterruptedIOException("IMDb import interrupted");
+    } catch (ExecutionException e) {
+      mRunParser = false;
+      Throwable cause = e.getCause();
+      while (cause instanceof ExecutionException) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      final IOException ioException = new IOException("IMDb import failed: " + cause);
+      ioException.initCause(cause);
+      throw ioException;
     }
+  }
 
-    reader.close();
-    ImdbPlugin.getInstance().storeHistogram(histogram);
-    return count;
+  /**
+   * Gets the ID of the given movie, creates the movie if it's not known.
+   * Several threads may ask for the movies at once, only the first creates it.
+   *
+   * @param chunk The parsed chunk that gets the document of a created movie.
+   * @param remember If the ID of a created movie is needed later.
+   */
+  private String getOrCreateMovieId(final String title, final String episode, final int year,
+      final ParsedChunk chunk, final boolean remember) {
+    final String key = getMovieKey(title, episode, year);
+    String movieId = mMovieIds.get(key);
+
+    if (movieId == null && !remember && StringUtils.isEmpty(episode)) {
+      // like the former search without episode, take any movie with this title
+      movieId = mMovieIdsWithoutEpisode.get(getMovieKey(title, null, year));
+    }
+
+    if (movieId == null) {
+      final String newId = UUID.randomUUID().toString();
+
+      if (remember) {
+        movieId = mMovieIds.putIfAbsent(key, newId);
+        mMovieIdsWithoutEpisode.putIfAbsent(getMovieKey(title, null, year), newId);
+      }
+
+      if (movieId == null) {
+        movieId = newId;
+        chunk.mDocuments.add(ImdbDatabase.createMovieDocument(movieId, title, episode, year));
+      }
+    }
+
+    return movieId;
+  }
+
+  private static String getMovieKey(final String title, final String episode, final int year) {
+    final StringBuilder key = new StringBuilder(title.length() + 16);
+    key.append(title).append('\n').append(year);
+    if (episode != null) {
+      key.append('\n').append(episode);
+    }
+    return key.toString();
   }
 
   private String cleanEpisodeTitle(final String episode) {
@@ -309,4 +530,59 @@ public class ImdbParser {
 
     return movieTitle;
   }
+
+  /**
+   * The format of one of the lists.
+   */
+  private abstract static class ListImport {
+    /**
+     * Checks if the trimmed line is an item of the list, is called for all lines in their order.
+     */
+    abstract boolean isListLine(String line);
+
+    /**
+     * Checks if a new chunk may start with the given line of the list.
+     */
+    abstract boolean isChunkStart(String line);
+
+    /**
+     * Parses the lines of a chunk, is called by several threads at once.
+     */
+    abstract ParsedChunk parse(List<String> lines);
+
+    /**
+     * Called after the documents of a chunk were written, in the order of the list.
+     */
+    void written(final ParsedChunk chunk) {
+    }
+
+    abstract void progress(int count);
+  }
+
+  private static final class ParsedChunk {
+    private final ArrayList<Document> mDocuments;
+    /** The rating and votes of the movies without episode */
+    private final ArrayList<int[]> mRatings = new ArrayList<int[]>();
+    private int mCount;
+
+    private ParsedChunk(final int lineCount) {
+      mDocuments = new ArrayList<Document>(lineCount + lineCount / 2);
+    }
+  }
+
+  private static final class ImportThreadFactory implements ThreadFactory {
+    private final String mName;
+    private final AtomicInteger mNumber = new AtomicInteger();
+
+    private ImportThreadFactory(final String name) {
+      mName = name;
+    }
+
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, mName + " " + mNumber.incrementAndGet());
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  }
 }
@@ -27,6 +27,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -64,6 +67,12 @@ public final class ImdbPlugin extends Plugin {
    */
   private static final Localizer mLocalizer = Localizer.getLocalizerFor(ImdbPlugin.class);
 
+  private static final java.util.logging.Logger mLog = java.util.logging.Logger
+      .getLogger(ImdbPlugin.class.getName());
+
+  /** The number of lookups in the database between two reports of the lookup time */
+  private static final int LOOKUPS_TO_REPORT = 1000;
+
   private static final boolean IS_STABLE = true;
 
   private static final Version mVersion = new Version(1, 7, IS_STABLE);
@@ -84,6 +93,8 @@ public final class ImdbPlugin extends Plugin {
   private PluginTreeNode mRootNode = new PluginTreeNode(this, false);
 
   private ImdbHistogram mHistogram;
+  private final AtomicInteger mLookupCount = new AtomicInteger();
+  private final AtomicLong mLookupNanos = new AtomicLong();
 
   @Override
   public PluginInfo getInfo() {
@@ -114,6 +125,15 @@ public final class ImdbPlugin extends Plugin {
     return new Icon[]{new ImdbIcon(rating)};
   }
 
+  /**
+   * The ratings may need a lookup in the IMDb database, so TV-Browser 3.4.5
+   * and later load the program table icons in the background.
+   * (No @Override to stay compatible with older TV-Browser versions.)
+   */
+  public boolean isProvidingProgramTableIconsAtOnce() {
+    return true;
+  }
+
   /**
    * get rating for a program
    * @param program
@@ -134,10 +154,12 @@ public final class ImdbPlugin extends Plugin {
         final String cacheKey = getCacheKey(program);
         rating = mRatingCache.get(cacheKey);
         if (rating == null) {
+          final long start = System.nanoTime();
           rating = getEpisodeRating(program);
           if (rating == null) {
             rating = getProgramRating(program);
           }
+          countLookup(System.nanoTime() - start);
           if (rating != null) {
             mRatingCache.put(cacheKey, rating);
           } else {
@@ -153,6 +175,18 @@ public final class ImdbPlugin extends Plugin {
     }
   }
 
+  /**
+   * Reports the average time of the lookups in the database from time to time.
+   */
+  private void countLookup(final long nanos) {
+    final long totalNanos = mLookupNanos.addAndGet(nanos);
+    final int count = mLookupCount.incrementAndGet();
+    if (count % LOOKUPS_TO_REPORT == 0 && mLog.isLoggable(Level.FINE)) {
+      mLog.fine("IMDb rating lookups: " + count + ", average "
+          + (totalNanos / count / 1000) + " \u00B5s per program");
+    }
+  }
+
   /**
    * @param program
    * @return
@@ -5,7 +5,7 @@ import java.awt.image.BufferedImage;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
@@ -13,10 +13,18 @@ import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
@@ -55,10 +63,27 @@ public class TvbInfoServer extends Plugin {
   private static final String PORT_KEY = "serverPort";
   private static final Version VERSION = new Version(0,6,0,false);
   
+  /** The maximum number of connections that are served at once */
+  private static final int MAX_CONNECTIONS = 32;
+  /** The time in milliseconds a kept alive connection may wait for the next request */
+  private static final int KEEP_ALIVE_TIMEOUT = 15000;
+  /** The maximum number of cached responses */
+  private static final int MAX_CACHED_RESPONSES = 100;
+  
   private ServerSocket mSocket;
   private Thread mServerThread;
-  private boolean mServerIsRunning;
+  private volatile boolean mServerIsRunning;
   private Properties mSettings;
+  private ThreadPoolExecutor mConnectionPool;
+  
+  private final LinkedHashMap<String, CachedResponse> mResponseCache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+      return size() > MAX_CACHED_RESPONSES;
+    }
+  };
+  /** Changes when the cache is cleared */
+  private long mCacheGeneration;
   
   public static Version getVersion() {
     return VERSION;
@@ -145,233 +170,45 @@ public class TvbInfoServer extends Plugin {
   
   private void startThread() {
     if(mServerThread == null || !mServerThread.isAlive()) {
-      mServerThread = new Thread() {
-        public void run() {
-          Socket connection = null;
+      if(mConnectionPool == null || mConnectionPool.isShutdown()) {
+        mConnectionPool = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+          private int mNumber;
           
+          @Override
+          public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "TV-Browser Info Server connection " + (++mNumber));
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      }
+      
+      mServerThread = new Thread("TV-Browser Info Server") {
+        public void run() {
           while(mServerIsRunning) {
             try {
-              connection = mSocket.accept();
-              BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-              OutputStream out = new BufferedOutputStream(connection.getOutputStream());
-              PrintStream pout = new PrintStream(out);
+              final Socket connection = mSocket.accept();
               
               try {
-                if(!connection.getInetAddress().isLoopbackAddress()) {
-                  errorReport(pout, connection, "403", "Forbidden",
-                      "You don't have permission to access the requested URL.");
-                }
-                else {
-                  // read first line of request (ignore the rest)
-                  String request = in.readLine();
-                  
-                  if (request==null)
-                      continue;
-                  //log(connection, request);
-                  while (true) {
-                      String misc = in.readLine();
-                      if (misc==null || misc.length()==0)
-                          break;
+                // every connection is served by its own thread, so a slow client doesn't block the others
+                mConnectionPool.execute(new Runnable() {
+                  @Override
+                  public void run() {
+                    serveConnection(connection);
                   }
-                  
-                  // parse the line
-                  if (!request.startsWith("GET") || request.length()<14 ||
-                      !(request.endsWith("HTTP/1.0") || request.endsWith("HTTP/1.1"))) {
-                      // bad request
-                      errorReport(pout, connection, "400", "Bad Request", 
-                                  "Your browser sent a request that " + 
-                                  "this server could not understand.");
-                  } else {
-                    String req = URLDecoder.decode(request.substring(4, request.length()-9).trim(), "UTF-8");
-                    
-                    if(req.equals("/search=") || req.equals("/search=running")) {
-                      sendRunning(pout);
-                    }
-                    else if(req.startsWith("/show=") && req.trim().length() > 10) {
-                      String id = req.substring(req.indexOf("=")+1);
-                      
-                      if(id.trim().length() > 5 && id.contains("_")) {
-                        final Program p = getPluginManager().getProgram(id);
-                        
-                        if(p != null) {
-                          SwingUtilities.invokeLater(new Runnable() {
-                            
-                            @Override
-                            public void run() {
-                              // TODO Auto-generated method stub
-                              ProgramInfo.getInstance().showProgramInformation(p);    
-                            }
-                          });
-                        }
-                        pout.print("shown\r\n");
-                      }
-                    }
-                    else if(req.startsWith("/search=") && req.trim().length() > 8) {
-                      String value = req.substring(req.indexOf("=")+1);
-                                            
-                      if(value.startsWith("\\")) {
-                        if(value.length() > 1) {
-                          value = value.substring(1);
-                          
-                          if(value.startsWith("\\")) {
-                            if(value.length() > 1) {
-                              value = value.substring(1);
-                              
-                              int index = value.indexOf(":");
-                              
-                              int time = 0;
-                              
-                              if(index != -1) {
-                                if(value.length() == 5) {
-                                  try {
-                                    time = Integer.parseInt(value.substring(0,index)) * 60 + Integer.parseInt(value.substring(index+1));
-                                  }catch(NumberFormatException e1) {}
-                                }
-                              }
-                              else if(value.length() == 4) {
-                                try {
-                                  time = Integer.parseInt(value.substring(0,2)) * 60 + Integer.parseInt(value.substring(2));
-                                }catch(NumberFormatException e1) {}
-                              }
-                              else if(value.length() == 2) {
-                                try {
-                                  time = Integer.parseInt(value) * 60;
-                                }catch(NumberFormatException e1) {}
-                              }
-                              
-                              findProgramInTime(time,pout);
-                            }
-                          }
-                          else {
-                            searchChannels(value,pout);
-                          }
-                        }
-                      }
-                      else if(value.startsWith("+")) {
-                        if(value.length() > 1) {
-                          value = value.substring(1);
-                          
-                          if(value.startsWith("+")) {
-                            if(value.length() > 1) {
-                              value = value.substring(1);
-                              
-                              searchForMarkerId(ReminderPluginProxy.getInstance().getId(), value, pout);
-                            }
-                            else if(value.length() == 1) {
-                              searchForMarkerId(ReminderPluginProxy.getInstance().getId(), "", pout);
-                            }
-                          }
-                          else {
-                            searchForMarkerId(FavoritesPluginProxy.getInstance().getId(), value, pout);
-                          }
-                        }
-                        else {
-                          searchForMarkerId(FavoritesPluginProxy.getInstance().getId(), "", pout);
-                        }
-                      }
-                      else {
-                        searchPrograms(value,pout);
-                      }
-                    }
-                    else if(req.startsWith("/searchFavorites=") && req.trim().length() > 17) {
-                      String value = req.substring(req.indexOf("=")+1);
-                      
-                      searchForMarkerId(FavoritesPluginProxy.getInstance().getId(),value,pout);
-                    }
-                    else if(req.startsWith("/searchReminder=") && req.trim().length() > 16) {
-                      String value = req.substring(req.indexOf("=")+1);
-                      
-                      searchForMarkerId(ReminderPluginProxy.getInstance().getId(),value,pout);
-                    }
-                    else if(req.startsWith("/searchForMarkerId=") && req.contains("&")) {
-                      String value = req.substring(req.indexOf("=")+1);
-                      
-                      String id = value.substring(0, value.indexOf("&"));
-                      value = value.substring(value.indexOf("&")+1);
-                      
-                      searchForMarkerId(id,value,pout);
-                    }
-                    else if(req.startsWith("/searchTime=") && req.trim().length() > 13) {
-                      String value = req.substring(req.indexOf("=")+1);
-                      
-                      String id = value.substring(0, value.indexOf("&"));
-                      value = value.substring(value.indexOf("&")+1);
-                      
-                      searchForMarkerId(id,value,pout);
-                    }
-                    else if(req.startsWith("/channelIcon=") && req.trim().length() > 13) {
-                      String id = req.substring(req.indexOf("=")+1);
-                      
-                      for(Channel channel :getPluginManager().getSubscribedChannels()) {
-                        if(channel.getUniqueId().equals(id)) {
-                          Icon icon = channel.getIcon();
-                          
-                          int size = 64;
-                          
-                          if(icon.getIconHeight() > icon.getIconWidth()) {
-                            size = (int)((64 * icon.getIconWidth())/(float)icon.getIconHeight());
-                          }
-                          
-                          icon = UiUtilities.scaleIcon(icon,size);
-                          
-                          BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
-                          image.getGraphics().setColor(Color.white);
-                          image.getGraphics().fillRect(0, 0, 64, 64);
-                          image.getGraphics().setColor(Color.black);
-                          image.getGraphics().drawRect(0, 0, 64, 64);
-                          image.getGraphics().setColor(Color.white);
-                          icon.paintIcon(null, image.getGraphics(), 64/2 - icon.getIconWidth()/2, 64/2 - icon.getIconHeight()/2);
-                          
-                          sendImage(image,pout,out);
-                          
-                          break;
-                        }
-                      }
-                    }
-                    else if(req.startsWith("/picture=") && req.trim().length() > 9) {
-                      String id = req.substring(req.indexOf("=")+1);
-                      int resize = -1;
-                      
-                      if(id.indexOf("&") != -1) {
-                        resize = Integer.parseInt(id.trim().substring(id.indexOf("&")+1));
-                        id = id.trim().substring(0,id.indexOf("&"));
-                      }
-                      
-                      Program prog = getPluginManager().getProgram(id);
-                      
-                      if(prog != null && prog.hasFieldValue(ProgramFieldType.PICTURE_TYPE)) {                    
-                        byte[] picture = prog.getBinaryField(ProgramFieldType.PICTURE_TYPE);
-                        
-                        BufferedImage image = ImageIO.read(new ByteArrayInputStream(picture));
-                        
-                        if(resize != -1) {
-                          Icon icon = UiUtilities.scaleIcon(new ImageIcon(image), resize);
-                          
-                          image = new BufferedImage(icon.getIconWidth(), resize, BufferedImage.TYPE_INT_ARGB);
-                          image.getGraphics().setColor(new Color(255,255,255,0));
-                          
-                          icon.paintIcon(null, image.getGraphics(), resize/2 - icon.getIconWidth()/2, resize/2 - icon.getIconHeight()/2);
-                        }
-                        
-                        sendImage(image,pout,out);
-                      }
-                    }
-                    
-                    
-                   /// info(pout,connection);
-                  }
-                }
-              }catch(Exception e2) {
-                // catch all exceptions to prevent crash of server
+                });
+              }catch(RejectedExecutionException e) {
+                PrintStream pout = new PrintStream(new BufferedOutputStream(connection.getOutputStream()));
+                errorReport(pout, connection, "503", "Service Unavailable",
+                    "Too many connections, please try again later.");
+                pout.flush();
+                connection.close();
               }
-              out.flush();
             } catch (IOException e) {
-              // TODO Auto-generated catch block
-              e.printStackTrace();
+              if(mServerIsRunning && !mSocket.isClosed()) {
+                e.printStackTrace();
+              }
             }
-            try {
-              if (connection != null) connection.close(); 
-            } catch (IOException e) { System.err.println(e); }
           }
         }
       };
@@ -379,6 +216,336 @@ public class TvbInfoServer extends Plugin {
     }
   }
   
+  /**
+   * Serves the requests of a connection. The connection is closed after the
+   * first request, like before, if the client doesn't ask for keep alive with
+   * a <code>Connection: keep-alive</code> header. With keep alive the
+   * responses get a HTTP header with the content length.
+   */
+  private void serveConnection(Socket connection) {
+    try {
+      connection.setSoTimeout(KEEP_ALIVE_TIMEOUT);
+      
+      BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+      OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+      boolean keepAlive = true;
+      
+      while(keepAlive && mServerIsRunning) {
+        // read first line of request
+        String request = in.readLine();
+        
+        if (request==null) {
+          break;
+        }
+        
+        keepAlive = false;
+        
+        while (true) {
+          String misc = in.readLine();
+          if (misc==null || misc.length()==0)
+              break;
+          
+          if(misc.toLowerCase().startsWith("connection:")) {
+            keepAlive = misc.substring(11).trim().equalsIgnoreCase("keep-alive");
+          }
+        }
+        
+        Response response = new Response(keepAlive);
+        
+        if(!connection.getInetAddress().isLoopbackAddress()) {
+          errorReport(response.mPrintStream, connection, "403", "Forbidden",
+              "You don't have permission to access the requested URL.");
+          keepAlive = false;
+          response.mHasHeader = true;
+        }
+        // parse the line
+        else if (!request.startsWith("GET") || request.length()<14 ||
+            !(request.endsWith("HTTP/1.0") || request.endsWith("HTTP/1.1"))) {
+            // bad request
+            errorReport(response.mPrintStream, connection, "400", "Bad Request", 
+                        "Your browser sent a request that " + 
+                        "this server could not understand.");
+            keepAlive = false;
+            response.mHasHeader = true;
+        } else {
+          String req = URLDecoder.decode(request.substring(4, request.length()-9).trim(), "UTF-8");
+          
+          try {
+            handleRequest(req, response);
+          }catch(Exception e2) {
+            // catch all exceptions to prevent crash of server
+          }
+        }
+        
+        response.writeTo(out);
+        out.flush();
+      }
+    } catch (SocketTimeoutException e) {
+      // the client kept the connection open without sending a new request
+    } catch (IOException e) {
+      // the client closed the connection
+    } finally {
+      try {
+        connection.close(); 
+      } catch (IOException e) { System.err.println(e); }
+    }
+  }
+  
+  private void handleRequest(String req, Response response) throws Exception {
+    String cacheKey = getCacheKey(req);
+    long generation = getCacheGeneration();
+    
+    if(cacheKey != null) {
+      byte[] cached = getCachedResponse(cacheKey);
+      
+      if(cached != null) {
+        response.mBody.write(cached);
+        return;
+      }
+    }
+    
+    PrintStream pout = response.mPrintStream;
+    
+    if(req.equals("/search=") || req.equals("/search=running")) {
+      sendRunning(pout);
+    }
+    else if(req.startsWith("/show=") && req.trim().length() > 10) {
+      String id = req.substring(req.indexOf("=")+1);
+      
+      if(id.trim().length() > 5 && id.contains("_")) {
+        final Program p = getPluginManager().getProgram(id);
+        
+        if(p != null) {
+          SwingUtilities.invokeLater(new Runnable() {
+            
+            @Override
+            public void run() {
+              // TODO Auto-generated method stub
+              ProgramInfo.getInstance().showProgramInformation(p);    
+            }
+          });
+        }
+        pout.print("shown\r\n");
+      }
+    }
+    else if(req.startsWith("/search=") && req.trim().length() > 8) {
+      String value = req.substring(req.indexOf("=")+1);
+                            
+      if(value.startsWith("\\")) {
+        if(value.length() > 1) {
+          value = value.substring(1);
+          
+          if(value.startsWith("\\")) {
+            if(value.length() > 1) {
+              value = value.substring(1);
+              
+              int index = value.indexOf(":");
+              
+              int time = 0;
+              
+              if(index != -1) {
+                if(value.length() == 5) {
+                  try {
+                    time = Integer.parseInt(value.substring(0,index)) * 60 + Integer.parseInt(value.substring(index+1));
+                  }catch(NumberFormatException e1) {}
+                }
+              }
+              else if(value.length() == 4) {
+                try {
+                  time = Integer.parseInt(value.substring(0,2)) * 60 + Integer.parseInt(value.substring(2));
+                }catch(NumberFormatException e1) {}
+              }
+              else if(value.length() == 2) {
+                try {
+                  time = Integer.parseInt(value) * 60;
+                }catch(NumberFormatException e1) {}
+              }
+              
+              findProgramInTime(time,pout);
+            }
+          }
+          else {
+            searchChannels(value,pout);
+          }
+        }
+      }
+      else if(value.startsWith("+")) {
+        if(value.length() > 1) {
+          value = value.substring(1);
+          
+          if(value.startsWith("+")) {
+            if(value.length() > 1) {
+              value = value.substring(1);
+              
+              searchForMarkerId(ReminderPluginProxy.getInstance().getId(), value, pout);
+            }
+            else if(value.length() == 1) {
+              searchForMarkerId(ReminderPluginProxy.getInstance().getId(), "", pout);
+            }
+          }
+          else {
+            searchForMarkerId(FavoritesPluginProxy.getInstance().getId(), value, pout);
+          }
+        }
+        else {
+          searchForMarkerId(FavoritesPluginProxy.getInstance().getId(), "", pout);
+        }
+      }
+      else {
+        searchPrograms(value,pout);
+      }
+    }
+    else if(req.startsWith("/searchFavorites=") && req.trim().length() > 17) {
+      String value = req.substring(req.indexOf("=")+1);
+      
+      searchForMarkerId(FavoritesPluginProxy.getInstance().getId(),value,pout);
+    }
+    else if(req.startsWith("/searchReminder=") && req.trim().length() > 16) {
+      String value = req.substring(req.indexOf("=")+1);
+      
+      searchForMarkerId(ReminderPluginProxy.getInstance().getId(),value,pout);
+    }
+    else if(req.startsWith("/searchForMarkerId=") && req.contains("&")) {
+      String value = req.substring(req.indexOf("=")+1);
+      
+      String id = value.substring(0, value.indexOf("&"));
+      value = value.substring(value.indexOf("&")+1);
+      
+      searchForMarkerId(id,value,pout);
+    }
+    else if(req.startsWith("/searchTime=") && req.trim().length() > 13) {
+      String value = req.substring(req.indexOf("=")+1);
+      
+      String id = value.substring(0, value.indexOf("&"));
+      value = value.substring(value.indexOf("&")+1);
+      
+      searchForMarkerId(id,value,pout);
+    }
+    else if(req.startsWith("/channelIcon=") && req.trim().length() > 13) {
+      String id = req.substring(req.indexOf("=")+1);
+      
+      for(Channel channel :getPluginManager().getSubscribedChannels()) {
+        if(channel.getUniqueId().equals(id)) {
+          Icon icon = channel.getIcon();
+          
+          int size = 64;
+          
+          if(icon.getIconHeight() > icon.getIconWidth()) {
+            size = (int)((64 * icon.getIconWidth())/(float)icon.getIconHeight());
+          }
+          
+          icon = UiUtilities.scaleIcon(icon,size);
+          
+          BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+          image.getGraphics().setColor(Color.white);
+          image.getGraphics().fillRect(0, 0, 64, 64);
+          image.getGraphics().setColor(Color.black);
+          image.getGraphics().drawRect(0, 0, 64, 64);
+          image.getGraphics().setColor(Color.white);
+          icon.paintIcon(null, image.getGraphics(), 64/2 - icon.getIconWidth()/2, 64/2 - icon.getIconHeight()/2);
+          
+          sendImage(image,response);
+          
+          break;
+        }
+      }
+    }
+    else if(req.startsWith("/picture=") && req.trim().length() > 9) {
+      String id = req.substring(req.indexOf("=")+1);
+      int resize = -1;
+      
+      if(id.indexOf("&") != -1) {
+        resize = Integer.parseInt(id.trim().substring(id.indexOf("&")+1));
+        id = id.trim().substring(0,id.indexOf("&"));
+      }
+      
+      Program prog = getPluginManager().getProgram(id);
+      
+      if(prog != null && prog.hasFieldValue(ProgramFieldType.PICTURE_TYPE)) {                    
+        byte[] picture = prog.getBinaryField(ProgramFieldType.PICTURE_TYPE);
+        
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(picture));
+        
+        if(resize != -1) {
+          Icon icon = UiUtilities.scaleIcon(new ImageIcon(image), resize);
+          
+          image = new BufferedImage(icon.getIconWidth(), resize, BufferedImage.TYPE_INT_ARGB);
+          image.getGraphics().setColor(new Color(255,255,255,0));
+          
+          icon.paintIcon(null, image.getGraphics(), resize/2 - icon.getIconWidth()/2, resize/2 - icon.getIconHeight()/2);
+        }
+        
+        sendImage(image,response);
+      }
+    }
+    
+    if(cacheKey != null) {
+      pout.flush();
+      putCachedResponse(cacheKey, response.mBody.toByteArray(), generation);
+    }
+  }
+  
+  /**
+   * Gets the key for the response cache, the answers of the searches for
+   * programs don't change until the next minute or the next data update.
+   * The searches for marked programs are not cached, because the markings
+   * may change at any time.
+   * 
+   * @return The key or <code>null</code> if the response can't be cached.
+   */
+  private static String getCacheKey(String req) {
+    if(req.startsWith("/search=") && !req.startsWith("/search=+")) {
+      return req;
+    }
+    
+    return null;
+  }
+  
+  private byte[] getCachedResponse(String key) {
+    synchronized(mResponseCache) {
+      CachedResponse cached = mResponseCache.get(key);
+      
+      if(cached != null && cached.mMinute == getCurrentMinute()) {
+        return cached.mContent;
+      }
+      
+      return null;
+    }
+  }
+  
+  private long getCacheGeneration() {
+    synchronized(mResponseCache) {
+      return mCacheGeneration;
+    }
+  }
+  
+  /**
+   * Caches the response if the cache wasn't cleared while it was created.
+   */
+  private void putCachedResponse(String key, byte[] content, long generation) {
+    synchronized(mResponseCache) {
+      if(generation == mCacheGeneration) {
+        mResponseCache.put(key, new CachedResponse(content, getCurrentMinute()));
+      }
+    }
+  }
+  
+  private void clearResponseCache() {
+    synchronized(mResponseCache) {
+      mResponseCache.clear();
+      mCacheGeneration++;
+    }
+  }
+  
+  private static long getCurrentMinute() {
+    return System.currentTimeMillis() / 60000;
+  }
+  
+  @Override
+  public void handleTvDataUpdateFinished() {
+    clearResponseCache();
+  }
+  
   private void searchForMarkerId(String id, String value, PrintStream pout) {
     pout.print("<?xml version=\"1.0\"?>\r\n");
     pout.print("<TvbSearch>\r\n");
@@ -523,15 +690,19 @@ public class TvbInfoServer extends Plugin {
   }
   
   
-  private void sendImage(BufferedImage img, PrintStream pout,OutputStream out) {
+  private void sendImage(BufferedImage img, Response response) {
     try { 
       // send file
-      pout.print("HTTP/1.0 200 OK\r\n" +
-                 "Content-Type: image/png\r\n" +
-                 "Date: " + new java.util.Date() + "\r\n" +
-                 "Server: FileServer 1.0\r\n\r\n");
+      if(!response.mKeepAlive) {
+        response.mPrintStream.print("HTTP/1.0 200 OK\r\n" +
+                   "Content-Type: image/png\r\n" +
+                   "Date: " + new java.util.Date() + "\r\n" +
+                   "Server: FileServer 1.0\r\n\r\n");
+        response.mPrintStream.flush();
+      }
+      response.mContentType = "image/png";
 
-      ImageIO.write(img, "png", out);
+      ImageIO.write(img, "png", response.mBody);
       //sendFile(file, out); // send raw file 
       //log(connection, "200 OK");
   } catch (IOException e) { e.printStackTrace();
@@ -669,14 +840,57 @@ public class TvbInfoServer extends Plugin {
   public void onDeactivation() {
     if(!mSocket.isClosed()) {
       try {
-        mSocket.close();
         mServerIsRunning = false;
+        mSocket.close();
       } catch (IOException e) {
         // TODO Auto-generated catch block
         e.printStackTrace();
       }
     }
+    
+    if(mConnectionPool != null) {
+      mConnectionPool.shutdown();
+    }
+    
+    clearResponseCache();
   }
   
+  /**
+   * The response to a request, created completely before it's sent.
+   */
+  private static final class Response {
+    private final boolean mKeepAlive;
+    private final ByteArrayOutputStream mBody = new ByteArrayOutputStream(4096);
+    private final PrintStream mPrintStream = new PrintStream(mBody);
+    private String mContentType = "text/xml";
+    /** If the body already starts with a HTTP header, like the error reports */
+    private boolean mHasHeader;
+    
+    private Response(boolean keepAlive) {
+      mKeepAlive = keepAlive;
+    }
+    
+    private void writeTo(OutputStream out) throws IOException {
+      mPrintStream.flush();
+      
+      if(mKeepAlive && !mHasHeader) {
+        out.write(("HTTP/1.1 200 OK\r\n" +
+            "Content-Type: " + mContentType + "\r\n" +
+            "Content-Length: " + mBody.size() + "\r\n" +
+            "Connection: keep-alive\r\n\r\n").getBytes("ISO-8859-1"));
+      }
+      
+      mBody.writeTo(out);
+    }
+  }
   
+  private static final class CachedResponse {
+    private final byte[] mContent;
+    private final long mMinute;
+    
+    private CachedResponse(byte[] content, long minute) {
+      mContent = content;
+      mMinute = minute;
+    }
+  }
 }
\ No newline at end of file
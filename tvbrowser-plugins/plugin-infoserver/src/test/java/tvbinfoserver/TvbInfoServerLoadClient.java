@@ -0,0 +1,190 @@
+package tvbinfoserver;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends requests to a running TV-Browser Info Server from several threads
+ * at once and reports the throughput and the latency of the requests,
+ * once with a new connection for every request and once with kept alive
+ * connections.
+ * <p>
+ * Usage: <code>TvbInfoServerLoadClient [port] [threads] [requests per thread]</code>
+ */
+public class TvbInfoServerLoadClient {
+  private static final String[] REQUESTS = {
+    "/search=running", "/search=\\\\20:15", "/search=\\ARD", "/search=Tatort"
+  };
+  
+  private final int mPort;
+  private final AtomicInteger mErrors = new AtomicInteger();
+  private final AtomicLong mLatencyNanos = new AtomicLong();
+  private final AtomicLong mMaxLatencyNanos = new AtomicLong();
+  private final AtomicLong mBytes = new AtomicLong();
+  
+  private TvbInfoServerLoadClient(int port) {
+    mPort = port;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int requests = args.length > 2 ? Integer.parseInt(args[2]) : 250;
+    
+    System.out.println(threads + " threads with " + requests + " requests each to port " + port);
+    
+    new TvbInfoServerLoadClient(port).run(threads, requests, false);
+    new TvbInfoServerLoadClient(port).run(threads, requests, true);
+  }
+  
+  private void run(int threads, final int requests, final boolean keepAlive) throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(threads);
+    long start = System.nanoTime();
+    
+    for(int i = 0; i < threads; i++) {
+      final int number = i;
+      
+      new Thread("Load client " + i) {
+        public void run() {
+          try {
+            sendRequests(number, requests, keepAlive);
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    
+    done.await();
+    
+    long duration = Math.max(1, System.nanoTime() - start);
+    int count = threads * requests;
+    
+    System.out.println((keepAlive ? "keep alive:     " : "new connection: ") + count + " requests in "
+        + (duration / 1000000) + " ms (" + (count * 1000000000L / duration) + " requests/s), average latency "
+        + (mLatencyNanos.get() / count / 1000) + " us, max " + (mMaxLatencyNanos.get() / 1000000) + " ms, "
+        + (mBytes.get() / 1024) + " KB, " + mErrors.get() + " errors");
+  }
+  
+  private void sendRequests(int number, int requests, boolean keepAlive) {
+    Socket socket = null;
+    
+    try {
+      for(int i = 0; i < requests; i++) {
+        String path = URLEncoder.encode(REQUESTS[(number + i) % REQUESTS.length], "UTF-8").replace("%2F", "/").replace("%3D", "=");
+        long start = System.nanoTime();
+        
+        try {
+          if(socket == null) {
+            socket = new Socket("localhost", mPort);
+          }
+          
+          OutputStream out = socket.getOutputStream();
+          out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+              + (keepAlive ? "Connection: keep-alive\r\n" : "") + "\r\n").getBytes("ISO-8859-1"));
+          out.flush();
+          
+          InputStream in = new BufferedInputStream(socket.getInputStream());
+          mBytes.addAndGet(keepAlive ? readResponse(in) : readToEnd(in));
+          
+          if(!keepAlive) {
+            socket.close();
+            socket = null;
+          }
+        } catch (IOException e) {
+          mErrors.incrementAndGet();
+          socket = close(socket);
+        }
+        
+        long latency = System.nanoTime() - start;
+        mLatencyNanos.addAndGet(latency);
+        
+        long max = mMaxLatencyNanos.get();
+        while(latency > max && !mMaxLatencyNanos.compareAndSet(max, latency)) {
+          max = mMaxLatencyNanos.get();
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      close(socket);
+    }
+  }
+  
+  /**
+   * Reads a response with a HTTP header and a content length.
+   */
+  private static int readResponse(InputStream in) throws IOException {
+    String status = readLine(in);
+    
+    if(status == null || !status.startsWith("HTTP/1.1 200")) {
+      throw new IOException("Unexpected response: " + status);
+    }
+    
+    int length = -1;
+    String line;
+    
+    while((line = readLine(in)) != null && line.length() > 0) {
+      if(line.toLowerCase().startsWith("content-length:")) {
+        length = Integer.parseInt(line.substring(15).trim());
+      }
+    }
+    
+    if(length < 0) {
+      throw new IOException("Response without content length");
+    }
+    
+    for(int i = 0; i < length; i++) {
+      if(in.read() == -1) {
+        throw new IOException("Response too short");
+      }
+    }
+    
+    return length;
+  }
+  
+  private static int readToEnd(InputStream in) throws IOException {
+    int length = 0;
+    byte[] buffer = new byte[4096];
+    int read;
+    
+    while((read = in.read(buffer)) != -1) {
+      length += read;
+    }
+    
+    return length;
+  }
+  
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    
+    while((b = in.read()) != -1 && b != '\n') {
+      if(b != '\r') {
+        line.write(b);
+      }
+    }
+    
+    return b == -1 && line.size() == 0 ? null : line.toString("ISO-8859-1");
+  }
+  
+  private static Socket close(Socket socket) {
+    if(socket != null) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+    
+    return null;
+  }
+}
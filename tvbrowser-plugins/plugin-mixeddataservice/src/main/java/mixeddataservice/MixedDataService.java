@@ -41,6 +41,7 @@ import tvdataservice.TvDataUpdateManager;
 import util.exc.TvBrowserException;
 import devplugin.AbstractTvDataService;
 import devplugin.Channel;
+import devplugin.ChannelDayProgram;
 import devplugin.ChannelGroup;
 import devplugin.Date;
 import devplugin.PluginInfo;
@@ -53,6 +54,8 @@ public class MixedDataService extends AbstractTvDataService{
 
   private static final Logger mLog = java.util.logging.Logger.getLogger(MixedDataService.class.getName());
   private static final util.ui.Localizer mLocalizer = util.ui.Localizer.getLocalizerFor(MixedDataService.class);
+  /** The delimiter between the mixed descriptions */
+  private static final String PARAGRAPH_DELIMITER = System.getProperty("line.separator") +  System.getProperty("line.separator");
 
   public final ChannelGroup mMixedDataChannelGroup = new devplugin.ChannelGroupImpl("MixedData", "mixeddata", "Mixed Data of two subscribed channel", mLocalizer.msg("name", "Mixed Data"));
 
@@ -257,6 +260,12 @@ public class MixedDataService extends AbstractTvDataService{
     return false;
   }
 
+  @Override
+  public boolean usesDataOfOtherDataServices() {
+    // the channels are created from the data of other channels
+    return true;
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -564,99 +573,28 @@ public class MixedDataService extends AbstractTvDataService{
   private MutableChannelDayProgram mixedDayProgram (Channel currentChannel, MutableChannelDayProgram dayProg1, MutableChannelDayProgram dayProg2, Date date, String[] mixFlags){
 
     MutableChannelDayProgram dayProg = new MutableChannelDayProgram(date, currentChannel);
-    int lastEndTime = 0;
-
-    if (dayProg1.getProgramCount()>0   && dayProg2.getProgramCount()>0 ) {
-      for (int i=0; i < dayProg1.getProgramCount(); i++) {
-        lastEndTime = dayProg1.getProgramAt(i).getStartTime() + dayProg1.getProgramAt(i).getLength();
-        MutableProgram currentProgram = new MutableProgram(currentChannel, date, dayProg1.getProgramAt(i).getHours(), dayProg1.getProgramAt(i).getMinutes(), true);
-
-        int occurrences2 = 0;
-        int maxDiff = 1440;
-        Program program2 = null;
-        // test how often program is in dayprogram and find nearest alternative as best fit
-        for (int j = 0; j <dayProg2.getProgramCount(); j++) {
-          if (compareTitle(dayProg1.getProgramAt(i).getTitle(), dayProg2.getProgramAt(j).getTitle())) {
-            occurrences2++;
-            int aktDiff = Math.abs(dayProg1.getProgramAt(i).getStartTime() - dayProg2.getProgramAt(j).getStartTime());
-            if (aktDiff < maxDiff) {
-              program2 = dayProg2.getProgramAt(j);
-              maxDiff = aktDiff;
-            }
-          }
-        }
-        // if alternativeProgram was the only match it's done. Otherwise...
-        if (occurrences2 > 1) {
-          // compare if number of transmissions in day program
-          int occurrences1 = 0;
-
-          for (int ii=0; ii < dayProg1.getProgramCount(); ii++) {
-            if (compareTitle(dayProg1.getProgramAt(i).getTitle(), dayProg1.getProgramAt(ii).getTitle())) {
-              occurrences1++;
-            }
-          }
-          if (occurrences2 == occurrences1) {
-            // if the number of transmissions is equal, then match transmissions in pairs
-            int counter1 = 0;
-            int counter2 = 0;
-            for (int ii=0; ii < dayProg1.getProgramCount(); ii++) {
-              if (compareTitle(dayProg1.getProgramAt(i).getTitle(), dayProg1.getProgramAt(ii).getTitle())) {
-                counter1++;
-              }
-            }
-            int index = 0;
-            while (index < dayProg2.getProgramCount()&& counter2 < counter1){
-              if (compareTitle(dayProg1.getProgramAt(i).getTitle(), dayProg2.getProgramAt(index).getTitle())) {
-                counter2++;
-              }
-              if (counter1 == counter2) {
-                program2 = dayProg2.getProgramAt(index);
-              }
-              index++;
-            }
-          }
-          //else{use best fit from above};
-        }
+
+    for (MixedDayProgramMerger.Slot slot : MixedDayProgramMerger.merge(new ChannelDayProgram[] {dayProg1, dayProg2})) {
+      Program prog = slot.getProgram();
+      MutableProgram currentProgram = new MutableProgram(currentChannel, date, prog.getHours(), prog.getMinutes(), true);
+
+      if (slot.isFill()) {
+        mixInfos(currentProgram, prog, prog, noMix);
+      } else {
         // when the best program match is found, the data mix finally can be done
-        mixInfos(currentProgram, dayProg1.getProgramAt(i), program2, mixFlags);
-        currentProgram.setProgramLoadingIsComplete();
-        dayProg.addProgram(currentProgram);
-      }
-      // if dayprogram is not complete, add the data from the additional program for the rest of the day
-      if (lastEndTime < 1440) {
-        fillDay(dayProg, currentChannel, dayProg2, date, lastEndTime);
-      }
-    } else {
-      if (dayProg1.getProgramCount()>0 ){
-        fillDay (dayProg, currentChannel, dayProg1, date);
-      }
-      if (dayProg2.getProgramCount()>0 ){
-        fillDay (dayProg, currentChannel, dayProg2, date);
+        Program[] partners = slot.getPartners();
+        mixInfos(currentProgram, prog, partners[0], mixFlags);
+        for (int i = 1; i < partners.length; i++) {
+          mixInfos(currentProgram, currentProgram, partners[i], mixFlags);
+        }
       }
+      currentProgram.setProgramLoadingIsComplete();
+      dayProg.addProgram(currentProgram);
     }
 
     return dayProg;
   }
 
-  private void fillDay (MutableChannelDayProgram dayProg, Channel currentChannel, MutableChannelDayProgram fillProg, Date date){
-    fillDay (dayProg, currentChannel, fillProg, date, 0);
-  }
-
-  private void fillDay (MutableChannelDayProgram dayProg, Channel currentChannel, MutableChannelDayProgram fillProg, Date date, int startTime){
-
-    for (int i = 0; i< fillProg.getProgramCount(); i++){
-      Program currentProg = fillProg.getProgramAt(i);
-      if (currentProg.getStartTime() > startTime) {
-        MutableProgram currentProgram = new MutableProgram(currentChannel, date, currentProg.getHours(), currentProg.getMinutes(), true);
-        mixInfos(currentProgram, currentProg, currentProg, noMix);
-        currentProgram.setProgramLoadingIsComplete();
-        dayProg.addProgram(currentProgram);
-      }
-    }
-  }
-
-
-
   private MutableChannelDayProgram getDayProgram (Channel channel, Date date) {
     MutableChannelDayProgram dayProg  = new MutableChannelDayProgram(date, channel);
     if (channel != null){
@@ -682,8 +620,8 @@ public class MixedDataService extends AbstractTvDataService{
     setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.ORIGINAL_TITLE_TYPE, mixFlags[1]);
     setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.EPISODE_TYPE, mixFlags[2]);
     setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.ORIGINAL_EPISODE_TYPE, mixFlags[3]);
-    setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.SHORT_DESCRIPTION_TYPE, mixFlags[4], System.getProperty("line.separator") +  System.getProperty("line.separator"));
-    setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.DESCRIPTION_TYPE, mixFlags[5], System.getProperty("line.separator") +  System.getProperty("line.separator"));
+    setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.SHORT_DESCRIPTION_TYPE, mixFlags[4], PARAGRAPH_DELIMITER);
+    setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.DESCRIPTION_TYPE, mixFlags[5], PARAGRAPH_DELIMITER);
     setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.ACTOR_LIST_TYPE, mixFlags[6]);
     setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.DIRECTOR_TYPE, mixFlags[7]);
     setMixedInfo(currentProgram, prog1, prog2, ProgramFieldType.INFO_TYPE, mixFlags[9]);
@@ -711,7 +649,7 @@ public class MixedDataService extends AbstractTvDataService{
     setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.ADDITIONAL_PERSONS_TYPE, mixFlags[27]);
     setMixedIntField(currentProgram, prog1, prog2, ProgramFieldType.RATING_TYPE, mixFlags[28]);
     if (version >= 300) {
-    	setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.CUSTOM_TYPE, mixFlags[8], System.getProperty("line.separator") +  System.getProperty("line.separator"));
+    	setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.CUSTOM_TYPE, mixFlags[8], PARAGRAPH_DELIMITER);
     	setMixedTextField(currentProgram, prog1, prog2, ProgramFieldType.PRODUCTION_COMPANY_TYPE, mixFlags[29]);
     }
   }
@@ -904,14 +842,13 @@ public class MixedDataService extends AbstractTvDataService{
 
   /**
    * Test, whether on program title is the short version of the other
-   * @param title1
-   * @param title2
+   * @param test1 the first title in lower case
+   * @param title2 the second title
+   * @param test2 the second title in lower case
    * @return
    */
-  private boolean compareTitle(final String title1, final String title2){
+  static boolean compareTitle(final String test1, final String title2, final String test2){
 
-	    String test1 = title1.toLowerCase();
-	    String test2 = title2.toLowerCase();
 	    if (test1.equals(test2) || test1.indexOf(title2) >= 0 || test2.indexOf(test1) >= 0){
 	      return true;
 	    }
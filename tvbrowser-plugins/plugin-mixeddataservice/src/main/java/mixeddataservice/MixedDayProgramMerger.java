@@ -0,0 +1,265 @@
+/*
+ * Data Mixer Plugin by jb (j.bollwahn@arcor.de)
+ *
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package mixeddataservice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import devplugin.ChannelDayProgram;
+import devplugin.Program;
+
+/**
+ * Finds the programs of the source channels that are mixed into the
+ * programs of a mixed day program.
+ * <p>
+ * The sources are given in the order of their priority. The first source
+ * with programs gives the programs of the mixed day, every other source
+ * gives the program with a matching title that fits best. After the last
+ * program of the first source the day is filled with the programs of the
+ * other sources.
+ * <p>
+ * The programs of a source that match a title are searched only once for
+ * every title and not again for every program, so repeated programs, like
+ * the news, don't make the merge quadratic. The programs themselves are not
+ * copied, the slots reference the programs of the sources.
+ */
+final class MixedDayProgramMerger {
+
+  private static final int MINUTES_PER_DAY = 1440;
+
+  private MixedDayProgramMerger() {
+  }
+
+  /**
+   * One program of the mixed day program.
+   */
+  static final class Slot {
+    private final Program mProgram;
+    private final Program[] mPartners;
+
+    private Slot(Program program, Program[] partners) {
+      mProgram = program;
+      mPartners = partners;
+    }
+
+    /**
+     * @return The program of the source with the highest priority, gives the time of the slot.
+     */
+    Program getProgram() {
+      return mProgram;
+    }
+
+    /**
+     * @return The matching programs of the other sources in the order of their priority,
+     * an element is <code>null</code> if the source has no matching program.
+     */
+    Program[] getPartners() {
+      return mPartners;
+    }
+
+    /**
+     * @return If the slot only fills the day, the program is used without mixing.
+     */
+    boolean isFill() {
+      return mPartners == null;
+    }
+  }
+
+  /**
+   * Merges the given day programs.
+   *
+   * @param sources The day programs of the sources in the order of their priority,
+   * the programs are sorted by their start time.
+   * @return The slots of the mixed day program.
+   */
+  static List<Slot> merge(ChannelDayProgram[] sources) {
+    ArrayList<SourceDay> days = new ArrayList<SourceDay>(sources.length);
+
+    for (ChannelDayProgram source : sources) {
+      if (source != null && source.getProgramCount() > 0) {
+        days.add(new SourceDay(source));
+      }
+    }
+
+    ArrayList<Slot> slots = new ArrayList<Slot>();
+
+    if (days.size() == 1) {
+      // like before programs at midnight of a day without alternative are not taken
+      fill(slots, days.get(0), 0);
+    } else if (days.size() > 1) {
+      SourceDay primary = days.get(0);
+      HashMap<String, TitleMatches>[] matchesArr = createMatchMaps(days.size());
+
+      for (int i = 0; i < primary.size(); i++) {
+        Program[] partners = new Program[days.size() - 1];
+
+        for (int k = 1; k < days.size(); k++) {
+          partners[k - 1] = findPartner(primary, i, days.get(k), matchesArr[k]);
+        }
+
+        slots.add(new Slot(primary.mPrograms[i], partners));
+      }
+
+      Program last = primary.mPrograms[primary.size() - 1];
+      int lastEndTime = last.getStartTime() + last.getLength();
+
+      // if the day program is not complete, add the programs of the other sources for the rest of the day
+      for (int k = 1; k < days.size() && lastEndTime < MINUTES_PER_DAY; k++) {
+        lastEndTime = fill(slots, days.get(k), lastEndTime);
+      }
+    }
+
+    return slots;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static HashMap<String, TitleMatches>[] createMatchMaps(int count) {
+    HashMap<String, TitleMatches>[] matchesArr = new HashMap[count];
+
+    for (int k = 1; k < count; k++) {
+      matchesArr[k] = new HashMap<String, TitleMatches>();
+    }
+
+    return matchesArr;
+  }
+
+  /**
+   * Adds the programs of the source that start after the given time.
+   *
+   * @return The end time of the last added program.
+   */
+  private static int fill(List<Slot> slots, SourceDay day, int startTime) {
+    int endTime = startTime;
+
+    for (int i = 0; i < day.size(); i++) {
+      Program prog = day.mPrograms[i];
+
+      if (prog.getStartTime() > startTime) {
+        slots.add(new Slot(prog, null));
+        endTime = prog.getStartTime() + prog.getLength();
+      }
+    }
+
+    return endTime;
+  }
+
+  /**
+   * Finds the program of the other source that matches a program of the primary source.
+   * <p>
+   * If the title is only once in the other source it's taken. If the title is several
+   * times in the other source and as often in the primary source, the last one is
+   * taken, otherwise the one with the nearest start time.
+   */
+  private static Program findPartner(SourceDay primary, int index, SourceDay other, HashMap<String, TitleMatches> matchesMap) {
+    String lowerCaseTitle = primary.mLowerCaseTitles[index];
+    TitleMatches matches = matchesMap.get(lowerCaseTitle);
+
+    if (matches == null) {
+      matches = new TitleMatches(primary, index, other);
+      matchesMap.put(lowerCaseTitle, matches);
+    }
+
+    int[] otherIndices = matches.mOtherIndices;
+
+    if (otherIndices.length == 0) {
+      return null;
+    }
+
+    if (otherIndices.length > 1 && matches.getPrimaryCount(primary, index) == otherIndices.length) {
+      return other.mPrograms[otherIndices[otherIndices.length - 1]];
+    }
+
+    int startTime = primary.mPrograms[index].getStartTime();
+    int maxDiff = MINUTES_PER_DAY;
+    Program nearest = null;
+
+    for (int otherIndex : otherIndices) {
+      int diff = Math.abs(startTime - other.mPrograms[otherIndex].getStartTime());
+
+      if (diff < maxDiff) {
+        nearest = other.mPrograms[otherIndex];
+        maxDiff = diff;
+      }
+    }
+
+    return nearest;
+  }
+
+  /**
+   * The programs of a source with their lower case titles.
+   */
+  private static final class SourceDay {
+    private final Program[] mPrograms;
+    private final String[] mLowerCaseTitles;
+
+    private SourceDay(ChannelDayProgram dayProg) {
+      mPrograms = new Program[dayProg.getProgramCount()];
+      mLowerCaseTitles = new String[mPrograms.length];
+
+      for (int i = 0; i < mPrograms.length; i++) {
+        mPrograms[i] = dayProg.getProgramAt(i);
+        mLowerCaseTitles[i] = mPrograms[i].getTitle().toLowerCase();
+      }
+    }
+
+    private int size() {
+      return mPrograms.length;
+    }
+  }
+
+  /**
+   * The programs of the other source that match a title of the primary source.
+   */
+  private static final class TitleMatches {
+    private final int[] mOtherIndices;
+    /** The number of programs of the primary source with a matching title, -1 if not counted yet */
+    private int mPrimaryCount = -1;
+
+    private TitleMatches(SourceDay primary, int index, SourceDay other) {
+      int[] indices = new int[other.size()];
+      int count = 0;
+
+      for (int j = 0; j < other.size(); j++) {
+        if (MixedDataService.compareTitle(primary.mLowerCaseTitles[index], other.mPrograms[j].getTitle(), other.mLowerCaseTitles[j])) {
+          indices[count++] = j;
+        }
+      }
+
+      mOtherIndices = new int[count];
+      System.arraycopy(indices, 0, mOtherIndices, 0, count);
+    }
+
+    private int getPrimaryCount(SourceDay primary, int index) {
+      if (mPrimaryCount == -1) {
+        mPrimaryCount = 0;
+
+        for (int i = 0; i < primary.size(); i++) {
+          if (MixedDataService.compareTitle(primary.mLowerCaseTitles[index], primary.mPrograms[i].getTitle(), primary.mLowerCaseTitles[i])) {
+            mPrimaryCount++;
+          }
+        }
+      }
+
+      return mPrimaryCount;
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Data Mixer Plugin by jb (j.bollwahn@arcor.de)
+ *
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package mixeddataservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import tvdataservice.MutableChannelDayProgram;
+import devplugin.ChannelDayProgram;
+import devplugin.Program;
+
+/**
+ * Compares the merge of day programs with many repeated titles with the
+ * matching that was used before the merger, checks that both find the
+ * same programs and prints the time that was needed.
+ * <p>
+ * Usage: MixedDayProgramMergerBenchmark [days] [programs per day]
+ */
+public class MixedDayProgramMergerBenchmark {
+
+  private static final String[] SERIES = {
+    "Tagesschau", "Nachrichten", "Wetter", "Sportschau", "Verbotene Liebe",
+    "Tatort", "Die Simpsons", "Teleshopping", "Werbesendung", "Gute Zeiten, schlechte Zeiten"
+  };
+
+  public static void main(String[] args) {
+    int days = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int programsPerDay = args.length > 1 ? Integer.parseInt(args[1]) : 144;
+
+    Random random = new Random(42);
+    MutableChannelDayProgram[][] sources = new MutableChannelDayProgram[days][];
+
+    for (int i = 0; i < days; i++) {
+      sources[i] = new MutableChannelDayProgram[] {
+          createDay(random, programsPerDay, 0), createDay(random, programsPerDay, 5)};
+    }
+
+    for (int run = 0; run < 3; run++) {
+      long start = System.nanoTime();
+      int oldMatches = 0;
+
+      for (MutableChannelDayProgram[] dayProgs : sources) {
+        oldMatches += matchLikeBefore(dayProgs[0], dayProgs[1]).size();
+      }
+
+      long oldTime = System.nanoTime() - start;
+      start = System.nanoTime();
+      int newMatches = 0;
+
+      for (MutableChannelDayProgram[] dayProgs : sources) {
+        newMatches += MixedDayProgramMerger.merge(dayProgs).size();
+      }
+
+      long newTime = System.nanoTime() - start;
+
+      System.out.println("run " + run + ": before " + (oldTime / 1000000) + " ms (" + oldMatches
+          + " programs), merger " + (newTime / 1000000) + " ms (" + newMatches + " programs)");
+    }
+
+    for (MutableChannelDayProgram[] dayProgs : sources) {
+      List<Program> before = matchLikeBefore(dayProgs[0], dayProgs[1]);
+      List<MixedDayProgramMerger.Slot> slots = MixedDayProgramMerger.merge(dayProgs);
+
+      for (int i = 0; i < dayProgs[0].getProgramCount(); i++) {
+        if (before.get(i) != slots.get(i).getPartners()[0]) {
+          throw new IllegalStateException("different match for " + dayProgs[0].getProgramAt(i));
+        }
+      }
+    }
+
+    System.out.println("all matches are equal");
+  }
+
+  private static MutableChannelDayProgram createDay(Random random, int programCount, int maxShift) {
+    Object[] programs = new Object[programCount * 3];
+    int length = 1440 / programCount;
+
+    for (int i = 0; i < programCount; i++) {
+      String title = SERIES[random.nextInt(SERIES.length)];
+
+      if (random.nextInt(4) == 0) {
+        title = title + " " + random.nextInt(1000);
+      }
+
+      programs[i * 3] = title;
+      programs[i * 3 + 1] = Math.max(0, i * length + (maxShift > 0 ? random.nextInt(maxShift) : 0));
+      programs[i * 3 + 2] = length;
+    }
+
+    return MixedDayProgramMergerTest.createDay(programs);
+  }
+
+  /**
+   * The matching of the programs of the second source like it was done before the merger.
+   */
+  private static List<Program> matchLikeBefore(ChannelDayProgram dayProg1, ChannelDayProgram dayProg2) {
+    ArrayList<Program> result = new ArrayList<Program>();
+
+    for (int i = 0; i < dayProg1.getProgramCount(); i++) {
+      int occurrences2 = 0;
+      int maxDiff = 1440;
+      Program program2 = null;
+
+      for (int j = 0; j < dayProg2.getProgramCount(); j++) {
+        if (compareTitle(dayProg1.getProgramAt(i).getTitle(), dayProg2.getProgramAt(j).getTitle())) {
+          occurrences2++;
+          int aktDiff = Math.abs(dayProg1.getProgramAt(i).getStartTime() - dayProg2.getProgramAt(j).getStartTime());
+          if (aktDiff < maxDiff) {
+            program2 = dayProg2.getProgramAt(j);
+            maxDiff = aktDiff;
+          }
+        }
+      }
+
+      if (occurrences2 > 1) {
+        int occurrences1 = 0;
+
+        for (int ii = 0; ii < dayProg1.getProgramCount(); ii++) {
+          if (compareTitle(dayProg1.getProgramAt(i).getTitle(), dayProg1.getProgramAt(ii).getTitle())) {
+            occurrences1++;
+          }
+        }
+
+        if (occurrences2 == occurrences1) {
+          int counter2 = 0;
+          int index = 0;
+
+          while (index < dayProg2.getProgramCount() && counter2 < occurrences1) {
+            if (compareTitle(dayProg1.getProgramAt(i).getTitle(), dayProg2.getProgramAt(index).getTitle())) {
+              counter2++;
+            }
+            if (occurrences1 == counter2) {
+              program2 = dayProg2.getProgramAt(index);
+            }
+            index++;
+          }
+        }
+      }
+
+      result.add(program2);
+    }
+
+    return result;
+  }
+
+  private static boolean compareTitle(String title1, String title2) {
+    return MixedDataService.compareTitle(title1.toLowerCase(), title2, title2.toLowerCase());
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Data Mixer Plugin by jb (j.bollwahn@arcor.de)
+ *
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package mixeddataservice;
+
+import java.util.List;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+import tvdataservice.MutableChannelDayProgram;
+import tvdataservice.MutableProgram;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+
+public class MixedDayProgramMergerTest extends TestCase {
+
+  private static final Channel CHANNEL = new Channel("test", TimeZone.getDefault(), "de");
+
+  private static final Date DATE = new Date(2014, 5, 12);
+
+  public void testMatchingTitles() {
+    MutableChannelDayProgram primary = createDay(new Object[] {"Tatort", 1200, 90, "Sportschau", 1290, 60});
+    MutableChannelDayProgram other = createDay(new Object[] {"SPORTSCHAU", 1292, 58, "Tatort: Der Fall", 1202, 88});
+
+    List<MixedDayProgramMerger.Slot> slots = merge(primary, other);
+
+    assertEquals(2, slots.size());
+    assertSame(primary.getProgramAt(0), slots.get(0).getProgram());
+    // the day program of the other source is sorted by the start time
+    assertSame(other.getProgramAt(0), slots.get(0).getPartners()[0]);
+    assertSame(other.getProgramAt(1), slots.get(1).getPartners()[0]);
+    assertFalse(slots.get(0).isFill());
+  }
+
+  public void testNoMatchingTitle() {
+    MutableChannelDayProgram primary = createDay(new Object[] {"Tatort", 1200, 240});
+    MutableChannelDayProgram other = createDay(new Object[] {"Polizeiruf", 1200, 240});
+
+    List<MixedDayProgramMerger.Slot> slots = merge(primary, other);
+
+    assertEquals(1, slots.size());
+    assertNull(slots.get(0).getPartners()[0]);
+  }
+
+  public void testNearestStartTime() {
+    MutableChannelDayProgram primary = createDay(new Object[] {"Nachrichten", 720, 15, "Film", 735, 600});
+    MutableChannelDayProgram other = createDay(new Object[] {"Nachrichten", 480, 15, "Nachrichten", 725, 15, "Film", 740, 600});
+
+    List<MixedDayProgramMerger.Slot> slots = merge(primary, other);
+
+    assertSame(other.getProgramAt(1), slots.get(0).getPartners()[0]);
+    assertSame(other.getProgramAt(2), slots.get(1).getPartners()[0]);
+  }
+
+  public void testRepeatedTitlesAsOftenAsInPrimary() {
+    // like before the last transmission of the other source is taken
+    MutableChannelDayProgram primary = createDay(new Object[] {"Nachrichten", 480, 15, "Film", 495, 600, "Nachrichten", 1095, 15});
+    MutableChannelDayProgram other = createDay(new Object[] {"Nachrichten", 480, 15, "Film", 495, 600, "Nachrichten", 1095, 15});
+
+    List<MixedDayProgramMerger.Slot> slots = merge(primary, other);
+
+    assertSame(other.getProgramAt(2), slots.get(0).getPartners()[0]);
+    assertSame(other.getProgramAt(2), slots.get(2).getPartners()[0]);
+  }
+
+  public void testFillAfterPrimary() {
+    MutableChannelDayProgram primary = createDay(new Object[] {"Tatort", 1200, 90});
+    MutableChannelDayProgram other = createDay(new Object[] {"Tatort", 1200, 90, "Sportschau", 1295, 55, "Nachtmagazin", 1350, 30});
+
+    List<MixedDayProgramMerger.Slot> slots = merge(primary, other);
+
+    assertEquals(3, slots.size());
+    assertFalse(slots.get(0).isFill());
+    assertTrue(slots.get(1).isFill());
+    assertSame(other.getProgramAt(1), slots.get(1).getProgram());
+    assertSame(other.getProgramAt(2), slots.get(2).getProgram());
+  }
+
+  public void testOnlyOneSourceWithPrograms() {
+    MutableChannelDayProgram other = createDay(new Object[] {"Nachtfilm", 0, 120, "Tatort", 1200, 90});
+
+    List<MixedDayProgramMerger.Slot> slots = merge(createDay(new Object[0]), other);
+
+    // programs at midnight are not taken like before
+    assertEquals(1, slots.size());
+    assertTrue(slots.get(0).isFill());
+    assertSame(other.getProgramAt(1), slots.get(0).getProgram());
+  }
+
+  public void testNoPrograms() {
+    assertTrue(merge(createDay(new Object[0]), createDay(new Object[0])).isEmpty());
+  }
+
+  public void testPriorityOfThreeSources() {
+    MutableChannelDayProgram primary = createDay(new Object[] {"Tatort", 1200, 60});
+    MutableChannelDayProgram second = createDay(new Object[] {"Sportschau", 1290, 30});
+    MutableChannelDayProgram third = createDay(new Object[] {"Tatort", 1200, 60, "Sportschau", 1290, 30, "Nachtmagazin", 1340, 30});
+
+    List<MixedDayProgramMerger.Slot> slots = MixedDayProgramMerger.merge(new ChannelDayProgram[] {primary, second, third});
+
+    assertEquals(3, slots.size());
+    assertNull(slots.get(0).getPartners()[0]);
+    assertSame(third.getProgramAt(0), slots.get(0).getPartners()[1]);
+    // the gap is filled by the source with the higher priority first
+    assertSame(second.getProgramAt(0), slots.get(1).getProgram());
+    assertSame(third.getProgramAt(2), slots.get(2).getProgram());
+  }
+
+  private static List<MixedDayProgramMerger.Slot> merge(ChannelDayProgram primary, ChannelDayProgram other) {
+    return MixedDayProgramMerger.merge(new ChannelDayProgram[] {primary, other});
+  }
+
+  /**
+   * Creates a day program of title, start time and length triples.
+   */
+  static MutableChannelDayProgram createDay(Object[] programs) {
+    MutableChannelDayProgram day = new MutableChannelDayProgram(DATE, CHANNEL);
+
+    for (int i = 0; i < programs.length; i += 3) {
+      int startTime = (Integer) programs[i + 1];
+      MutableProgram prog = new MutableProgram(CHANNEL, DATE, startTime / 60, startTime % 60, true);
+      prog.setTitle((String) programs[i]);
+      prog.setLength((Integer) programs[i + 2]);
+      prog.setProgramLoadingIsComplete();
+      day.addProgram(prog);
+    }
+
+    return day;
+  }
+}
@@ -930,6 +930,12 @@ public final class NextViewDataService extends AbstractTvDataService {
     return false;
   }
 
+  @Override
+  public boolean usesDataOfOtherDataServices() {
+    // the channels are created from the data of other channels
+    return true;
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -237,6 +237,12 @@ public class SharedChannelDataService extends AbstractTvDataService{
     return false;
   }
 
+  @Override
+  public boolean usesDataOfOtherDataServices() {
+    // the channels are created from the data of other channels
+    return true;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -1,9 +1,10 @@
 package swedbtvdataservice;
 
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.logging.Logger;
 
@@ -22,8 +23,8 @@ class DataHydraFileParser {
   private static final Localizer mLocalizer = Localizer.getLocalizerFor(DataHydraFileParser.class);
   private static final Logger mLog = Logger.getLogger(DataHydraFileParser.class.getName());
 
-  protected void loadDataForChannel(SweDBTvDataService service, TvDataUpdateManager updateManager, Date startDate, int dateCount, ProgressMonitor monitor, Date testStart, DataHydraChannelContainer internalChannel, Channel channel) throws TvBrowserException {
-    ArrayList<Date> modifiedDates = new ArrayList<Date>();
+  protected void loadDataForChannel(SweDBTvDataService service, final TvDataUpdateManager updateManager, Date startDate, int dateCount, final ProgressMonitor monitor, Date testStart, DataHydraChannelContainer internalChannel, final Channel channel) throws TvBrowserException {
+    final ArrayList<Date> modifiedDates = new ArrayList<Date>();
     monitor.setMessage(mLocalizer.msg("updateTvData.progressmessage.10",
             "{2}: Searching for updated/new programs on {0} for {1} days",
             startDate.toString(), dateCount, channel.getName()));
@@ -101,16 +102,44 @@ class DataHydraFileParser {
 
       /*******************************************************************
        * OK... So now we are ready to start parsing the selected data
-       * files
+       * files. They are read in the order of their dates, so a day is
+       * given to the update manager as soon as it is complete.
        ******************************************************************/
-      Hashtable<String, MutableChannelDayProgram> dataHashtable = new Hashtable<String, MutableChannelDayProgram>();
-      Enumeration<Date> en = fileDates.elements();
+      final ArrayList<Date> updatedDates = new ArrayList<Date>();
+      TvDataUpdateManager modifiedDatesManager = new TvDataUpdateManager() {
+        public void updateDayProgram(MutableChannelDayProgram program) {
+          // the days before and after the modified days are only read to get all programs
+          if (modifiedDates.contains(program.getDate())) {
+            mLog.info("Updating database for day " + program.getDate().toString());
+            monitor.setMessage(mLocalizer.msg(
+                    "updateTvData.progressmessage.40",
+                    "{0}: Updating database", channel.getName()));
+            updateManager.updateDayProgram(program);
+            updatedDates.add(program.getDate());
+          }
+        }
+
+        public boolean isDayProgramAvailable(Date date, Channel ch) {
+          return updateManager.isDayProgramAvailable(date, ch);
+        }
+
+        public boolean cancelDownload() {
+          return updateManager.cancelDownload();
+        }
+
+        public boolean checkConnection() {
+          return updateManager.checkConnection();
+        }
+      };
+
+      ArrayList<Date> sortedDates = new ArrayList<Date>(fileDates.values());
+      Collections.sort(sortedDates);
+      DataHydraDayParser parser = new DataHydraDayParser(channel, service, modifiedDatesManager);
       monitor.setMessage(mLocalizer.msg(
               "updateTvData.progressmessage.30", "{0}: Reading datafiles",
               channel.getName()));
-      while (en.hasMoreElements()) {
+      for (Date date : sortedDates) {
         try {
-          Date date = (en.nextElement());
           String strFileDate = createFileName(date);
           mLog.info("getting: " + internalChannel.getBaseUrl()
                   + internalChannel.getId() + "_" + strFileDate
@@ -125,8 +154,12 @@ class DataHydraFileParser {
                   .getDefaultNetworkConnectionTimeout());
 
           if (con.getResponseCode() == 200) {
-            DataHydraDayParser.parseNew(IOUtilities.openSaveGZipInputStream(con
-                    .getInputStream()), channel, date, dataHashtable, service);
+            InputStream in = IOUtilities.openSaveGZipInputStream(con.getInputStream());
+            try {
+              parser.readDocument(in);
+            } finally {
+              in.close();
+            }
             if (modifiedDates.contains(date)) {
               mLog.info("Updating lastUpdate property for date "
                       + date.toString());
@@ -140,20 +173,15 @@ class DataHydraFileParser {
                   "Please report this to the developer", e);
         }
       }
-      mLog.info("All of the files have been parsed");
       /*******************************************************************
-       * Now all of the files has been parsed. Time to update the local
-       * database with our data...
+       * Now all of the files has been parsed. The remaining days are
+       * given to the update manager.
        */
+      parser.finish();
+      mLog.info("All of the files have been parsed");
+
       for (Date date : modifiedDates) {
-        if (dataHashtable.containsKey(date.toString())) {
-          mLog.info("Updating database for day " + date.toString());
-          monitor.setMessage(mLocalizer.msg(
-                  "updateTvData.progressmessage.40",
-                  "{0}: Updating database", channel.getName()));
-          updateManager.updateDayProgram(dataHashtable.get(date
-                  .toString()));
-        } else {
+        if (!updatedDates.contains(date)) {
           mLog.info("Strange.... Didn't find the data for "
                   + date.toString());
         }
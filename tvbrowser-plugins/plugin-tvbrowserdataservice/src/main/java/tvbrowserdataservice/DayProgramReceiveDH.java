@@ -25,7 +25,10 @@
  */
 package tvbrowserdataservice;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.logging.Logger;
 
@@ -78,14 +81,17 @@ public class DayProgramReceiveDH implements DownloadHandler {
     mLog.fine("Receiving file " + job.getFileName());
     File completeFile = new File(mDataService.getDataDir(), job.getFileName());
     try {
+      // Keep the downloaded data, so it's not compressed again for saving
+      byte[] data = readData(stream);
+
       DayProgramFile prog = new DayProgramFile();
-      prog.readFromStream(stream, job);
+      prog.readFromStream(new ByteArrayInputStream(data), job);
       
       // When we are here then the loading succeed -> The file is OK.
       // It is not a corrupt because it is currently being updated.
 
       // Save the day program
-      prog.writeToFile(completeFile);
+      prog.writeToFile(completeFile, data);
       
       if (mLocalSummary != null) {
         String filename = job.getFileName();
@@ -97,8 +103,9 @@ public class DayProgramReceiveDH implements DownloadHandler {
           prog.getVersion());
       }
       
-      // Tell the database updater that this file needs an update
-      mUpdater.addUpdateJobForDayProgramFile(job.getFileName());
+      // Tell the database updater that this file needs an update,
+      // the read program is used for the update, so it's not read again
+      mUpdater.addUpdateJobForDayProgramFile(job.getFileName(), prog);
     }
     catch (Exception exc) {
       throw new TvBrowserException(getClass(), "error.1",
@@ -111,6 +118,19 @@ public class DayProgramReceiveDH implements DownloadHandler {
   }
 
 
+  private static byte[] readData(InputStream stream) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream(0x4000);
+    byte[] buffer = new byte[0x4000];
+    int len;
+
+    while ((len = stream.read(buffer)) != -1) {
+      data.write(buffer, 0, len);
+    }
+
+    return data.toByteArray();
+  }
+
+
   public void handleFileNotFound(String fileName) throws TvBrowserException {
     // There is no data for this day
     
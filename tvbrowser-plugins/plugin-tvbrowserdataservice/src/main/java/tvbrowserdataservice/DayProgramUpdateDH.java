@@ -109,8 +109,9 @@ public class DayProgramUpdateDH implements DownloadHandler {
             completeProg.getVersion());
       }
       
-      // Tell the database updater that this file needs an update
-      mUpdater.addUpdateJobForDayProgramFile(completeFileName);
+      // Tell the database updater that this file needs an update,
+      // the updated program is used for the update, so it's not read again
+      mUpdater.addUpdateJobForDayProgramFile(completeFileName, completeProg);
     }
     catch (Exception exc) {
       throw new TvBrowserException(getClass(), "error.1",
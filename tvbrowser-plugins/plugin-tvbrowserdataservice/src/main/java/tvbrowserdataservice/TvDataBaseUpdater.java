@@ -26,7 +26,11 @@
 package tvbrowserdataservice;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,6 +62,25 @@ public class TvDataBaseUpdater {
   private TvDataUpdateManager mDataBase;
   
   private HashSet<UpdateJob> mUpdateJobSet;
+
+  /**
+   * The maximum memory for the downloaded levels that are kept for the update.
+   */
+  private static final long MAX_STAGED_BYTES = Runtime.getRuntime().maxMemory() / 16;
+
+  /**
+   * The downloaded levels of the day programs to update in the order they were
+   * downloaded, if there are too many the oldest are read from the files again.
+   */
+  private LinkedHashMap<UpdateJob, StagedLevels> mStagedLevelsMap;
+
+  private long mStagedBytes;
+
+  private int mStagedLevelCount;
+
+  private int mReadLevelCount;
+
+  private long mReadBytes;
   
   
   /**
@@ -73,11 +96,28 @@ public class TvDataBaseUpdater {
     mDataBase = dataBase;
     
     mUpdateJobSet = new HashSet<UpdateJob>();
+    mStagedLevelsMap = new LinkedHashMap<UpdateJob, StagedLevels>();
   }
   
   
   protected void addUpdateJobForDayProgramFile(String fileName)
     throws TvBrowserException
+  {
+    addUpdateJobForDayProgramFile(fileName, null);
+  }
+
+
+  /**
+   * Adds an update job for the day program of a file.
+   *
+   * @param fileName The name of the day program file.
+   * @param prog The content of the file, it's used for the update instead of
+   *        reading the file again, may be <code>null</code>.
+   * @throws TvBrowserException If the channel of the file is unknown.
+   * @since 3.4.5
+   */
+  protected void addUpdateJobForDayProgramFile(String fileName, DayProgramFile prog)
+    throws TvBrowserException
   {
     // Parse the information from the fileName
     // E.g. '2003-10-04_de_premiere-1_base_full.prog.gz'
@@ -92,6 +132,48 @@ public class TvDataBaseUpdater {
     }
     
     addUpdateJob(date, channel);
+
+    if (prog != null) {
+      int level = DayProgramFile.getLevelIndexForId(DayProgramFile.getLevelFromFileName(fileName));
+
+      if (level != -1) {
+        stageLevel(new UpdateJob(date, channel), level, prog);
+      }
+    }
+  }
+
+
+  private synchronized void stageLevel(UpdateJob job, int level, DayProgramFile prog) {
+    StagedLevels staged = mStagedLevelsMap.get(job);
+
+    if (staged == null) {
+      staged = new StagedLevels();
+      mStagedLevelsMap.put(job, staged);
+    }
+
+    int size = prog.getDataSize();
+    mStagedBytes += size - staged.mSizes[level];
+    staged.mSize += size - staged.mSizes[level];
+    staged.mLevels[level] = prog;
+    staged.mSizes[level] = size;
+
+    // forget the oldest levels, they are read from the files again
+    Iterator<StagedLevels> it = mStagedLevelsMap.values().iterator();
+    while (mStagedBytes > MAX_STAGED_BYTES && it.hasNext()) {
+      mStagedBytes -= it.next().mSize;
+      it.remove();
+    }
+  }
+
+
+  private synchronized StagedLevels takeStagedLevels(UpdateJob job) {
+    StagedLevels staged = mStagedLevelsMap.remove(job);
+
+    if (staged != null) {
+      mStagedBytes -= staged.mSize;
+    }
+
+    return staged;
   }
   
   
@@ -103,14 +185,18 @@ public class TvDataBaseUpdater {
 
 
   protected void updateTvDataBase(ProgressMonitor monitor) {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    boolean cpuTime = threadBean.isCurrentThreadCpuTimeSupported();
+    long startCpuTime = cpuTime ? threadBean.getCurrentThreadCpuTime() : 0;
+    long start = System.currentTimeMillis();
+
     synchronized(mUpdateJobSet) {
       monitor.setMaximum(mUpdateJobSet.size());
       int i=0;
       for (UpdateJob updateJob : mUpdateJobSet) {
         monitor.setValue(i++);
         try {
-          MutableChannelDayProgram prog
-            = createChannelDayProgram(updateJob.getDate(), updateJob.getChannel());
+          MutableChannelDayProgram prog = createChannelDayProgram(updateJob);
             
           mDataBase.updateDayProgram(prog);
         }
@@ -120,15 +206,29 @@ public class TvDataBaseUpdater {
             exc);
         }
       }
+
+      mLog.info("Updated " + mUpdateJobSet.size() + " day programs in "
+        + (System.currentTimeMillis() - start) + " ms"
+        + (cpuTime ? " (" + ((threadBean.getCurrentThreadCpuTime() - startCpuTime) / 1000000) + " ms CPU time)" : "")
+        + ", " + mStagedLevelCount + " levels taken from the download, "
+        + mReadLevelCount + " levels read with " + mReadBytes + " bytes");
+    }
+
+    synchronized(this) {
+      mStagedLevelsMap.clear();
+      mStagedBytes = 0;
     }
   }
 
 
 
-  private MutableChannelDayProgram createChannelDayProgram(Date date,
-    Channel channel)
+  private MutableChannelDayProgram createChannelDayProgram(UpdateJob updateJob)
     throws TvBrowserException
   {
+    Date date = updateJob.getDate();
+    Channel channel = updateJob.getChannel();
+    StagedLevels staged = takeStagedLevels(updateJob);
+
     // Create a DayProgramFile that contains the data of all levels
     DayProgramFile prog = new DayProgramFile();
     
@@ -139,18 +239,26 @@ public class TvDataBaseUpdater {
       File file = new File(mDataService.getDataDir(), fileName);
       
       if (file.exists()) {
-        // Load this level
-        DayProgramFile levelProg = new DayProgramFile();
-        try {
-          levelProg.readFromFile(file);
+        // Load this level, if it was downloaded it's already read
+        DayProgramFile levelProg = staged != null ? staged.mLevels[i] : null;
+        if (levelProg != null) {
+          mStagedLevelCount++;
         }
-        catch (Exception exc) {
-          // This file must be corrupt -> delete it
-          file.delete();
-          
-          throw new TvBrowserException(getClass(), "error.1",
-            "Could not load program file {0}. It must be currupt, so it was deleted.",
-            file.getAbsolutePath(), exc);
+        else {
+          levelProg = new DayProgramFile();
+          try {
+            levelProg.readFromFile(file);
+          }
+          catch (Exception exc) {
+            // This file must be corrupt -> delete it
+            file.delete();
+            
+            throw new TvBrowserException(getClass(), "error.1",
+              "Could not load program file {0}. It must be currupt, so it was deleted.",
+              file.getAbsolutePath(), exc);
+          }
+          mReadLevelCount++;
+          mReadBytes += file.length();
         }
         
         // Include this level
@@ -223,6 +331,19 @@ public class TvDataBaseUpdater {
   }
   
   
+  // inner class StagedLevels
+
+
+  /**
+   * The downloaded levels of a day program.
+   */
+  private static class StagedLevels {
+    private DayProgramFile[] mLevels = new DayProgramFile[DayProgramFile.getLevels().length];
+    private int[] mSizes = new int[mLevels.length];
+    private int mSize;
+  }
+  
+  
   // inner class UpdateJob
   
   
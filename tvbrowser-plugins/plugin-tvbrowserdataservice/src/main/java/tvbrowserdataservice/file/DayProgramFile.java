@@ -33,6 +33,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.zip.GZIPOutputStream;
 
@@ -473,28 +475,9 @@ public class DayProgramFile extends AbstractFile {
 
     gOut.write(mVersion);
 
-    String fileName = getAdditionalFileName(file.toString());
-
-    if(new File(fileName).isFile()) {
-      new File(fileName).delete();
-    }
+    writeAdditionalFile(file);
 
     if(getProgramFrameCount() >= 254) {
-      if(file != null) {
-        FileOutputStream write = null;
-
-        try {
-          write = new FileOutputStream(fileName);
-          writeProgCountToStream(write);
-        }catch(Exception e) {e.printStackTrace();
-          try {
-            write.close();
-          }catch(Exception e2) {}
-
-          (new File(fileName)).delete();
-        }
-      }
-
       gOut.write(254);
     } else {
       gOut.write(getProgramFrameCount());
@@ -507,6 +490,100 @@ public class DayProgramFile extends AbstractFile {
 
     gOut.close();
   }
+
+
+
+  /**
+   * Writes the data this file was read from to the given file without
+   * compressing it again.
+   *
+   * @param file The file to write.
+   * @param data The gzipped data this file was read from.
+   * @throws IOException If writing failed.
+   * @throws FileFormatException If the format of this file is wrong.
+   * @since 3.4.5
+   */
+  public void writeToFile(File file, byte[] data)
+    throws IOException, FileFormatException
+  {
+    if (data.length < 2 || (data[0] & 0xFF) != 0x1F || (data[1] & 0xFF) != 0x8B) {
+      // the data was not gzipped
+      writeToFile(file);
+      return;
+    }
+
+    checkFormat();
+
+    try {
+      FileOutputStream stream = null;
+      try {
+        stream = new FileOutputStream(file);
+
+        FileChannel channel = stream.getChannel();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      finally {
+        if (stream != null) {
+          try { stream.close(); } catch (IOException exc) {}
+        }
+      }
+
+      writeAdditionalFile(file);
+    }
+    catch (IOException exc) {
+      file.delete();
+      throw exc;
+    }
+  }
+
+
+
+  /**
+   * @return The estimated number of bytes of memory the frames of this file need.
+   * @since 3.4.5
+   */
+  public int getDataSize() {
+    int size = 0;
+
+    for (ProgramFrame frame : mProgramFrameList) {
+      for (int i = 0; i < frame.getProgramFieldCount(); i++) {
+        byte[] data = frame.getProgramFieldAt(i).getBinaryData();
+        size += 32 + (data != null ? data.length : 0);
+      }
+    }
+
+    return size;
+  }
+
+
+
+  private void writeAdditionalFile(File file) {
+    String fileName = getAdditionalFileName(file.toString());
+
+    if(new File(fileName).isFile()) {
+      new File(fileName).delete();
+    }
+
+    if(getProgramFrameCount() >= 254) {
+      FileOutputStream write = null;
+
+      try {
+        write = new FileOutputStream(fileName);
+        writeProgCountToStream(write);
+      }catch(Exception e) {e.printStackTrace();
+        try {
+          write.close();
+        }catch(Exception e2) {}
+
+        (new File(fileName)).delete();
+      }
+    }
+  }
+
   private String getAdditionalFileName(String fileName) {
     int index = fileName.indexOf("_update_");
 
@@ -149,6 +149,21 @@ public abstract class AbstractTvDataService {
     return false;
   }
 
+  /**
+   * Gets if the data service reads the data of channels of other data
+   * services while updating, like a data service that mixes channels.
+   * <p>
+   * Such data services update their data after all other data services
+   * are finished, the other data services update their data at the same time.
+   *
+   * @return <code>True</code> if the data service needs the updated data
+   * of other data services, <code>false</code> otherwise.
+   * @since 3.4.5
+   */
+  public boolean usesDataOfOtherDataServices() {
+    return false;
+  }
+
   /**
    * Gets the action menu with the action supported for toolbar actions.
    * @return The action menu with the supported toolbar actions
@@ -0,0 +1,45 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package devplugin;
+
+/**
+ * A progress monitor that allows to cancel the monitored task.
+ * <p>
+ * Long running tasks like the search check {@link #isCanceled()}
+ * regularly and stop as soon as possible if it returns <code>true</code>.
+ *
+ * @since 3.4.5
+ */
+public interface CancelableProgressMonitor extends ProgressMonitor {
+
+  /**
+   * Gets if the monitored task should be canceled.
+   *
+   * @return <code>true</code> if the task should stop.
+   */
+  public boolean isCanceled();
+
+}
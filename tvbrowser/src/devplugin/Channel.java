@@ -31,6 +31,7 @@ import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -554,6 +555,18 @@ public class Channel implements Comparable<Channel> {
    * @since 2.2
    */
   public void writeToDataFile(RandomAccessFile out) throws IOException {
+    writeToDataFile((DataOutput)out);
+  }
+
+  /**
+   * Method for OnDemandDayProgramFile file format version 3.
+   *
+   * @param out The output to write the Data in.
+   * @throws IOException
+   *
+   * @since 3.4.5
+   */
+  public void writeToDataFile(DataOutput out) throws IOException {
     out.writeInt(5); // version
     out.writeUTF(mDataServiceID);
     out.writeUTF(getGroup().getId());
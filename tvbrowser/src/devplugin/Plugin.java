@@ -524,6 +524,46 @@ abstract public class Plugin implements Marker, ContextMenuIf, ProgramReceiveIf
     return null;
   }
 
+  /**
+   * Gets if the program table icons of this plugin should be loaded in the
+   * background for several programs at once with {@link #getProgramTableIcons(Program[])}.
+   * <p>
+   * Override this method and return <code>true</code> if getting the icons may
+   * take some time, e.g. because of a lookup in a data base. The program table
+   * then shows the icons as soon as they are loaded instead of waiting for them.
+   *
+   * @return <code>true</code> if the icons should be loaded at once for several
+   *         programs, <code>false</code> otherwise.
+   * @since 3.4.5
+   */
+  public boolean isProvidingProgramTableIconsAtOnce() {
+    return false;
+  }
+
+  /**
+   * Gets the icons this Plugin provides for several programs at once. These
+   * icons will be shown in the program table under the start time.
+   * <p>
+   * This method is only called in a background thread if
+   * {@link #isProvidingProgramTableIconsAtOnce()} returns <code>true</code>.
+   * The default implementation calls {@link #getProgramTableIcons(Program)}
+   * for every program.
+   *
+   * @param programs The programs to get the icons for.
+   * @return The icons for the programs at the index of the program, an entry
+   *         is <code>null</code> if there are no icons for the program.
+   * @since 3.4.5
+   */
+  public Icon[][] getProgramTableIcons(Program[] programs) {
+    Icon[][] icons = new Icon[programs.length][];
+    
+    for(int i = 0; i < programs.length; i++) {
+      icons[i] = getProgramTableIcons(programs[i]);
+    }
+    
+    return icons;
+  }
+
 
   /**
    * Gets the SettingsTab object, which is added to the settings-window.
@@ -724,6 +764,44 @@ abstract public class Plugin implements Marker, ContextMenuIf, ProgramReceiveIf
 
   }
 
+  /**
+   * Gets if this plugin wants to get all the TV data touched by a data update
+   * at once with {@link #handleTvDataTouched(ChannelDayProgram[], ChannelDayProgram[])}
+   * instead of a call of {@link #handleTvDataTouched(ChannelDayProgram, ChannelDayProgram)}
+   * for every day program.
+   * <p>
+   * Override this method and return <code>true</code> if your plugin does
+   * expensive work for touched data that is better done once for all data.
+   *
+   * @return <code>true</code> if the touched data should be given at once,
+   *         <code>false</code> otherwise.
+   * @since 3.4.5
+   */
+  public boolean isHandlingTvDataTouchedAtOnce() {
+    return false;
+  }
+
+  /**
+   * This method is automatically called at the end of a data update with all
+   * day programs that were touched by the update, if
+   * {@link #isHandlingTvDataTouchedAtOnce()} returns <code>true</code>. It is
+   * called before {@link #handleTvDataUpdateFinished()}.
+   * <p>
+   * The default implementation calls {@link #handleTvDataTouched(ChannelDayProgram, ChannelDayProgram)}
+   * for every day program.
+   *
+   * @param removedDayPrograms The old ChannelDayPrograms, an entry may be <code>null</code>.
+   * @param addedDayPrograms The new ChannelDayPrograms at the same index as the old ones,
+   *        an entry may be <code>null</code>.
+   * @see #handleTvDataTouched(ChannelDayProgram, ChannelDayProgram)
+   * @since 3.4.5
+   */
+  public void handleTvDataTouched(ChannelDayProgram[] removedDayPrograms, ChannelDayProgram[] addedDayPrograms) {
+    for(int i = 0; i < removedDayPrograms.length; i++) {
+      handleTvDataTouched(removedDayPrograms[i], addedDayPrograms[i]);
+    }
+  }
+
   /**
    * This method is automatically called immediately before the plugin gets
    * activated.
@@ -107,6 +107,19 @@ public interface PluginManager {
    */
   public Program[] getPrograms(String uniqueID);
 
+  /**
+   * Gets the programs for many unique IDs at once, like the IDs a plugin has
+   * saved. The IDs of the same channel and day are looked up in the same
+   * day program, so this is faster than calling {@link #getProgram(String)}
+   * for every ID.
+   *
+   * @param uniqueIDs The unique IDs ({@link Program#getUniqueID()}) of the programs.
+   * @return The programs in the order of the IDs, the program of an ID that
+   *         was not found is <code>null</code>.
+   * @since 3.4.5
+   */
+  public Program[] getPrograms(String[] uniqueIDs);
+
   /**
    * Gets all channels the user has subscribed.
    *
@@ -84,6 +84,7 @@ import tvbrowser.core.ChannelList;
 import tvbrowser.core.PendingMarkings;
 import tvbrowser.core.PluginLoader;
 import tvbrowser.core.Settings;
+import tvbrowser.core.StartupTasks;
 import tvbrowser.core.TvDataBase;
 import tvbrowser.core.TvDataUpdater;
 import tvbrowser.core.filters.FilterComponentList;
@@ -274,6 +275,16 @@ public class TVBrowser {
    */
   private static boolean lookAndFeelInitialized = false;
 
+  /**
+   * The name of the file in the settings directory with the durations of the start phases.
+   */
+  private static final String STARTUP_TRACE_FILE = "startup.trace";
+
+  /**
+   * The phases of the start, created when TV-Browser is started.
+   */
+  private static StartupTasks mStartupTasks;
+
   private static Timer mAutoDownloadWaitingTimer;
 
   private static boolean mIgnoreJVM = false;
@@ -288,6 +299,8 @@ public class TVBrowser {
    * @param args The arguments given in the command line.
    */
   public static void main(String[] args) {
+    mStartupTasks = new StartupTasks();
+
     // Read the command line parameters
     parseCommandline(args);
     
@@ -360,7 +373,9 @@ public class TVBrowser {
     
 
     // Load the settings
+    long settingsStart = System.nanoTime();
     Settings.loadSettings();
+    mStartupTasks.record("settings", settingsStart);
     Locale.setDefault(new Locale(Settings.propLanguage.getString(), Settings.propCountry.getString()));
 
     if (Settings.propFirstStartDate.getDate() == null) {
@@ -465,69 +480,100 @@ public class TVBrowser {
       splashRef.set(new DummySplash());
     }
     
-    mLog.info("Deleting expired TV listings...");
-    TvDataBase.getInstance().deleteExpiredFiles(TvDataBase.DEFAULT_DATA_LIFESPAN, false);
+    /* The TV data base is loaded while the plugins are loaded,
+     * the expired TV listings are deleted after the start */
+    mStartupTasks.addConcurrent("tvDataBase", new Runnable() {
+      public void run() {
+        TvDataBase.getInstance();
+      }
+    });
 
     /* Initialize the MarkedProgramsMap */
-    MarkedProgramsMap.getInstance();
+    mStartupTasks.addConcurrent("markings", new Runnable() {
+      public void run() {
+        MarkedProgramsMap.getInstance();
+      }
+    });
 
-    if(!mSafeMode) {
-      /*Maybe there are tvdataservices to install (.jar.inst files)*/
-      PluginLoader.getInstance().installPendingPlugins();
-    }
-    
-    PluginProxyManager.getInstance();
-    
-    if(!mSafeMode) {
-      PluginLoader.getInstance().loadAllPlugins();
-    }
-    
-    SearchPlugin.getInstance();
+    /* Preload generic filters, the filters load the localizers of the
+     * filter components, so this isn't done while the plugins are loaded */
+    mStartupTasks.add("genericFilters", new Runnable() {
+      public void run() {
+        GenericFilterMap.getInstance();
+      }
+    });
 
-    mLog.info("Loading TV listings service...");
-    splashRef.get().setMessage(mLocalizer.msg("startScreen.dataService", "Loading TV listings service..."));
-    
-    TvDataServiceProxyManager.getInstance().init();
-    
-    if(!Settings.propShowAssistant.getBoolean() && TvDataServiceProxyManager.getInstance().getDataServices().length < 1 && !mSafeMode) {
-      splashRef.get().hideSplash();
-      updateLookAndFeel();
-      loadDataServicesAtStartup();
-    }
-    else {
-      ChannelList.createForTvBrowserStart();
-      ChannelList.initSubscribedChannels();
-    }
-    
-    ChannelList.checkForJointChannels();
-    
-    //Preload generic filters 
-    GenericFilterMap.getInstance();
-    
-    if (!lookAndFeelInitialized) {
-      mLog.info("Loading Look&Feel...");
-      splashRef.get().setMessage(mLocalizer.msg("startScreen.laf", "Loading look and feel..."));
-      updateLookAndFeel();
-    }
-    
-    mLog.info("Loading plugins...");
-    splashRef.get().setMessage(mLocalizer.msg("startScreen.plugins", "Loading plugins..."));
-    
-    try {
-      PluginProxyManager.getInstance().init();
-    } catch(TvBrowserException exc) {
-      ErrorHandler.handle(exc);
-    }
-    
-    // Initialize filters of generic filter map
-    GenericFilterMap.getInstance().initializeFilters();
-    // Mark pending markings
-    PendingMarkings.markMapEntries();
-    
-    splashRef.get().setMessage(mLocalizer.msg("startScreen.tvData", "Checking TV database..."));
+    mStartupTasks.add("pluginLoading", new Runnable() {
+      public void run() {
+        if(!mSafeMode) {
+          /*Maybe there are tvdataservices to install (.jar.inst files)*/
+          PluginLoader.getInstance().installPendingPlugins();
+        }
+
+        PluginProxyManager.getInstance();
 
-    mLog.info("Checking TV listings inventory...");
-    TvDataBase.getInstance().checkTvDataInventory(TvDataBase.DEFAULT_DATA_LIFESPAN);
+        if(!mSafeMode) {
+          PluginLoader.getInstance().loadAllPlugins();
+        }
+
+        SearchPlugin.getInstance();
+      }
+    });
+
+    mStartupTasks.add("dataServices", new Runnable() {
+      public void run() {
+        mLog.info("Loading TV listings service...");
+        splashRef.get().setMessage(mLocalizer.msg("startScreen.dataService", "Loading TV listings service..."));
+
+        TvDataServiceProxyManager.getInstance().init();
+
+        if(!Settings.propShowAssistant.getBoolean() && TvDataServiceProxyManager.getInstance().getDataServices().length < 1 && !mSafeMode) {
+          splashRef.get().hideSplash();
+          updateLookAndFeel();
+          loadDataServicesAtStartup();
+        }
+        else {
+          ChannelList.createForTvBrowserStart();
+          ChannelList.initSubscribedChannels();
+        }
+
+        ChannelList.checkForJointChannels();
+      }
+    }, "pluginLoading");
+
+    mStartupTasks.add("lookAndFeel", new Runnable() {
+      public void run() {
+        if (!lookAndFeelInitialized) {
+          mLog.info("Loading Look&Feel...");
+          splashRef.get().setMessage(mLocalizer.msg("startScreen.laf", "Loading look and feel..."));
+          updateLookAndFeel();
+        }
+      }
+    }, "dataServices");
+
+    mStartupTasks.add("pluginInit", new Runnable() {
+      public void run() {
+        mLog.info("Loading plugins...");
+        splashRef.get().setMessage(mLocalizer.msg("startScreen.plugins", "Loading plugins..."));
+
+        try {
+          PluginProxyManager.getInstance().init();
+        } catch(TvBrowserException exc) {
+          ErrorHandler.handle(exc);
+        }
+      }
+    }, "lookAndFeel", "tvDataBase", "markings");
+
+    mStartupTasks.add("filters", new Runnable() {
+      public void run() {
+        // Initialize filters of generic filter map
+        GenericFilterMap.getInstance().initializeFilters();
+        // Mark pending markings
+        PendingMarkings.markMapEntries();
+      }
+    }, "pluginInit", "genericFilters");
+
+    mStartupTasks.run();
 
     mLog.info("Starting up...");
     splashRef.get().setMessage(mLocalizer.msg("startScreen.ui", "Starting up..."));
@@ -538,31 +584,63 @@ public class TVBrowser {
     final boolean fStartMinimized = Settings.propMinimizeAfterStartup.getBoolean() || mMinimized;
     SwingUtilities.invokeLater(new Runnable() {
       public void run() {
+        long uiStart = System.nanoTime();
         initUi(splashRef.get(), fStartMinimized);
+        mStartupTasks.record("ui", uiStart);
 
         new Thread("Start finished callbacks") {
           public void run() {
             setPriority(Thread.MIN_PRIORITY);
 
-            // first reset "starting" flag of mainframe
-            mainFrame.handleTvBrowserStartFinished();
-            
-            // first initialize the internal plugins
-            InternalPluginProxyIf[] internalPlugins = InternalPluginProxyList.getInstance().getAvailableProxys();
-            
-            for(InternalPluginProxyIf internalPlugin : internalPlugins) {
-              internalPlugin.handleTvBrowserStartFinished();
-            }
-            
-            // now handle all plugins and services
-            GlobalPluginProgramFormatingManager.getInstance();
-            PluginProxyManager.getInstance().fireTvBrowserStartFinished();
-            TvDataServiceProxyManager.getInstance()
-                .fireTvBrowserStartFinished();
-
-            // finally submit plugin caused updates to database
-            TvDataBase.getInstance().handleTvBrowserStartFinished();
-            
+            // the work that isn't needed to show the main frame is done now
+            mStartupTasks.add("expiredData", new Runnable() {
+              public void run() {
+                mLog.info("Deleting expired TV listings...");
+                TvDataBase.getInstance().deleteExpiredFiles(TvDataBase.DEFAULT_DATA_LIFESPAN, false);
+              }
+            });
+
+            mStartupTasks.add("tvDataInventory", new Runnable() {
+              public void run() {
+                mLog.info("Checking TV listings inventory...");
+                TvDataBase.getInstance().checkTvDataInventory(TvDataBase.DEFAULT_DATA_LIFESPAN);
+              }
+            }, "expiredData");
+
+            mStartupTasks.add("mainFrameStartFinished", new Runnable() {
+              public void run() {
+                // first reset "starting" flag of mainframe
+                mainFrame.handleTvBrowserStartFinished();
+              }
+            }, "tvDataInventory");
+
+            mStartupTasks.add("internalPluginsStartFinished", new Runnable() {
+              public void run() {
+                // first initialize the internal plugins
+                InternalPluginProxyIf[] internalPlugins = InternalPluginProxyList.getInstance().getAvailableProxys();
+
+                for(InternalPluginProxyIf internalPlugin : internalPlugins) {
+                  internalPlugin.handleTvBrowserStartFinished();
+                }
+              }
+            }, "mainFrameStartFinished");
+
+            mStartupTasks.add("pluginsStartFinished", new Runnable() {
+              public void run() {
+                // now handle all plugins and services
+                GlobalPluginProgramFormatingManager.getInstance();
+                PluginProxyManager.getInstance().fireTvBrowserStartFinished();
+                TvDataServiceProxyManager.getInstance()
+                    .fireTvBrowserStartFinished();
+
+                // finally submit plugin caused updates to database
+                TvDataBase.getInstance().handleTvBrowserStartFinished();
+              }
+            }, "internalPluginsStartFinished");
+
+            mStartupTasks.run();
+            mStartupTasks.writeTrace(new File(Settings.getUserSettingsDirName(), STARTUP_TRACE_FILE));
+
             mainFrame.addWindowListener(new java.awt.event.WindowAdapter() {
               public void windowIconified(java.awt.event.WindowEvent e) {
                 mSaveThreadShouldStop = true;
@@ -179,10 +179,10 @@ public class ChannelList {
   private static HashMap<String,DummyChannel> mDummyChannelMap = new HashMap<String, DummyChannel>();
 
   /**
-   * map of channel position per subscribed channels, needed for fast channel
-   * comparison
+   * snapshot of the subscribed channels with the channel positions, needed
+   * for fast channel comparison, replaced on every change of the subscribed channels
    */
-  private static HashMap<String, Integer> mSubscribedChannelPosition = new HashMap<String, Integer>();
+  private static volatile SubscribedChannels mSubscribedSnapshot = SubscribedChannels.EMPTY;
 
   private static Thread mCompleteChannelThread;
 
@@ -248,7 +248,7 @@ public class ChannelList {
         mAvailableChannelsMap.remove(ch.getUniqueId());
 
         /* remove subscribed channels which are not available any more */
-        if(mSubscribedChannels.contains(ch)) {
+        if(mSubscribedSnapshot.contains(ch)) {
           mLog.warning(ch+" is not available any more");
           unsubscribeChannel(ch);
 
@@ -259,7 +259,6 @@ public class ChannelList {
 
     if(removed) {
       Settings.propSubscribedChannels.setChannelArray(mSubscribedChannels.toArray(new Channel[mSubscribedChannels.size()]));
-      calculateChannelPositions();
     }
 
     MainFrame.resetOnAirArrays();
@@ -267,7 +266,7 @@ public class ChannelList {
 
   private static void unsubscribeChannel(Channel channel) {
     mSubscribedChannels.remove(channel);
-    mSubscribedChannelPosition.remove(channel.getUniqueId());
+    calculateChannelPositions();
     TvDataBase.getInstance().unsubscribeChannels(new Channel[] {channel});
   }
 
@@ -281,11 +280,12 @@ public class ChannelList {
     }
     
     for (Channel channel : channelArr) {
-      if (channel != null) {
-        subscribeChannel(channel);
+      if (channel != null && !mSubscribedChannels.contains(channel)) {
+        mSubscribedChannels.add(channel);
       }
     }
 
+    calculateChannelPositions();
     loadChannelTimeLimits();
   }
 
@@ -335,11 +335,8 @@ public class ChannelList {
       int pos = getPos(mCurrentChangeChannel);
       
       if(pos >= 0) {
-        mSubscribedChannelPosition.remove(channel.getUniqueId());
-        mSubscribedChannelPosition.put(channel.getUniqueId(), pos);
-        
-        mSubscribedChannels.remove(pos);
-        mSubscribedChannels.add(pos, channel);
+        mSubscribedChannels.set(pos, channel);
+        calculateChannelPositions();
       }
       
       mCurrentChangeChannel.setIcon(channel.getDefaultIcon());
@@ -422,22 +419,14 @@ public class ChannelList {
    * @param channel
    */
   public static void subscribeChannel(Channel channel) {
-    if(!mSubscribedChannels.contains(channel)) {
+    if(!mSubscribedSnapshot.contains(channel)) {
       mSubscribedChannels.add(channel);
       calculateChannelPositions();
     }
   }
 
   private static void calculateChannelPositions() {
-    mSubscribedChannelPosition = new HashMap<String, Integer>();
-    
-    for (int i = 0; i < mSubscribedChannels.size(); i++) {
-      Channel ch = mSubscribedChannels.get(i);
-      
-      if (ch != null) {
-        mSubscribedChannelPosition.put(ch.getUniqueId(), i);
-      }
-    }
+    mSubscribedSnapshot = new SubscribedChannels(mSubscribedChannels, mSubscribedSnapshot.getVersion() + 1);
   }
 
   /**
@@ -461,7 +450,7 @@ public class ChannelList {
     boolean channelsAdded = false;
     if (update) {
       for (Channel channel : channelArr) {
-        if (!mSubscribedChannels.contains(channel)) {
+        if (!mSubscribedSnapshot.contains(channel)) {
           channelsAdded = true;
         }
       }
@@ -630,17 +619,7 @@ public class ChannelList {
    * @return The position or -1
    */
   public static int getPos(Channel channel) {
-    if(channel != null) {
-      Integer pos = mSubscribedChannelPosition.get(channel.getUniqueId());
-      if (pos == null) {
-        return -1;
-      }
-      else {
-        return pos.intValue();
-      }
-    }
-
-    return -1;
+    return mSubscribedSnapshot.getOrdinal(channel);
   }
 
   /**
@@ -660,15 +639,7 @@ public class ChannelList {
    * @return True if the channel is subscribed, false otherwise.
    */
   public static boolean isSubscribedChannel(Channel channel) {
-    if (channel == null) {
-      return false;
-    }
-    for (Channel subscribed : mSubscribedChannels) {
-      if (subscribed != null && subscribed.equals(channel)) {
-        return true;
-      }
-    }
-    return false;
+    return mSubscribedSnapshot.contains(channel);
   }
 
   /**
@@ -677,7 +648,7 @@ public class ChannelList {
    * @return The number of the subscribed channels.
    */
   public static int getNumberOfSubscribedChannels() {
-    return mSubscribedChannels.size();
+    return mSubscribedSnapshot.size();
   }
   
 
@@ -698,15 +669,19 @@ public class ChannelList {
    * @since 3.3.4
    */
   public static Channel[] getSubscribedChannels(boolean withDummyChannels) {
-    ArrayList<Channel> result = new ArrayList<Channel>();
-    
-    for (Channel channel : mSubscribedChannels) {
-      if(withDummyChannels || !(channel instanceof DummyChannel)) {
-        result.add(channel);
-      }
-    }
-    
-    return result.toArray(new Channel[result.size()]);
+    return mSubscribedSnapshot.toArray(withDummyChannels);
+  }
+
+  /**
+   * Gets the current snapshot of the subscribed channels. The snapshot
+   * doesn't change, a change of the subscribed channels creates a new
+   * snapshot with a higher version.
+   *
+   * @return The snapshot of the subscribed channels.
+   * @since 3.4.5
+   */
+  public static SubscribedChannels getSubscribedChannelsSnapshot() {
+    return mSubscribedSnapshot;
   }
 
   /**
@@ -0,0 +1,522 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import tvdataservice.MutableChannelDayProgram;
+import util.misc.NamedThreadFactory;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+import devplugin.Program;
+
+/**
+ * The index of the programs of yesterday, today and tomorrow of all
+ * subscribed channels by their start and end time.
+ * <p>
+ * The programs that are on air at a time and the programs after a time are
+ * found with a binary search in the programs of a channel. The programs of
+ * a channel are read again from the TV data base only after one of its day
+ * programs was changed, all channels are read again if the subscribed
+ * channels or the current date changed.
+ * <p>
+ * Once a minute the {@link OnAirListener}s are informed about the programs
+ * that started or ended, so they don't have to look for the programs on air
+ * themselves.
+ *
+ * @since 3.4.5
+ */
+public final class OnAirIndex implements TvDataBaseListener {
+
+  private static final Logger mLog = Logger.getLogger(OnAirIndex.class.getName());
+
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
+  private static final Program[] EMPTY_PROGRAMS = new Program[0];
+
+  private static OnAirIndex mInstance;
+
+  /** The channels the index was created for */
+  private SubscribedChannels mSubscribed;
+
+  /** The date of today, the times in the index are minutes after midnight of this date */
+  private Date mBaseDate;
+
+  /** The programs by the ordinal of the channel, <code>null</code> if not read yet */
+  private ChannelPrograms[] mPrograms;
+
+  /** The channels with changed day programs, filled without locking by the TV data base */
+  private final Set<Channel> mChangedChannels = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+
+  private volatile boolean mReset;
+
+  private final ArrayList<OnAirListener> mListeners = new ArrayList<OnAirListener>();
+
+  /** The listeners that were added since the last tick */
+  private final ArrayList<OnAirListener> mNewListeners = new ArrayList<OnAirListener>();
+
+  private ScheduledExecutorService mTickExecutor;
+
+  /** The time of the last tick in minutes after midnight of the last date */
+  private Date mLastTickDate;
+  private int mLastTickMinutes;
+
+  private OnAirIndex() {
+  }
+
+  /**
+   * @return The instance of the index.
+   */
+  public static synchronized OnAirIndex getInstance() {
+    if (mInstance == null) {
+      mInstance = new OnAirIndex();
+      TvDataBase.getInstance().addTvDataListener(mInstance);
+    }
+
+    return mInstance;
+  }
+
+  /**
+   * Lets the index read the programs of all channels again.
+   */
+  public void reset() {
+    mReset = true;
+  }
+
+  /**
+   * Gets the programs of a channel that are on air at the given time.
+   *
+   * @param channel The channel.
+   * @param date The date of the time.
+   * @param minutesAfterMidnight The time in minutes after midnight of the date.
+   * @return The programs on air ordered by the start time, empty if there are none.
+   */
+  public synchronized Program[] getRunningPrograms(Channel channel, Date date, int minutesAfterMidnight) {
+    ChannelPrograms programs = getPrograms(channel);
+
+    if (programs == null) {
+      return EMPTY_PROGRAMS;
+    }
+
+    return programs.getRunning(getTime(date, minutesAfterMidnight));
+  }
+
+  /**
+   * Gets the program of a channel that is on air at the given time.
+   * If more than one program is on air the one that started last is returned.
+   *
+   * @param channel The channel.
+   * @param date The date of the time.
+   * @param minutesAfterMidnight The time in minutes after midnight of the date.
+   * @return The program on air or <code>null</code> if there is none.
+   */
+  public Program getRunningProgram(Channel channel, Date date, int minutesAfterMidnight) {
+    Program[] running = getRunningPrograms(channel, date, minutesAfterMidnight);
+
+    return running.length > 0 ? running[running.length - 1] : null;
+  }
+
+  /**
+   * Gets the programs of all subscribed channels that are on air at the given time.
+   *
+   * @param date The date of the time.
+   * @param minutesAfterMidnight The time in minutes after midnight of the date.
+   * @return The programs on air ordered by the position of their channel and the start time.
+   */
+  public synchronized Program[] getRunningPrograms(Date date, int minutesAfterMidnight) {
+    update();
+
+    int time = getTime(date, minutesAfterMidnight);
+    ArrayList<Program> result = new ArrayList<Program>(mPrograms.length);
+
+    for (int i = 0; i < mPrograms.length; i++) {
+      result.addAll(Arrays.asList(getPrograms(i).getRunning(time)));
+    }
+
+    return result.toArray(new Program[result.size()]);
+  }
+
+  /**
+   * Gets the programs of a channel that start after the given time.
+   *
+   * @param channel The channel.
+   * @param date The date of the time.
+   * @param minutesAfterMidnight The time in minutes after midnight of the date.
+   * @param count The maximum number of programs.
+   * @return The next programs ordered by the start time, empty if there are none.
+   */
+  public synchronized Program[] getNextPrograms(Channel channel, Date date, int minutesAfterMidnight, int count) {
+    ChannelPrograms programs = getPrograms(channel);
+
+    if (programs == null) {
+      return EMPTY_PROGRAMS;
+    }
+
+    return programs.getNext(getTime(date, minutesAfterMidnight), count);
+  }
+
+  /**
+   * Adds a listener that is informed once a minute about the programs that
+   * started or ended.
+   *
+   * @param listener The listener to add.
+   */
+  public void addOnAirListener(OnAirListener listener) {
+    synchronized (mListeners) {
+      mListeners.add(listener);
+      mNewListeners.add(listener);
+    }
+
+    startTicks();
+  }
+
+  /**
+   * @param listener The listener to remove.
+   */
+  public void removeOnAirListener(OnAirListener listener) {
+    synchronized (mListeners) {
+      mListeners.remove(listener);
+      mNewListeners.remove(listener);
+    }
+  }
+
+  private synchronized void startTicks() {
+    if (mTickExecutor == null) {
+      mTickExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("On air ticks"));
+      mTickExecutor.execute(new Runnable() {
+        public void run() {
+          tick();
+        }
+      });
+    }
+  }
+
+  /**
+   * Finds the programs that started and ended since the last tick and
+   * informs the listeners, then waits for the next minute.
+   */
+  private void tick() {
+    try {
+      Calendar now = Calendar.getInstance();
+      final Date date = new Date(now);
+      final int minutes = now.get(Calendar.HOUR_OF_DAY) * 60 + now.get(Calendar.MINUTE);
+
+      final OnAirListener[] listeners;
+      final OnAirListener[] newListeners;
+
+      synchronized (mListeners) {
+        listeners = mListeners.toArray(new OnAirListener[mListeners.size()]);
+        newListeners = mNewListeners.toArray(new OnAirListener[mNewListeners.size()]);
+        mNewListeners.clear();
+      }
+
+      final Program[][] changes = getChanges(date, minutes);
+      final Program[] running = newListeners.length > 0 ? getRunningPrograms(date, minutes) : EMPTY_PROGRAMS;
+
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          for (OnAirListener listener : listeners) {
+            boolean isNew = Arrays.asList(newListeners).contains(listener);
+
+            try {
+              listener.minuteTick(date, minutes, isNew ? running : changes[0], isNew ? EMPTY_PROGRAMS : changes[1]);
+            } catch (RuntimeException e) {
+              mLog.log(Level.WARNING, "On air listener failed", e);
+            }
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      mLog.log(Level.WARNING, "Could not find the programs on air", e);
+    } finally {
+      // the next tick shortly after the start of the next minute
+      long delay = 60000 - System.currentTimeMillis() % 60000 + 100;
+
+      mTickExecutor.schedule(new Runnable() {
+        public void run() {
+          tick();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Gets the programs that started and ended since the last call.
+   *
+   * @param date The current date.
+   * @param minutes The current time in minutes after midnight.
+   * @return The started programs at index 0 and the ended programs at index 1.
+   */
+  private synchronized Program[][] getChanges(Date date, int minutes) {
+    update();
+
+    int now = getTime(date, minutes);
+    int last = mLastTickDate != null ? getTime(mLastTickDate, mLastTickMinutes) : now;
+
+    mLastTickDate = date;
+    mLastTickMinutes = minutes;
+
+    ArrayList<Program> started = new ArrayList<Program>();
+    ArrayList<Program> ended = new ArrayList<Program>();
+
+    if (last < now) {
+      for (int i = 0; i < mPrograms.length; i++) {
+        getPrograms(i).getChanges(last, now, started, ended);
+      }
+    }
+
+    return new Program[][] {started.toArray(new Program[started.size()]), ended.toArray(new Program[ended.size()])};
+  }
+
+  /**
+   * Drops the programs of changed channels and all programs if the
+   * subscribed channels or the date changed.
+   */
+  private void update() {
+    SubscribedChannels subscribed = ChannelList.getSubscribedChannelsSnapshot();
+    Date today = Date.getCurrentDate();
+
+    if (mReset || mPrograms == null || mSubscribed.getVersion() != subscribed.getVersion() || !today.equals(mBaseDate)) {
+      mReset = false;
+      mChangedChannels.clear();
+
+      mSubscribed = subscribed;
+      mBaseDate = today;
+      mPrograms = new ChannelPrograms[subscribed.size()];
+    } else if (!mChangedChannels.isEmpty()) {
+      Channel[] changed = mChangedChannels.toArray(new Channel[0]);
+      mChangedChannels.removeAll(Arrays.asList(changed));
+
+      for (Channel channel : changed) {
+        int ordinal = mSubscribed.getOrdinal(channel);
+
+        if (ordinal >= 0) {
+          mPrograms[ordinal] = null;
+        }
+      }
+    }
+  }
+
+  private ChannelPrograms getPrograms(Channel channel) {
+    update();
+
+    int ordinal = mSubscribed.getOrdinal(channel);
+
+    return ordinal >= 0 ? getPrograms(ordinal) : null;
+  }
+
+  private ChannelPrograms getPrograms(int ordinal) {
+    if (mPrograms[ordinal] == null) {
+      Channel channel = mSubscribed.get(ordinal);
+      ChannelDayProgram[] dayPrograms = new ChannelDayProgram[3];
+
+      for (int day = -1; day <= 1; day++) {
+        dayPrograms[day + 1] = TvDataBase.getInstance().getDayProgram(mBaseDate.addDays(day), channel);
+      }
+
+      mPrograms[ordinal] = new ChannelPrograms(dayPrograms, mBaseDate);
+    }
+
+    return mPrograms[ordinal];
+  }
+
+  private int getTime(Date date, int minutesAfterMidnight) {
+    return getTime(mBaseDate, date, minutesAfterMidnight);
+  }
+
+  /**
+   * Gets a time in minutes after midnight of the base date.
+   *
+   * @param baseDate The base date.
+   * @param date The date of the time.
+   * @param minutesAfterMidnight The time in minutes after midnight of the date.
+   * @return The minutes after midnight of the base date.
+   */
+  static int getTime(Date baseDate, Date date, int minutesAfterMidnight) {
+    return (getDayNumber(date) - getDayNumber(baseDate)) * MINUTES_PER_DAY + minutesAfterMidnight;
+  }
+
+  /**
+   * Gets the number of days from 1970-01-01 to a date without a calendar.
+   */
+  private static int getDayNumber(Date date) {
+    int year = date.getYear();
+    int month = date.getMonth();
+
+    if (month <= 2) {
+      year--;
+    }
+
+    int era = (year >= 0 ? year : year - 399) / 400;
+    int yearOfEra = year - era * 400;
+    int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + date.getDayOfMonth() - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  public void dayProgramAdded(MutableChannelDayProgram prog) {
+    // the programs may still change, they are read after they were saved
+  }
+
+  public void dayProgramAdded(ChannelDayProgram prog) {
+    // handled in dayProgramTouched
+  }
+
+  public void dayProgramDeleted(ChannelDayProgram prog) {
+    // handled in dayProgramTouched
+  }
+
+  public void dayProgramTouched(ChannelDayProgram removedDayProgram, ChannelDayProgram addedDayProgram) {
+    ChannelDayProgram dayProgram = addedDayProgram != null ? addedDayProgram : removedDayProgram;
+
+    if (dayProgram != null) {
+      mChangedChannels.add(dayProgram.getChannel());
+    }
+  }
+
+  /**
+   * The programs of one channel ordered by the start time.
+   */
+  static final class ChannelPrograms {
+    private final Program[] mPrograms;
+
+    /** The start times in minutes after midnight of the base date */
+    private final int[] mStarts;
+
+    /** The end times in minutes after midnight of the base date */
+    private final int[] mEnds;
+
+    /** The latest end time of the programs up to every index */
+    private final int[] mMaxEnds;
+
+    /**
+     * @param dayPrograms The day programs of the channel, may contain <code>null</code>.
+     * @param baseDate The date the times are relative to.
+     */
+    ChannelPrograms(ChannelDayProgram[] dayPrograms, Date baseDate) {
+      ArrayList<Program> programs = new ArrayList<Program>();
+
+      for (ChannelDayProgram dayProg : dayPrograms) {
+        if (dayProg != null) {
+          for (int i = 0; i < dayProg.getProgramCount(); i++) {
+            programs.add(dayProg.getProgramAt(i));
+          }
+        }
+      }
+
+      // sort by the start time, the lower bits keep the position in the list
+      long[] order = new long[programs.size()];
+      for (int i = 0; i < order.length; i++) {
+        Program program = programs.get(i);
+        order[i] = ((long) getTime(baseDate, program.getDate(), program.getStartTime()) << 32) | i;
+      }
+      Arrays.sort(order);
+
+      mPrograms = new Program[order.length];
+      mStarts = new int[order.length];
+      mEnds = new int[order.length];
+      mMaxEnds = new int[order.length];
+
+      for (int i = 0; i < order.length; i++) {
+        mPrograms[i] = programs.get((int) order[i]);
+        mStarts[i] = (int) (order[i] >> 32);
+        mEnds[i] = mStarts[i] + mPrograms[i].getLength();
+        mMaxEnds[i] = i > 0 ? Math.max(mMaxEnds[i - 1], mEnds[i]) : mEnds[i];
+      }
+    }
+
+    /**
+     * @return The index of the last program that starts at or before the time, -1 if there is none.
+     */
+    private int getLastStartedIndex(int time) {
+      int low = 0;
+      int high = mStarts.length;
+
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+
+        if (mStarts[mid] <= time) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+
+      return low - 1;
+    }
+
+    Program[] getRunning(int time) {
+      ArrayList<Program> running = null;
+
+      for (int i = getLastStartedIndex(time); i >= 0 && mMaxEnds[i] > time; i--) {
+        if (mEnds[i] > time) {
+          if (running == null) {
+            running = new ArrayList<Program>(2);
+          }
+          running.add(0, mPrograms[i]);
+        }
+      }
+
+      return running != null ? running.toArray(new Program[running.size()]) : EMPTY_PROGRAMS;
+    }
+
+    Program[] getNext(int time, int count) {
+      int first = getLastStartedIndex(time) + 1;
+      int end = Math.min(mPrograms.length, first + Math.max(0, count));
+
+      return first < end ? Arrays.copyOfRange(mPrograms, first, end) : EMPTY_PROGRAMS;
+    }
+
+    /**
+     * Adds the programs that started or ended after the time <code>last</code>
+     * up to the time <code>now</code>.
+     */
+    void getChanges(int last, int now, ArrayList<Program> started, ArrayList<Program> ended) {
+      int lastStarted = getLastStartedIndex(now);
+
+      for (int i = getLastStartedIndex(last) + 1; i <= lastStarted; i++) {
+        if (mEnds[i] > mStarts[i]) {
+          started.add(mPrograms[i]);
+        }
+      }
+
+      int endedCount = ended.size();
+
+      for (int i = lastStarted; i >= 0 && mMaxEnds[i] > last; i--) {
+        if (mEnds[i] > last && mEnds[i] <= now && mEnds[i] > mStarts[i]) {
+          ended.add(endedCount, mPrograms[i]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core;
+
+import devplugin.Date;
+import devplugin.Program;
+
+/**
+ * A listener of the {@link OnAirIndex} that is informed once a minute
+ * about the programs that started or ended.
+ *
+ * @since 3.4.5
+ */
+public interface OnAirListener {
+
+  /**
+   * Is called on the event dispatch thread once a minute, even if no
+   * program started or ended. The first call after the listener was added
+   * contains all programs that are on air as started programs.
+   *
+   * @param date The current date.
+   * @param minutesAfterMidnight The current time in minutes after midnight.
+   * @param started The programs that started since the last call.
+   * @param ended The programs that ended since the last call.
+   */
+  public void minuteTick(Date date, int minutesAfterMidnight, Program[] started, Program[] ended);
+}
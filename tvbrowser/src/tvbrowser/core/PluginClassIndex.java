@@ -0,0 +1,248 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import devplugin.Version;
+
+/**
+ * The index of the plugin classes in the plugin jar files.
+ * <p>
+ * Like the plugin proxies the index is stored in the settings directory, so
+ * the class and the version of a plugin are known without opening its jar
+ * file again. An entry is only used as long as the size and the modification
+ * time of the jar file are unchanged.
+ *
+ * @since 3.4.5
+ */
+final class PluginClassIndex {
+
+  /** The type of a jar file with a plugin */
+  static final byte TYPE_PLUGIN = 1;
+
+  /** The type of a jar file with a data service */
+  static final byte TYPE_DATA_SERVICE = 2;
+
+  /** The type of a jar file with another class */
+  static final byte TYPE_OTHER = 0;
+
+  private static final int FILE_VERSION = 1;
+
+  private static final Logger mLog = Logger.getLogger(PluginClassIndex.class.getName());
+
+  private File mIndexFile;
+
+  /** The entries, key is the absolute path of the jar file */
+  private HashMap<String, Entry> mEntries;
+
+  private boolean mChanged;
+
+  /**
+   * Creates an index that is stored in the given file.
+   *
+   * @param indexFile The file of the index.
+   */
+  PluginClassIndex(File indexFile) {
+    mIndexFile = indexFile;
+  }
+
+  /**
+   * Gets the entry of the given jar file.
+   *
+   * @param jarFile The jar file.
+   * @return The entry or <code>null</code> if the jar file is unknown or was changed.
+   */
+  synchronized Entry get(File jarFile) {
+    load();
+
+    Entry entry = mEntries.get(jarFile.getAbsolutePath());
+
+    if (entry != null && (entry.mLength != jarFile.length() || entry.mLastModified != jarFile.lastModified())) {
+      mEntries.remove(jarFile.getAbsolutePath());
+      mChanged = true;
+      return null;
+    }
+
+    return entry;
+  }
+
+  /**
+   * Sets the entry of the given jar file.
+   *
+   * @param jarFile The jar file.
+   * @param className The name of the plugin class.
+   * @param version The version of the plugin.
+   * @param type The type of the plugin.
+   */
+  synchronized void put(File jarFile, String className, Version version, byte type) {
+    load();
+
+    Entry entry = new Entry(jarFile.length(), jarFile.lastModified(), className, version, type);
+    Entry old = mEntries.put(jarFile.getAbsolutePath(), entry);
+
+    if (!entry.equals(old)) {
+      mChanged = true;
+    }
+  }
+
+  /**
+   * Stores the index if it was changed.
+   */
+  synchronized void store() {
+    if (!mChanged) {
+      return;
+    }
+
+    DataOutputStream out = null;
+
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mIndexFile)));
+
+      out.writeInt(FILE_VERSION);
+      out.writeInt(mEntries.size());
+
+      for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+        Entry entry = e.getValue();
+
+        out.writeUTF(e.getKey());
+        out.writeLong(entry.mLength);
+        out.writeLong(entry.mLastModified);
+        out.writeUTF(entry.mClassName);
+        out.writeByte(entry.mType);
+        entry.mVersion.writeData(out);
+      }
+
+      mChanged = false;
+    } catch (IOException e) {
+      mLog.warning("Could not store plugin class index: " + e.getMessage());
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  private void load() {
+    if (mEntries != null) {
+      return;
+    }
+
+    mEntries = new HashMap<String, Entry>();
+
+    if (!mIndexFile.isFile()) {
+      return;
+    }
+
+    DataInputStream in = null;
+
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(mIndexFile)));
+
+      if (in.readInt() == FILE_VERSION) {
+        int count = in.readInt();
+
+        for (int i = 0; i < count; i++) {
+          String fileName = in.readUTF();
+          long length = in.readLong();
+          long lastModified = in.readLong();
+          String className = in.readUTF();
+          byte type = in.readByte();
+          Version version = new Version(in);
+
+          mEntries.put(fileName, new Entry(length, lastModified, className, version, type));
+        }
+      }
+    } catch (Exception e) {
+      // the index is created again
+      mEntries.clear();
+      mChanged = true;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * The plugin class of a jar file.
+   */
+  static final class Entry {
+    private final long mLength;
+    private final long mLastModified;
+    private final String mClassName;
+    private final Version mVersion;
+    private final byte mType;
+
+    private Entry(long length, long lastModified, String className, Version version, byte type) {
+      mLength = length;
+      mLastModified = lastModified;
+      mClassName = className;
+      mVersion = version;
+      mType = type;
+    }
+
+    String getClassName() {
+      return mClassName;
+    }
+
+    Version getVersion() {
+      return mVersion;
+    }
+
+    byte getType() {
+      return mType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Entry)) {
+        return false;
+      }
+
+      Entry other = (Entry) obj;
+
+      return mLength == other.mLength && mLastModified == other.mLastModified && mType == other.mType
+          && mClassName.equals(other.mClassName) && mVersion.equals(other.mVersion);
+    }
+
+    @Override
+    public int hashCode() {
+      return mClassName.hashCode();
+    }
+  }
+}
@@ -42,6 +42,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -63,6 +67,7 @@ import tvbrowser.core.tvdataservice.TvDataServiceProxyManager;
 import util.exc.ErrorHandler;
 import util.exc.TvBrowserException;
 import util.io.IOUtilities;
+import util.misc.NamedThreadFactory;
 import devplugin.ActionMenu;
 import devplugin.Plugin;
 import devplugin.PluginInfo;
@@ -80,6 +85,8 @@ public class PluginLoader {
 
 	private static final String PLUGIN_INSTALL_EXTENSION = ".inst";
 
+  private static final String PLUGIN_CLASS_INDEX_FILE = "plugins.index";
+
   /** The logger for this class */
   private static final Logger mLog
       = Logger.getLogger(PluginLoader.class.getName());
@@ -99,10 +106,13 @@ public class PluginLoader {
   
   private boolean mShowMouseInfo;
 
+  private PluginClassIndex mClassIndex;
+
   private PluginLoader() {
     mSuccessfullyLoadedPluginFiles = new HashSet<String>();
     mDeleteablePlugin = new HashMap<Object, File>();
     mShowMouseInfo = false;
+    mClassIndex = new PluginClassIndex(new File(Settings.getUserSettingsDirName(), PLUGIN_CLASS_INDEX_FILE));
   }
 
   public static PluginLoader getInstance() {
@@ -186,6 +196,16 @@ public class PluginLoader {
    * @param deleteable is the Plugin deleteable
    */
   public Object loadPlugin(File pluginFile, boolean deleteable) {
+    return loadPlugin(pluginFile, deleteable, null);
+  }
+
+  /**
+   * Loads the plugin from the file system
+   * @param pluginFile File to load
+   * @param deleteable is the Plugin deleteable
+   * @param pluginClass The already loaded class of a jar file or <code>null</code>
+   */
+  private Object loadPlugin(File pluginFile, boolean deleteable, PluginClass pluginClass) {
     Object plugin = null;
     String lcFileName = pluginFile.getName().toLowerCase();
     if (mSuccessfullyLoadedPluginFiles.contains(lcFileName)) {
@@ -193,9 +213,15 @@ public class PluginLoader {
       return null;
     }
 
+    long start = System.currentTimeMillis();
+
     try {
       if (lcFileName.endsWith(".jar")) {
-        plugin = loadJavaPlugin(pluginFile);
+        if (pluginClass == null) {
+          pluginClass = createPluginClass(pluginFile);
+          pluginClass.load();
+        }
+        plugin = loadJavaPlugin(pluginClass);
       }
       else if (lcFileName.endsWith(".bsh")) {
         plugin = loadBeanShellPlugin(pluginFile);
@@ -270,7 +296,9 @@ public class PluginLoader {
         }
         
         mSuccessfullyLoadedPluginFiles.add(lcFileName);
-        mLog.info("Loaded plugin "+pluginFile.getAbsolutePath() + (version != null ? " - " + version : ""));
+        mLog.info("Loaded plugin "+pluginFile.getAbsolutePath() + (version != null ? " - " + version : "")
+            + " (" + (pluginClass != null ? "class " + pluginClass.mLoadTime + " ms, " : "")
+            + "instance " + (System.currentTimeMillis() - start) + " ms)");
       }
     }catch (Throwable thr) {
       mLog.log(Level.WARNING, "Loading plugin file failed: "
@@ -475,6 +503,7 @@ public class PluginLoader {
       files.remove(oldService);
     }
 
+    ArrayList<File> loadFiles = new ArrayList<File>(files.size());
     for (File file : files) {
       boolean load = true;
       for (PluginProxy proxy : loadedProxies) {
@@ -484,12 +513,54 @@ public class PluginLoader {
         }
       }
       if (load) {
-        loadPlugin(file, deleteable);
+        loadFiles.add(file);
       }
     }
+
+    // open the jar files and load the plugin classes in parallel, the plugins
+    // are created in the order of the files, because they may use the settings
+    HashMap<File, PluginClass> pluginClasses = new HashMap<File, PluginClass>();
+    HashMap<File, Future<?>> loadTasks = new HashMap<File, Future<?>>();
+    ExecutorService threadPool = null;
+
+    for (File file : loadFiles) {
+      if (file.getName().toLowerCase().endsWith(".jar") && !mSuccessfullyLoadedPluginFiles.contains(file.getName().toLowerCase())) {
+        PluginClass pluginClass = createPluginClass(file);
+        pluginClasses.put(file, pluginClass);
+
+        if (!pluginClass.isSkipped()) {
+          if (threadPool == null) {
+            threadPool = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                new NamedThreadFactory("Plugin loader"));
+          }
+          loadTasks.put(file, threadPool.submit(pluginClass));
+        }
+      }
+    }
+
+    if (threadPool != null) {
+      threadPool.shutdown();
+    }
+
+    for (File file : loadFiles) {
+      Future<?> task = loadTasks.get(file);
+      if (task != null) {
+        try {
+          task.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (ExecutionException e) {
+          // the class loading errors are kept by the plugin class
+        }
+      }
+      loadPlugin(file, deleteable, pluginClasses.get(file));
+    }
   }
 
   public void loadAllPlugins() {
+    long start = System.currentTimeMillis();
+    int loadedCount = mSuccessfullyLoadedPluginFiles.size();
 
     /* 0) delete all plugins the user doesn't want anymore */
 
@@ -529,71 +600,107 @@ public class PluginLoader {
     /* 3) load the plugins from the tvdataservice folder */
     loadPlugins(new File(TvDataServiceProxyManager.PLUGIN_DIRECTORY), false);
 
+    mClassIndex.store();
+
+    mLog.info("Loaded " + (mSuccessfullyLoadedPluginFiles.size() - loadedCount) + " plugins in "
+        + (System.currentTimeMillis() - start) + " ms");
   }
 
 
 
 
-  private Object loadJavaPlugin(File jarFile) throws TvBrowserException {
-    Object plugin = null;
+  /**
+   * Creates the plugin class of a jar file. The jar file is not opened if the
+   * class index shows that the plugin will not be loaded.
+   *
+   * @param jarFile The jar file of the plugin.
+   * @return The plugin class that has to be loaded.
+   */
+  private PluginClass createPluginClass(File jarFile) {
+    PluginClass pluginClass = new PluginClass(jarFile);
 
-    // Create a class loader for the plugin
-    ClassLoader classLoader;
-    ClassLoader classLoader2 = null;
+    // the same plugin may be in the plugins folder of the installation
+    if (!new File(PLUGIN_DIRECTORY).equals(jarFile.getParentFile()) && new File(PLUGIN_DIRECTORY, jarFile.getName()).isFile()) {
+      pluginClass.mJarFile2 = new File(PLUGIN_DIRECTORY, jarFile.getName());
+    }
 
-    try {
-      URL[] urls = new URL[] { jarFile.toURI().toURL() };
-      classLoader = URLClassLoader.newInstance(urls, ClassLoader.getSystemClassLoader());
+    PluginClassIndex.Entry entry = mClassIndex.get(jarFile);
 
-      try {
-        if(!new File(PLUGIN_DIRECTORY).equals(jarFile.getParentFile()) && new File(PLUGIN_DIRECTORY,jarFile.getName()).isFile()) {
-          urls = new URL[] { new File(PLUGIN_DIRECTORY, jarFile.getName()).toURI().toURL() };
-          classLoader2 = URLClassLoader.newInstance(urls, ClassLoader.getSystemClassLoader());
+    if (entry != null) {
+      Version version = entry.getVersion();
+
+      if (version.toString().equals("0.0.0.0")) {
+        pluginClass.mSkipMessage = "Did not load plugin " + pluginClass.mPluginName + ", version is too old.";
+      }
+      else if (entry.getType() == PluginClassIndex.TYPE_DATA_SERVICE && Settings.propBlockedPluginArray.isBlocked(entry.getClassName(), version)) {
+        pluginClass.mSkipMessage = "";
+      }
+      else if (pluginClass.mJarFile2 != null) {
+        PluginClassIndex.Entry entry2 = mClassIndex.get(pluginClass.mJarFile2);
+
+        if (entry2 != null && entry2.getVersion().compareTo(version) > 0) {
+          pluginClass.mSkipMessage = "";
         }
-      } catch (MalformedURLException exc) {}
-    } catch (MalformedURLException exc) {
+      }
+    }
+
+    return pluginClass;
+  }
+
+  private Object loadJavaPlugin(PluginClass pluginClassInfo) throws TvBrowserException {
+    Object plugin = null;
+    File jarFile = pluginClassInfo.mJarFile;
+
+    if (pluginClassInfo.isSkipped()) {
+      if (pluginClassInfo.mSkipMessage.length() > 0) {
+        mLog.warning(pluginClassInfo.mSkipMessage);
+      }
+      return null;
+    }
+
+    if (pluginClassInfo.mError instanceof MalformedURLException) {
       throw new TvBrowserException(getClass(), "error.1",
         "Loading Jar file of a plugin failed: {0}.",
-        jarFile.getAbsolutePath(), exc);
+        jarFile.getAbsolutePath(), pluginClassInfo.mError);
     }
 
     // Get the plugin name
-    String pluginName = jarFile.getName();
-    if (pluginName.endsWith(".jar")) {
-      pluginName = pluginName.substring(0, pluginName.length() - 4);
-    }
+    String pluginName = pluginClassInfo.mPluginName;
 
     boolean isBlockedDataService = false;
 
     // Create a plugin instance
     try {
-      Class pluginClass = classLoader.loadClass(pluginName.toLowerCase() + "." + pluginName);
+      if (pluginClassInfo.mError != null) {
+        throw pluginClassInfo.mError;
+      }
+
+      Class pluginClass = pluginClassInfo.mClass;
       Method getVersion = pluginClass.getMethod("getVersion",new Class[0]);
       Version version1 = null;
       try {
         version1 = (Version)getVersion.invoke(pluginClass, new Object[0]);
       } catch (Exception e) {
       }
+      if (version1 != null) {
+        mClassIndex.put(jarFile, pluginClass.getName(), version1, getPluginType(pluginClass));
+      }
       if (version1 == null || version1.toString().equals("0.0.0.0")) {
         mLog.warning("Did not load plugin " + pluginName + ", version is too old.");
         return null;
       }
 
-      if(pluginClass.getSuperclass().equals(devplugin.AbstractTvDataService.class) || classLoader2 != null) {
-        getVersion = pluginClass.getMethod("getVersion",new Class[0]);
-        version1 = (Version)getVersion.invoke(pluginClass, new Object[0]);
-
-        if(pluginClass.getSuperclass().equals(devplugin.AbstractTvDataService.class)) {
-          isBlockedDataService = Settings.propBlockedPluginArray.isBlocked(pluginName.toLowerCase() + "." + pluginName, version1);
-        }
+      if(pluginClass.getSuperclass().equals(devplugin.AbstractTvDataService.class)) {
+        isBlockedDataService = Settings.propBlockedPluginArray.isBlocked(pluginName.toLowerCase() + "." + pluginName, version1);
       }
 
-      if(classLoader2 != null) {
+      if(pluginClassInfo.mClass2 != null) {
         try {
-          Class pluginClass2 = classLoader2.loadClass(pluginName.toLowerCase() + "." + pluginName);
+          Class pluginClass2 = pluginClassInfo.mClass2;
           Method getVersion2 = pluginClass2.getMethod("getVersion",new Class[0]);
 
           Version version2 = (Version)getVersion2.invoke(pluginClass2, new Object[0]);
+          mClassIndex.put(pluginClassInfo.mJarFile2, pluginClass2.getName(), version2, getPluginType(pluginClass2));
 
           if(version2.compareTo(version1) > 0) {
             return null;
@@ -618,6 +725,16 @@ public class PluginLoader {
     return plugin;
   }
 
+  private static byte getPluginType(Class<?> pluginClass) {
+    if (devplugin.AbstractTvDataService.class.equals(pluginClass.getSuperclass())) {
+      return PluginClassIndex.TYPE_DATA_SERVICE;
+    }
+    if (Plugin.class.isAssignableFrom(pluginClass)) {
+      return PluginClassIndex.TYPE_PLUGIN;
+    }
+    return PluginClassIndex.TYPE_OTHER;
+  }
+
   private Object loadBeanShellPlugin(File file) {
     return new BeanShellPluginProxy(file);
   }
@@ -718,6 +835,8 @@ public class PluginLoader {
     /* 3) get base info for in the tvdataservice folder */
     getBaseInfoOfPluginsInDirectory(new File(TvDataServiceProxyManager.PLUGIN_DIRECTORY),availablePlugins);
     
+    mClassIndex.store();
+    
     return availablePlugins.toArray(new PluginBaseInfo[availablePlugins.size()]);
   }
   
@@ -741,6 +860,17 @@ public class PluginLoader {
   
   private void getBaseInfoOfPlugins(File[] plugins, ArrayList<PluginBaseInfo> availablePlugins) {
     for(File plugin : plugins) {
+      PluginClassIndex.Entry entry = mClassIndex.get(plugin);
+
+      if (entry != null) {
+        PluginBaseInfo baseInfo = new PluginBaseInfo("java." + entry.getClassName(), entry.getVersion());
+
+        if(!availablePlugins.contains(baseInfo)) {
+          availablePlugins.add(baseInfo);
+        }
+        continue;
+      }
+
       URL[] urls;
       
       /* Start of
@@ -780,6 +910,10 @@ public class PluginLoader {
         try {
           Version version = (Version)getVersion.invoke(pluginClass, new Object[0]);
           
+          if (version != null) {
+            mClassIndex.put(plugin, pluginClass.getName(), version, getPluginType(pluginClass));
+          }
+          
           PluginBaseInfo baseInfo = new PluginBaseInfo("java." + pluginClass.getName(),version);
           
           if(!availablePlugins.contains(baseInfo)) {
@@ -809,4 +943,69 @@ public class PluginLoader {
     return mShowMouseInfo;
   }
 
+  /**
+   * The plugin class of a jar file.
+   * <p>
+   * Loading the class opens the jar file, but doesn't initialize the class,
+   * so no code of the plugin is run and the classes of several plugins can
+   * be loaded at the same time.
+   */
+  private static final class PluginClass implements Runnable {
+    private File mJarFile;
+
+    private String mPluginName;
+
+    /** The jar file of the same plugin in the plugins folder of the installation */
+    private File mJarFile2;
+
+    /** The message why the plugin is not loaded, empty if nothing is logged */
+    private String mSkipMessage;
+
+    private Class<?> mClass;
+
+    private Class<?> mClass2;
+
+    private Throwable mError;
+
+    private long mLoadTime;
+
+    private PluginClass(File jarFile) {
+      mJarFile = jarFile;
+      mPluginName = jarFile.getName();
+
+      if (mPluginName.endsWith(".jar")) {
+        mPluginName = mPluginName.substring(0, mPluginName.length() - 4);
+      }
+    }
+
+    private boolean isSkipped() {
+      return mSkipMessage != null;
+    }
+
+    public void run() {
+      load();
+    }
+
+    private void load() {
+      long start = System.currentTimeMillis();
+      String className = mPluginName.toLowerCase() + "." + mPluginName;
+
+      try {
+        URL[] urls = new URL[] { mJarFile.toURI().toURL() };
+        mClass = Class.forName(className, false, URLClassLoader.newInstance(urls, ClassLoader.getSystemClassLoader()));
+
+        if (mJarFile2 != null) {
+          try {
+            urls = new URL[] { mJarFile2.toURI().toURL() };
+            mClass2 = Class.forName(className, false, URLClassLoader.newInstance(urls, ClassLoader.getSystemClassLoader()));
+          } catch (Throwable t) {}
+        }
+      } catch (Throwable t) {
+        mError = t;
+      }
+
+      mLoadTime = System.currentTimeMillis() - start;
+    }
+  }
+
 }
@@ -1104,7 +1104,7 @@ public class Settings {
     if (mProp.hasChanged(propArr)) {
       // Force a recreation of the table content
       DefaultProgramTableModel model = mainFrame.getProgramTableModel();
-      model.setDate(mainFrame.getCurrentSelectedDate(), null, null);
+      model.recreateTableContent();
     }
 
     propArr = new Property[] {
@@ -2112,6 +2112,48 @@ public class Settings {
   public static final BooleanProperty propVerboseLogging = new BooleanProperty(
       mProp, "verboseLogging", false);
   
+  /**
+   * If thread safe searchers should search the day programs in parallel.
+   * @since 3.4.5
+   */
+  public static final BooleanProperty propParallelSearch = new BooleanProperty(
+      mProp, "parallelSearch", true);
+
+  /**
+   * If the inverted text index of the TV data is used to skip day programs
+   * while searching.
+   * @since 3.4.5
+   */
+  public static final BooleanProperty propTvDataTextIndex = new BooleanProperty(
+      mProp, "tvDataTextIndex", true);
+
+  /**
+   * The maximum number of day programs kept in memory,
+   * 0 limits the day programs only by their size.
+   * @since 3.4.5
+   */
+  public static final IntProperty propDayProgramCacheMaxEntries = new IntProperty(
+      mProp, "dayProgramCacheMaxEntries", 2000);
+
+  /**
+   * The maximum size in megabytes of the day programs kept in memory,
+   * 0 uses an eighth of the available memory.
+   * @since 3.4.5
+   */
+  public static final IntProperty propDayProgramCacheMaxMegaBytes = new IntProperty(
+      mProp, "dayProgramCacheMaxMegaBytes", 0);
+
+  /**
+   * If the data services update at the same time and the
+   * downloaded data is recalculated by several threads.
+   * <p>
+   * Off by default, because data services of older plugins can't tell
+   * if they read the data of other data services while updating.
+   * @since 3.4.5
+   */
+  public static final BooleanProperty propConcurrentTvDataUpdate = new BooleanProperty(
+      mProp, "concurrentTvDataUpdate", false);
+  
   public static final StringArrayProperty propKnownContextMenuPlugins = new StringArrayProperty(
       mProp, "knownContextMenuPlugins", new String[0]);
   
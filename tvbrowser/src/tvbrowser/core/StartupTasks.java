@@ -0,0 +1,265 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import util.misc.NamedThreadFactory;
+
+/**
+ * The phases of the TV-Browser start.
+ * <p>
+ * Every phase is added with the names of the phases it depends on, those
+ * must be added before. A phase runs on the thread that calls {@link #run()}
+ * in the order the phases were added, a concurrent phase runs on a thread of
+ * its own as soon as its dependencies are done. So phases that don't need
+ * each other, like loading the TV data base and the plugins, overlap.
+ * <p>
+ * The start time, the thread and the duration of every phase are kept and
+ * written to a trace file, so the start of different versions can be compared.
+ *
+ * @since 3.4.5
+ */
+public final class StartupTasks {
+
+  private static final Logger mLog = Logger.getLogger(StartupTasks.class.getName());
+
+  private final long mStartTime = System.nanoTime();
+
+  /** The phases that were not run yet */
+  private ArrayList<Task> mPending = new ArrayList<Task>();
+
+  /** All phases, key is the name of the phase */
+  private HashMap<String, Task> mTasks = new HashMap<String, Task>();
+
+  /** The finished phases in the order they were finished */
+  private ArrayList<Task> mFinished = new ArrayList<Task>();
+
+  private ExecutorService mExecutor;
+
+  /**
+   * Adds a phase that runs on the thread that calls {@link #run()}.
+   *
+   * @param name The name of the phase.
+   * @param task The work of the phase.
+   * @param dependencies The names of the phases that must be finished before.
+   */
+  public synchronized void add(String name, Runnable task, String... dependencies) {
+    addTask(name, task, false, dependencies);
+  }
+
+  /**
+   * Adds a phase that runs on a thread of its own.
+   *
+   * @param name The name of the phase.
+   * @param task The work of the phase.
+   * @param dependencies The names of the phases that must be finished before.
+   */
+  public synchronized void addConcurrent(String name, Runnable task, String... dependencies) {
+    addTask(name, task, true, dependencies);
+  }
+
+  private void addTask(String name, Runnable task, boolean concurrent, String[] dependencies) {
+    if (mTasks.containsKey(name)) {
+      throw new IllegalArgumentException("Startup phase already added: " + name);
+    }
+
+    Task[] dependencyTasks = new Task[dependencies.length];
+
+    for (int i = 0; i < dependencies.length; i++) {
+      dependencyTasks[i] = mTasks.get(dependencies[i]);
+
+      if (dependencyTasks[i] == null) {
+        throw new IllegalArgumentException("Unknown startup phase " + dependencies[i] + " for " + name);
+      }
+    }
+
+    Task t = new Task(name, task, concurrent, dependencyTasks);
+    mTasks.put(name, t);
+    mPending.add(t);
+  }
+
+  /**
+   * Runs the phases that were added since the last call and waits
+   * until all of them are finished.
+   */
+  public void run() {
+    Task[] tasks;
+
+    synchronized (this) {
+      tasks = mPending.toArray(new Task[mPending.size()]);
+      mPending.clear();
+    }
+
+    for (Task task : tasks) {
+      if (task.mConcurrent) {
+        getExecutor().execute(task);
+      }
+    }
+
+    for (Task task : tasks) {
+      if (!task.mConcurrent) {
+        task.run();
+      }
+    }
+
+    for (Task task : tasks) {
+      task.await();
+    }
+  }
+
+  /**
+   * Records a phase that was not run by this class, like the loading of
+   * the settings that is needed to create the phases.
+   *
+   * @param name The name of the phase.
+   * @param startTime The start time of the phase from {@link System#nanoTime()}.
+   */
+  public synchronized void record(String name, long startTime) {
+    Task t = new Task(name, null, false, new Task[0]);
+    t.mStart = startTime;
+    t.mDuration = System.nanoTime() - startTime;
+    t.mThreadName = Thread.currentThread().getName();
+    mFinished.add(t);
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (mExecutor == null) {
+      mExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("Startup"));
+    }
+
+    return mExecutor;
+  }
+
+  /**
+   * Writes the phases that are finished to the given file, one line with the
+   * name, the thread, the start and the duration in milliseconds separated
+   * by tabs for every phase. The threads for concurrent phases are ended.
+   *
+   * @param file The file to write.
+   */
+  public synchronized void writeTrace(File file) {
+    if (mExecutor != null) {
+      mExecutor.shutdown();
+      mExecutor = null;
+    }
+
+    Writer out = null;
+
+    try {
+      out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+      out.write("# phase\tthread\tstart ms\tduration ms\n");
+
+      for (Task task : mFinished) {
+        out.write(task.mName + "\t" + task.mThreadName + "\t" + ((task.mStart - mStartTime) / 1000000) + "\t"
+            + (task.mDuration / 1000000) + "\n");
+      }
+    } catch (IOException e) {
+      mLog.warning("Could not write startup trace: " + e.getMessage());
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  private synchronized void finished(Task task) {
+    mFinished.add(task);
+  }
+
+  /**
+   * A phase of the start.
+   */
+  private final class Task implements Runnable {
+    private final String mName;
+    private final Runnable mTask;
+    private final boolean mConcurrent;
+    private final Task[] mDependencies;
+    private final CountDownLatch mDone = new CountDownLatch(1);
+
+    private long mStart;
+    private long mDuration;
+    private String mThreadName;
+
+    private Task(String name, Runnable task, boolean concurrent, Task[] dependencies) {
+      mName = name;
+      mTask = task;
+      mConcurrent = concurrent;
+      mDependencies = dependencies;
+    }
+
+    public void run() {
+      try {
+        for (Task dependency : mDependencies) {
+          dependency.await();
+        }
+
+        mStart = System.nanoTime();
+        mThreadName = Thread.currentThread().getName();
+
+        try {
+          mTask.run();
+        } catch (RuntimeException e) {
+          if (!mConcurrent) {
+            throw e;
+          }
+          mLog.log(Level.SEVERE, "Startup phase " + mName + " failed", e);
+        }
+      } finally {
+        mDuration = System.nanoTime() - mStart;
+        finished(this);
+        mLog.info("Startup phase " + mName + " took " + (mDuration / 1000000) + " ms");
+        mDone.countDown();
+      }
+    }
+
+    private void await() {
+      boolean interrupted = false;
+
+      while (true) {
+        try {
+          mDone.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import devplugin.Channel;
+
+/**
+ * An unmodifiable snapshot of the subscribed channels.
+ * <p>
+ * Every subscribed channel has an ordinal, its position in the channel list,
+ * so data per channel can be kept in arrays. Whenever the subscribed channels
+ * change the {@link ChannelList} creates a new snapshot with a higher version,
+ * a snapshot itself never changes. So a snapshot can be used without locking
+ * and callers can keep data they created for it as long as the version of
+ * the current snapshot is unchanged.
+ *
+ * @since 3.4.5
+ */
+public final class SubscribedChannels {
+
+  /** The snapshot without channels */
+  static final SubscribedChannels EMPTY = new SubscribedChannels(new ArrayList<Channel>(0), 0);
+
+  private final int mVersion;
+
+  private final Channel[] mChannels;
+
+  private final Channel[] mChannelsWithoutDummies;
+
+  /** The ordinals of the channels, key is the unique ID of the channel */
+  private final HashMap<String, Integer> mOrdinals;
+
+  /**
+   * Creates a snapshot of the given channels.
+   *
+   * @param channels The subscribed channels in the order of the channel list.
+   * @param version The version of the snapshot.
+   */
+  SubscribedChannels(List<Channel> channels, int version) {
+    mVersion = version;
+
+    ArrayList<Channel> subscribed = new ArrayList<Channel>(channels.size());
+    ArrayList<Channel> withoutDummies = new ArrayList<Channel>(channels.size());
+    mOrdinals = new HashMap<String, Integer>(channels.size() * 2);
+
+    for (Channel channel : channels) {
+      if (channel != null && !mOrdinals.containsKey(channel.getUniqueId())) {
+        mOrdinals.put(channel.getUniqueId(), subscribed.size());
+        subscribed.add(channel);
+
+        if (!(channel instanceof DummyChannel)) {
+          withoutDummies.add(channel);
+        }
+      }
+    }
+
+    mChannels = subscribed.toArray(new Channel[subscribed.size()]);
+    mChannelsWithoutDummies = withoutDummies.toArray(new Channel[withoutDummies.size()]);
+  }
+
+  /**
+   * Gets the version of this snapshot, every change of the subscribed
+   * channels creates a snapshot with a higher version.
+   *
+   * @return The version of this snapshot.
+   */
+  public int getVersion() {
+    return mVersion;
+  }
+
+  /**
+   * @return The number of subscribed channels.
+   */
+  public int size() {
+    return mChannels.length;
+  }
+
+  /**
+   * Gets the channel with the given ordinal.
+   *
+   * @param ordinal The ordinal of the channel, from 0 to {@link #size()} - 1.
+   * @return The channel.
+   */
+  public Channel get(int ordinal) {
+    return mChannels[ordinal];
+  }
+
+  /**
+   * Gets the ordinal of a channel.
+   *
+   * @param channel The channel.
+   * @return The ordinal of the channel or -1 if the channel isn't subscribed.
+   */
+  public int getOrdinal(Channel channel) {
+    if (channel == null) {
+      return -1;
+    }
+
+    Integer ordinal = mOrdinals.get(channel.getUniqueId());
+
+    return ordinal != null ? ordinal.intValue() : -1;
+  }
+
+  /**
+   * @param channel The channel to check.
+   * @return <code>true</code> if the channel is subscribed.
+   */
+  public boolean contains(Channel channel) {
+    return channel != null && mOrdinals.containsKey(channel.getUniqueId());
+  }
+
+  /**
+   * Gets the subscribed channels in a new array.
+   *
+   * @param withDummyChannels If the dummy channels should be included.
+   * @return The subscribed channels.
+   */
+  public Channel[] toArray(boolean withDummyChannels) {
+    return (withDummyChannels ? mChannels : mChannelsWithoutDummies).clone();
+  }
+}
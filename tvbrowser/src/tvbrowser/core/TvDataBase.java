@@ -34,14 +34,15 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import tvbrowser.core.data.DayProgramCache;
 import tvbrowser.core.data.OnDemandDayProgramFile;
 import tvbrowser.ui.mainframe.MainFrame;
 import tvdataservice.MutableChannelDayProgram;
 import tvdataservice.MutableProgram;
-import util.misc.SoftReferenceCache;
 import devplugin.Channel;
 import devplugin.ChannelDayProgram;
 import devplugin.Date;
@@ -61,11 +62,13 @@ public class TvDataBase {
 
   private static final String INVENTORY_FILE = "tv-data-inventory.dat";
 
+  private static final String TEXT_INDEX_FILE = "tv-data-index.dat";
+
   /** The singleton. */
-  private static TvDataBase mSingleton;
+  private static volatile TvDataBase mSingleton;
 
   /** The TV data cache. */
-  private SoftReferenceCache<String, OnDemandDayProgramFile> mTvDataHash;
+  private DayProgramCache mTvDataHash;
 
   private ArrayList<TvDataBaseListener> mListenerList;
 
@@ -75,20 +78,23 @@ public class TvDataBase {
   private Hashtable<String, UpdateData> mNewDayProgramsAfterUpdate;
 
   private TvDataInventory mTvDataInventory;
+  private TvDataTextIndex mTextIndex;
   private boolean mPendingPluginInformationAboutChangedData;
   private Hashtable<ChannelDayKey, UpdateData> mSendToTvDataListener;
   
-  private MutableChannelDayProgram mCurrentAddedDayProgram;
+  /** The day programs that are currently corrected, plugins may change them */
+  private ConcurrentHashMap<String, MutableChannelDayProgram> mCurrentAddedDayPrograms;
   
   public static final int DEFAULT_DATA_LIFESPAN = 1;
 
   private TvDataBase() {
     mPendingPluginInformationAboutChangedData = false;
-    mTvDataHash = new SoftReferenceCache<String, OnDemandDayProgramFile>();
+    mTvDataHash = new DayProgramCache(getDayProgramCacheMaxEntries(), getDayProgramCacheMaxBytes());
     mListenerList = new ArrayList<TvDataBaseListener>();
     mAvailableDateSet = new HashSet<Date>();
     mNewDayProgramsAfterUpdate = new Hashtable<String, UpdateData>();
     mSendToTvDataListener = new Hashtable<ChannelDayKey, UpdateData>();
+    mCurrentAddedDayPrograms = new ConcurrentHashMap<String, MutableChannelDayProgram>();
     updateAvailableDateSet();
 
 /* Uncommend testwise.
@@ -116,14 +122,85 @@ public class TvDataBase {
         mLog.log(Level.WARNING, "Loading TV data inventory failed", exc);
       }
     }
+
+    // Load text index
+    mTextIndex = new TvDataTextIndex();
+    file = new File(Settings.getUserSettingsDirName(), TEXT_INDEX_FILE);
+    if (file.exists()) {
+      try {
+        mTextIndex.readData(file);
+      } catch (Exception exc) {
+        mTextIndex = new TvDataTextIndex();
+        mLog.log(Level.WARNING, "Loading TV data text index failed", exc);
+      }
+    }
+  }
+
+  /**
+   * Gets the maximum number of day programs in the cache,
+   * if the setting is 0 the size of the day programs decides
+   * what is kept.
+   */
+  private static int getDayProgramCacheMaxEntries() {
+    int maxEntries = Settings.propDayProgramCacheMaxEntries.getInt();
+
+    if (maxEntries > 0) {
+      return maxEntries;
+    }
+
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Gets the maximum size of the day program cache,
+   * by default an eighth of the available memory.
+   */
+  private static long getDayProgramCacheMaxBytes() {
+    int megaBytes = Settings.propDayProgramCacheMaxMegaBytes.getInt();
+
+    if (megaBytes > 0) {
+      return megaBytes * 1024L * 1024L;
+    }
+
+    return Runtime.getRuntime().maxMemory() / 8;
+  }
+
+  /**
+   * Sets the dates of the day programs that are kept in the cache,
+   * usually the dates shown in the program table.
+   *
+   * @param firstDate The first date to keep, <code>null</code> to keep no dates.
+   * @param lastDate The last date to keep.
+   * @since 3.4.5
+   */
+  public void setPinnedDates(Date firstDate, Date lastDate) {
+    mTvDataHash.setPinnedDates(firstDate, lastDate);
+  }
+
+  /**
+   * @return A short description of the size and usage of the day program cache.
+   * @since 3.4.5
+   */
+  public String getCacheStatistics() {
+    return "Day program cache: " + mTvDataHash.getStatistics();
   }
 
   public static TvDataBase getInstance() {
-    if (mSingleton == null) {
-      mSingleton = new TvDataBase();
+    TvDataBase instance = mSingleton;
+
+    // only the creation is synchronized, the data base is asked very often
+    if (instance == null) {
+      synchronized (TvDataBase.class) {
+        instance = mSingleton;
+
+        if (instance == null) {
+          instance = new TvDataBase();
+          mSingleton = instance;
+        }
+      }
     }
 
-    return mSingleton;
+    return instance;
   }
 
   /**
@@ -133,14 +210,26 @@ public class TvDataBase {
    */
   protected void updateTvDataBase() {
     updateAvailableDateSet();
+
+    // save the index, so it is up to date even if TV-Browser doesn't close normally
+    try {
+      writeTextIndex();
+    } catch (Exception exc) {
+      mLog.log(Level.WARNING, "Saving TV data text index failed", exc);
+    }
+  }
+
+  private void writeTextIndex() throws IOException {
+    File file = new File(Settings.getUserSettingsDirName(), TEXT_INDEX_FILE);
+    mTextIndex.writeData(file);
   }
 
   public void checkTvDataInventory(int lifespan) {
-    // Get the channel of the subscribed channels
-    Channel[] channelArr = ChannelList.getSubscribedChannels();
-    String[] channelIdArr = new String[channelArr.length];
-    for (int i = 0; i < channelArr.length; i++) {
-      channelIdArr[i] = getChannelKey(channelArr[i]);
+    // Get the channel of the subscribed channels by their key
+    SubscribedChannels subscribed = ChannelList.getSubscribedChannelsSnapshot();
+    HashMap<String, Channel> channelKeyMap = new HashMap<String, Channel>(subscribed.size() * 2);
+    for (int i = 0; i < subscribed.size(); i++) {
+      channelKeyMap.put(getChannelKey(subscribed.get(i)), subscribed.get(i));
     }
     
     Date cutoff = Date.getCurrentDate().addDays(-lifespan);
@@ -171,7 +260,7 @@ public class TvDataBase {
         // This day program was deleted -> Inform the listeners
 
         // Get the channel and date
-        Channel channel = getChannelFromFileName(key, channelArr, channelIdArr);
+        Channel channel = getChannelFromFileName(key, channelKeyMap);
         if ((channel != null) && (date != null)) {
           if(date.compareTo(cutoff) >= 0) {
             mLog.info("Day program was deleted by third party: " + date + " on "
@@ -191,6 +280,8 @@ public class TvDataBase {
           // remembered files
           mTvDataInventory.setUnknown(key);
         }
+
+        mTextIndex.removeDayProgram(key);
       }
     }
 
@@ -199,8 +290,7 @@ public class TvDataBase {
       String fileName = tvDataFile.getName();
 
       // Get the channel and date
-      Channel channel = getChannelFromFileName(fileName, channelArr,
-          channelIdArr);
+      Channel channel = getChannelFromFileName(fileName, channelKeyMap);
       Date date = getDateFromFileName(fileName);
       if ((channel != null) && (date != null)) {
         // Get the version
@@ -222,6 +312,7 @@ public class TvDataBase {
             // Inform the listeners
             mLog.info("Day program was changed by third party: " + date + " on "
                 + channel.getName());
+            mTextIndex.removeDayProgram(fileName);
             //ChannelDayProgram newDayProg = getDayProgram(date, channel, false);
             OnDemandDayProgramFile newDayProg = getCacheEntry(date, channel, true, false);
             
@@ -283,6 +374,18 @@ public class TvDataBase {
         mLog.log(Level.WARNING, "Closing database failed", exc);
       }
     }
+    try {
+      writeTextIndex();
+
+      if (log) {
+        mLog.info(getCacheStatistics());
+        mLog.info(mTextIndex.getStatistics());
+      }
+    } catch (Exception exc) {
+      if (log) {
+        mLog.log(Level.WARNING, "Saving TV data text index failed", exc);
+      }
+    }
   }
 
   public void addTvDataListener(TvDataBaseListener listener) {
@@ -302,8 +405,10 @@ public class TvDataBase {
   }
 
   public void setDayProgramWasChangedByPlugin(Date date, Channel channel) {
-    if(mCurrentAddedDayProgram != null && mCurrentAddedDayProgram.getDate().equals(date) && mCurrentAddedDayProgram.getChannel().equals(channel)) {
-      mCurrentAddedDayProgram.setWasChangedByPlugin();
+    MutableChannelDayProgram currentAddedDayProgram = mCurrentAddedDayPrograms.get(getDayProgramKey(date, channel));
+
+    if(currentAddedDayProgram != null) {
+      currentAddedDayProgram.setWasChangedByPlugin();
     }
   }
 
@@ -339,7 +444,17 @@ public class TvDataBase {
     mNewDayProgramsAfterUpdate.clear();
   }*/
   
-  public synchronized void reCalculateTvData(Channel channel, Date date) {
+  /**
+   * Calculates the missing lengths of the programs of a day program,
+   * informs the listeners about the new day program and saves the changes.
+   * <p>
+   * Day programs of different channels may be recalculated at the same time,
+   * the day programs of one channel must be recalculated by one thread.
+   *
+   * @param channel The channel of the day program.
+   * @param date The date of the day program.
+   */
+  public void reCalculateTvData(Channel channel, Date date) {
     correctDayProgramFile(date, channel);
   }
 
@@ -354,6 +469,15 @@ public class TvDataBase {
     
     OnDemandDayProgramFile oldProgFile = getCacheEntry(date, channel, true, false);
     
+    // Invalidate the old program file from the cache
+    // (This releases the file, so it can be renamed)
+    if (oldProgFile != null) {
+      oldProgFile.setValid(false);
+
+      // Remove the old entry from the cache (if it exists)
+      removeCacheEntry(key);
+    }
+    
     // Create a backup (Rename the old file if it exists)
     File file = getDayProgramFile(date, channel);
     File backupFile = null;
@@ -365,14 +489,6 @@ public class TvDataBase {
         backupFile = null;
       }
     }
-    
-    // Invalidate the old program file from the cache
-    if (oldProgFile != null) {
-      oldProgFile.setValid(false);
-
-      // Remove the old entry from the cache (if it exists)
-      removeCacheEntry(key);
-    }
 
     // Create a new program file
     OnDemandDayProgramFile newProgFile = new OnDemandDayProgramFile(file, prog);
@@ -406,9 +522,12 @@ public class TvDataBase {
       // Set the new program to 'known'
       int version = (int) file.length();
       mTvDataInventory.setKnown(date, channel, version);
+
+      mTextIndex.addDayProgram(prog);
     } catch (IOException exc) {
       // Remove the new program from the cache
       removeCacheEntry(key);
+      mTextIndex.removeDayProgram(key);
 
       // Remove the program from the later update list
       mNewDayProgramsAfterUpdate.remove(key);
@@ -464,7 +583,9 @@ public class TvDataBase {
 
     // Try to load the program from disk
     if (loadFromDisk && (progFile == null || (update && progFile.isTimeLimitationData()))) {
+      long start = System.nanoTime();
       progFile = loadDayProgram(date, channel, update);
+      mTvDataHash.recordLoad(System.nanoTime() - start);
       if (progFile != null && !update) {
         addCacheEntry(key, progFile);
       }
@@ -492,6 +613,24 @@ public class TvDataBase {
         date.getDateString()).toString();
   }
 
+  /**
+   * Gets the day programs that may contain programs with the given terms
+   * in the given fields.
+   *
+   * @param fieldArr The fields that are searched.
+   * @param terms The terms a matching program must contain, case is ignored.
+   * @return The candidates or <code>null</code> if the text index can't be used.
+   * @since 3.4.5
+   */
+  public TvDataTextIndex.Candidates getTextIndexCandidates(ProgramFieldType[] fieldArr, String[] terms) {
+    if (!Settings.propTvDataTextIndex.getBoolean()) {
+      return null;
+    }
+
+    return mTextIndex.getCandidates(fieldArr, terms);
+  }
+
+
   private static String getChannelKey(Channel channel) {
     // check the input
     if (channel == null) {
@@ -597,6 +736,7 @@ public class TvDataBase {
           removeCacheEntry(getDayProgramKey(date,ch));
         }
 
+        mTextIndex.removeDayProgram(deleteFile.getName());
         deleteFile.delete();
       }
     }
@@ -608,7 +748,7 @@ public class TvDataBase {
     return false;
   }
 
-  private synchronized void correctDayProgramFile(Date date,
+  private void correctDayProgramFile(Date date,
       Channel channel) {
     boolean verbose = Settings.propVerboseLogging.getBoolean();
     
@@ -638,13 +778,14 @@ public class TvDataBase {
         checkProg = getCacheEntry(date, channel, true, true);//getCacheEntry(date, channel, false, false);
       }
       
-      mCurrentAddedDayProgram = checkProg.getDayProgram();
+      MutableChannelDayProgram currentAddedDayProgram = checkProg.getDayProgram();
+      mCurrentAddedDayPrograms.put(key, currentAddedDayProgram);
 
       if(verbose) {
         mLog.info(new java.util.Date(System.currentTimeMillis()) + ": START calculate missing length");
       }
       
-      boolean somethingChanged = calculateMissingLengths(mCurrentAddedDayProgram);
+      boolean somethingChanged = calculateMissingLengths(currentAddedDayProgram);
       
       if(verbose) {
         mLog.info(new java.util.Date(System.currentTimeMillis()) + ": END calculate missing length");
@@ -652,7 +793,7 @@ public class TvDataBase {
       }
       
       // fire day program added to give plugins a chance to change programs
-      fireDayProgramAdded(mCurrentAddedDayProgram);
+      fireDayProgramAdded(currentAddedDayProgram);
       /*if((oldProg = mNewDayProgramsAfterUpdate.remove(key)) != null) {
         // Inform the listeners about deleting the old program
         if (oldProg instanceof ChannelDayProgram) {
@@ -670,7 +811,7 @@ public class TvDataBase {
         mLog.info(new java.util.Date(System.currentTimeMillis()) + ": SOMETHING CHANGED: " + somethingChanged);
       }
       
-      if (mCurrentAddedDayProgram.getAndResetChangedByPluginState() || somethingChanged) {
+      if (currentAddedDayProgram.getAndResetChangedByPluginState() || somethingChanged) {
         // Some missing lengths could now be calculated
         // -> Try to save the changes
 
@@ -679,19 +820,27 @@ public class TvDataBase {
         try {
           // Try to save the changed program
           OnDemandDayProgramFile newProgFile = new OnDemandDayProgramFile(
-              tempFile, mCurrentAddedDayProgram);
+              tempFile, currentAddedDayProgram);
           newProgFile.saveDayProgram();
 
-          // Saving the changed version succeed -> Delete the original
-          file.delete();
+          // Plugins may have changed the texts, index them before the fields are released
+          mTextIndex.addDayProgram(currentAddedDayProgram);
+
+          synchronized (this) {
+            // Release the original file, so it can be deleted
+            checkProg.setValid(false);
 
-          // Use the changed version now
-          tempFile.renameTo(file);
+            // Saving the changed version succeed -> Delete the original
+            file.delete();
 
-          // If the old version was known -> Set the new version to known too
-          if (knownStatus == TvDataInventory.KNOWN) {
-            version = (int) file.length();
-            mTvDataInventory.setKnown(date, channel, version);
+            // Use the changed version now
+            tempFile.renameTo(file);
+
+            // If the old version was known -> Set the new version to known too
+            if (knownStatus == TvDataInventory.KNOWN) {
+              version = (int) file.length();
+              mTvDataInventory.setKnown(date, channel, version);
+            }
           }
         } catch (Exception exc) {
           // Saving the changes failed
@@ -701,20 +850,23 @@ public class TvDataBase {
 
         // We have to load the file again to get the new data positions
         OnDemandDayProgramFile progFile = new OnDemandDayProgramFile(file, date, channel);
-        progFile.loadDayProgram(false);
 
-        // Invalidate the old program file from the cache
-        if (checkProg != null) {
-          checkProg.setValid(false);
+        synchronized (this) {
+          progFile.loadDayProgram(false);
+
+          // Invalidate the old program file from the cache
+          if (checkProg != null) {
+            checkProg.setValid(false);
 
-          // Remove the old entry from the cache (if it exists)
-          removeCacheEntry(key);
+            // Remove the old entry from the cache (if it exists)
+            removeCacheEntry(key);
+          }
+
+          // Put the new program file in the real cache
+          addCacheEntry(key, progFile);
         }
-        
+
         updateData = new UpdateData(progFile, updateData != null ? updateData.getRemoved() : null);
-        
-        // Put the new program file in the real cache
-        addCacheEntry(key, progFile);
       } else if(checkProg != null) {
         checkProg.calculateTimeLimits();
       }
@@ -738,7 +890,7 @@ public class TvDataBase {
       file.delete();
     }
     
-    mCurrentAddedDayProgram = null;
+    mCurrentAddedDayPrograms.remove(key);
   }
 
 
@@ -753,8 +905,16 @@ public class TvDataBase {
       // Load the program file
       OnDemandDayProgramFile progFile = new OnDemandDayProgramFile(file, date,
           channel);
+      int version = (int) file.length();
       progFile.loadDayProgram(update);
 
+      // Keep the inventory valid if the file was converted to the current format
+      int newVersion = (int) file.length();
+      if (newVersion != version
+          && mTvDataInventory.getKnownStatus(date, channel, version) == TvDataInventory.KNOWN) {
+        mTvDataInventory.setKnown(date, channel, newVersion);
+      }
+
       return progFile;
     } catch (Exception exc) {
       mLog.log(Level.WARNING, "Loading program for " + channel + " from "
@@ -784,6 +944,19 @@ public class TvDataBase {
     return null;
   }
 
+  /**
+   * Gets the channel of a day program file from the channel keys.
+   *
+   * @param fileName The name of the file.
+   * @param channelKeyMap The channels, key is the channel key.
+   * @return The channel or <code>null</code> if the file belongs to no channel of the map.
+   */
+  private Channel getChannelFromFileName(String fileName, HashMap<String, Channel> channelKeyMap) {
+    int dotIdx = fileName.lastIndexOf('.');
+
+    return dotIdx > 0 ? channelKeyMap.get(fileName.substring(0, dotIdx)) : null;
+  }
+
   private Date getDateFromFileName(String fileName) {
     int dotIdx = fileName.lastIndexOf('.');
     if (dotIdx == -1) {
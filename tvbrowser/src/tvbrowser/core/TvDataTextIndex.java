@@ -0,0 +1,735 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DateFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import util.io.stream.InputStreamProcessor;
+import util.io.stream.OutputStreamProcessor;
+import util.io.stream.StreamUtilities;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * An inverted index of the words of all text fields of the day programs.
+ * <p>
+ * For every word the index knows the day programs that contain it. A search
+ * uses it to skip day programs that can't contain the search terms without
+ * loading them. The index is updated per day program, replaced day programs
+ * are only marked as removed and the words of removed day programs are
+ * cleaned up when they are the majority.
+ * <p>
+ * Day programs that are not in the index are always searched, so the index
+ * never removes a hit from the search result. The saved index is deleted
+ * when the index changes, so after a crash the index starts empty instead
+ * of skipping day programs that changed after it was saved.
+ * <p>
+ * The words are found by their n-grams, searches only read the index and
+ * may run at the same time.
+ *
+ * @since 3.4.5
+ */
+public class TvDataTextIndex {
+
+  /** The minimum length of an indexed word. */
+  private static final int MIN_WORD_LENGTH = 3;
+
+  /** The length of the n-grams of the words, not longer than the shortest word. */
+  private static final int NGRAM_LENGTH = MIN_WORD_LENGTH;
+
+  private static final int FILE_VERSION = 1;
+
+  /** The id of every indexed day program */
+  private ConcurrentHashMap<String, Integer> mIdForKey;
+
+  /** The key of the day program of every id, <code>null</code> for removed day programs. */
+  private ArrayList<String> mKeyForId;
+
+  /** The ids of the day programs of every word, sorted ascending. */
+  private HashMap<String, IntList> mPostings;
+
+  /** The words that contain an n-gram for every n-gram of the words. */
+  private HashMap<String, ArrayList<String>> mWordsForNgram;
+
+  private int mRemovedCount;
+
+  /** The file the index was read from or saved to, it is deleted when the index changes. */
+  private File mFile;
+
+  /** If the index has changed since it was read or saved */
+  private boolean mChanged;
+
+  private ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+
+  /** Changes if the ids of the day programs are changed */
+  private volatile int mGeneration;
+
+  private AtomicLong mHitCount = new AtomicLong();
+  private AtomicLong mMissCount = new AtomicLong();
+  private AtomicLong mSkipCount = new AtomicLong();
+
+  public TvDataTextIndex() {
+    mIdForKey = new ConcurrentHashMap<String, Integer>();
+    mKeyForId = new ArrayList<String>();
+    mPostings = new HashMap<String, IntList>();
+    mWordsForNgram = new HashMap<String, ArrayList<String>>();
+  }
+
+  /**
+   * Adds a day program to the index, a day program with the same
+   * date and channel is replaced.
+   *
+   * @param dayProgram The day program to add.
+   */
+  public void addDayProgram(ChannelDayProgram dayProgram) {
+    // collect the words outside of the lock
+    HashSet<String> words = new HashSet<String>();
+
+    for (int i = 0; i < dayProgram.getProgramCount(); i++) {
+      addWords(dayProgram.getProgramAt(i), words);
+    }
+
+    String key = TvDataBase.getDayProgramKey(dayProgram.getDate(), dayProgram.getChannel());
+
+    mLock.writeLock().lock();
+    try {
+      removeDayProgram(key);
+      changed();
+
+      int id = mKeyForId.size();
+      mKeyForId.add(key);
+
+      for (String word : words) {
+        IntList ids = mPostings.get(word);
+
+        if (ids == null) {
+          ids = new IntList();
+          mPostings.put(word, ids);
+          addNgrams(word);
+        }
+
+        ids.add(id);
+      }
+
+      mIdForKey.put(key, id);
+    } finally {
+      mLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the day program with the given key from the index.
+   *
+   * @param key The key of the day program.
+   * @see TvDataBase#getDayProgramKey(Date, Channel)
+   */
+  public void removeDayProgram(String key) {
+    mLock.writeLock().lock();
+    try {
+      Integer id = mIdForKey.remove(key);
+
+      if (id != null) {
+        changed();
+        mKeyForId.set(id, null);
+        mRemovedCount++;
+
+        if (mRemovedCount > 1000 && mRemovedCount > mIdForKey.size()) {
+          compact();
+        }
+      }
+    } finally {
+      mLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Deletes the saved index when the index changes the first time after
+   * it was read or saved, so a stale index is never read again.
+   */
+  private void changed() {
+    if (!mChanged) {
+      mChanged = true;
+
+      if (mFile != null && mFile.exists() && !mFile.delete()) {
+        mFile.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Adds the given new word to the words of its n-grams.
+   */
+  private void addNgrams(String word) {
+    for (int i = 0; i + NGRAM_LENGTH <= word.length(); i++) {
+      String ngram = word.substring(i, i + NGRAM_LENGTH);
+      ArrayList<String> words = mWordsForNgram.get(ngram);
+
+      if (words == null) {
+        words = new ArrayList<String>(2);
+        mWordsForNgram.put(ngram, words);
+      }
+
+      // an n-gram may occur several times in a word
+      if (words.isEmpty() || words.get(words.size() - 1) != word) {
+        words.add(word);
+      }
+    }
+  }
+
+  /**
+   * Creates the n-grams of all words again.
+   */
+  private void createNgrams() {
+    mWordsForNgram = new HashMap<String, ArrayList<String>>(mPostings.size());
+
+    for (String word : mPostings.keySet()) {
+      addNgrams(word);
+    }
+  }
+
+  /**
+   * Gets the words that contain the given piece, the piece
+   * must not be shorter than the n-grams.
+   */
+  private ArrayList<String> getWordsContaining(String piece) {
+    ArrayList<String> fewest = null;
+
+    // only the words of the n-gram with the fewest words need to be checked
+    for (int i = 0; i + NGRAM_LENGTH <= piece.length(); i++) {
+      ArrayList<String> words = mWordsForNgram.get(piece.substring(i, i + NGRAM_LENGTH));
+
+      if (words == null) {
+        return new ArrayList<String>(0);
+      }
+
+      if (fewest == null || words.size() < fewest.size()) {
+        fewest = words;
+      }
+    }
+
+    ArrayList<String> result = new ArrayList<String>();
+
+    if (fewest != null) {
+      for (String word : fewest) {
+        if (word.indexOf(piece) != -1) {
+          result.add(word);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Removes the words of removed day programs and
+   * gives the day programs new dense ids.
+   */
+  private void compact() {
+    int[] newIds = new int[mKeyForId.size()];
+    ArrayList<String> keyForId = new ArrayList<String>(mIdForKey.size());
+
+    for (int i = 0; i < mKeyForId.size(); i++) {
+      String key = mKeyForId.get(i);
+
+      if (key != null) {
+        newIds[i] = keyForId.size();
+        keyForId.add(key);
+      }
+      else {
+        newIds[i] = -1;
+      }
+    }
+
+    boolean wordsRemoved = false;
+    Iterator<IntList> it = mPostings.values().iterator();
+    while (it.hasNext()) {
+      IntList ids = it.next();
+      ids.map(newIds);
+
+      if (ids.size() == 0) {
+        it.remove();
+        wordsRemoved = true;
+      }
+    }
+
+    if (wordsRemoved) {
+      createNgrams();
+    }
+
+    mKeyForId = keyForId;
+    for (int i = 0; i < keyForId.size(); i++) {
+      mIdForKey.put(keyForId.get(i), i);
+    }
+
+    mRemovedCount = 0;
+    mGeneration++;
+  }
+
+  /**
+   * Gets the day programs that may contain programs matching the given terms.
+   * <p>
+   * Every term must be contained in the text of a matching program,
+   * case is ignored.
+   *
+   * @param fieldArr The fields that are searched.
+   * @param terms The terms that must be contained in the searched text.
+   * @return The candidates or <code>null</code> if the index can't be used
+   *         for the fields and terms.
+   */
+  public Candidates getCandidates(ProgramFieldType[] fieldArr, String[] terms) {
+    if (fieldArr == null || terms == null) {
+      return null;
+    }
+
+    boolean onlyText = true;
+    boolean timeFields = false;
+    for (ProgramFieldType type : fieldArr) {
+      if (type == null) {
+        continue;
+      }
+      else if (type.getFormat() == ProgramFieldType.TIME_FORMAT) {
+        timeFields = true;
+        onlyText = false;
+      }
+      else if (type.getFormat() != ProgramFieldType.TEXT_FORMAT) {
+        onlyText = false;
+      }
+    }
+
+    // Only use the parts of the terms that can't be created by not indexed fields
+    HashSet<String> pieces = new HashSet<String>();
+    for (String term : terms) {
+      if (term != null) {
+        addWords(term, pieces);
+      }
+    }
+
+    if (!onlyText) {
+      Iterator<String> it = pieces.iterator();
+      while (it.hasNext()) {
+        if (!isOnlyTextPiece(it.next(), timeFields)) {
+          it.remove();
+        }
+      }
+    }
+
+    if (pieces.isEmpty()) {
+      return null;
+    }
+
+    mLock.readLock().lock();
+    try {
+      BitSet result = null;
+
+      for (String piece : pieces) {
+        BitSet ids = new BitSet(mKeyForId.size());
+
+        for (String word : getWordsContaining(piece)) {
+          mPostings.get(word).addTo(ids);
+        }
+
+        if (result == null) {
+          result = ids;
+        }
+        else {
+          result.and(ids);
+        }
+      }
+
+      return new Candidates(result, mKeyForId.size(), mGeneration);
+    } finally {
+      mLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Checks if the given piece of a term can only be found in text fields
+   * because the number and time fields can't create it.
+   */
+  private static boolean isOnlyTextPiece(String piece, boolean timeFields) {
+    boolean letter = false;
+
+    for (int i = 0; i < piece.length() && !letter; i++) {
+      letter = Character.isLetter(piece.charAt(i));
+    }
+
+    if (letter && timeFields) {
+      // the am/pm marker of the 12 hour format
+      for (String marker : new DateFormatSymbols().getAmPmStrings()) {
+        if (marker.toLowerCase().indexOf(piece) != -1) {
+          return false;
+        }
+      }
+    }
+
+    return letter;
+  }
+
+  private static void addWords(Program prog, HashSet<String> words) {
+    Iterator<ProgramFieldType> it = prog.getFieldIterator();
+
+    while (it.hasNext()) {
+      ProgramFieldType type = it.next();
+
+      if (type.getFormat() == ProgramFieldType.TEXT_FORMAT) {
+        String value = prog.getTextField(type);
+
+        if (value != null) {
+          addWords(value, words);
+        }
+      }
+    }
+
+    // the short info may be created from the description
+    String shortInfo = prog.getShortInfo();
+    if (shortInfo != null) {
+      addWords(shortInfo, words);
+    }
+  }
+
+  /**
+   * Adds the lower case words of the given text to the set.
+   * A word is a sequence of letters and digits.
+   */
+  private static void addWords(String text, HashSet<String> words) {
+    text = text.toLowerCase();
+    int start = -1;
+
+    for (int i = 0; i <= text.length(); i++) {
+      boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+      if (wordChar && start == -1) {
+        start = i;
+      }
+      else if (!wordChar && start != -1) {
+        if (i - start >= MIN_WORD_LENGTH) {
+          words.add(text.substring(start, i));
+        }
+        start = -1;
+      }
+    }
+  }
+
+  /**
+   * @return The number of day programs in the index.
+   */
+  public int getDayProgramCount() {
+    return mIdForKey.size();
+  }
+
+  /**
+   * @return The number of words in the index.
+   */
+  public int getWordCount() {
+    mLock.readLock().lock();
+    try {
+      return mPostings.size();
+    } finally {
+      mLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the ratio of checked day programs the index could answer.
+   *
+   * @return The hit ratio between 0 and 1.
+   */
+  public double getHitRatio() {
+    long hits = mHitCount.get();
+    long total = hits + mMissCount.get();
+
+    return total > 0 ? (double) hits / total : 0;
+  }
+
+  /**
+   * @return A short description of the size and usage of the index.
+   */
+  public String getStatistics() {
+    return "Text index: " + getDayProgramCount() + " day programs, " + getWordCount() + " words, "
+        + mHitCount.get() + " hits, " + mMissCount.get() + " misses, hit ratio "
+        + Math.round(getHitRatio() * 100) + "%, " + mSkipCount.get() + " day programs skipped";
+  }
+
+  /**
+   * Loads the index.
+   *
+   * @param file The file to load from.
+   * @throws IOException
+   * @see #writeData(File)
+   */
+  public void readData(File file) throws IOException {
+    mLock.writeLock().lock();
+    try {
+      readIndex(file);
+      mFile = file;
+      mChanged = false;
+    } finally {
+      mLock.writeLock().unlock();
+    }
+  }
+
+  private void readIndex(File file) throws IOException {
+    StreamUtilities.inputStream(file, new InputStreamProcessor() {
+      public void process(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(input), 0x10000));
+
+        if (in.readInt() != FILE_VERSION) {
+          return;
+        }
+
+        int keyCount = in.readInt();
+        ArrayList<String> keyForId = new ArrayList<String>(keyCount);
+        HashMap<String, Integer> idForKey = new HashMap<String, Integer>(keyCount * 2);
+        for (int i = 0; i < keyCount; i++) {
+          String key = in.readUTF();
+          keyForId.add(key);
+          idForKey.put(key, i);
+        }
+
+        int wordCount = in.readInt();
+        HashMap<String, IntList> postings = new HashMap<String, IntList>(wordCount * 2);
+        for (int i = 0; i < wordCount; i++) {
+          String word = in.readUTF();
+          IntList ids = new IntList(in.readInt());
+
+          int id = 0;
+          for (int j = ids.mValues.length; j > 0; j--) {
+            id += in.readInt();
+            ids.add(id);
+          }
+
+          postings.put(word, ids);
+        }
+
+        mKeyForId = keyForId;
+        mIdForKey.clear();
+        mIdForKey.putAll(idForKey);
+        mPostings = postings;
+        createNgrams();
+        mRemovedCount = 0;
+        mGeneration++;
+      }
+    });
+  }
+
+  /**
+   * Saves the index without the removed day programs.
+   *
+   * @param file The file to save to.
+   * @throws IOException
+   * @see #readData(File)
+   */
+  public void writeData(File file) throws IOException {
+    mLock.writeLock().lock();
+    try {
+      if (mRemovedCount > 0) {
+        compact();
+      }
+
+      // searches may go on while the index is saved
+      mLock.readLock().lock();
+    } finally {
+      mLock.writeLock().unlock();
+    }
+
+    try {
+      writeIndex(file);
+
+      // no changes are possible while the read lock is held
+      mFile = file;
+      mChanged = false;
+    } finally {
+      mLock.readLock().unlock();
+    }
+  }
+
+  private void writeIndex(File file) throws IOException {
+    StreamUtilities.outputStream(file, new OutputStreamProcessor() {
+      public void process(OutputStream output) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(output);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip, 0x10000));
+
+        out.writeInt(FILE_VERSION);
+
+        out.writeInt(mKeyForId.size());
+        for (String key : mKeyForId) {
+          out.writeUTF(key);
+        }
+
+        out.writeInt(mPostings.size());
+        for (Map.Entry<String, IntList> entry : mPostings.entrySet()) {
+          IntList ids = entry.getValue();
+
+          out.writeUTF(entry.getKey());
+          out.writeInt(ids.size());
+
+          // the ids are sorted, the differences compress better
+          int last = 0;
+          for (int i = 0; i < ids.size(); i++) {
+            out.writeInt(ids.mValues[i] - last);
+            last = ids.mValues[i];
+          }
+        }
+
+        out.flush();
+        gzip.finish();
+      }
+    });
+  }
+
+  /**
+   * The day programs that may contain programs matching a search.
+   */
+  public final class Candidates {
+    private BitSet mIds;
+    private int mIdLimit;
+    private int mCandidatesGeneration;
+
+    private Candidates(BitSet ids, int idLimit, int generation) {
+      mIds = ids;
+      mIdLimit = idLimit;
+      mCandidatesGeneration = generation;
+    }
+
+    /**
+     * Checks whether the day program of the given date and channel
+     * may contain matching programs.
+     *
+     * @param date The date of the day program.
+     * @param channel The channel of the day program.
+     * @return <code>false</code> if the day program contains no matching programs.
+     */
+    public boolean mightContain(Date date, Channel channel) {
+      Integer id = mIdForKey.get(TvDataBase.getDayProgramKey(date, channel));
+
+      if (id == null || id.intValue() >= mIdLimit || mCandidatesGeneration != mGeneration) {
+        // not in the index or changed since the candidates were created
+        mMissCount.incrementAndGet();
+        return true;
+      }
+
+      mHitCount.incrementAndGet();
+
+      if (mIds.get(id.intValue())) {
+        return true;
+      }
+
+      mSkipCount.incrementAndGet();
+      return false;
+    }
+
+    /**
+     * Tells the index that a day program was completely searched,
+     * so it can be added if it is not already in the index.
+     *
+     * @param dayProgram The searched day program.
+     */
+    public void searched(ChannelDayProgram dayProgram) {
+      if (!mIdForKey.containsKey(TvDataBase.getDayProgramKey(dayProgram.getDate(), dayProgram.getChannel()))) {
+        addDayProgram(dayProgram);
+      }
+    }
+  }
+
+  /**
+   * A growable list of ascending ints.
+   */
+  private static class IntList {
+    private int[] mValues;
+    private int mSize;
+
+    IntList() {
+      this(2);
+    }
+
+    IntList(int capacity) {
+      mValues = new int[Math.max(1, capacity)];
+    }
+
+    void add(int value) {
+      if (mSize == mValues.length) {
+        mValues = Arrays.copyOf(mValues, mSize + (mSize >> 1) + 1);
+      }
+
+      mValues[mSize++] = value;
+    }
+
+    int size() {
+      return mSize;
+    }
+
+    void addTo(BitSet set) {
+      for (int i = 0; i < mSize; i++) {
+        set.set(mValues[i]);
+      }
+    }
+
+    /**
+     * Replaces the values with the new ones of the map,
+     * values mapped to -1 are removed.
+     */
+    void map(int[] newValues) {
+      int size = 0;
+
+      for (int i = 0; i < mSize; i++) {
+        int value = newValues[mValues[i]];
+
+        if (value != -1) {
+          mValues[size++] = value;
+        }
+      }
+
+      mSize = size;
+
+      if (mValues.length > mSize * 2) {
+        mValues = Arrays.copyOf(mValues, Math.max(1, mSize));
+      }
+    }
+  }
+}
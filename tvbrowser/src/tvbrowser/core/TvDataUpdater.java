@@ -40,8 +40,19 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -78,6 +89,7 @@ import tvdataservice.MutableChannelDayProgram;
 import tvdataservice.TvDataUpdateManager;
 import util.exc.ErrorHandler;
 import util.io.NetworkUtilities;
+import util.misc.NamedThreadFactory;
 import util.ui.EnhancedPanelBuilder;
 import util.ui.Localizer;
 import util.ui.UIThreadRunner;
@@ -195,6 +207,13 @@ public class TvDataUpdater {
       tvdataDir.mkdir();
     }
 
+    final UpdateTimes times = new UpdateTimes();
+    final long updateStart = System.nanoTime();
+
+    // The day programs are saved by an own thread, so the data services can go on downloading
+    final DayProgramWriter writer = new DayProgramWriter(times);
+    writer.start();
+
     // Create a interactor that translates the database orders
     TvDataUpdateManager updateManager = new TvDataUpdateManager() {
 
@@ -202,16 +221,11 @@ public class TvDataUpdater {
 
       public void updateDayProgram(MutableChannelDayProgram program) {
         mTvDataWasChanged = true;
-        doUpdateDayProgram(program);
-        
-        synchronized (mRecalculatePrograms) {
-          mRecalculatePrograms.add(new ChannelDay(program.getChannel(),program.getDate()));
-          mRecalculatePrograms.add(new ChannelDay(program.getChannel(),program.getDate().addDays(-1)));                 
-        }
+        writer.write(program);
       }
 
       public boolean isDayProgramAvailable(Date date, Channel channel) {
-        return TvDataBase.getInstance().isDayProgramAvailable(date, channel);
+        return writer.isPending(date, channel) || TvDataBase.getInstance().isDayProgramAvailable(date, channel);
       }
 
       public boolean cancelDownload() {
@@ -257,23 +271,41 @@ public class TvDataUpdater {
     ProgressMonitorGroup monitorGroup
       = new ProgressMonitorGroup(progressBar, label, subscribedChannels.length + 1);
 
-    // Work on the job list
-    Throwable downloadException = null;
-    for (int i = 0; (i < jobArr.length) && (!mStopDownloading); i++) {
-      TvDataServiceProxy dataService = jobArr[i].getDataService();
-      Channel[] channelArr = jobArr[i].getChannelList();
-      ProgressMonitor monitor = monitorGroup.getNextProgressMonitor(channelArr.length);
-      try {
-        dataService.updateTvData(updateManager, channelArr, startDate,
-                                 daysToDownload, monitor);
+    // Work on the job list:
+    // the independent data services update at the same time, the data services
+    // that use the data of other data services update after them one by one
+    ArrayList<UpdateJob> parallelJobs = new ArrayList<UpdateJob>();
+    ArrayList<UpdateJob> sequentialJobs = new ArrayList<UpdateJob>();
+    for (UpdateJob job : jobArr) {
+      if (Settings.propConcurrentTvDataUpdate.getBoolean() && !job.getDataService().usesDataOfOtherDataServices()) {
+        parallelJobs.add(job);
       }
-      catch (Throwable thr) {
-        mLog.log(Level.WARNING, "Updating the TV data for TV data service "
-          + dataService.getInfo().getName() + " failed", thr);
+      else {
+        sequentialJobs.add(job);
+      }
+    }
+
+    Throwable downloadException = runUpdateJobsParallel(parallelJobs, updateManager, startDate,
+        daysToDownload, monitorGroup, times);
 
+    for (int i = 0; (i < sequentialJobs.size()) && (!mStopDownloading); i++) {
+      UpdateJob job = sequentialJobs.get(i);
+
+      if (job.getDataService().usesDataOfOtherDataServices()) {
+        // The data of the data services updated before must be in the data base
+        writer.waitUntilWritten();
+      }
+
+      ProgressMonitor monitor = monitorGroup.getNextProgressMonitor(job.getChannelList().length);
+      Throwable thr = runUpdateJob(job, updateManager, startDate, daysToDownload, monitor, times);
+
+      if (thr != null) {
         downloadException = thr;
       }
     }
+
+    // Save the remaining day programs
+    writer.finish();
     
     // Show the exception if there was one
     if (downloadException != null) {
@@ -289,25 +321,9 @@ public class TvDataUpdater {
     ProgressBarProgressMonitor monitor = new ProgressBarProgressMonitor(progressBar, label);
     monitor.setMessage(mLocalizer.msg("calculateEntries","Calculating new entries in the database"));
     
-    synchronized (mRecalculatePrograms) {
-      monitor.setMaximum(mRecalculatePrograms.size());
-    }
-    
-    monitor.setValue(0);
-    
-    int value = 0;
-    
-    synchronized (mRecalculatePrograms) {
-      Iterator<ChannelDay> iterator = mRecalculatePrograms.iterator();
-      
-      while (iterator.hasNext()) {
-        ChannelDay next = iterator.next();
-        monitor.setValue(value++);
-        TvDataBase.getInstance().reCalculateTvData(next.getChannel(), next.getDate());
-      }
-      
-      mRecalculatePrograms.clear();
-    }
+    long recalculationStart = System.nanoTime();
+    recalculateTvData(monitor);
+    times.add("recalculation", System.nanoTime() - recalculationStart);
     
     TvDataBase.getInstance().updateTvDataBase();
     
@@ -329,8 +345,159 @@ public class TvDataUpdater {
 
     // reset flag to avoid unnecessary favorite updates
     mTvDataWasChanged = false;
+
+    times.add("total", System.nanoTime() - updateStart);
+    mLog.info("TV data update times: " + times);
+
     showInfoDialog();
   }
+
+  /**
+   * Runs the update jobs at the same time, one thread for each data service.
+   *
+   * @return The last exception thrown by a data service or <code>null</code>.
+   */
+  private Throwable runUpdateJobsParallel(ArrayList<UpdateJob> jobs, final TvDataUpdateManager updateManager,
+      final Date startDate, final int daysToDownload, ProgressMonitorGroup monitorGroup, final UpdateTimes times) {
+    if (jobs.isEmpty()) {
+      return null;
+    }
+
+    ExecutorService threadPool = Executors.newFixedThreadPool(jobs.size(), new NamedThreadFactory("TV data update"));
+    ArrayList<Future<Throwable>> results = new ArrayList<Future<Throwable>>(jobs.size());
+
+    for (final UpdateJob job : jobs) {
+      final ProgressMonitor monitor = monitorGroup.getParallelProgressMonitor(job.getChannelList().length);
+
+      results.add(threadPool.submit(new Callable<Throwable>() {
+        public Throwable call() {
+          return runUpdateJob(job, updateManager, startDate, daysToDownload, monitor, times);
+        }
+      }));
+    }
+
+    threadPool.shutdown();
+
+    Throwable downloadException = null;
+    for (Future<Throwable> result : results) {
+      try {
+        Throwable thr = result.get();
+
+        if (thr != null) {
+          downloadException = thr;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        mStopDownloading = true;
+      } catch (ExecutionException e) {
+        downloadException = e.getCause();
+      }
+    }
+
+    return downloadException;
+  }
+
+  /**
+   * Updates the data of the channels of one data service.
+   *
+   * @return The exception thrown by the data service or <code>null</code>.
+   */
+  private Throwable runUpdateJob(UpdateJob job, TvDataUpdateManager updateManager, Date startDate,
+      int daysToDownload, ProgressMonitor monitor, UpdateTimes times) {
+    if (mStopDownloading) {
+      return null;
+    }
+
+    TvDataServiceProxy dataService = job.getDataService();
+    long start = System.nanoTime();
+
+    try {
+      dataService.updateTvData(updateManager, job.getChannelList(), startDate,
+                               daysToDownload, monitor);
+      return null;
+    }
+    catch (Throwable thr) {
+      mLog.log(Level.WARNING, "Updating the TV data for TV data service "
+        + dataService.getInfo().getName() + " failed", thr);
+
+      return thr;
+    }
+    finally {
+      times.add("download " + dataService.getInfo().getName(), System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Recalculates the changed day programs. The channels are recalculated at the
+   * same time, the days of one channel one after the other.
+   */
+  private void recalculateTvData(final ProgressMonitor monitor) {
+    HashMap<Channel, ArrayList<Date>> datesForChannel = new HashMap<Channel, ArrayList<Date>>();
+    int count;
+
+    synchronized (mRecalculatePrograms) {
+      count = mRecalculatePrograms.size();
+
+      for (ChannelDay channelDay : mRecalculatePrograms) {
+        ArrayList<Date> dates = datesForChannel.get(channelDay.getChannel());
+
+        if (dates == null) {
+          dates = new ArrayList<Date>();
+          datesForChannel.put(channelDay.getChannel(), dates);
+        }
+
+        dates.add(channelDay.getDate());
+      }
+
+      mRecalculatePrograms.clear();
+    }
+
+    monitor.setMaximum(count);
+    monitor.setValue(0);
+
+    if (datesForChannel.isEmpty()) {
+      return;
+    }
+
+    final AtomicInteger value = new AtomicInteger();
+    ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(datesForChannel.size());
+
+    for (final Map.Entry<Channel, ArrayList<Date>> entry : datesForChannel.entrySet()) {
+      Collections.sort(entry.getValue());
+
+      tasks.add(new Callable<Object>() {
+        public Object call() {
+          for (Date date : entry.getValue()) {
+            TvDataBase.getInstance().reCalculateTvData(entry.getKey(), date);
+            monitor.setValue(value.incrementAndGet());
+          }
+
+          return null;
+        }
+      });
+    }
+
+    int threadCount = 1;
+    if (Settings.propConcurrentTvDataUpdate.getBoolean()) {
+      threadCount = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+    }
+
+    ExecutorService threadPool = Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("Recalculate TV data"));
+
+    try {
+      for (Future<Object> result : threadPool.invokeAll(tasks)) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          mLog.log(Level.WARNING, "Recalculating TV data failed", e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      threadPool.shutdown();
+    }
+  }
   
   private void checkAndUpdateChannelList(ProgressMonitor monitor) {
     final int channelAutoUpdatePeriod = Settings.propAutoChannelUpdatePeriod.getInt();
@@ -611,6 +778,11 @@ public class TvDataUpdater {
 
     // Pass the new ChannelDayProgram to the data base
     TvDataBase.getInstance().setDayProgram(program);
+
+    synchronized (mRecalculatePrograms) {
+      mRecalculatePrograms.add(new ChannelDay(program.getChannel(),program.getDate()));
+      mRecalculatePrograms.add(new ChannelDay(program.getChannel(),program.getDate().addDays(-1)));
+    }
   }
 
   private UpdateJob[] toUpdateJobArr(Channel[] subscribedChannels, TvDataServiceProxy[] services) {
@@ -691,6 +863,170 @@ public class TvDataUpdater {
 
   }
   
+  /**
+   * Saves the downloaded day programs in an own thread.
+   * <p>
+   * The data services add the day programs to a bounded queue, so a fast
+   * download waits for the disk instead of filling the memory.
+   */
+  private class DayProgramWriter extends Thread {
+    private static final int QUEUE_SIZE = 64;
+
+    /** Marks the end of the queue */
+    private final MutableChannelDayProgram mEnd = new MutableChannelDayProgram(new Date(), null);
+
+    private BlockingQueue<MutableChannelDayProgram> mQueue = new ArrayBlockingQueue<MutableChannelDayProgram>(QUEUE_SIZE);
+
+    /**
+     * The number of not yet saved day programs for each channel day,
+     * a channel day may be added again before it is saved.
+     */
+    private HashMap<ChannelDay, Integer> mPending = new HashMap<ChannelDay, Integer>();
+
+    private UpdateTimes mTimes;
+
+    public DayProgramWriter(UpdateTimes times) {
+      super("TV data writer");
+      mTimes = times;
+    }
+
+    /**
+     * Adds a day program to save, waits if the queue is full.
+     */
+    public void write(MutableChannelDayProgram program) {
+      synchronized (mPending) {
+        ChannelDay key = new ChannelDay(program.getChannel(), program.getDate());
+        Integer count = mPending.get(key);
+        mPending.put(key, count != null ? count + 1 : 1);
+      }
+
+      long start = System.nanoTime();
+      put(program);
+      mTimes.add("waiting for writer", System.nanoTime() - start);
+    }
+
+    private void put(MutableChannelDayProgram program) {
+      boolean interrupted = false;
+
+      while (true) {
+        try {
+          mQueue.put(program);
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    public boolean isPending(Date date, Channel channel) {
+      synchronized (mPending) {
+        return mPending.containsKey(new ChannelDay(channel, date));
+      }
+    }
+
+    /**
+     * Waits until all day programs added so far are saved.
+     */
+    public void waitUntilWritten() {
+      synchronized (mPending) {
+        while (!mPending.isEmpty() && isAlive()) {
+          try {
+            mPending.wait(100);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+    }
+
+    /**
+     * Saves the remaining day programs and stops the thread.
+     */
+    public void finish() {
+      put(mEnd);
+
+      try {
+        join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        MutableChannelDayProgram program;
+
+        try {
+          program = mQueue.take();
+        } catch (InterruptedException e) {
+          continue;
+        }
+
+        if (program == mEnd) {
+          break;
+        }
+
+        long start = System.nanoTime();
+
+        try {
+          doUpdateDayProgram(program);
+        } catch (Throwable thr) {
+          mLog.log(Level.WARNING, "Saving day program for " + program.getChannel() + " from "
+              + program.getDate() + " failed", thr);
+        }
+
+        mTimes.add("writing", System.nanoTime() - start);
+
+        synchronized (mPending) {
+          ChannelDay key = new ChannelDay(program.getChannel(), program.getDate());
+          Integer count = mPending.get(key);
+
+          if (count == null || count <= 1) {
+            mPending.remove(key);
+          }
+          else {
+            mPending.put(key, count - 1);
+          }
+
+          mPending.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Sums up the times of the stages of the update.
+   */
+  private static class UpdateTimes {
+    private LinkedHashMap<String, Long> mTimes = new LinkedHashMap<String, Long>();
+
+    public synchronized void add(String stage, long nanos) {
+      Long time = mTimes.get(stage);
+      mTimes.put(stage, time != null ? time + nanos : nanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+      StringBuilder result = new StringBuilder();
+
+      for (Map.Entry<String, Long> entry : mTimes.entrySet()) {
+        if (result.length() > 0) {
+          result.append(", ");
+        }
+
+        result.append(entry.getKey()).append(' ').append(entry.getValue() / 1000000).append(" ms");
+      }
+
+      return result.toString();
+    }
+  }
+
   private class ChannelDay {
     private Date mDate;
     private Channel mChannel;
@@ -0,0 +1,193 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin_oat@yahoo.de)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core.data;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+
+import util.misc.LruCache;
+import devplugin.Date;
+
+/**
+ * The cache for the loaded day programs of the TV data base.
+ * <p>
+ * The day programs are only softly referenced, so the garbage collector
+ * can still free them if the memory runs short. The cache decides in
+ * which order they are dropped: the least recently used day programs
+ * go first, if there are too many or their files are too big in total.
+ * The day programs of the dates shown in the program table are pinned,
+ * so they are only dropped by the garbage collector.
+ *
+ * @since 3.4.5
+ */
+public class DayProgramCache {
+
+  /** The estimated size of a program that is not saved yet */
+  private static final int PROGRAM_SIZE_ESTIMATION = 1024;
+
+  private LruCache<String, CacheReference> mCache;
+
+  /** Gets the references of the day programs freed by the garbage collector */
+  private ReferenceQueue<OnDemandDayProgramFile> mRefQueue = new ReferenceQueue<OnDemandDayProgramFile>();
+
+  private volatile Date mFirstPinnedDate;
+
+  private volatile Date mLastPinnedDate;
+
+  private long mCollectedCount;
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxEntries The maximum number of day programs in the cache.
+   * @param maxBytes The maximum total size of the day programs in the cache.
+   */
+  public DayProgramCache(int maxEntries, long maxBytes) {
+    mCache = new LruCache<String, CacheReference>(maxEntries, maxBytes) {
+      @Override
+      protected long getWeight(String key, CacheReference ref) {
+        return ref.mWeight;
+      }
+
+      @Override
+      protected boolean isPinned(String key, CacheReference ref) {
+        Date firstDate = mFirstPinnedDate;
+        Date lastDate = mLastPinnedDate;
+
+        if (firstDate == null || lastDate == null) {
+          return false;
+        }
+
+        return ref.mDate.compareTo(firstDate) >= 0 && ref.mDate.compareTo(lastDate) <= 0;
+      }
+    };
+  }
+
+  /**
+   * Sets the dates of the day programs that must stay in the cache.
+   *
+   * @param firstDate The first date to keep, <code>null</code> to pin nothing.
+   * @param lastDate The last date to keep.
+   */
+  public void setPinnedDates(Date firstDate, Date lastDate) {
+    mLastPinnedDate = lastDate;
+    mFirstPinnedDate = firstDate;
+  }
+
+  /**
+   * Gets a day program from the cache.
+   *
+   * @param key The key of the day program.
+   * @return The day program or <code>null</code> if it isn't in the cache.
+   */
+  public OnDemandDayProgramFile get(String key) {
+    cleanUp();
+    CacheReference ref = mCache.get(key);
+
+    if (ref != null) {
+      return ref.get();
+    }
+
+    return null;
+  }
+
+  /**
+   * Puts a day program into the cache.
+   *
+   * @param key The key of the day program.
+   * @param progFile The day program.
+   */
+  public void put(String key, OnDemandDayProgramFile progFile) {
+    cleanUp();
+    mCache.put(key, new CacheReference(key, progFile, mRefQueue));
+  }
+
+  /**
+   * Removes a day program from the cache.
+   *
+   * @param key The key of the day program.
+   */
+  public void remove(String key) {
+    cleanUp();
+    mCache.remove(key);
+  }
+
+  /**
+   * Records the time needed to load a day program that was not in the cache.
+   *
+   * @param nanos The load time in nanoseconds.
+   */
+  public void recordLoad(long nanos) {
+    mCache.recordLoad(nanos);
+  }
+
+  /**
+   * Removes the day programs freed by the garbage collector.
+   */
+  private void cleanUp() {
+    CacheReference ref = (CacheReference) mRefQueue.poll();
+
+    while (ref != null) {
+      mCache.remove(ref.mKey, ref);
+
+      synchronized (this) {
+        mCollectedCount++;
+      }
+
+      ref = (CacheReference) mRefQueue.poll();
+    }
+  }
+
+  /**
+   * @return A short description of the size and usage of the cache.
+   */
+  public String getStatistics() {
+    cleanUp();
+
+    synchronized (this) {
+      return mCache.getStatistics() + ", " + mCollectedCount + " freed by the garbage collector";
+    }
+  }
+
+  /**
+   * The soft reference to a cached day program, it keeps the
+   * data needed to weigh and pin the day program after it was freed.
+   */
+  private static final class CacheReference extends SoftReference<OnDemandDayProgramFile> {
+    private String mKey;
+    private Date mDate;
+    private long mWeight;
+
+    private CacheReference(String key, OnDemandDayProgramFile progFile,
+        ReferenceQueue<OnDemandDayProgramFile> queue) {
+      super(progFile, queue);
+      mKey = key;
+      mDate = progFile.getDayProgram().getDate();
+      mWeight = Math.max(progFile.getFileSize(),
+          (long) progFile.getDayProgram().getProgramCount() * PROGRAM_SIZE_ESTIMATION);
+    }
+  }
+}
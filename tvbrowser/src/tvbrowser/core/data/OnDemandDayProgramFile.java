@@ -26,16 +26,23 @@
 package tvbrowser.core.data;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import tvdataservice.MutableChannelDayProgram;
-import util.io.BufferedRandomAccessFile;
+import util.io.ByteBufferDataInput;
+import util.io.IOUtilities;
 import devplugin.Channel;
 import devplugin.Date;
 import devplugin.Program;
@@ -44,16 +51,31 @@ import devplugin.ProgramFieldType;
 /**
  * An encapsulated access on a file containing TV data that allows an access of
  * single data fields on demand.
+ * <p>
+ * Since file format version 3 the file starts with a table that contains the
+ * offsets of all programs. The file is mapped into memory once and shared by
+ * all programs of the day program, so loading a large field on demand is
+ * only a read from the mapped buffer.
  *
  * @author Til Schneider, www.murfman.de
  */
 public class OnDemandDayProgramFile {
 
+  /** The logger for this class. */
+  private static final Logger mLog
+    = Logger.getLogger(OnDemandDayProgramFile.class.getName());
+
   /**
    * The size field data must have to count as large field.
    */
   private static final int LARGE_FIELD_SIZE_LIMIT = 50;
 
+  /** The version of the file format that is written. */
+  private static final int FILE_VERSION = 3;
+
+  /** The version of the format of a single program entry. */
+  private static final int PROGRAM_VERSION = 3;
+
   /** The file to load the data from. */
   private File mFile;
 
@@ -68,6 +90,12 @@ public class OnDemandDayProgramFile {
 
   private boolean mTimeLimitationlData;
 
+  /**
+   * The content of the file, usually mapped into memory.
+   * Only accessed while holding the lock of this instance.
+   */
+  private ByteBuffer mBuffer;
+
   public OnDemandDayProgramFile(File file, Date date, Channel channel) {
     this(file, new MutableChannelDayProgram(date, channel));
   }
@@ -82,12 +110,27 @@ public class OnDemandDayProgramFile {
 
   public synchronized void setValid(boolean valid) {
     mValid = valid;
+
+    if (!valid) {
+      releaseBuffer();
+    }
   }
 
   public MutableChannelDayProgram getDayProgram() {
     return mDayProgram;
   }
 
+  /**
+   * Gets the size of the file of this day program. It is used as an
+   * estimation of the memory needed by the loaded day program.
+   *
+   * @return The size of the file in bytes, 0 if it doesn't exist (yet).
+   * @since 3.4.5
+   */
+  public long getFileSize() {
+    return mFile.length();
+  }
+
   /**
    * Loads the day program for on demand access.
    *
@@ -102,61 +145,115 @@ public class OnDemandDayProgramFile {
 //    System.out.println(mDayProgram.getDate().toString() + " " + mDayProgram.getChannel().getName());
     mTimeLimitationlData = !update;
 
-    BufferedRandomAccessFile dataFile = null;
-    try {
-      dataFile = new BufferedRandomAccessFile(mFile, "rw");
+    ByteBufferDataInput dataFile = getDataInput();
+
+    int version = dataFile.readInt();
 
-      int version = dataFile.readInt();
+    if (version < 2) {
+      releaseBuffer();
+      updateToVersion2();
+      dataFile = getDataInput();
+      version = dataFile.readInt();
 
       if (version < 2) {
-        dataFile.close();
-        updateToVersion2();
-        dataFile = new BufferedRandomAccessFile(mFile, "rw");
-        int ver2 = dataFile.readInt();
-
-        if (ver2 < 2) {
-          mValid = false;
-          checkValid();
-        }
+        mValid = false;
+        checkValid();
       }
+    }
 
-      mDayProgram.setLastProgramHadEndOnUpdate(dataFile.readBoolean());
+    if (version == 2) {
+      // read all programs and write them in the current format
+      readDayProgram(dataFile, version, false);
+      updateToVersion3();
+      dataFile = getDataInput();
+      version = dataFile.readInt();
+    }
 
-      Date date = Date.readData(dataFile);
-      Channel channel = Channel.readData(dataFile, false);
+    if (version != FILE_VERSION) {
+      mValid = false;
+      checkValid();
+    }
 
-      boolean timeLimited = channel.isTimeLimited();
-      int startTimeLimit = channel.getStartTimeLimit();
-      int endTimeLimit = channel.getEndTimeLimit();
+    readDayProgram(dataFile, version, !update);
+  }
 
-      int size = dataFile.readInt();
-      mDayProgram.removeAllPrograms();
+  /**
+   * Reads the day program from the given input.
+   *
+   * @param dataFile The input positioned directly after the file version.
+   * @param version The version of the file.
+   * @param limitTime If the time limitation of the channel should be applied.
+   * @throws IOException
+   * @throws ClassNotFoundException
+   */
+  private void readDayProgram(ByteBufferDataInput dataFile, int version,
+      boolean limitTime) throws IOException, ClassNotFoundException {
+    mDayProgram.setLastProgramHadEndOnUpdate(dataFile.readBoolean());
+
+    Date date = Date.readData(dataFile);
+    Channel channel = Channel.readData(dataFile, false);
+
+    boolean timeLimited = channel.isTimeLimited() && limitTime;
+    int startTimeLimit = channel.getStartTimeLimit();
+    int endTimeLimit = channel.getEndTimeLimit();
+
+    int size = dataFile.readInt();
+
+    int[] offsets = null;
+    if (version >= 3) {
+      offsets = new int[size];
       for (int i = 0; i < size; i++) {
-        Program prog = loadProgram(dataFile, date, channel);
-
-        if (prog != null) {
-          int time = prog.getHours() * 60 + prog.getMinutes();
-          if (timeLimited && !update) {
-            if ((startTimeLimit < endTimeLimit && time >= startTimeLimit && time < endTimeLimit)
-                || (endTimeLimit < startTimeLimit && (time < endTimeLimit || time >= startTimeLimit))) {
-              mDayProgram.addProgram(prog);
-            }
-          }
-          else {
+        offsets[i] = dataFile.readInt();
+      }
+    }
+
+    mDayProgram.removeAllPrograms();
+    for (int i = 0; i < size; i++) {
+      if (offsets != null) {
+        dataFile.seek(offsets[i]);
+      }
+
+      Program prog = loadProgram(dataFile, date, channel);
+
+      if (prog != null) {
+        int time = prog.getHours() * 60 + prog.getMinutes();
+        if (timeLimited) {
+          if ((startTimeLimit < endTimeLimit && time >= startTimeLimit && time < endTimeLimit)
+              || (endTimeLimit < startTimeLimit && (time < endTimeLimit || time >= startTimeLimit))) {
             mDayProgram.addProgram(prog);
           }
-        }else {
-          break;
         }
+        else {
+          mDayProgram.addProgram(prog);
+        }
+      }else {
+        break;
       }
+    }
+  }
+
+  /**
+   * Does an update of the version 2 on demand data file to version 3.
+   * <p>
+   * The programs of the day program must be loaded from the version 2 file
+   * before calling this method.
+   *
+   * @throws IOException
+   *
+   * @since 3.4.5
+   */
+  private void updateToVersion3() throws IOException {
+    File newFile = new File(mFile.getPath() + "_to_ver_3_update");
 
-      dataFile.close();
+    try {
+      saveDayProgram(newFile);
     } finally {
-      if (dataFile != null) {
-        try {
-          dataFile.close();
-        } catch (IOException exc) {}
-      }
+      releaseBuffer();
+    }
+
+    if (!mFile.delete() || !newFile.renameTo(mFile)) {
+      newFile.delete();
+      throw new IOException("Could not replace " + mFile + " with file in version 3.");
     }
   }
 
@@ -187,7 +284,7 @@ public class OnDemandDayProgramFile {
       }
 
       stream.close();
-      saveDayProgram(true);
+      saveDayProgram(new File(mFile.getPath() + "_to_ver_2_update"));
     } finally {
       if (stream != null) {
         try {
@@ -271,62 +368,75 @@ public class OnDemandDayProgramFile {
    * @throws IOException
    */
   public synchronized void saveDayProgram() throws IOException {
-    saveDayProgram(false);
+    saveDayProgram(mFile);
   }
 
-  private void saveDayProgram(final boolean update) throws IOException {
+  private void saveDayProgram(final File target) throws IOException {
     checkValid();
 
     Date date = mDayProgram.getDate();
     Channel channel = mDayProgram.getChannel();
 
-    RandomAccessFile dataFile = null;
-    try {
-      if (update)
-      {
-        dataFile = new RandomAccessFile(mFile + "_to_ver_2_update", "rw");
-      }
-      else
-      {
-        dataFile = new RandomAccessFile(mFile, "rw");
-      }
+    // The file is created in memory first, so the offset table
+    // can be filled before anything is written to disk.
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(0x4000);
+    DataOutputStream out = new DataOutputStream(bytes);
 
-      dataFile.writeInt(2); // version
+    out.writeInt(FILE_VERSION);
 
-      dataFile.writeBoolean(mDayProgram.getLastProgramHadEndOnUpdate());
+    out.writeBoolean(mDayProgram.getLastProgramHadEndOnUpdate());
 
-      date.writeData(dataFile);
-      channel.writeToDataFile(dataFile);
+    date.writeData((DataOutput)out);
+    channel.writeToDataFile(out);
 
-      int programCount = mDayProgram.getProgramCount();
-      dataFile.writeInt(programCount);
-      for (int i = 0; i < programCount; i++) {
-        Program program = mDayProgram.getProgramAt(i);
-        saveProgram(program, dataFile);
-      }
+    int programCount = mDayProgram.getProgramCount();
+    out.writeInt(programCount);
+
+    int tablePosition = out.size();
+    for (int i = 0; i < programCount; i++) {
+      out.writeInt(0); // placeholder for the offset
+    }
 
-      dataFile.close();
+    int[] offsets = new int[programCount];
+    for (int i = 0; i < programCount; i++) {
+      offsets[i] = out.size();
+      Program program = mDayProgram.getProgramAt(i);
+      saveProgram(program, out);
+    }
+
+    out.flush();
+
+    ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+    for (int i = 0; i < programCount; i++) {
+      data.putInt(tablePosition + i * 4, offsets[i]);
+    }
+
+    if (target.equals(mFile)) {
+      releaseBuffer();
+    }
+
+    FileOutputStream fileOut = null;
+    try {
+      fileOut = new FileOutputStream(target);
+      fileOut.write(data.array());
+      fileOut.close();
     } finally {
-      if (dataFile != null) {
-        try {
-          dataFile.close();
-        } catch (final IOException exc) {}
-      }
+      IOUtilities.close(fileOut);
     }
   }
 
   /**
-   * Loads the data from a RandomAccessFile.
+   * Loads the data of a program from the file.
    *
    * @since 2.2
    */
-  private Program loadProgram(RandomAccessFile dataFile, Date date,
+  private Program loadProgram(ByteBufferDataInput dataFile, Date date,
       Channel channel) throws IOException, ClassNotFoundException {
     int version = dataFile.readInt();
 
     OnDemandProgram prog = new OnDemandProgram(channel, date, this);
 
-    if (version == 3) {
+    if (version == PROGRAM_VERSION) {
       int fieldCount = dataFile.readInt();
 
       for (int i = 0; i < fieldCount; i++) {
@@ -336,29 +446,35 @@ public class OnDemandDayProgramFile {
         if (type.getFormat() == ProgramFieldType.UNKNOWN_FORMAT) {
           return null;
         } else if (type.getFormat() == ProgramFieldType.BINARY_FORMAT) {
-          long position = dataFile.getFilePointer();
+          int position = dataFile.getPosition();
 
           int n = dataFile.readInt();
 
-          byte[] value = new byte[n];
-          dataFile.readFully(value);
-
-          if ((value != null) && (n >= LARGE_FIELD_SIZE_LIMIT)) {
+          if (n >= LARGE_FIELD_SIZE_LIMIT) {
+            dataFile.seek(dataFile.getPosition() + n);
             prog.setLargeField(type, position);
           } else {
+            byte[] value = new byte[n];
+            dataFile.readFully(value);
             prog.setBinaryField(type, value);
           }
         } else if (type.getFormat() == ProgramFieldType.TEXT_FORMAT) {
-          long position = dataFile.getFilePointer();
-          String value = dataFile.readUTF();
-          if (value != null) {
-            if (value.length() >= LARGE_FIELD_SIZE_LIMIT) {
-              prog.setLargeField(type, position);
-            }
-            else {
-              if (value.length() > 0) {
-                prog.setTextField(type, value);
-              }
+          int position = dataFile.getPosition();
+
+          // the length of the modified UTF-8 data is always
+          // at least the number of characters
+          int n = dataFile.readUnsignedShort();
+
+          if (n >= LARGE_FIELD_SIZE_LIMIT) {
+            dataFile.seek(dataFile.getPosition() + n);
+            prog.setLargeField(type, position);
+          }
+          else {
+            dataFile.seek(position);
+            String value = dataFile.readUTF();
+
+            if (value.length() > 0) {
+              prog.setTextField(type, value);
             }
           }
         } else if (type.getFormat() == ProgramFieldType.INT_FORMAT) {
@@ -374,8 +490,8 @@ public class OnDemandDayProgramFile {
     return prog;
   }
 
-  private void saveProgram(Program program, RandomAccessFile dataFile) throws IOException {
-    dataFile.writeInt(3); // file version
+  private void saveProgram(Program program, DataOutput dataFile) throws IOException {
+    dataFile.writeInt(PROGRAM_VERSION); // program version
 
     int fieldCount = program.getFieldCount();
     dataFile.writeInt(fieldCount);
@@ -402,34 +518,54 @@ public class OnDemandDayProgramFile {
       throws IOException, ClassNotFoundException {
     checkValid();
 
-    RandomAccessFile dataFile = null;
-    try {
-      dataFile = new RandomAccessFile(mFile, "r");
-      dataFile.seek(position);
-
-      Object value;
+    ByteBufferDataInput dataFile = getDataInput();
+    dataFile.seek((int) position);
 
-      if (type.getFormat() == ProgramFieldType.TEXT_FORMAT) {
-        value = dataFile.readUTF();
-      } else {
-        int n = dataFile.readInt();
+    if (type.getFormat() == ProgramFieldType.TEXT_FORMAT) {
+      return dataFile.readUTF();
+    } else {
+      int n = dataFile.readInt();
 
-        byte[] b = new byte[n];
-        dataFile.readFully(b);
+      byte[] b = new byte[n];
+      dataFile.readFully(b);
 
-        value = b;
-      }
+      return b;
+    }
+  }
 
-      dataFile.close();
+  /**
+   * Gets an input for the content of the file.
+   * <p>
+   * The file is mapped into memory on the first call. If mapping fails
+   * the content of the file is read into memory instead.
+   *
+   * @return The input positioned at the start of the file.
+   * @throws IOException
+   */
+  private ByteBufferDataInput getDataInput() throws IOException {
+    if (mBuffer == null) {
+      try {
+        mBuffer = ByteBufferDataInput.map(mFile);
+      } catch (IOException e) {
+        if (!mFile.isFile()) {
+          throw e;
+        }
 
-      return value;
-    } finally {
-      if (dataFile != null) {
-        try {
-          dataFile.close();
-        } catch (IOException exc) {}
+        mLog.log(Level.FINE, "Mapping of " + mFile + " failed, reading it into memory", e);
+        mBuffer = ByteBuffer.wrap(IOUtilities.getBytesFromFile(mFile));
       }
     }
+
+    return new ByteBufferDataInput(mBuffer);
+  }
+
+  /**
+   * Releases the mapping of the file, so the file can be replaced.
+   */
+  private void releaseBuffer() {
+    ByteBuffer buffer = mBuffer;
+    mBuffer = null;
+    ByteBufferDataInput.unmap(buffer);
   }
 
   /**
@@ -36,10 +36,13 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import tvbrowser.core.ChannelList;
 import tvbrowser.core.Settings;
+import tvbrowser.core.TvDataBase;
+import tvbrowser.core.TvDataBaseListener;
 import tvbrowser.core.filters.filtercomponents.AcceptNoneFilterComponent;
 import tvbrowser.core.filters.filtercomponents.AgeLimitFilterComponent;
 import tvbrowser.core.filters.filtercomponents.BeanShellFilterComponent;
@@ -61,10 +64,12 @@ import tvbrowser.core.filters.filtercomponents.SingleChannelFilterComponent;
 import tvbrowser.core.filters.filtercomponents.SingleTitleFilterComponent;
 import tvbrowser.core.filters.filtercomponents.TimeFilterComponent;
 import tvbrowser.core.plugin.PluginManagerImpl;
+import tvdataservice.MutableChannelDayProgram;
 import util.io.stream.ObjectInputStreamProcessor;
 import util.io.stream.ObjectOutputStreamProcessor;
 import util.io.stream.StreamUtilities;
 import devplugin.Channel;
+import devplugin.ChannelDayProgram;
 import devplugin.PluginAccess;
 import devplugin.PluginsFilterComponent;
 
@@ -76,6 +81,12 @@ public class FilterComponentList {
 
   private static final Logger mLog = Logger.getLogger(FilterComponentList.class.getName());
 
+  /**
+   * Is increased whenever filter components were added, removed or changed
+   * and whenever day programs were added or removed
+   */
+  private static final AtomicInteger mGeneration = new AtomicInteger();
+
   private FilterComponentList() {
     mComponentList = new ArrayList<FilterComponent>();
 
@@ -144,6 +155,25 @@ public class FilterComponentList {
           });
       }
       //updateChannels(ChannelList.getSubscribedChannels());
+      
+      // the filters cache the results for the programs, so they are
+      // outdated when day programs were added or removed
+      TvDataBase.getInstance().addTvDataListener(new TvDataBaseListener() {
+        public void dayProgramAdded(MutableChannelDayProgram prog) {
+        }
+        
+        public void dayProgramAdded(ChannelDayProgram prog) {
+          componentsChanged();
+        }
+        
+        public void dayProgramDeleted(ChannelDayProgram prog) {
+          componentsChanged();
+        }
+        
+        public void dayProgramTouched(ChannelDayProgram removedDayProgram,
+            ChannelDayProgram addedDayProgram) {
+        }
+      });
   }
   
   public ArrayList<SingleChannelFilterComponent> updateChannels(Channel[] channels) {
@@ -184,6 +214,8 @@ public class FilterComponentList {
       mComponentList.remove(remove);
     }
     
+    componentsChanged();
+    
     for(Channel ch : toAdd) {
       SingleChannelFilterComponent test = new SingleChannelFilterComponent(ch);
       
@@ -197,7 +229,31 @@ public class FilterComponentList {
     return chammelNameUpdateList;
   }
   
+  /**
+   * Gets the generation of the filter components, it changes
+   * when filter components were added, removed or changed and when
+   * day programs were added or removed. The filters
+   * use it to know when their cached results are outdated.
+   * 
+   * @return The current generation of the filter components.
+   * @since 3.4.5
+   */
+  public static int getGeneration() {
+    return mGeneration.get();
+  }
+  
+  /**
+   * Marks the cached results of the filters as outdated.
+   * 
+   * @since 3.4.5
+   */
+  static void componentsChanged() {
+    mGeneration.incrementAndGet();
+  }
+  
   public void store() {
+    componentsChanged();
+    
     final HashMap<String,ArrayList<FilterComponent>> filterTable =new HashMap<String,ArrayList<FilterComponent>>();
     
     Iterator<FilterComponent> it = mComponentList.iterator();
@@ -32,23 +32,40 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
+import tvbrowser.core.ChannelList;
 import tvbrowser.core.filters.filtercomponents.AcceptNoneFilterComponent;
+import tvbrowser.core.filters.filtercomponents.AgeLimitFilterComponent;
 import tvbrowser.core.filters.filtercomponents.BeanShellFilterComponent;
 import tvbrowser.core.filters.filtercomponents.ChannelFilterComponent;
+import tvbrowser.core.filters.filtercomponents.DateFilterComponent;
+import tvbrowser.core.filters.filtercomponents.DayFilterComponent;
 import tvbrowser.core.filters.filtercomponents.FavoritesFilterComponent;
+import tvbrowser.core.filters.filtercomponents.KeywordFilterComponent;
+import tvbrowser.core.filters.filtercomponents.MassFilterComponent;
 import tvbrowser.core.filters.filtercomponents.PluginFilterComponent;
+import tvbrowser.core.filters.filtercomponents.ProgramInfoFilterComponent;
+import tvbrowser.core.filters.filtercomponents.ProgramLengthFilterComponent;
 import tvbrowser.core.filters.filtercomponents.ProgramMarkingPriorityFilterComponent;
+import tvbrowser.core.filters.filtercomponents.ProgramRunningFilterComponent;
+import tvbrowser.core.filters.filtercomponents.ProgramTypeFilterComponent;
 import tvbrowser.core.filters.filtercomponents.ReminderFilterComponent;
 import tvbrowser.core.filters.filtercomponents.SingleChannelFilterComponent;
+import tvbrowser.core.filters.filtercomponents.SingleTitleFilterComponent;
+import tvbrowser.core.filters.filtercomponents.TimeFilterComponent;
 import util.exc.ErrorHandler;
 import util.io.stream.ObjectInputStreamProcessor;
 import util.io.stream.ObjectOutputStreamProcessor;
 import util.io.stream.StreamUtilities;
+import util.misc.LruCache;
 import devplugin.Channel;
+import devplugin.Program;
 import devplugin.ProgramFilter;
 
 class Token {
@@ -101,6 +118,13 @@ public class UserFilter implements devplugin.ProgramFilter {
 
   private Node mRoot;
   
+  /** The tree that was compiled for the current filter components */
+  private volatile Node mCompiledRoot;
+  /** The generation of the filter components the tree was compiled for */
+  private volatile int mCompiledGeneration;
+  /** The version of the subscribed channels the tree was compiled for */
+  private volatile int mCompiledChannelVersion;
+  
   public static final String getLabelForBrokenPartially(String label) {
     return "<html><span style=\"color:orange;text-decoration:underline\">"+label+"</span></html>";
   }
@@ -434,10 +458,40 @@ public class UserFilter implements devplugin.ProgramFilter {
   }
 
   public boolean accept(devplugin.Program prog) {
-    if (mRoot == null) {
+    final Node root = mRoot;
+    
+    if (root == null) {
       return false;
     }
-    return mRoot.accept(prog);
+    
+    final int generation = FilterComponentList.getGeneration();
+    final int channelVersion = ChannelList.getSubscribedChannelsSnapshot().getVersion();
+    
+    if (mCompiledRoot != root || mCompiledGeneration != generation
+        || mCompiledChannelVersion != channelVersion) {
+      compile(root, generation, channelVersion);
+    }
+    
+    return root.accept(prog);
+  }
+  
+  /**
+   * Orders the nodes of the tree by their estimated costs and creates new
+   * caches for the results of the filter components. The order of the
+   * nodes of the tree is arbitrary, so the result of the filter is
+   * not changed by this.
+   * <p>
+   * The tree is compiled again if the subscribed channels changed, because
+   * the reloaded channels may have other categories than the cached ones.
+   */
+  private synchronized void compile(Node root, int generation, int channelVersion) {
+    if (mCompiledRoot != root || mCompiledGeneration != generation
+        || mCompiledChannelVersion != channelVersion) {
+      root.compile();
+      mCompiledGeneration = generation;
+      mCompiledChannelVersion = channelVersion;
+      mCompiledRoot = root;
+    }
   }
 
   public void setName(String name) {
@@ -515,6 +569,7 @@ public class UserFilter implements devplugin.ProgramFilter {
   public void updateSingleChannelFilters(Channel[] channels) {
     if(mRoot != null) {
       mRoot.updateChannelFilters(channels);
+      FilterComponentList.componentsChanged();
     }
   }
 
@@ -558,6 +613,15 @@ public class UserFilter implements devplugin.ProgramFilter {
 abstract class Node {
 
   protected HashSet<Node> mNodes;
+  
+  /** The nodes in the order they are checked, <code>null</code> if not compiled */
+  protected Node[] mOrder;
+  
+  /** The estimated cost to check a program */
+  protected double mCost = 1;
+  
+  /** The estimated part of the programs that are accepted */
+  protected double mAcceptRate = 0.5;
 
   public Node() {
     mNodes = new HashSet<Node>();
@@ -572,6 +636,59 @@ abstract class Node {
   }
 
   public abstract boolean accept(devplugin.Program prog);
+  
+  /**
+   * Compiles this node and all sub nodes for the current
+   * state of the filter components.
+   */
+  public void compile() {
+    final Node[] order = mNodes.toArray(new Node[mNodes.size()]);
+    
+    for (Node n : order) {
+      n.compile();
+    }
+    
+    estimate(order);
+    mOrder = order;
+  }
+  
+  /**
+   * Sorts the compiled sub nodes and estimates the cost and
+   * the accept rate of this node.
+   */
+  protected void estimate(Node[] order) {
+  }
+  
+  protected Node[] getOrder() {
+    final Node[] order = mOrder;
+    
+    if (order != null) {
+      return order;
+    }
+    
+    return mNodes.toArray(new Node[mNodes.size()]);
+  }
+  
+  /**
+   * Sorts the nodes, so the nodes that decide the result
+   * most cheaply are checked first.
+   * 
+   * @param nodes The nodes to sort.
+   * @param decidingResult The result of a node that decides the result
+   *        of the parent node, <code>false</code> for an AND node.
+   */
+  protected static void sortByRank(Node[] nodes, final boolean decidingResult) {
+    Arrays.sort(nodes, new Comparator<Node>() {
+      public int compare(Node a, Node b) {
+        return Double.compare(a.getRank(decidingResult), b.getRank(decidingResult));
+      }
+    });
+  }
+  
+  private double getRank(boolean decidingResult) {
+    final double decidingRate = decidingResult ? mAcceptRate : 1 - mAcceptRate;
+    return decidingRate > 0 ? mCost / decidingRate : Double.MAX_VALUE;
+  }
 
   public boolean containsRuleComponent(String compName) {
     Iterator<Node> it = mNodes.iterator();
@@ -629,15 +746,29 @@ class OrNode extends Node {
   }
 
   public boolean accept(devplugin.Program prog) {
-    Iterator<Node> it = mNodes.iterator();
-    while (it.hasNext()) {
-      Node n = it.next();
+    for (Node n : getOrder()) {
       if (n.accept(prog)) {
         return true;
       }
     }
     return false;
   }
+  
+  @Override
+  protected void estimate(Node[] order) {
+    sortByRank(order, true);
+    
+    double cost = 0;
+    double rejectRate = 1;
+    
+    for (Node n : order) {
+      cost += rejectRate * n.mCost;
+      rejectRate *= 1 - n.mAcceptRate;
+    }
+    
+    mCost = cost;
+    mAcceptRate = 1 - rejectRate;
+  }
 
   @Override
   public Node optimize() {
@@ -654,15 +785,29 @@ class AndNode extends Node {
   }
 
   public boolean accept(devplugin.Program prog) {
-    Iterator<Node> it = mNodes.iterator();
-    while (it.hasNext()) {
-      Node n = it.next();
+    for (Node n : getOrder()) {
       if (!n.accept(prog)) {
         return false;
       }
     }
     return true;
   }
+  
+  @Override
+  protected void estimate(Node[] order) {
+    sortByRank(order, false);
+    
+    double cost = 0;
+    double acceptRate = 1;
+    
+    for (Node n : order) {
+      cost += acceptRate * n.mCost;
+      acceptRate *= n.mAcceptRate;
+    }
+    
+    mCost = cost;
+    mAcceptRate = acceptRate;
+  }
 
   @Override
   public Node optimize() {
@@ -687,6 +832,13 @@ class NotNode extends Node {
     return !mNode.accept(prog);
   }
   
+  @Override
+  public void compile() {
+    mNode.compile();
+    mCost = mNode.mCost;
+    mAcceptRate = 1 - mNode.mAcceptRate;
+  }
+  
   @Override
   public boolean isBrokenPartially() {
     return mNode.isBrokenPartially();
@@ -700,14 +852,88 @@ class NotNode extends Node {
 
 class ItemNode extends Node {
   private FilterComponent mRule;
+  
+  /** The cache for the results of the filter component, <code>null</code> if not cached */
+  private volatile ResultCache mCache;
 
   public ItemNode(FilterComponent rule) {
     mRule = rule;
   }
 
   public boolean accept(devplugin.Program prog) {
+    final ResultCache cache = mCache;
+    
+    if (cache != null) {
+      return cache.accept(mRule, prog);
+    }
+    
     return mRule.accept(prog);
   }
+  
+  /**
+   * Estimates the cost and the accept rate by the type of the filter
+   * component and creates a new cache for the results.
+   */
+  @Override
+  public void compile() {
+    ResultCache cache = null;
+    
+    if (mRule instanceof AcceptNoneFilterComponent) {
+      setEstimation(0, 0);
+    }
+    // the result only depends on the channel, so it is looked up for the channel
+    else if (mRule instanceof SingleChannelFilterComponent) {
+      setEstimation(1, 0.05);
+      cache = new ResultCache(ResultCache.BY_CHANNEL);
+    }
+    else if (mRule instanceof ChannelFilterComponent) {
+      setEstimation(1, 0.2);
+      cache = new ResultCache(ResultCache.BY_CHANNEL);
+    }
+    else if (mRule instanceof ProgramTypeFilterComponent) {
+      setEstimation(1, 0.3);
+      cache = new ResultCache(ResultCache.BY_CHANNEL);
+    }
+    // the result only depends on the date
+    else if (mRule instanceof DayFilterComponent) {
+      setEstimation(1, 0.5);
+      cache = new ResultCache(ResultCache.BY_DATE);
+    }
+    else if (mRule instanceof TimeFilterComponent || mRule instanceof DateFilterComponent
+        || mRule instanceof ProgramLengthFilterComponent || mRule instanceof ProgramInfoFilterComponent
+        || mRule instanceof AgeLimitFilterComponent) {
+      setEstimation(2, 0.5);
+    }
+    else if (mRule instanceof ProgramRunningFilterComponent) {
+      setEstimation(3, 0.5);
+    }
+    else if (mRule instanceof ReminderFilterComponent || mRule instanceof FavoritesFilterComponent
+        || mRule instanceof ProgramMarkingPriorityFilterComponent) {
+      setEstimation(5, 0.1);
+    }
+    // the result only depends on the fields of the program
+    else if (mRule instanceof KeywordFilterComponent || mRule instanceof MassFilterComponent) {
+      setEstimation(50, 0.05);
+      cache = new ResultCache(ResultCache.BY_PROGRAM);
+    }
+    else if (mRule instanceof BeanShellFilterComponent) {
+      setEstimation(500, 0.5);
+    }
+    // the result depends on the programs checked before, so it is checked last
+    else if (mRule instanceof SingleTitleFilterComponent) {
+      setEstimation(1000, 0.5);
+    }
+    else {
+      setEstimation(100, 0.5);
+    }
+    
+    mCache = cache;
+  }
+  
+  private void setEstimation(double cost, double acceptRate) {
+    mCost = cost;
+    mAcceptRate = acceptRate;
+  }
 
   public boolean containsRuleComponent(String compName) {
     return (mRule.getName().equalsIgnoreCase(compName));
@@ -769,6 +995,7 @@ class ItemNode extends Node {
       }
       
       if(!found) {
+        mCache = null;
         mRule = new AcceptNoneFilterComponent(mRule.getName());
       }
     }
@@ -777,13 +1004,81 @@ class ItemNode extends Node {
         final SingleChannelFilterComponent component = new SingleChannelFilterComponent(ch);
         
         if(mRule.getName().equals(component.getName())) {
+          mCache = null;
           mRule = component;
           break;
         }
       }
     }
     else if(mRule instanceof ChannelFilterComponent) {
+      mCache = null;
       ((ChannelFilterComponent)mRule).updateAvailableChannels(channels);
     }
   }
+  
+  /**
+   * Caches the results of a filter component for the channel, the date
+   * or the unique ID of the programs.
+   * <p>
+   * The results for the programs are keyed by the unique ID, so the cache
+   * doesn't keep programs of removed day programs in memory. The filter
+   * components list creates new caches when the TV data changes.
+   */
+  private static class ResultCache {
+    static final int BY_CHANNEL = 0;
+    static final int BY_DATE = 1;
+    static final int BY_PROGRAM = 2;
+    
+    /** The maximum number of cached program results */
+    private static final int MAX_PROGRAMS = 50000;
+    
+    private int mType;
+    private ConcurrentHashMap<Object, Boolean> mResults;
+    private LruCache<String, Boolean> mProgramResults;
+    
+    ResultCache(int type) {
+      mType = type;
+      
+      if (type == BY_PROGRAM) {
+        mProgramResults = new LruCache<String, Boolean>(MAX_PROGRAMS, Long.MAX_VALUE);
+      }
+      else {
+        mResults = new ConcurrentHashMap<Object, Boolean>();
+      }
+    }
+    
+    boolean accept(FilterComponent rule, Program prog) {
+      if (mType == BY_PROGRAM) {
+        final String key = prog.getUniqueID();
+        
+        if (key == null) {
+          return rule.accept(prog);
+        }
+        
+        Boolean result = mProgramResults.get(key);
+        
+        if (result == null) {
+          result = rule.accept(prog);
+          mProgramResults.put(key, result);
+        }
+        
+        return result;
+      }
+      
+      final Object key = mType == BY_CHANNEL ? prog.getChannel() : prog.getDate();
+      
+      if (key == null) {
+        return rule.accept(prog);
+      }
+      
+      Boolean result = mResults.get(key);
+      
+      if (result == null) {
+        result = rule.accept(prog);
+        mResults.put(key, result);
+      }
+      
+      return result;
+    }
+  }
 }
@@ -29,12 +29,16 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.swing.JButton;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 
+import tvbrowser.core.filters.FilterComponentList;
+import tvbrowser.core.search.AbstractSearcher;
+import tvbrowser.core.search.MultiSearcherMatcher;
 import util.exc.TvBrowserException;
 import util.ui.LineNumberHeader;
 import util.ui.SearchFormSettings;
@@ -44,6 +48,7 @@ import com.jgoodies.forms.factories.CC;
 import com.jgoodies.forms.layout.FormLayout;
 
 import devplugin.Program;
+import devplugin.ProgramFieldType;
 import devplugin.ProgramSearcher;
 
 /**
@@ -63,6 +68,14 @@ public class MassFilterComponent extends AbstractFilterComponent {
 
   private ProgramSearcher[] mSearcher;
 
+  /** Finds the searchers that may match a program */
+  private MultiSearcherMatcher<ProgramSearcher> mMatcher;
+
+  /** The generation of the filter components the cached texts of the matcher belong to */
+  private int mMatcherGeneration;
+
+  private ProgramFieldType[] mFieldTypes;
+
   private JTextArea mTextInput;
 
   private JPanel mSettingsPanel;
@@ -107,18 +120,52 @@ public class MassFilterComponent extends AbstractFilterComponent {
     return mSearcher;
   }
 
+  /**
+   * Compiles the required terms of all searchers into one matcher,
+   * so every program is checked only once for all lines. The cached
+   * texts of the matcher are removed when the TV data has changed.
+   */
+  private synchronized MultiSearcherMatcher<ProgramSearcher> getMatcher() {
+    int generation = FilterComponentList.getGeneration();
+
+    if (mMatcher != null && mMatcherGeneration != generation) {
+      mMatcher.clearTextCaches();
+    }
+
+    mMatcherGeneration = generation;
+
+    if (mMatcher == null) {
+      ProgramSearcher[] searchers = getSearcher();
+      ProgramFieldType[] fieldTypes = mSearchFormSettings.getFieldTypes();
+
+      ArrayList<ProgramFieldType[]> fieldArrs = new ArrayList<ProgramFieldType[]>(searchers.length);
+      ArrayList<String[]> termArrs = new ArrayList<String[]>(searchers.length);
+
+      for (ProgramSearcher searcher : searchers) {
+        fieldArrs.add(fieldTypes);
+        termArrs.add(searcher instanceof AbstractSearcher ? ((AbstractSearcher) searcher).getRequiredTerms() : null);
+      }
+
+      mFieldTypes = fieldTypes;
+      mMatcher = new MultiSearcherMatcher<ProgramSearcher>(Arrays.asList(searchers), fieldArrs, termArrs, true);
+    }
+
+    return mMatcher;
+  }
+
   public int getVersion() {
     return 1;
   }
 
   public boolean accept(final Program program) {
-    if (getSearcher() != null) {
-      for (ProgramSearcher searcher : getSearcher()) {
-        if (searcher.matches(program, mSearchFormSettings.getFieldTypes())) {
-          return true;
-        }
+    MultiSearcherMatcher<ProgramSearcher> matcher = getMatcher();
+
+    for (ProgramSearcher searcher : matcher.getCandidates(program)) {
+      if (searcher.matches(program, mFieldTypes)) {
+        return true;
       }
     }
+
     return false;
   }
 
@@ -127,6 +174,7 @@ public class MassFilterComponent extends AbstractFilterComponent {
     mText = (String) in.readObject();
     mSearchFormSettings = new SearchFormSettings(in);
     mSearcher = null;
+    mMatcher = null;
   }
 
   public void write(ObjectOutputStream out) throws IOException {
@@ -181,6 +229,7 @@ public class MassFilterComponent extends AbstractFilterComponent {
     mText = mTextInput.getText();
     mSearchFormSettings = mNewSearchFormSettings;
     mSearcher = null;
+    mMatcher = null;
   }
 
   @Override
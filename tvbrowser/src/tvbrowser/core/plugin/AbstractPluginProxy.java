@@ -469,6 +469,69 @@ public abstract class AbstractPluginProxy implements PluginProxy, ContextMenuIf
    */
   protected abstract Icon[] doGetProgramTableIcons(Program program);
 
+  /**
+   * Gets if the program table icons of this plugin should be loaded in the
+   * background for several programs at once.
+   *
+   * @return <code>true</code> if the icons should be loaded at once.
+   * @see #getProgramTableIcons(Program[])
+   * @since 3.4.5
+   */
+  public final boolean isProvidingProgramTableIconsAtOnce() {
+    try {
+      return doIsProvidingProgramTableIconsAtOnce();
+    } catch (Throwable t) {
+      handlePluginException(t);
+    }
+    
+    return false;
+  }
+
+  /**
+   * Gets if the program table icons of this plugin should be loaded in the
+   * background for several programs at once.
+   *
+   * @return <code>true</code> if the icons should be loaded at once.
+   * @since 3.4.5
+   */
+  protected boolean doIsProvidingProgramTableIconsAtOnce() {
+    return false;
+  }
+
+  /**
+   * Gets the icons this Plugin provides for several programs at once.
+   *
+   * @param programs The programs to get the icons for.
+   * @return The icons for the programs at the index of the program.
+   * @since 3.4.5
+   */
+  public final Icon[][] getProgramTableIcons(Program[] programs) {
+    try {
+      assertActivatedState();
+      return doGetProgramTableIcons(programs);
+    } catch (Throwable t) {
+      handlePluginException(t);
+      return null;
+    }
+  }
+
+  /**
+   * Really gets the icons this Plugin provides for several programs at once.
+   *
+   * @param programs The programs to get the icons for.
+   * @return The icons for the programs at the index of the program.
+   * @since 3.4.5
+   */
+  protected Icon[][] doGetProgramTableIcons(Program[] programs) {
+    Icon[][] icons = new Icon[programs.length][];
+    
+    for(int i = 0; i < programs.length; i++) {
+      icons[i] = doGetProgramTableIcons(programs[i]);
+    }
+    
+    return icons;
+  }
+
   /**
    * This method is automatically called, when the TV data update is finished.
    *
@@ -626,6 +689,65 @@ public abstract class AbstractPluginProxy implements PluginProxy, ContextMenuIf
    */
   protected abstract void doHandleTvDataTouched(ChannelDayProgram removedDayProgram, ChannelDayProgram addedDayProgram);
 
+  /**
+   * Gets if the plugin wants to get all the TV data touched by a data update at once.
+   *
+   * @return <code>true</code> if the touched data should be given at once.
+   * @see #handleTvDataTouched(ChannelDayProgram[], ChannelDayProgram[])
+   * @since 3.4.5
+   */
+  public final boolean isHandlingTvDataTouchedAtOnce() {
+    try {
+      return doIsHandlingTvDataTouchedAtOnce();
+    } catch (Throwable t) {
+      handlePluginException(t);
+    }
+    
+    return false;
+  }
+
+  /**
+   * Gets if the plugin wants to get all the TV data touched by a data update at once.
+   *
+   * @return <code>true</code> if the touched data should be given at once.
+   * @since 3.4.5
+   */
+  protected boolean doIsHandlingTvDataTouchedAtOnce() {
+    return false;
+  }
+
+  /**
+   * This method is automatically called at the end of a data update with all
+   * day programs that were touched by the update, if
+   * {@link #isHandlingTvDataTouchedAtOnce()} returns <code>true</code>.
+   *
+   * @param removedDayPrograms The old ChannelDayPrograms.
+   * @param addedDayPrograms The new ChannelDayPrograms.
+   * @since 3.4.5
+   */
+  public final void handleTvDataTouched(ChannelDayProgram[] removedDayPrograms, ChannelDayProgram[] addedDayPrograms) {
+    try {
+      assertActivatedState();
+      doHandleTvDataTouched(removedDayPrograms, addedDayPrograms);
+    } catch (Throwable t) {
+      handlePluginException(t);
+    }
+  }
+
+  /**
+   * This method is automatically called at the end of a data update with all
+   * day programs that were touched by the update.
+   *
+   * @param removedDayPrograms The old ChannelDayPrograms.
+   * @param addedDayPrograms The new ChannelDayPrograms.
+   * @since 3.4.5
+   */
+  protected void doHandleTvDataTouched(ChannelDayProgram[] removedDayPrograms, ChannelDayProgram[] addedDayPrograms) {
+    for(int i = 0; i < removedDayPrograms.length; i++) {
+      doHandleTvDataTouched(removedDayPrograms[i], addedDayPrograms[i]);
+    }
+  }
+
 
 
   public void onActivation() {
@@ -478,6 +478,40 @@ public class JavaPluginProxy extends AbstractPluginProxy {
     return null;
   }
 
+  @Override
+  protected boolean doIsProvidingProgramTableIconsAtOnce() {
+    return mPlugin.isProvidingProgramTableIconsAtOnce();
+  }
+
+  @Override
+  protected Icon[][] doGetProgramTableIcons(Program[] programs) {
+    ArrayList<Program> allowed = new ArrayList<Program>(programs.length);
+    
+    for(Program program : programs) {
+      if(program != null && !accessControl(program.getChannel())) {
+        allowed.add(program);
+      }
+    }
+    
+    Icon[][] icons = new Icon[programs.length][];
+    
+    if(!allowed.isEmpty()) {
+      Icon[][] allowedIcons = mPlugin.getProgramTableIcons(allowed.toArray(new Program[allowed.size()]));
+      
+      if(allowedIcons != null) {
+        int index = 0;
+        
+        for(int i = 0; i < programs.length && index < allowedIcons.length; i++) {
+          if(programs[i] != null && programs[i] == allowed.get(index)) {
+            icons[i] = allowedIcons[index++];
+          }
+        }
+      }
+    }
+    
+    return icons;
+  }
+
 
   /**
    * This method is automatically called, when the TV data update is finished.
@@ -720,6 +754,35 @@ public class JavaPluginProxy extends AbstractPluginProxy {
     }
   }
 
+  @Override
+  protected boolean doIsHandlingTvDataTouchedAtOnce() {
+    return mPlugin.isHandlingTvDataTouchedAtOnce();
+  }
+
+  @Override
+  protected void doHandleTvDataTouched(ChannelDayProgram[] removedDayPrograms,
+      ChannelDayProgram[] addedDayPrograms) {
+    ArrayList<ChannelDayProgram> removedList = new ArrayList<ChannelDayProgram>(removedDayPrograms.length);
+    ArrayList<ChannelDayProgram> addedList = new ArrayList<ChannelDayProgram>(addedDayPrograms.length);
+    
+    for(int i = 0; i < removedDayPrograms.length; i++) {
+      ChannelDayProgram removedDayProgram = removedDayPrograms[i];
+      ChannelDayProgram addedDayProgram = addedDayPrograms[i];
+      
+      if((removedDayProgram != null && !accessControl(removedDayProgram.getChannel())) || 
+          (addedDayProgram != null && !accessControl(addedDayProgram.getChannel())) ||
+          (removedDayProgram == null && addedDayProgram == null)) {
+        removedList.add(removedDayProgram);
+        addedList.add(addedDayProgram);
+      }
+    }
+    
+    if(!removedList.isEmpty()) {
+      mPlugin.handleTvDataTouched(removedList.toArray(new ChannelDayProgram[removedList.size()]),
+          addedList.toArray(new ChannelDayProgram[addedList.size()]));
+    }
+  }
+
   @Override
   protected ImportanceValue doGetImportanceValueForProgram(Program p) {
     UserFilter filter = GenericFilterMap.getInstance().getGenericPluginFilter(this, true);
@@ -0,0 +1,390 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin_oat@yahoo.de)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core.plugin;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import util.misc.NamedThreadFactory;
+import devplugin.ChannelDayProgram;
+
+/**
+ * The queue of the events for one plugin.
+ * <p>
+ * Every plugin handles its events one after another in the order they were
+ * added, but independent of the other plugins, so a slow plugin doesn't delay
+ * the others. The queue is processed by a thread of a shared pool while it
+ * contains events.
+ * <p>
+ * A data event for a channel day is merged into the previous event of the
+ * same kind for this day, if that event is still waiting and no other
+ * event for the day or any other kind of event was added after it.
+ *
+ * @since 3.4.5
+ */
+class PluginEventQueue {
+  private static final Logger mLog = Logger.getLogger(PluginEventQueue.class.getName());
+
+  /** The number of waiting events from which adding of events waits for the plugin */
+  private static final int CAPACITY = 10000;
+
+  /** The maximum time to wait for free space in the queue */
+  private static final long MAX_WAIT_MILLIS = 10000;
+
+  /** The names of the kinds of data events */
+  private static final String[] TYPE_NAMES = {"handleTvDataAdded", "handleTvDataDeleted", "handleTvDataTouched"};
+
+  private static ExecutorService mExecutor;
+
+  private final AbstractPluginProxy mPlugin;
+
+  private final LinkedList<Event> mEvents = new LinkedList<Event>();
+
+  /** The last added data event for every channel day */
+  private final HashMap<String, DataEvent> mLastDataEvents = new HashMap<String, DataEvent>();
+
+  /** The touched data that is collected to be given at once to the plugin */
+  private final LinkedHashMap<String, ChannelDayProgram[]> mTouchedBatch = new LinkedHashMap<String, ChannelDayProgram[]>();
+
+  private boolean mWorking;
+
+  private long mAddedCount;
+  private long mCoalescedCount;
+  private long mHandledCount;
+  private long mHandlingNanos;
+  private long mMaxHandlingNanos;
+  private int mMaxDepth;
+
+  PluginEventQueue(final AbstractPluginProxy plugin) {
+    mPlugin = plugin;
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (mExecutor == null) {
+      mExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("Plugin events"));
+    }
+
+    return mExecutor;
+  }
+
+  /**
+   * Adds an event that runs the given task.
+   *
+   * @param name The name of the event.
+   * @param task The task to run for the plugin.
+   */
+  void add(final String name, final Runnable task) {
+    add(new Event(name) {
+      @Override
+      void handle() {
+        task.run();
+      }
+    });
+  }
+
+  /**
+   * Adds the event for added TV data.
+   *
+   * @param dayProgram The added day program.
+   */
+  void addDataAdded(final ChannelDayProgram dayProgram) {
+    add(new DataEvent(DataEvent.ADDED, getKey(dayProgram, null), null, dayProgram));
+  }
+
+  /**
+   * Adds the event for deleted TV data.
+   *
+   * @param dayProgram The deleted day program.
+   */
+  void addDataDeleted(final ChannelDayProgram dayProgram) {
+    add(new DataEvent(DataEvent.DELETED, getKey(dayProgram, null), dayProgram, null));
+  }
+
+  /**
+   * Adds the event for touched TV data.
+   *
+   * @param removedDayProgram The removed day program.
+   * @param addedDayProgram The added day program.
+   * @param collect If the data should be collected until {@link #flushTouchedData()}
+   *        to give it at once to the plugin.
+   */
+  void addDataTouched(final ChannelDayProgram removedDayProgram, final ChannelDayProgram addedDayProgram, final boolean collect) {
+    final String key = getKey(removedDayProgram, addedDayProgram);
+
+    if (collect && key != null) {
+      synchronized (this) {
+        mAddedCount++;
+        final ChannelDayProgram[] touched = mTouchedBatch.get(key);
+
+        if (touched == null) {
+          mTouchedBatch.put(key, new ChannelDayProgram[] {removedDayProgram, addedDayProgram});
+        }
+        else {
+          // the first removed day program stays, the last added is used
+          touched[1] = addedDayProgram;
+          mCoalescedCount++;
+        }
+      }
+    }
+    else {
+      add(new DataEvent(DataEvent.TOUCHED, key, removedDayProgram, addedDayProgram));
+    }
+  }
+
+  /**
+   * Adds the collected touched TV data as one event.
+   */
+  void flushTouchedData() {
+    final ChannelDayProgram[] removed;
+    final ChannelDayProgram[] added;
+
+    synchronized (this) {
+      if (mTouchedBatch.isEmpty()) {
+        return;
+      }
+
+      removed = new ChannelDayProgram[mTouchedBatch.size()];
+      added = new ChannelDayProgram[mTouchedBatch.size()];
+
+      int i = 0;
+      for (ChannelDayProgram[] touched : mTouchedBatch.values()) {
+        removed[i] = touched[0];
+        added[i++] = touched[1];
+      }
+
+      mTouchedBatch.clear();
+    }
+
+    add(new Event("handleTvDataTouched for " + removed.length + " day programs") {
+      @Override
+      void handle() {
+        mPlugin.handleTvDataTouched(removed, added);
+      }
+    });
+  }
+
+  private static String getKey(final ChannelDayProgram dayProgram, final ChannelDayProgram alternative) {
+    final ChannelDayProgram keyProgram = dayProgram != null ? dayProgram : alternative;
+
+    if (keyProgram == null || keyProgram.getChannel() == null || keyProgram.getDate() == null) {
+      return null;
+    }
+
+    return keyProgram.getChannel().getUniqueId() + "_" + keyProgram.getDate().getValue();
+  }
+
+  private void add(final Event event) {
+    boolean start = false;
+
+    synchronized (this) {
+      mAddedCount++;
+
+      if (event instanceof DataEvent && ((DataEvent) event).mKey != null) {
+        final DataEvent dataEvent = (DataEvent) event;
+        final DataEvent last = mLastDataEvents.get(dataEvent.mKey);
+
+        if (last != null && last.merge(dataEvent)) {
+          mCoalescedCount++;
+          return;
+        }
+
+        mLastDataEvents.put(dataEvent.mKey, dataEvent);
+      }
+      else {
+        // other events may depend on the previous data events, so they are not merged any more
+        mLastDataEvents.clear();
+      }
+
+      waitForSpace();
+
+      mEvents.add(event);
+      mMaxDepth = Math.max(mMaxDepth, mEvents.size());
+
+      if (!mWorking) {
+        mWorking = true;
+        start = true;
+      }
+    }
+
+    if (start) {
+      getExecutor().execute(new Runnable() {
+        public void run() {
+          work();
+        }
+      });
+    }
+  }
+
+  /**
+   * Waits until the queue has space again, but not in the event dispatch
+   * thread and not longer than {@link #MAX_WAIT_MILLIS}.
+   */
+  private void waitForSpace() {
+    if (mEvents.size() < CAPACITY || SwingUtilities.isEventDispatchThread()) {
+      return;
+    }
+
+    final long end = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+    long wait = MAX_WAIT_MILLIS;
+
+    while (mEvents.size() >= CAPACITY && wait > 0) {
+      try {
+        wait(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+
+      wait = end - System.currentTimeMillis();
+    }
+
+    if (mEvents.size() >= CAPACITY) {
+      mLog.warning("Event queue of plugin '" + mPlugin.getId() + "' is full with " + mEvents.size() + " events.");
+    }
+  }
+
+  private void work() {
+    while (true) {
+      final Event event;
+
+      synchronized (this) {
+        event = mEvents.poll();
+
+        if (event == null) {
+          mWorking = false;
+          return;
+        }
+
+        if (event instanceof DataEvent && mLastDataEvents.get(((DataEvent) event).mKey) == event) {
+          mLastDataEvents.remove(((DataEvent) event).mKey);
+        }
+
+        notifyAll();
+      }
+
+      final long start = System.nanoTime();
+
+      if (mPlugin.isActivated()) {
+        try {
+          event.handle();
+        } catch (Throwable t) {
+          /* Catch all possible not catched errors that occur in the plugin method*/
+          mLog.log(Level.WARNING, "A not catched error occured in '" + event.mName + "' of Plugin '" + mPlugin + "'.", t);
+        }
+      }
+
+      final long duration = System.nanoTime() - start;
+
+      synchronized (this) {
+        mHandledCount++;
+        mHandlingNanos += duration;
+        mMaxHandlingNanos = Math.max(mMaxHandlingNanos, duration);
+      }
+    }
+  }
+
+  /**
+   * @return The number of events that wait to be handled.
+   */
+  synchronized int getDepth() {
+    return mEvents.size();
+  }
+
+  /**
+   * @return The statistics of this queue.
+   */
+  synchronized String getStatistics() {
+    final long averageMicros = mHandledCount > 0 ? mHandlingNanos / mHandledCount / 1000 : 0;
+
+    return "queued: " + mEvents.size() + " (max " + mMaxDepth + "), events: " + mAddedCount
+        + ", coalesced: " + mCoalescedCount + ", handled: " + mHandledCount
+        + ", average: " + (averageMicros / 1000.0) + " ms, max: " + (mMaxHandlingNanos / 1000000) + " ms";
+  }
+
+  private abstract static class Event {
+    private final String mName;
+
+    Event(final String name) {
+      mName = name;
+    }
+
+    abstract void handle();
+  }
+
+  private class DataEvent extends Event {
+    private static final int ADDED = 0;
+    private static final int DELETED = 1;
+    private static final int TOUCHED = 2;
+
+    private final int mType;
+    private final String mKey;
+    private ChannelDayProgram mRemovedDayProgram;
+    private ChannelDayProgram mAddedDayProgram;
+
+    DataEvent(final int type, final String key, final ChannelDayProgram removedDayProgram, final ChannelDayProgram addedDayProgram) {
+      super(TYPE_NAMES[type] + (key != null ? " for " + key : ""));
+      mType = type;
+      mKey = key;
+      mRemovedDayProgram = removedDayProgram;
+      mAddedDayProgram = addedDayProgram;
+    }
+
+    /**
+     * Merges the given later event of the same channel day into this one.
+     *
+     * @return <code>true</code> if the event was merged.
+     */
+    private boolean merge(final DataEvent event) {
+      if (event.mType != mType) {
+        return false;
+      }
+
+      switch (mType) {
+        case ADDED: mAddedDayProgram = event.mAddedDayProgram; break;
+        case DELETED: mRemovedDayProgram = event.mRemovedDayProgram; break;
+        default: mAddedDayProgram = event.mAddedDayProgram;
+      }
+
+      return true;
+    }
+
+    @Override
+    void handle() {
+      switch (mType) {
+        case ADDED: mPlugin.handleTvDataAdded(mAddedDayProgram); break;
+        case DELETED: mPlugin.handleTvDataDeleted(mRemovedDayProgram); break;
+        default: mPlugin.handleTvDataTouched(mRemovedDayProgram, mAddedDayProgram);
+      }
+    }
+  }
+}
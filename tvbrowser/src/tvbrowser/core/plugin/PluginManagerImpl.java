@@ -28,12 +28,11 @@ package tvbrowser.core.plugin;
 import java.awt.Color;
 import java.awt.TrayIcon.MessageType;
 import java.awt.event.ActionEvent;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.TimeZone;
 import java.util.logging.Logger;
@@ -236,74 +235,98 @@ public class PluginManagerImpl implements PluginManager {
   }
   
   private ChannelDayProgram getDayProgram(Date date, String progID, Channel ch) {
-    TvDataBase db = TvDataBase.getInstance();
-    
     if (ch != null && ChannelList.isSubscribedChannel(ch)) {
-      int index = progID.lastIndexOf('_');
-      String timeString = progID.substring(index + 1);
-      int hourIndex = timeString.indexOf(':');
-      int offsetIndex = timeString.lastIndexOf(':');
-
-      if(hourIndex != offsetIndex) {
-        int timeZoneOffset = Integer.parseInt(timeString.substring(offsetIndex + 1));
-        int currentTimeZoneOffset = TimeZone.getDefault().getRawOffset()/60000;
-        
-        if(timeZoneOffset != currentTimeZoneOffset) {
-          String[] hourMinute = timeString.split(":");
-          int timeZoneDiff = currentTimeZoneOffset - timeZoneOffset;
-          
-          int hour = Integer.parseInt(hourMinute[0]) + (timeZoneDiff/60);
-          int minute = Integer.parseInt(hourMinute[1]) + (timeZoneDiff%60);
-          
-          if(hour >= 24) {
-            hour -= 24;
-            date = date.addDays(1);
-          }
-          else if(hour < 0) {
-            hour += 24;
-            date = date.addDays(-1);
-          }
-          
-          hourMinute[0] = String.valueOf(hour);
-          hourMinute[1] = String.valueOf(minute);
-          hourMinute[2] = String.valueOf(currentTimeZoneOffset);
-          
-          StringBuilder newId = new StringBuilder(progID.substring(0, index + 1));
-          newId.append(hourMinute[0]).append(":").append(hourMinute[1]).append(":").append(hourMinute[2]);
-          
-          progID = newId.toString();
+      return TvDataBase.getInstance().getDayProgram(getDayProgramDate(date, progID, ch), ch);
+    }else{
+      mLog.warning("channel for program '"+progID+"' not found or not a subscribed channel");
+    }
+
+    return null;
+  }
+
+  /**
+   * Gets the date of the day program that contains the program with the
+   * given ID, the program may be contained in the day program of the day
+   * before or after if the ID was created in another time zone or the
+   * channel is in another time zone.
+   *
+   * @param date The date of the program.
+   * @param progID The ID of the program.
+   * @param ch The channel of the program.
+   * @return The date of the day program.
+   */
+  private Date getDayProgramDate(Date date, String progID, Channel ch) {
+    int index = progID.lastIndexOf('_');
+    int hourIndex = progID.indexOf(':', index + 1);
+    int offsetIndex = progID.lastIndexOf(':');
+
+    int hours = parseNumber(progID, index + 1, hourIndex);
+    int minutes = parseNumber(progID, hourIndex + 1, hourIndex != offsetIndex ? offsetIndex : progID.length());
+    int currentTimeZoneOffset = TimeZone.getDefault().getRawOffset();
+
+    if(hourIndex != offsetIndex) {
+      int timeZoneOffset = parseNumber(progID, offsetIndex + 1, progID.length());
+
+      if(timeZoneOffset != currentTimeZoneOffset/60000) {
+        int hour = hours + ((currentTimeZoneOffset/60000 - timeZoneOffset)/60);
+
+        if(hour >= 24) {
+          date = date.addDays(1);
+        }
+        else if(hour < 0) {
+          date = date.addDays(-1);
         }
       }
-      else {
-        String[] hourMinute = timeString.split(":");
-        StringBuilder newId = new StringBuilder(progID.substring(0, index + 1));
-        newId.append(hourMinute[0]).append(":").append(hourMinute[1]).append(":").append(TimeZone.getDefault().getRawOffset()/60000);
-        
-        progID = newId.toString();
-      }
-      
-      if(ch.getTimeZone().getRawOffset() != TimeZone.getDefault().getRawOffset()) {
-        String[] hourMinute = timeString.split(":");
-        int milliSeconds = Integer.parseInt(hourMinute[0]) * 60 * 60 * 1000 + Integer.parseInt(hourMinute[1]) * 60 * 1000;
+    }
 
-        int diff = Math.abs(ch.getTimeZone().getRawOffset() - TimeZone.getDefault().getRawOffset());
-        
-        if(ch.getTimeZone().getRawOffset() < TimeZone.getDefault().getRawOffset()) {
-          if(milliSeconds < diff) {
-            date = date.addDays(-1);
-          }
-        }
-        else if(milliSeconds + diff >= 86400 * 1000) {
-          date = date.addDays(1);
+    if(ch.getTimeZone().getRawOffset() != currentTimeZoneOffset) {
+      int milliSeconds = hours * 60 * 60 * 1000 + minutes * 60 * 1000;
+
+      int diff = Math.abs(ch.getTimeZone().getRawOffset() - currentTimeZoneOffset);
+
+      if(ch.getTimeZone().getRawOffset() < currentTimeZoneOffset) {
+        if(milliSeconds < diff) {
+          date = date.addDays(-1);
         }
       }
-      
-      return db.getDayProgram(date, ch);
-    }else{
-      mLog.warning("channel for program '"+progID+"' not found or not a subscribed channel");
+      else if(milliSeconds + diff >= 86400 * 1000) {
+        date = date.addDays(1);
+      }
     }
 
-    return null;
+    return date;
+  }
+
+  /**
+   * Parses a number in a part of a String without creating a new String.
+   *
+   * @param value The String with the number.
+   * @param start The index of the first character of the number.
+   * @param end The index after the last character of the number.
+   * @return The number.
+   * @throws NumberFormatException If the part is not a number.
+   */
+  private static int parseNumber(String value, int start, int end) {
+    boolean negative = start < end && value.charAt(start) == '-';
+    int i = negative ? start + 1 : start;
+
+    if(i >= end) {
+      throw new NumberFormatException("No number in " + value);
+    }
+
+    int number = 0;
+
+    for(; i < end; i++) {
+      char c = value.charAt(i);
+
+      if(c < '0' || c > '9') {
+        throw new NumberFormatException("No number in " + value);
+      }
+
+      number = number * 10 + (c - '0');
+    }
+
+    return negative ? -number : number;
   }
 
   /**
@@ -341,35 +364,114 @@ public class PluginManagerImpl implements PluginManager {
     if(uniqueID != null && uniqueID.trim().length() > 0) {
       Object[] values = getDateAndProgIDforUniqueID(uniqueID);
       
-      return getProgram((Date)values[0], (String)values[1]);
+      if(values != null) {
+        return getProgram((Date)values[0], (String)values[1]);
+      }
     }
     
     return null;
   }
 
-  private Object[] getDateAndProgIDforUniqueID(String uniqueID) {
-    String[] id = uniqueID.split("_");
+  /**
+   * Gets the date and the ID of the program from the unique ID
+   * <code>channelId_yyyy-MM-dd_time</code> of a program.
+   *
+   * @param uniqueID The unique ID of the program.
+   * @return The date and the program ID or <code>null</code> if the unique ID is invalid.
+   */
+  static Object[] getDateAndProgIDforUniqueID(String uniqueID) {
+    int timeIndex = uniqueID.lastIndexOf('_');
+    int dateIndex = timeIndex > 0 ? uniqueID.lastIndexOf('_', timeIndex - 1) : -1;
+
+    // the date has the format MutableProgram.ID_DATE_FORMAT
+    if(dateIndex < 0 || timeIndex - dateIndex != 11 || uniqueID.charAt(dateIndex + 5) != '-'
+        || uniqueID.charAt(dateIndex + 8) != '-') {
+      mLog.severe("Couldn't parse date from unique ID");
+      return null;
+    }
+
     Date progDate;
     try {
-      java.util.Date date = new SimpleDateFormat(MutableProgram.ID_DATE_FORMAT).parse(id[4]);
-      Calendar cal = Calendar.getInstance();
-      cal.setTimeInMillis(date.getTime());
-      progDate = new Date(cal);
-    } catch (ParseException e) {
+      int year = parseNumber(uniqueID, dateIndex + 1, dateIndex + 5);
+      int month = parseNumber(uniqueID, dateIndex + 6, dateIndex + 8);
+      int day = parseNumber(uniqueID, dateIndex + 9, timeIndex);
+      progDate = new Date(year, month, day);
+    } catch (NumberFormatException e) {
       mLog.severe("Couldn't parse date from unique ID");
       return null;
     }
     
-    return new Object[] { progDate,new StringBuilder(id[0]).append('_').append(id[1]).append('_').append(id[2]).append('_').append(id[3]).append('_').append(id[5]).toString()};    
+    return new Object[] { progDate,new StringBuilder(uniqueID.length() - 11).append(uniqueID, 0, dateIndex).append(uniqueID, timeIndex, uniqueID.length()).toString()};
   }
 
   @Override
   public Program[] getPrograms(String uniqueID) {
     Object[] values = getDateAndProgIDforUniqueID(uniqueID);
     
+    if(values == null) {
+      return null;
+    }
+    
     return getPrograms((Date)values[0], (String)values[1]);
   }
 
+  /** {@inheritDoc} */
+  public Program[] getPrograms(String[] uniqueIDs) {
+    Program[] programs = new Program[uniqueIDs.length];
+    
+    // the day programs and the access of the channels are only looked up once
+    HashMap<Channel, HashMap<Date, ChannelDayProgram>> dayPrograms = new HashMap<Channel, HashMap<Date, ChannelDayProgram>>();
+    HashSet<Channel> noAccessChannels = new HashSet<Channel>();
+    
+    for(int i = 0; i < uniqueIDs.length; i++) {
+      if(uniqueIDs[i] == null || uniqueIDs[i].trim().length() == 0) {
+        continue;
+      }
+      
+      Object[] values = getDateAndProgIDforUniqueID(uniqueIDs[i]);
+      
+      if(values == null) {
+        continue;
+      }
+      
+      String progID = (String)values[1];
+      Channel ch = getChannelFromProgId(progID);
+      
+      if(ch == null) {
+        continue;
+      }
+      
+      HashMap<Date, ChannelDayProgram> channelDayPrograms = dayPrograms.get(ch);
+      
+      if(channelDayPrograms == null) {
+        if(noAccessChannels.contains(ch)) {
+          continue;
+        }
+        if(!checkChannelAccess(ch) || !ChannelList.isSubscribedChannel(ch)) {
+          noAccessChannels.add(ch);
+          continue;
+        }
+        
+        channelDayPrograms = new HashMap<Date, ChannelDayProgram>();
+        dayPrograms.put(ch, channelDayPrograms);
+      }
+      
+      Date date = getDayProgramDate((Date)values[0], progID, ch);
+      ChannelDayProgram dayProg = channelDayPrograms.get(date);
+      
+      if(dayProg == null && !channelDayPrograms.containsKey(date)) {
+        dayProg = TvDataBase.getInstance().getDayProgram(date, ch);
+        channelDayPrograms.put(date, dayProg);
+      }
+      
+      if(dayProg != null) {
+        programs[i] = dayProg.getProgram(progID);
+      }
+    }
+    
+    return programs;
+  }
+
   private Channel getChannelFromProgId(String progId) {
     // try to avoid the split operation as it is costly
     int strLen = progId.length();
@@ -177,6 +177,25 @@ public interface PluginProxy extends PluginAccess, InfoIf {
    */
   public Icon getPluginIcon();
 
+  /**
+   * Gets if the program table icons of this plugin should be loaded in the
+   * background for several programs at once.
+   *
+   * @return <code>true</code> if the icons should be loaded at once.
+   * @see #getProgramTableIcons(Program[])
+   * @since 3.4.5
+   */
+  public boolean isProvidingProgramTableIconsAtOnce();
+
+  /**
+   * Gets the icons this plugin provides for several programs at once.
+   *
+   * @param programs The programs to get the icons for.
+   * @return The icons for the programs at the index of the program.
+   * @since 3.4.5
+   */
+  public Icon[][] getProgramTableIcons(Program[] programs);
+
   public boolean hasArtificialPluginTree();
 
   public void addToArtificialPluginTree(MutableProgram program);
@@ -32,8 +32,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -154,7 +152,7 @@ public class PluginProxyManager {
     }
   }
 
-  private abstract class ThreadPoolMethod {
+  private abstract class ThreadPoolMethod implements Runnable {
     private String mName;
 
     public ThreadPoolMethod(final String name) {
@@ -164,110 +162,8 @@ public class PluginProxyManager {
     public String getName() {
       return mName;
     }
-
-    public abstract void run();
   }
   
-  private class TvDataUpdateFinishedThreadPoolMethod extends ThreadPoolMethod {
-
-    public TvDataUpdateFinishedThreadPoolMethod() {
-      super("handleTvDataUpdateFinished");
-    }
-
-    @Override
-    public void run() {
-      for (PluginListItem item : getPluginListCopy()) {
-        if (item.getPlugin().isActivated()) {
-          final AbstractPluginProxy plugin = item.getPlugin();
-          try {
-            plugin.handleTvDataUpdateFinished();
-          }catch(Throwable t) {
-            /* Catch all possible not catched errors that occur in the plugin method*/
-            mLog.log(Level.WARNING, "A not catched error occured in 'handleTvDataUpdateFinished' of Plugin '" + plugin +"'.", t);
-          }
-        }
-      }
-    }
-  }
-
-  private class TvDataTouchedThreadPoolMethod extends ThreadPoolMethod {
-
-    private ChannelDayProgram mRemovedDayProgram;
-    private ChannelDayProgram mAddedDayProgram;
-
-    public TvDataTouchedThreadPoolMethod(final ChannelDayProgram removedDayProgram, final ChannelDayProgram addedDayProgram) {
-      super("handleTvDataTouched" + (removedDayProgram != null ? " for '" + removedDayProgram.getChannel() + "' on " + removedDayProgram.getDate() : ""));
-      mRemovedDayProgram = removedDayProgram;
-      mAddedDayProgram = addedDayProgram;
-    }
-
-    @Override
-    public void run() {
-      for (PluginListItem item : getPluginListCopy()) {
-        if (item.getPlugin().isActivated()) {
-          final AbstractPluginProxy plugin = item.getPlugin();
-          try {
-            plugin.handleTvDataTouched(mRemovedDayProgram, mAddedDayProgram);
-          }catch(Throwable t) {
-            /* Catch all possible not catched errors that occur in the plugin method*/
-            mLog.log(Level.WARNING, "A not catched error occured in 'handleTvDataTouched' of Plugin '" + plugin +"'.", t);
-          }
-        }
-      }
-    }
-  }
-
-  private class TvDataDeletedThreadPoolMethod extends ThreadPoolMethod {
-    private ChannelDayProgram mChannelDayProgram;
-
-    public TvDataDeletedThreadPoolMethod(final ChannelDayProgram deletedProg) {
-      super("handleTvDataDeleted for '" + deletedProg.getChannel() + "' on " + deletedProg.getDate());
-    }
-
-    @Override
-    public void run() {
-      for (PluginListItem item : getPluginListCopy()) {
-        if (item.getPlugin().isActivated()) {
-          final AbstractPluginProxy plugin = item.getPlugin();
-          try {
-            plugin.handleTvDataDeleted(mChannelDayProgram);
-          }catch(Throwable t) {
-            /* Catch all possible not catched errors that occur in the plugin method*/
-            mLog.log(Level.WARNING, "A not catched error occured in 'handleTvDataDeleted' of Plugin '" + plugin +"'.", t);
-          }
-        }
-      }
-    }
-  }
-
-  private class TvDataAddedThreadPoolMethod extends ThreadPoolMethod {
-    private ChannelDayProgram mChannelDayProgram;
-
-    public TvDataAddedThreadPoolMethod(ChannelDayProgram newProg) {
-      super("HandleTvDataAdded(ChannelDayProgram) for '" + newProg.getChannel() + "' on " + newProg.getDate());
-      mChannelDayProgram = newProg;
-    }
-
-    @Override
-    public void run() {
-      for (PluginListItem item : getPluginListCopy()) {
-        if (item.getPlugin().isActivated()) {
-          final AbstractPluginProxy plugin = item.getPlugin();
-          try {
-            plugin.handleTvDataAdded(mChannelDayProgram);
-          } catch (Throwable t) {
-            /*
-             * Catch all possible not catched errors that occur in the plugin
-             * method
-             */
-            mLog.log(Level.WARNING, "A not catched error occured in 'handleTvDataAdded(ChannelDayProgram)' of Plugin '"
-                + plugin + "'.", t);
-          }
-        }
-      }
-    }
-  }
-
   /** The logger for this class */
   private static final Logger mLog = Logger.getLogger(PluginProxyManager.class.getName());
 
@@ -305,8 +201,6 @@ public class PluginProxyManager {
    */
   private static final int ACTIVATED_STATE = 3;
 
-  private static final long MAX_THREAD_POOL_WAIT_SECONDS = 30;
-
   /**
    * The list containing all plugins (PluginListItem objects) in the right
    * order.
@@ -328,9 +222,11 @@ public class PluginProxyManager {
    */
   private ArrayList<PluginProxy> mStartFinishedPlugins = new ArrayList<PluginProxy>();
 
-  private ArrayList<ThreadPoolMethod> mPoolMethods = new ArrayList<ThreadPoolMethod>();
+  /** The event queues of the plugins, the key is the id of the plugin */
+  private final HashMap<String, PluginEventQueue> mEventQueues = new HashMap<String, PluginEventQueue>();
 
-  private ExecutorService mThreadPool;
+  /** If a TV data update is running */
+  private volatile boolean mTvDataUpdateRunning;
 
   /**
    * Creates a new instance of PluginProxyManager.
@@ -1237,7 +1133,11 @@ public class PluginProxyManager {
    * @see PluginProxy#handleTvDataAdded(ChannelDayProgram)
    */
   private void fireTvDataAdded(final ChannelDayProgram newProg) {
-    runWithThreadPool(new TvDataAddedThreadPoolMethod(newProg));
+    for (PluginListItem item : getPluginListCopy()) {
+      if (item.getPlugin().isActivated()) {
+        getEventQueue(item.getPlugin()).addDataAdded(newProg);
+      }
+    }
   }
 
   /**
@@ -1248,12 +1148,19 @@ public class PluginProxyManager {
    * @see PluginProxy#handleTvDataDeleted(ChannelDayProgram)
    */
   private void fireTvDataDeleted(final ChannelDayProgram deletedProg) {
-    runWithThreadPool(new TvDataDeletedThreadPoolMethod(deletedProg));
+    for (PluginListItem item : getPluginListCopy()) {
+      if (item.getPlugin().isActivated()) {
+        getEventQueue(item.getPlugin()).addDataDeleted(deletedProg);
+      }
+    }
   }
 
   /**
    * Calls for every subscribed plugin the fireTvDataTouched(...) method, so
    * the plugin can react on the added/deleted/changed data.
+   * <p>
+   * During a data update the touched data is collected for plugins that
+   * want to get all touched data at once.
    *
    * @param removedDayProgram The removed program
    * @param addedDayProgram The added program
@@ -1261,7 +1168,14 @@ public class PluginProxyManager {
    */
   private void fireTvDataTouched(final ChannelDayProgram removedDayProgram,
       final ChannelDayProgram addedDayProgram) {
-    runWithThreadPool(new TvDataTouchedThreadPoolMethod(removedDayProgram, addedDayProgram));
+    for (PluginListItem item : getPluginListCopy()) {
+      if (item.getPlugin().isActivated()) {
+        final AbstractPluginProxy plugin = item.getPlugin();
+        final boolean collect = mTvDataUpdateRunning && plugin.isHandlingTvDataTouchedAtOnce();
+        
+        getEventQueue(plugin).addDataTouched(removedDayProgram, addedDayProgram, collect);
+      }
+    }
   }
 
   /**
@@ -1271,7 +1185,22 @@ public class PluginProxyManager {
    * @see PluginProxy#handleTvDataUpdateFinished()
    */
   private void fireTvDataUpdateFinished() {
-    runWithThreadPool(new TvDataUpdateFinishedThreadPoolMethod());
+    mTvDataUpdateRunning = false;
+    ProgramTableIconLoader.getInstance().clear();
+    
+    for (PluginListItem item : getPluginListCopy()) {
+      if (item.getPlugin().isActivated()) {
+        final AbstractPluginProxy plugin = item.getPlugin();
+        final PluginEventQueue queue = getEventQueue(plugin);
+        
+        queue.flushTouchedData();
+        queue.add("handleTvDataUpdateFinished", new Runnable() {
+          public void run() {
+            plugin.handleTvDataUpdateFinished();
+          }
+        });
+      }
+    }
   }
   
   /**
@@ -1281,6 +1210,8 @@ public class PluginProxyManager {
    * @see PluginProxy#handleTvDataUpdateStarted(Date until)
    */
   private void fireTvDataUpdateStarted(Date until) {
+    mTvDataUpdateRunning = true;
+    
     for (PluginListItem item : getPluginListCopy()) {
       if (item.getPlugin().isActivated()) {
         final AbstractPluginProxy plugin = item.getPlugin();
@@ -1294,60 +1225,38 @@ public class PluginProxyManager {
     } 
   }
 
-  private void runWithThreadPool(final ThreadPoolMethod threadPoolMethod) {
-    mPoolMethods.add(threadPoolMethod);
-//    mLog.info("Pool: " + mPoolMethods.size());
-    if (mThreadPool == null) {
-      int processors = Runtime.getRuntime().availableProcessors();
-      mThreadPool = Executors.newFixedThreadPool(processors);
-      for (int i = 0; i < processors; i++) {
-        mThreadPool.execute(new Runnable() {
-          
-          @Override
-          public void run() {
-            while(true) {
-              ThreadPoolMethod poolMethod = null;
-              int count;
-              synchronized (mPoolMethods) {
-                count = mPoolMethods.size();
-                if (count > 0) {
-                  poolMethod = mPoolMethods.remove(0);
-                }
-              }
-              if (poolMethod != null) {
-//                mLog.info("Exec (" + count + "): " + poolMethod.mName);
-                poolMethod.run();
-              }
-              else {
-                try {
-                  Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                  // TODO Auto-generated catch block
-                  e.printStackTrace();
-                }
-              }
-            }
-          }
-        });
+  private PluginEventQueue getEventQueue(final AbstractPluginProxy plugin) {
+    synchronized (mEventQueues) {
+      PluginEventQueue queue = mEventQueues.get(plugin.getId());
+      
+      if (queue == null) {
+        queue = new PluginEventQueue(plugin);
+        mEventQueues.put(plugin.getId(), queue);
       }
+      
+      return queue;
     }
   }
-  
- /* private void terminateThreadPool() {
-    try {
-      mThreadPool.shutdown();
-      if(!mThreadPool.awaitTermination(MAX_THREAD_POOL_WAIT_SECONDS,TimeUnit.SECONDS)) {
-        mThreadPool.shutdownNow();
-        if(!mThreadPool.awaitTermination(MAX_THREAD_POOL_WAIT_SECONDS,TimeUnit.SECONDS)) {
-          mLog.warning("thread pool blocked. Forced termination.");
-        }
-      }
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
 
-  }*/
+  private void runWithThreadPool(final AbstractPluginProxy plugin, final ThreadPoolMethod threadPoolMethod) {
+    getEventQueue(plugin).add(threadPoolMethod.getName(), threadPoolMethod);
+  }
 
+  /**
+   * Gets the statistics of the event queue of a plugin.
+   *
+   * @param plugin The plugin to get the statistics for.
+   * @return The statistics or <code>null</code> if the plugin didn't get events.
+   * @since 3.4.5
+   */
+  public String getEventQueueStatistics(final PluginProxy plugin) {
+    synchronized (mEventQueues) {
+      final PluginEventQueue queue = mEventQueues.get(plugin.getId());
+      
+      return queue != null ? queue.getStatistics() : null;
+    }
+  }
+  
   private ArrayList<PluginListItem> getPluginListCopy() {
     final ArrayList<PluginListItem> localList;
     synchronized(mPluginList) {
@@ -1367,7 +1276,7 @@ public class PluginProxyManager {
         for (PluginListItem item : getPluginListCopy()) {
           final AbstractPluginProxy plugin = item.getPlugin();
           if (plugin.isActivated()) {
-            runWithThreadPool(new TvBrowserStartFinishedThreadPoolMethod(plugin));
+            runWithThreadPool(plugin, new TvBrowserStartFinishedThreadPoolMethod(plugin));
           }
         }
   }
@@ -1382,10 +1291,11 @@ public class PluginProxyManager {
   
   public void fireTvBrowserSettingsChanged() {
     ((PluginManagerImpl)PluginManagerImpl.getInstance()).handleTvBrowserStartFinished();
+    ProgramTableIconLoader.getInstance().clear();
     for (PluginListItem item : getPluginListCopy()) {
       final AbstractPluginProxy plugin = item.getPlugin();
       if (plugin.isActivated()) {
-        runWithThreadPool(new TvBrowserSettingsChangedThreadPoolMethod(plugin));
+        runWithThreadPool(plugin, new TvBrowserSettingsChangedThreadPoolMethod(plugin));
       }
     }
   }
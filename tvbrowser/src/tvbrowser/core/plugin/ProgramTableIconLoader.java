@@ -0,0 +1,466 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin_oat@yahoo.de)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.Icon;
+import javax.swing.SwingUtilities;
+
+import tvbrowser.core.Settings;
+import util.misc.LruCache;
+import util.misc.NamedThreadFactory;
+import util.ui.ProgramPanel;
+import devplugin.Program;
+
+/**
+ * Loads the program table icons of the plugins that provide them for several
+ * programs at once (see {@link PluginProxy#isProvidingProgramTableIconsAtOnce()})
+ * in a background thread, so painting the program table doesn't wait for them.
+ * <p>
+ * The icons of the programs that are painted are loaded first, the icons of
+ * the other programs of the program table are loaded in advance after that.
+ * The loaded icons are cached per plugin and program ID, so the cache doesn't
+ * keep the programs in memory, and are removed when the TV data was updated
+ * (see {@link #clear()}). A panel that
+ * asked for icons that weren't loaded yet is informed when they arrive, so
+ * its owner can repaint it (see {@link ProgramPanel#setPluginIconListener(javax.swing.event.ChangeListener)}).
+ *
+ * @since 3.4.5
+ */
+public class ProgramTableIconLoader {
+  private static final Logger mLog = Logger.getLogger(ProgramTableIconLoader.class.getName());
+
+  /** The maximum number of programs that are given to a plugin at once */
+  private static final int MAX_BATCH_SIZE = 500;
+
+  /** The maximum number of cached icon arrays */
+  private static final int MAX_CACHE_ENTRIES = 50000;
+
+  private static final Icon[] EMPTY_ICON_ARR = new Icon[0];
+
+  private static ProgramTableIconLoader mInstance;
+
+  private final LruCache<IconKey, Icon[]> mCache = new LruCache<IconKey, Icon[]>(MAX_CACHE_ENTRIES, Long.MAX_VALUE);
+
+  /** The requests for programs that are painted */
+  private final LinkedHashMap<IconKey, Request> mRequests = new LinkedHashMap<IconKey, Request>();
+
+  /** The requests for programs that are loaded in advance */
+  private final LinkedHashMap<IconKey, Request> mPrefetchRequests = new LinkedHashMap<IconKey, Request>();
+
+  private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("Program table icons"));
+
+  /** The requests that are loaded at the moment */
+  private final HashMap<IconKey, Request> mLoading = new HashMap<IconKey, Request>();
+
+  /** Increased when all icons have to be loaded again */
+  private int mGeneration;
+
+  private boolean mWorking;
+
+  private ProgramTableIconLoader() {
+  }
+
+  /**
+   * @return The instance of this class.
+   */
+  public static synchronized ProgramTableIconLoader getInstance() {
+    if (mInstance == null) {
+      mInstance = new ProgramTableIconLoader();
+    }
+
+    return mInstance;
+  }
+
+  /**
+   * Gets the loaded icons of a plugin for a program. If the icons weren't
+   * loaded yet they are requested and the given panel is informed when
+   * they are loaded.
+   *
+   * @param plugin The plugin to get the icons from.
+   * @param program The program to get the icons for.
+   * @param panel The panel that shows the program.
+   * @return The icons, <code>null</code> if they are not loaded yet.
+   */
+  public Icon[] getIcons(final PluginProxy plugin, final Program program, final ProgramPanel panel) {
+    final IconKey key = IconKey.create(plugin, program);
+
+    if (key == null) {
+      // programs without ID can't be cached
+      return plugin.getProgramTableIcons(program);
+    }
+
+    final Icon[] icons = mCache.get(key);
+
+    if (icons != null) {
+      return icons;
+    }
+
+    synchronized (this) {
+      Request request = mRequests.get(key);
+
+      if (request == null) {
+        // the icons may be loaded at the moment
+        request = mLoading.get(key);
+
+        if (request != null && !request.mOutdated) {
+          request.addPanel(panel);
+          return null;
+        }
+
+        request = mPrefetchRequests.remove(key);
+
+        if (request == null) {
+          request = new Request(plugin, program, key);
+        }
+
+        mRequests.put(key, request);
+      }
+
+      request.addPanel(panel);
+      startWorking();
+    }
+
+    return null;
+  }
+
+  /**
+   * Requests the icons of all plugins that provide them at once for
+   * the given programs, the icons are loaded when all requested icons
+   * of painted programs are loaded.
+   *
+   * @param programs The programs to load the icons for.
+   */
+  public void prefetch(final Program[] programs) {
+    final PluginProxy[] plugins = getIconPlugins();
+
+    if (plugins.length == 0) {
+      return;
+    }
+
+    synchronized (this) {
+      for (PluginProxy plugin : plugins) {
+        for (Program program : programs) {
+          if (program.getProgramState() == Program.IS_VALID_STATE) {
+            final IconKey key = IconKey.create(plugin, program);
+
+            if (key != null && !mCache.containsKey(key) && !mRequests.containsKey(key)
+                && !mPrefetchRequests.containsKey(key)) {
+              mPrefetchRequests.put(key, new Request(plugin, program, key));
+            }
+          }
+        }
+      }
+
+      startWorking();
+    }
+  }
+
+  /**
+   * Removes the icons of the given program, so they are loaded again.
+   * Icons of the program that are loaded at the moment are not cached.
+   *
+   * @param program The program that has changed.
+   */
+  public synchronized void invalidate(final Program program) {
+    for (PluginProxy plugin : getIconPlugins()) {
+      final IconKey key = IconKey.create(plugin, program);
+
+      if (key == null) {
+        continue;
+      }
+
+      final Request loading = mLoading.get(key);
+
+      if (loading != null) {
+        loading.mOutdated = true;
+      }
+
+      mCache.remove(key);
+    }
+  }
+
+  /**
+   * Removes all loaded icons, so they are loaded again.
+   */
+  public synchronized void clear() {
+    mGeneration++;
+    mCache.clear();
+  }
+
+  /**
+   * @return The activated plugins that are configured to show program table
+   *         icons and provide them at once.
+   */
+  private static PluginProxy[] getIconPlugins() {
+    final String[] iconPluginArr = Settings.propProgramTableIconPlugins.getStringArray();
+    final ArrayList<PluginProxy> plugins = new ArrayList<PluginProxy>();
+
+    if (iconPluginArr != null) {
+      for (String id : iconPluginArr) {
+        final PluginProxy plugin = PluginProxyManager.getInstance().getActivatedPluginForId(id);
+
+        if (plugin != null && plugin.isProvidingProgramTableIconsAtOnce()) {
+          plugins.add(plugin);
+        }
+      }
+    }
+
+    return plugins.toArray(new PluginProxy[plugins.size()]);
+  }
+
+  private void startWorking() {
+    if (!mWorking) {
+      mWorking = true;
+
+      mExecutor.execute(new Runnable() {
+        public void run() {
+          work();
+        }
+      });
+    }
+  }
+
+  private void work() {
+    while (true) {
+      final ArrayList<Request> batch = new ArrayList<Request>();
+      final int generation;
+
+      synchronized (this) {
+        generation = mGeneration;
+
+        if (!takeBatch(mRequests, batch)) {
+          takeBatch(mPrefetchRequests, batch);
+        }
+
+        if (batch.isEmpty()) {
+          mWorking = false;
+          return;
+        }
+
+        for (Request request : batch) {
+          mLoading.put(request.mKey, request);
+        }
+      }
+
+      load(batch);
+
+      final ArrayList<Request> loaded = new ArrayList<Request>(batch.size());
+
+      synchronized (this) {
+        mLoading.clear();
+
+        for (Request request : batch) {
+          final IconKey key = request.mKey;
+
+          if (generation != mGeneration || request.mOutdated) {
+            // the icons were removed while loading, so the panels need icons loaded again
+            if (request.hasPanels() && !mRequests.containsKey(key)) {
+              mRequests.put(key, new Request(request));
+            }
+          }
+          else {
+            mCache.put(key, request.mIcons);
+            loaded.add(request);
+          }
+        }
+      }
+
+      informPanels(loaded);
+    }
+  }
+
+  /**
+   * Takes the requests of the first plugin in the given requests.
+   *
+   * @return <code>true</code> if requests were taken.
+   */
+  private static boolean takeBatch(final LinkedHashMap<IconKey, Request> requests, final ArrayList<Request> batch) {
+    final Iterator<Map.Entry<IconKey, Request>> it = requests.entrySet().iterator();
+    PluginProxy plugin = null;
+
+    while (it.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+      final Request request = it.next().getValue();
+
+      if (plugin == null) {
+        plugin = request.mPlugin;
+      }
+
+      if (request.mPlugin == plugin) {
+        batch.add(request);
+        it.remove();
+      }
+    }
+
+    return !batch.isEmpty();
+  }
+
+  private static void load(final ArrayList<Request> batch) {
+    final PluginProxy plugin = batch.get(0).mPlugin;
+    final Program[] programs = new Program[batch.size()];
+
+    for (int i = 0; i < programs.length; i++) {
+      programs[i] = batch.get(i).mProgram;
+    }
+
+    Icon[][] icons = null;
+
+    if (plugin.isActivated()) {
+      try {
+        icons = plugin.getProgramTableIcons(programs);
+      } catch (Throwable t) {
+        mLog.log(Level.WARNING, "Could not load the program table icons of plugin '" + plugin.getId() + "'.", t);
+      }
+    }
+
+    for (int i = 0; i < programs.length; i++) {
+      final Icon[] programIcons = icons != null && i < icons.length ? icons[i] : null;
+
+      batch.get(i).mIcons = programIcons != null ? programIcons : EMPTY_ICON_ARR;
+    }
+  }
+
+  private static void informPanels(final ArrayList<Request> batch) {
+    final ArrayList<ProgramPanel> panels = new ArrayList<ProgramPanel>();
+
+    for (Request request : batch) {
+      request.addPanelsTo(panels);
+    }
+
+    if (!panels.isEmpty()) {
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          for (ProgramPanel panel : panels) {
+            panel.pluginIconsLoaded();
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * @return The statistics of the icon cache.
+   */
+  public String getStatistics() {
+    return mCache.getStatistics();
+  }
+
+  private static final class IconKey {
+    private final String mPluginId;
+    private final String mProgramId;
+
+    private IconKey(final String pluginId, final String programId) {
+      mPluginId = pluginId;
+      mProgramId = programId;
+    }
+
+    /**
+     * @return The key for the icons of the plugin for the program,
+     *         <code>null</code> if the program has no ID.
+     */
+    private static IconKey create(final PluginProxy plugin, final Program program) {
+      final String programId = program.getUniqueID();
+
+      return programId != null ? new IconKey(plugin.getId(), programId) : null;
+    }
+
+    @Override
+    public int hashCode() {
+      return mPluginId.hashCode() * 31 + mProgramId.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj instanceof IconKey) {
+        final IconKey other = (IconKey) obj;
+
+        return mPluginId.equals(other.mPluginId) && mProgramId.equals(other.mProgramId);
+      }
+
+      return false;
+    }
+  }
+
+  private static final class Request {
+    private final PluginProxy mPlugin;
+    private final Program mProgram;
+    private final IconKey mKey;
+    private ArrayList<ProgramPanel> mPanels;
+    private Icon[] mIcons;
+
+    /** If the program changed while the icons were loaded */
+    private volatile boolean mOutdated;
+
+    private Request(final PluginProxy plugin, final Program program, final IconKey key) {
+      mPlugin = plugin;
+      mProgram = program;
+      mKey = key;
+    }
+
+    /**
+     * Creates a request to load the icons again for the panels
+     * of an outdated request.
+     */
+    private Request(final Request outdated) {
+      this(outdated.mPlugin, outdated.mProgram, outdated.mKey);
+
+      synchronized (outdated) {
+        mPanels = outdated.mPanels;
+      }
+    }
+
+    private synchronized void addPanel(final ProgramPanel panel) {
+      if (panel != null) {
+        if (mPanels == null) {
+          mPanels = new ArrayList<ProgramPanel>(1);
+        }
+
+        if (!mPanels.contains(panel)) {
+          mPanels.add(panel);
+        }
+      }
+    }
+
+    private synchronized boolean hasPanels() {
+      return mPanels != null;
+    }
+
+    private synchronized void addPanelsTo(final ArrayList<ProgramPanel> panels) {
+      if (mPanels != null) {
+        panels.addAll(mPanels);
+      }
+    }
+  }
+}
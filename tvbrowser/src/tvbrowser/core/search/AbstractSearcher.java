@@ -28,6 +28,16 @@ package tvbrowser.core.search;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.DefaultListModel;
 import javax.swing.SwingUtilities;
@@ -37,8 +47,11 @@ import org.apache.commons.lang3.text.StrBuilder;
 
 import tvbrowser.core.Settings;
 import tvbrowser.core.TvDataBase;
+import tvbrowser.core.TvDataTextIndex;
 import util.io.IOUtilities;
+import util.misc.NamedThreadFactory;
 import util.program.ProgramUtilities;
+import devplugin.CancelableProgressMonitor;
 import devplugin.Channel;
 import devplugin.ChannelDayProgram;
 import devplugin.Date;
@@ -53,7 +66,11 @@ import devplugin.ProgressMonitor;
  * @author Til Schneider, www.murfman.de
  */
 public abstract class AbstractSearcher implements ProgramSearcher {
-  /** Translator */
+  /** The logger for this class. */
+  private static final Logger mLog = Logger.getLogger(AbstractSearcher.class.getName());
+
+  /** The thread pool for the parallel search, shared by all searchers. */
+  private static ExecutorService mSearchThreadPool;
 
   /** The comparator that compares two programs by their start time and date */
   private static Comparator<Program> mStartTimeComparator;
@@ -86,6 +103,78 @@ public abstract class AbstractSearcher implements ProgramSearcher {
     return mStartTimeComparator;
   }
 
+  /**
+   * Gets or creates the thread pool for the parallel search.
+   *
+   * @return The thread pool.
+   */
+  private static synchronized ExecutorService getSearchThreadPool() {
+    if (mSearchThreadPool == null) {
+      mSearchThreadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          new NamedThreadFactory("Search programs", true, Thread.NORM_PRIORITY - 1));
+    }
+
+    return mSearchThreadPool;
+  }
+
+  /**
+   * Gets if the {@link #matches(String)} method of this searcher may be called
+   * by several threads at the same time.
+   * <p>
+   * Thread safe searchers search the day programs in parallel and several searches
+   * with the same searcher can run at the same time. Other searchers search
+   * sequentially and only one search at a time.
+   *
+   * @return <code>true</code> if this searcher is thread safe.
+   * @since 3.4.5
+   */
+  protected boolean isThreadSafe() {
+    return false;
+  }
+
+  /**
+   * Gets the day program to search in.
+   *
+   * @param date The date of the day program.
+   * @param channel The channel of the day program.
+   * @return The day program or <code>null</code> if there is no data.
+   * @since 3.4.5
+   */
+  protected ChannelDayProgram getDayProgram(Date date, Channel channel) {
+    return TvDataBase.getInstance().getDayProgram(date, channel);
+  }
+
+  /**
+   * Gets the terms a value must contain to match this searcher.
+   * <p>
+   * The terms are used to skip day programs that can't contain
+   * matching programs. A matching value must contain every term,
+   * case is ignored.
+   *
+   * @return The required terms or <code>null</code> if there are none.
+   * @since 3.4.5
+   */
+  public String[] getRequiredTerms() {
+    return null;
+  }
+
+  /**
+   * Gets the day programs that may contain matching programs.
+   *
+   * @param fieldArr The fields to search in.
+   * @return The candidates or <code>null</code> if all day programs must be searched.
+   * @since 3.4.5
+   */
+  protected TvDataTextIndex.Candidates getTextIndexCandidates(ProgramFieldType[] fieldArr) {
+    String[] terms = getRequiredTerms();
+
+    if (terms == null || terms.length == 0) {
+      return null;
+    }
+
+    return TvDataBase.getInstance().getTextIndexCandidates(fieldArr, terms);
+  }
+
 
   /**
    * Checks whether a field of a program matches to the criteria of this
@@ -127,28 +216,7 @@ public abstract class AbstractSearcher implements ProgramSearcher {
    */
   private String getProgramFieldsText(Program prog, ProgramFieldType[] fieldArr) {
     if (fieldArr.length == 1) {
-      ProgramFieldType fieldType = fieldArr[0];
-      if (fieldType.getFormat() == ProgramFieldType.TEXT_FORMAT) {
-        return prog.getTextField(fieldType);
-      }
-      else if (fieldType.getFormat() == ProgramFieldType.INT_FORMAT) {
-        if(fieldType.equals(ProgramFieldType.EPISODE_NUMBER_TYPE) && prog.hasFieldValue(ProgramFieldType.EPISODE_NUMBER_TYPE)) {
-          return IOUtilities.decodeSingleFieldValueToMultipleEpisodeString(prog.getIntField(fieldType));
-        }
-        
-        return prog.getIntFieldAsString(fieldType);
-      }
-      else if (fieldType.getFormat() == ProgramFieldType.TIME_FORMAT) {
-        if (fieldType == ProgramFieldType.START_TIME_TYPE) {
-          return prog.getTimeString();
-        }
-        else if (fieldType == ProgramFieldType.END_TIME_TYPE) {
-          return prog.getEndTimeString();
-        }
-        else {
-          return prog.getTimeFieldAsString(fieldType);
-        }
-      }
+      return getSearchableFieldValue(prog, fieldArr[0]);
     }
 
     StrBuilder buffer = new StrBuilder();
@@ -156,28 +224,7 @@ public abstract class AbstractSearcher implements ProgramSearcher {
       // Get the field value as String
       String value = null;
       if (fieldType != null) {
-        if (fieldType.getFormat() == ProgramFieldType.TEXT_FORMAT) {
-          value = prog.getTextField(fieldType);
-        }
-        else if (fieldType.getFormat() == ProgramFieldType.INT_FORMAT) {
-          if(fieldType.equals(ProgramFieldType.EPISODE_NUMBER_TYPE) && prog.hasFieldValue(ProgramFieldType.EPISODE_NUMBER_TYPE)) {
-            value = IOUtilities.decodeSingleFieldValueToMultipleEpisodeString(prog.getIntField(fieldType));
-          }
-          else {
-            value = prog.getIntFieldAsString(fieldType);
-          }
-        }
-        else if (fieldType.getFormat() == ProgramFieldType.TIME_FORMAT) {
-          if (fieldType == ProgramFieldType.START_TIME_TYPE) {
-            value = prog.getTimeString();
-          }
-          else if (fieldType == ProgramFieldType.END_TIME_TYPE) {
-            value = prog.getEndTimeString();
-          }
-          else {
-            value = prog.getTimeFieldAsString(fieldType);
-          }
-        }
+        value = getSearchableFieldValue(prog, fieldType);
       }
 
       if (value != null) {
@@ -196,13 +243,55 @@ public abstract class AbstractSearcher implements ProgramSearcher {
     return buffer.trim().toString();
   }
 
-  public synchronized Program[] search(ProgramFieldType[] fieldArr, Date startDate,
+  /**
+   * Gets the value of a program field as it is searched by the searchers.
+   *
+   * @param prog The program to get the value from.
+   * @param fieldType The type of the field.
+   * @return The value of the field or <code>null</code> if the program doesn't have it.
+   * @since 3.4.5
+   */
+  public static String getSearchableFieldValue(Program prog, ProgramFieldType fieldType) {
+    if (fieldType.getFormat() == ProgramFieldType.TEXT_FORMAT) {
+      return prog.getTextField(fieldType);
+    }
+    else if (fieldType.getFormat() == ProgramFieldType.INT_FORMAT) {
+      if(fieldType.equals(ProgramFieldType.EPISODE_NUMBER_TYPE) && prog.hasFieldValue(ProgramFieldType.EPISODE_NUMBER_TYPE)) {
+        return IOUtilities.decodeSingleFieldValueToMultipleEpisodeString(prog.getIntField(fieldType));
+      }
+
+      return prog.getIntFieldAsString(fieldType);
+    }
+    else if (fieldType.getFormat() == ProgramFieldType.TIME_FORMAT) {
+      if (fieldType == ProgramFieldType.START_TIME_TYPE) {
+        return prog.getTimeString();
+      }
+      else if (fieldType == ProgramFieldType.END_TIME_TYPE) {
+        return prog.getEndTimeString();
+      }
+      else {
+        return prog.getTimeFieldAsString(fieldType);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @return If the day programs are searched in parallel.
+   */
+  boolean isSearchingParallel() {
+    return isThreadSafe() && Settings.propParallelSearch.getBoolean()
+        && Runtime.getRuntime().availableProcessors() > 1;
+  }
+
+  public Program[] search(ProgramFieldType[] fieldArr, Date startDate,
                           int nrDays, Channel[] channels, boolean sortByStartTime, ProgressMonitor progress)
   {
     return search(fieldArr, startDate, nrDays, channels, sortByStartTime, progress, null);
   }
 
-  public synchronized Program[] search(ProgramFieldType[] fieldArr, Date startDate,
+  public Program[] search(ProgramFieldType[] fieldArr, Date startDate,
                           int nrDays, Channel[] channels, boolean sortByStartTime, ProgressMonitor progress, final DefaultListModel listModel)
   {
 
@@ -217,8 +306,30 @@ public abstract class AbstractSearcher implements ProgramSearcher {
       nrDays = TvDataBase.getInstance().getMaxSupportedDate().getNumberOfDaysSince(startDate);
     }
 
+    Program[] hitArr;
+
+    if (isSearchingParallel()) {
+      hitArr = searchParallel(fieldArr, startDate, nrDays, channels, sortByStartTime, progress, listModel);
+    }
+    else {
+      hitArr = searchSequential(fieldArr, startDate, nrDays, channels, sortByStartTime, progress, listModel);
+    }
+
+    if (progress != null) {
+      progress.setValue(0);
+      progress.setMessage("");
+    }
+
+    // return the result
+    return hitArr;
+  }
+
+  private synchronized Program[] searchSequential(ProgramFieldType[] fieldArr, Date startDate,
+      int nrDays, Channel[] channels, boolean sortByStartTime, ProgressMonitor progress, final DefaultListModel listModel)
+  {
     // Perform the actual search
     ArrayList<Program> hitList = new ArrayList<Program>();
+    TvDataTextIndex.Candidates candidates = getTextIndexCandidates(fieldArr);
     int lastDayWithData = 0;
     if (progress != null) {
       progress.setMaximum(channels.length*(nrDays+1));
@@ -228,9 +339,18 @@ public abstract class AbstractSearcher implements ProgramSearcher {
         if (progress != null) {
           progress.setValue(day * channels.length + channelIdx);
         }
+        if (isCanceled(progress)) {
+          return new Program[0];
+        }
         Channel channel = channels[channelIdx];
         if (channel != null) {
-            ChannelDayProgram dayProg = TvDataBase.getInstance().getDayProgram(startDate, channel);
+            if (candidates != null && !candidates.mightContain(startDate, channel)) {
+              // The day program has data, but no matching programs
+              lastDayWithData = day;
+              continue;
+            }
+
+            ChannelDayProgram dayProg = getDayProgram(startDate, channel);
             if (dayProg != null) {
               // This day has data -> remember it
               lastDayWithData = day;
@@ -239,27 +359,14 @@ public abstract class AbstractSearcher implements ProgramSearcher {
               for (int i = 0; i < dayProg.getProgramCount(); i++) {
                 final Program prog = dayProg.getProgramAt(i);
                 if (matches(prog, fieldArr)) {
-                  if(listModel != null) {
-                    SwingUtilities.invokeLater(new Runnable() {
-                      public void run() {
-                        int insertIndex = 0;
-
-                        for(int index = 0; index < listModel.getSize(); index++) {
-                          Program p = (Program)listModel.get(index);
-
-                          if(ProgramUtilities.getProgramComparator().compare(p,prog) < 0) {
-                            insertIndex = index+1;
-                          }
-                        }
-
-                        listModel.add(insertIndex,prog);
-                      }
-                    });
-                  }
-
+                  addToListModel(listModel, prog);
                   hitList.add(prog);
                 }
               }
+
+              if (candidates != null) {
+                candidates.searched(dayProg);
+              }
             }
         }
       }
@@ -282,21 +389,268 @@ public abstract class AbstractSearcher implements ProgramSearcher {
       Arrays.sort(hitArr, getStartTimeComparator());
     }
 
+    return hitArr;
+  }
+
+  /**
+   * Searches every day program in an own task of the search thread pool.
+   * <p>
+   * The hits of every day program are already sorted by start time,
+   * so the sorted result is created by merging them.
+   */
+  private Program[] searchParallel(final ProgramFieldType[] fieldArr, Date startDate,
+      int nrDays, Channel[] channels, boolean sortByStartTime, ProgressMonitor progress, final DefaultListModel listModel)
+  {
+    ExecutorService threadPool = getSearchThreadPool();
+    TvDataTextIndex.Candidates candidates = getTextIndexCandidates(fieldArr);
+
     if (progress != null) {
-      progress.setValue(0);
-      progress.setMessage("");
+      progress.setMaximum(channels.length*(nrDays+1));
+    }
+
+    // One task for each channel and day, in the order of the sequential search
+    ArrayList<Future<Program[]>> tasks = new ArrayList<Future<Program[]>>(channels.length*(nrDays+1));
+    Date date = startDate;
+    for (int day = 0; day <= nrDays; day++) {
+      for (Channel channel : channels) {
+        if (channel != null) {
+          tasks.add(threadPool.submit(new DayProgramSearch(fieldArr, date, channel, candidates)));
+        }
+        else {
+          tasks.add(null);
+        }
+      }
+
+      date = date.addDays(1);
+    }
+
+    ArrayList<Program[]> hitLists = new ArrayList<Program[]>(tasks.size());
+    int hitCount = 0;
+    int lastDayWithData = 0;
+
+    try {
+      for (int taskIdx = 0; taskIdx < tasks.size(); taskIdx++) {
+        int day = taskIdx / channels.length;
+
+        if (taskIdx % channels.length == 0 && (day - lastDayWithData) > 11) {
+          // The sequential search gives up after 10 days without data
+          break;
+        }
+
+        if (progress != null) {
+          progress.setValue(taskIdx);
+        }
+
+        Future<Program[]> task = tasks.get(taskIdx);
+        Program[] hits = task != null ? waitForTask(task, progress) : null;
+
+        if (hits != null) {
+          // This day has data -> remember it
+          lastDayWithData = day;
+
+          hitLists.add(hits);
+          hitCount += hits.length;
+
+          for (Program prog : hits) {
+            addToListModel(listModel, prog);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      // Remove tasks that are not needed anymore
+      for (Future<Program[]> task : tasks) {
+        if (task != null) {
+          task.cancel(false);
+        }
+      }
+    }
+
+    if (isCanceled(progress)) {
+      return new Program[0];
+    }
+
+    Program[] hitArr = new Program[hitCount];
+
+    if (sortByStartTime) {
+      mergeByStartTime(hitLists, hitArr);
+    }
+    else {
+      int pos = 0;
+      for (Program[] hits : hitLists) {
+        System.arraycopy(hits, 0, hitArr, pos, hits.length);
+        pos += hits.length;
+      }
     }
 
-    // return the result
     return hitArr;
   }
 
-  public synchronized Program[] search(ProgramFieldType[] fieldArr, Date startDate,
+  /**
+   * Waits for a task of the parallel search to complete.
+   *
+   * @return The hits of the task or <code>null</code> if there is no data
+   *         or the search was canceled.
+   */
+  private Program[] waitForTask(Future<Program[]> task, ProgressMonitor progress) throws InterruptedException {
+    while (true) {
+      if (isCanceled(progress)) {
+        return null;
+      }
+
+      try {
+        return task.get(100, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // check for canceling and wait again
+      } catch (ExecutionException e) {
+        mLog.log(Level.WARNING, "Searching day program failed", e.getCause());
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Merges the hits of the day programs into the given array,
+   * sorted by start time. Programs with the same start time keep
+   * the order of the sequential search.
+   */
+  private static void mergeByStartTime(ArrayList<Program[]> hitLists, Program[] target) {
+    final Comparator<Program> comparator = getStartTimeComparator();
+
+    PriorityQueue<HitCursor> queue = new PriorityQueue<HitCursor>(Math.max(1, hitLists.size()));
+
+    for (int i = 0; i < hitLists.size(); i++) {
+      Program[] hits = hitLists.get(i);
+
+      if (hits.length > 0) {
+        // Usually the day program is already sorted, this is fast then
+        Arrays.sort(hits, comparator);
+        queue.add(new HitCursor(hits, i, comparator));
+      }
+    }
+
+    int pos = 0;
+    while (!queue.isEmpty()) {
+      HitCursor cursor = queue.poll();
+      target[pos++] = cursor.current();
+
+      if (cursor.next()) {
+        queue.add(cursor);
+      }
+    }
+  }
+
+  private static void addToListModel(final DefaultListModel listModel, final Program prog) {
+    if(listModel != null) {
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          int insertIndex = 0;
+
+          for(int index = 0; index < listModel.getSize(); index++) {
+            Program p = (Program)listModel.get(index);
+
+            if(ProgramUtilities.getProgramComparator().compare(p,prog) < 0) {
+              insertIndex = index+1;
+            }
+          }
+
+          listModel.add(insertIndex,prog);
+        }
+      });
+    }
+  }
+
+  private static boolean isCanceled(ProgressMonitor progress) {
+    return progress instanceof CancelableProgressMonitor && ((CancelableProgressMonitor)progress).isCanceled();
+  }
+
+  public Program[] search(ProgramFieldType[] fieldArr, Date startDate,
                           int nrDays, Channel[] channels, boolean sortByStartTime)
   {
     return search(fieldArr, startDate, nrDays, channels, sortByStartTime, null);
   }
 
+  /**
+   * Searches one day program.
+   */
+  private class DayProgramSearch implements Callable<Program[]> {
+    private ProgramFieldType[] mFieldArr;
+    private Date mDate;
+    private Channel mChannel;
+    private TvDataTextIndex.Candidates mCandidates;
+
+    public DayProgramSearch(ProgramFieldType[] fieldArr, Date date, Channel channel, TvDataTextIndex.Candidates candidates) {
+      mFieldArr = fieldArr;
+      mDate = date;
+      mChannel = channel;
+      mCandidates = candidates;
+    }
+
+    public Program[] call() {
+      if (mCandidates != null && !mCandidates.mightContain(mDate, mChannel)) {
+        // The day program has data, but no matching programs
+        return new Program[0];
+      }
+
+      ChannelDayProgram dayProg = getDayProgram(mDate, mChannel);
+
+      if (dayProg == null) {
+        return null;
+      }
+
+      ArrayList<Program> hitList = new ArrayList<Program>();
+
+      for (int i = 0; i < dayProg.getProgramCount(); i++) {
+        Program prog = dayProg.getProgramAt(i);
+
+        if (matches(prog, mFieldArr)) {
+          hitList.add(prog);
+        }
+      }
+
+      if (mCandidates != null) {
+        mCandidates.searched(dayProg);
+      }
+
+      return hitList.toArray(new Program[hitList.size()]);
+    }
+  }
+
+  /**
+   * The position in the hits of one day program while merging.
+   */
+  private static class HitCursor implements Comparable<HitCursor> {
+    private Program[] mHits;
+    private int mIndex;
+    private int mOrder;
+    private Comparator<Program> mComparator;
+
+    public HitCursor(Program[] hits, int order, Comparator<Program> comparator) {
+      mHits = hits;
+      mOrder = order;
+      mComparator = comparator;
+    }
+
+    public Program current() {
+      return mHits[mIndex];
+    }
+
+    public boolean next() {
+      return ++mIndex < mHits.length;
+    }
+
+    public int compareTo(HitCursor other) {
+      int result = mComparator.compare(current(), other.current());
+
+      if (result == 0) {
+        result = mOrder - other.mOrder;
+      }
+
+      return result;
+    }
+  }
+
   /**
    * Checks whether a value matches to the criteria of this searcher.
    *
@@ -0,0 +1,336 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import util.misc.AhoCorasick;
+import util.program.ProgramTextCache;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * Finds the items of a big number of searches that may match a program
+ * by checking the program only once.
+ * <p>
+ * Every item is added with the fields it searches in and the terms a
+ * matching program must contain (see {@link AbstractSearcher#getRequiredTerms()}).
+ * The terms of all items searching in the same fields are compiled into one
+ * {@link AhoCorasick} automaton. An item is a candidate for a program if
+ * the fields of the program contain all of its terms, only the candidates
+ * have to be checked with their searcher. Items without terms are
+ * always candidates.
+ * <p>
+ * The matcher is immutable after creation and may be used by several threads,
+ * only the cached texts of the programs have to be cleared when the TV data
+ * changes (see {@link #clearTextCaches()}).
+ *
+ * @param <T> The type of the items.
+ * @since 3.4.5
+ */
+public class MultiSearcherMatcher<T> {
+
+  /** Pieces of terms shorter than this are nearly always found, so they are ignored */
+  private static final int MIN_PIECE_LENGTH = 2;
+
+  private ArrayList<T> mItems;
+
+  /** The indices of the items that are always candidates */
+  private int[] mAlwaysCandidates;
+
+  private FieldGroup[] mGroups;
+
+  /**
+   * Creates the matcher.
+   *
+   * @param items The items.
+   * @param fieldArrs The fields every item searches in.
+   * @param termArrs The required terms of every item, <code>null</code>
+   *        if an item has no required terms.
+   */
+  public MultiSearcherMatcher(List<T> items, List<ProgramFieldType[]> fieldArrs, List<String[]> termArrs) {
+    this(items, fieldArrs, termArrs, false);
+  }
+
+  /**
+   * Creates the matcher.
+   *
+   * @param items The items.
+   * @param fieldArrs The fields every item searches in.
+   * @param termArrs The required terms of every item, <code>null</code>
+   *        if an item has no required terms.
+   * @param cacheTexts If the texts of the checked programs should be cached,
+   *        use it if the same programs are checked again and again.
+   */
+  public MultiSearcherMatcher(List<T> items, List<ProgramFieldType[]> fieldArrs, List<String[]> termArrs, boolean cacheTexts) {
+    mItems = new ArrayList<T>(items);
+
+    ArrayList<Integer> always = new ArrayList<Integer>();
+    LinkedHashMap<String, GroupBuilder> builders = new LinkedHashMap<String, GroupBuilder>();
+
+    for (int i = 0; i < mItems.size(); i++) {
+      ProgramFieldType[] fieldArr = fieldArrs.get(i);
+      ArrayList<String> pieces = getPieces(termArrs.get(i));
+
+      if (fieldArr == null || pieces.isEmpty()) {
+        always.add(i);
+        continue;
+      }
+
+      String key = getFieldKey(fieldArr);
+      GroupBuilder builder = builders.get(key);
+
+      if (builder == null) {
+        builder = new GroupBuilder(fieldArr, cacheTexts);
+        builders.put(key, builder);
+      }
+
+      builder.add(i, pieces);
+    }
+
+    mAlwaysCandidates = new int[always.size()];
+    for (int i = 0; i < mAlwaysCandidates.length; i++) {
+      mAlwaysCandidates[i] = always.get(i);
+    }
+
+    mGroups = new FieldGroup[builders.size()];
+    int index = 0;
+    for (GroupBuilder builder : builders.values()) {
+      mGroups[index++] = builder.create();
+    }
+  }
+
+  /**
+   * Gets the lower case parts of the terms that consist of letters and digits.
+   */
+  private static ArrayList<String> getPieces(String[] terms) {
+    ArrayList<String> pieces = new ArrayList<String>();
+
+    if (terms == null) {
+      return pieces;
+    }
+
+    for (String term : terms) {
+      if (term == null) {
+        continue;
+      }
+
+      term = term.toLowerCase();
+      int start = -1;
+
+      for (int i = 0; i <= term.length(); i++) {
+        boolean pieceChar = i < term.length() && Character.isLetterOrDigit(term.charAt(i));
+
+        if (pieceChar && start == -1) {
+          start = i;
+        }
+        else if (!pieceChar && start != -1) {
+          if (i - start >= MIN_PIECE_LENGTH) {
+            String piece = term.substring(start, i);
+
+            if (!pieces.contains(piece)) {
+              pieces.add(piece);
+            }
+          }
+          start = -1;
+        }
+      }
+    }
+
+    return pieces;
+  }
+
+  private static String getFieldKey(ProgramFieldType[] fieldArr) {
+    StringBuilder key = new StringBuilder();
+
+    for (ProgramFieldType type : fieldArr) {
+      if (type != null) {
+        key.append(type.getTypeId()).append(',');
+      }
+    }
+
+    return key.toString();
+  }
+
+  /**
+   * Gets the items that may match the given program.
+   *
+   * @param prog The program to check.
+   * @return The candidates in the order the items were given.
+   */
+  public List<T> getCandidates(Program prog) {
+    BitSet candidates = new BitSet(mItems.size());
+
+    for (int index : mAlwaysCandidates) {
+      candidates.set(index);
+    }
+
+    for (FieldGroup group : mGroups) {
+      group.addCandidates(prog, candidates);
+    }
+
+    ArrayList<T> result = new ArrayList<T>(candidates.cardinality());
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      result.add(mItems.get(i));
+    }
+
+    return result;
+  }
+
+  /**
+   * Removes the cached texts of the programs, so changed
+   * programs are checked with their current texts.
+   */
+  public void clearTextCaches() {
+    for (FieldGroup group : mGroups) {
+      if (group.mTextCache != null) {
+        group.mTextCache.clear();
+      }
+    }
+  }
+
+  /**
+   * @return The number of items of this matcher.
+   */
+  public int getItemCount() {
+    return mItems.size();
+  }
+
+  /**
+   * @return The number of items that are candidates for every program.
+   */
+  public int getAlwaysCandidateCount() {
+    return mAlwaysCandidates.length;
+  }
+
+  /**
+   * @return The number of different field sets.
+   */
+  public int getFieldGroupCount() {
+    return mGroups.length;
+  }
+
+  /**
+   * The items that search in the same fields.
+   */
+  private static final class FieldGroup {
+    private ProgramFieldType[] mFieldArr;
+
+    /** The cache for the texts of the programs, <code>null</code> if not cached */
+    private ProgramTextCache mTextCache;
+
+    private AhoCorasick mAutomaton;
+
+    /** The indices of the items of this group */
+    private int[] mItemIndices;
+
+    /** The indices of the pieces every item of this group requires */
+    private int[][] mItemPieces;
+
+    private FieldGroup(ProgramFieldType[] fieldArr, boolean cacheTexts, AhoCorasick automaton, int[] itemIndices, int[][] itemPieces) {
+      mFieldArr = fieldArr;
+      mTextCache = cacheTexts ? new ProgramTextCache(fieldArr) : null;
+      mAutomaton = automaton;
+      mItemIndices = itemIndices;
+      mItemPieces = itemPieces;
+    }
+
+    private void addCandidates(Program prog, BitSet candidates) {
+      String text = mTextCache != null ? mTextCache.getText(prog) : ProgramTextCache.createText(prog, mFieldArr);
+
+      if (text.length() == 0) {
+        return;
+      }
+
+      BitSet found = new BitSet(mAutomaton.getPatternCount());
+      mAutomaton.findAll(text, found);
+
+      for (int i = 0; i < mItemIndices.length; i++) {
+        boolean candidate = true;
+
+        for (int j = 0; j < mItemPieces[i].length && candidate; j++) {
+          candidate = found.get(mItemPieces[i][j]);
+        }
+
+        if (candidate) {
+          candidates.set(mItemIndices[i]);
+        }
+      }
+    }
+  }
+
+  private static final class GroupBuilder {
+    private ProgramFieldType[] mFieldArr;
+
+    private boolean mCacheTexts;
+
+    private HashMap<String, Integer> mPieceIndices = new HashMap<String, Integer>();
+
+    private ArrayList<String> mPieces = new ArrayList<String>();
+
+    private ArrayList<Integer> mItemIndices = new ArrayList<Integer>();
+
+    private ArrayList<int[]> mItemPieces = new ArrayList<int[]>();
+
+    private GroupBuilder(ProgramFieldType[] fieldArr, boolean cacheTexts) {
+      mFieldArr = fieldArr;
+      mCacheTexts = cacheTexts;
+    }
+
+    private void add(int itemIndex, List<String> pieces) {
+      int[] pieceIndices = new int[pieces.size()];
+
+      for (int i = 0; i < pieceIndices.length; i++) {
+        Integer index = mPieceIndices.get(pieces.get(i));
+
+        if (index == null) {
+          index = mPieces.size();
+          mPieces.add(pieces.get(i));
+          mPieceIndices.put(pieces.get(i), index);
+        }
+
+        pieceIndices[i] = index;
+      }
+
+      mItemIndices.add(itemIndex);
+      mItemPieces.add(pieceIndices);
+    }
+
+    private FieldGroup create() {
+      int[] itemIndices = new int[mItemIndices.size()];
+      for (int i = 0; i < itemIndices.length; i++) {
+        itemIndices[i] = mItemIndices.get(i);
+      }
+
+      return new FieldGroup(mFieldArr, mCacheTexts, new AhoCorasick(mPieces.toArray(new String[mPieces.size()])),
+          itemIndices, mItemPieces.toArray(new int[mItemPieces.size()][]));
+    }
+  }
+}
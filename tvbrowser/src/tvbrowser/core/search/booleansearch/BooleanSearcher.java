@@ -25,6 +25,7 @@
  */
 package tvbrowser.core.search.booleansearch;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.StringTokenizer;
 import java.util.Vector;
@@ -85,6 +86,32 @@ public class BooleanSearcher extends AbstractSearcher {
     return mRootMatcher.toString();
   }
 
+  @Override
+  public String[] getRequiredTerms() {
+    ArrayList<String> terms = new ArrayList<String>();
+    addRequiredTerms(mRootMatcher, terms);
+
+    return terms.toArray(new String[terms.size()]);
+  }
+
+  /**
+   * Adds the words that must be contained for the matcher to match,
+   * alternatives and negations contain no required words.
+   */
+  private static void addRequiredTerms(IMatcher matcher, ArrayList<String> terms) {
+    if (matcher instanceof StringMatcher || matcher instanceof MatcherReuse) {
+      terms.add(matcher.toString());
+    }
+    else if (matcher instanceof AndMatcher) {
+      for (IMatcher subMatcher : ((AndMatcher) matcher).subMatcher) {
+        addRequiredTerms(subMatcher, terms);
+      }
+    }
+    else if (matcher instanceof StringMatcherRegEx) {
+      addRequiredTerms(((StringMatcherRegEx) matcher).getPretest(), terms);
+    }
+  }
+
   /**
    * Erzeugt einen neuen Suchbaum. Der Baum wird automatisch optimiert. Es kann
    * immer nur ein Konstruktor gleichzeitig laufen. Fuer Synchronization ist
@@ -95,6 +95,14 @@ public class StringMatcherRegEx implements IMatcher {
     return false;
   }
 
+  /**
+   * @return The matcher that tests if all words are contained.
+   * @since 3.4.5
+   */
+  IMatcher getPretest() {
+    return mPretest;
+  }
+
   public String toString() {
     if (mPattern != null) {
       return "(" + mPattern.pattern() + "[" + mPretest.toString() + "])";
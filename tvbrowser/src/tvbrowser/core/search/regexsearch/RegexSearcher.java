@@ -201,6 +201,22 @@ public class RegexSearcher extends AbstractSearcher {
   }
 
 
+  @Override
+  public String[] getRequiredTerms() {
+    if (preFilter == null) {
+      return null;
+    }
+
+    return new String[] {preFilter};
+  }
+
+  @Override
+  protected boolean isThreadSafe() {
+    // a new matcher is created for every check
+    return true;
+  }
+
+
   /**
    * get the pattern used by this searcher
    * @return the pattern
@@ -258,6 +258,16 @@ public class DefaultTvDataServiceProxy extends AbstractTvDataServiceProxy {
     return false;
   }
 
+  public boolean usesDataOfOtherDataServices() {
+    try {
+      return mTvDataService.usesDataOfOtherDataServices();
+    } catch (Throwable t) {
+      logError(t, "uses data of other data services");
+    }
+    // old data services may read other data, so be careful
+    return true;
+  }
+
   /**
    * Gets the action menu with the action supported for toolbar actions.
    * @return The action menu with the supported toolbar actions
@@ -174,6 +174,15 @@ public interface TvDataServiceProxy extends ContextMenuIf, ButtonActionIf, InfoI
    */
   public boolean supportsAutoUpdate();
 
+  /**
+   * Gets if the data service reads the data of channels of other data
+   * services while updating.
+   * @return <code>True</code> if the data service must update after
+   * the other data services, <code>false</code> otherwise.
+   * @since 3.4.5
+   */
+  public boolean usesDataOfOtherDataServices();
+
 
   /**
    * comparator for data service proxies (sorting alphabetically by name)
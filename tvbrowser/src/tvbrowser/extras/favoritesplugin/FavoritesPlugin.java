@@ -76,6 +76,7 @@ import tvbrowser.extras.favoritesplugin.core.AdvancedFavorite;
 import tvbrowser.extras.favoritesplugin.core.Exclusion;
 import tvbrowser.extras.favoritesplugin.core.Favorite;
 import tvbrowser.extras.favoritesplugin.core.FavoriteFilter;
+import tvbrowser.extras.favoritesplugin.core.FavoriteMatcher;
 import tvbrowser.extras.favoritesplugin.core.FilterFavorite;
 import tvbrowser.extras.favoritesplugin.core.PendingFilterLoader;
 import tvbrowser.extras.favoritesplugin.core.TitleFavorite;
@@ -173,6 +174,10 @@ public class FavoritesPlugin {
   private ManageFavoritesPanel panel;
 
   private ExecutorService mThreadPool;
+
+  /** The matcher that finds the favorites to check for a program */
+  private FavoriteMatcher mFavoriteMatcher;
+  private final Object mFavoriteMatcherLock = new Object();
   private JPanel mCenterPanel;
   
   private PluginCenterPanelWrapper mWrapper;
@@ -259,11 +264,13 @@ public class FavoritesPlugin {
             }
 
             if(addedDayProgram != null) {
+              FavoriteMatcher matcher = getFavoriteMatcher(FavoriteTreeModel.getInstance().getFavoriteArr());
               Iterator<Program> it = addedDayProgram.getPrograms();
               while (it.hasNext()) {
                 final Program p = it.next();
 
-                for (Favorite fav : FavoriteTreeModel.getInstance().getFavoriteArr()) {
+                // only the favorites that may match need to check the program
+                for (Favorite fav : matcher.getCandidates(p)) {
                   try {
                     fav.tryToMatch(p);
                   } catch (TvBrowserException e) {
@@ -308,6 +315,23 @@ public class FavoritesPlugin {
     });
   }
 
+  /**
+   * Gets the matcher for the given favorites, it is created again
+   * if the favorites or their search settings were changed.
+   *
+   * @param favorites The current favorites.
+   * @return The matcher for the favorites.
+   */
+  private FavoriteMatcher getFavoriteMatcher(Favorite[] favorites) {
+    synchronized (mFavoriteMatcherLock) {
+      if (mFavoriteMatcher == null || !mFavoriteMatcher.isValidFor(favorites)) {
+        mFavoriteMatcher = new FavoriteMatcher(favorites);
+      }
+
+      return mFavoriteMatcher;
+    }
+  }
+
   /**
    * Waits for finishing the update threads.
    * @since 2.7.2
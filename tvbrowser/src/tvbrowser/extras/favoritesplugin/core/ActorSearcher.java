@@ -56,6 +56,11 @@ public class ActorSearcher extends RegexSearcher {
     return super.matches(value);
   }
 
+  @Override
+  public String[] getRequiredTerms() {
+    return new String[] {mLastName};
+  }
+
   private static String getSearchTerm(String actor) {
     if (actor == null) {
       return null;
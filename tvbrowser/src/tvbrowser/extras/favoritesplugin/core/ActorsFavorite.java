@@ -51,6 +51,10 @@ public class ActorsFavorite extends Favorite {
 
   private String mActors;
 
+  /** The searcher for the actors it was created for */
+  private ActorSearcher mSearcher;
+  private String mSearcherActors;
+
   public ActorsFavorite(String actors) {
     super();
     actors = actors.trim();
@@ -102,8 +106,14 @@ public class ActorsFavorite extends Favorite {
     return getSearcher().matches(p, fields);
   }
 
-  public ActorSearcher getSearcher() throws TvBrowserException {
-    return new ActorSearcher(mActors);
+  public synchronized ActorSearcher getSearcher() throws TvBrowserException {
+    // keep the searcher as long as the actors don't change, creating it compiles a regular expression
+    if (mSearcher == null || !mActors.equals(mSearcherActors)) {
+      mSearcher = new ActorSearcher(mActors);
+      mSearcherActors = mActors;
+    }
+
+    return mSearcher;
   }
 
   @Override
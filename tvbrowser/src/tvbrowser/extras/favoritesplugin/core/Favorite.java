@@ -37,6 +37,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 
 import tvbrowser.core.plugin.PluginManagerImpl;
+import tvbrowser.core.search.AbstractSearcher;
 import tvbrowser.extras.common.LimitationConfiguration;
 import tvbrowser.extras.common.ReminderConfiguration;
 import tvbrowser.extras.favoritesplugin.FavoriteConfigurator;
@@ -45,6 +46,7 @@ import tvbrowser.extras.favoritesplugin.FavoritesPluginProxy;
 import tvbrowser.extras.favoritesplugin.dlgs.FavoriteTreeModel;
 import tvbrowser.extras.reminderplugin.ReminderFrame;
 import tvbrowser.extras.reminderplugin.ReminderPlugin;
+import tvdataservice.MarkedProgramsMap;
 import util.exc.ErrorHandler;
 import util.exc.TvBrowserException;
 import util.program.ProgramUtilities;
@@ -304,11 +306,17 @@ public abstract class Favorite {
   }
 
   public void handleContainingPrograms(Program[] progs) {
+    ArrayList<Program> containing = new ArrayList<Program>();
+    
     for (Program p : progs) {
       if (mPrograms.contains(p)) {
-        p.mark(FavoritesPluginProxy.getInstance());
+        containing.add(p);
       }
     }
+    
+    if(!containing.isEmpty()) {
+      MarkedProgramsMap.getInstance().mark(containing.toArray(new Program[containing.size()]), FavoritesPluginProxy.getInstance());
+    }
   }
 
   /**
@@ -560,48 +568,56 @@ public abstract class Favorite {
 
     int inx1 = 0;
     int inx2 = 0;
-    while (inx1 < p1.length && inx2 < newProgList.length) {
-      if (comparator.compare(p1[inx1], newProgList[inx2]) < 0) {
-        // remove p1[inx1]
-        unmarkProgram(p1[inx1]);
-        inx1++;
-      }
-      else if (comparator.compare(p1[inx1], newProgList[inx2]) > 0) {
-        // add (p2[inx2]
-        markProgram(newProgList[inx2],ReminderFrame.DONT_REMIND_AGAIN);
-        newPrograms.add(newProgList[inx2]);
-        resultList.add(newProgList[inx2]);
-        inx2++;
-      }
-      else {
-        /* leave
-         *
-         * check if the new found program is a new instance
-         * of the program and mark it if it is so. */
-        if(p1[inx1].getProgramState() == Program.WAS_DELETED_STATE) {
-          int minutes = ReminderPlugin.getInstance().getReminderMinutesForProgram(p1[inx1]);
-          markProgram(newProgList[inx2], minutes);
+    
+    // the filter of the program table is checked once for all changed markings
+    MarkedProgramsMap.getInstance().startBatch();
+    
+    try {
+      while (inx1 < p1.length && inx2 < newProgList.length) {
+        if (comparator.compare(p1[inx1], newProgList[inx2]) < 0) {
+          // remove p1[inx1]
+          unmarkProgram(p1[inx1]);
+          inx1++;
+        }
+        else if (comparator.compare(p1[inx1], newProgList[inx2]) > 0) {
+          // add (p2[inx2]
+          markProgram(newProgList[inx2],ReminderFrame.DONT_REMIND_AGAIN);
+          newPrograms.add(newProgList[inx2]);
+          resultList.add(newProgList[inx2]);
+          inx2++;
         }
+        else {
+          /* leave
+           *
+           * check if the new found program is a new instance
+           * of the program and mark it if it is so. */
+          if(p1[inx1].getProgramState() == Program.WAS_DELETED_STATE) {
+            int minutes = ReminderPlugin.getInstance().getReminderMinutesForProgram(p1[inx1]);
+            markProgram(newProgList[inx2], minutes);
+          }
 
-        resultList.add(newProgList[inx2]);
-        inx1++;
-        inx2++;
+          resultList.add(newProgList[inx2]);
+          inx1++;
+          inx2++;
+        }
       }
-    }
 
-    if (inx2 < newProgList.length) {
-      // add (p2[inx2]..p2[p2.length-1])
-      for (int i=inx2; i< newProgList.length; i++) {
-        markProgram(newProgList[i],ReminderFrame.DONT_REMIND_AGAIN);
-        newPrograms.add(newProgList[i]);
-        resultList.add(newProgList[i]);
+      if (inx2 < newProgList.length) {
+        // add (p2[inx2]..p2[p2.length-1])
+        for (int i=inx2; i< newProgList.length; i++) {
+          markProgram(newProgList[i],ReminderFrame.DONT_REMIND_AGAIN);
+          newPrograms.add(newProgList[i]);
+          resultList.add(newProgList[i]);
+        }
       }
-    }
-    if (inx1 < p1.length) {
-      // remove (p1[inx1]..p1[p1.length-1])
-      for (int i=inx1; i<p1.length; i++) {
-        unmarkProgram(p1[i]);
+      if (inx1 < p1.length) {
+        // remove (p1[inx1]..p1[p1.length-1])
+        for (int i=inx1; i<p1.length; i++) {
+          unmarkProgram(p1[i]);
+        }
       }
+    }finally {
+      MarkedProgramsMap.getInstance().finishBatch();
     }
 
     if(!noNewProgramsUpdate) {
@@ -945,6 +961,35 @@ public abstract class Favorite {
     return mSearchFormSettings.createSearcher();
   }
 
+  /**
+   * Gets the fields the searcher of this favorite searches in.
+   *
+   * @return The searched fields.
+   * @since 3.4.5
+   */
+  public ProgramFieldType[] getSearchFieldTypes() {
+    return mSearchFormSettings.getFieldTypes();
+  }
+
+  /**
+   * Gets the terms a program must contain in the searched fields to match
+   * this favorite, case is ignored. The terms are used to skip favorites
+   * that can't match a program without running their searcher.
+   *
+   * @return The required terms or <code>null</code> if every program must be checked.
+   * @throws TvBrowserException
+   * @since 3.4.5
+   */
+  public String[] getRequiredTerms() throws TvBrowserException {
+    ProgramSearcher searcher = getSearcher();
+
+    if (searcher instanceof AbstractSearcher) {
+      return ((AbstractSearcher) searcher).getRequiredTerms();
+    }
+
+    return null;
+  }
+
   /**
    * Checks if the program is marked by this favorite and remove it if it does.
    * @param p Program to remove
@@ -0,0 +1,141 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.extras.favoritesplugin.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import tvbrowser.core.search.MultiSearcherMatcher;
+import util.exc.TvBrowserException;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+import devplugin.ProgramSearcher;
+
+/**
+ * Finds the favorites that may match a program with one check of the
+ * program for all favorites.
+ * <p>
+ * Only the returned candidates have to be checked with
+ * {@link Favorite#tryToMatch(Program)}, for all other favorites the program
+ * doesn't contain the required terms.
+ *
+ * @since 3.4.5
+ */
+public class FavoriteMatcher {
+  private static final Logger mLog = Logger.getLogger(FavoriteMatcher.class.getName());
+
+  private Favorite[] mFavorites;
+
+  /** The searchers the required terms were taken from, <code>null</code> if a favorite has no terms */
+  private ProgramSearcher[] mSearchers;
+
+  private ProgramFieldType[][] mFieldTypes;
+
+  private MultiSearcherMatcher<Favorite> mMatcher;
+
+  /**
+   * Creates the matcher for the given favorites.
+   *
+   * @param favorites The favorites.
+   */
+  public FavoriteMatcher(Favorite[] favorites) {
+    mFavorites = favorites.clone();
+    mSearchers = new ProgramSearcher[favorites.length];
+    mFieldTypes = new ProgramFieldType[favorites.length][];
+
+    ArrayList<String[]> termArrs = new ArrayList<String[]>(favorites.length);
+
+    for (int i = 0; i < favorites.length; i++) {
+      String[] terms = null;
+
+      try {
+        terms = favorites[i].getRequiredTerms();
+
+        if (terms != null) {
+          mSearchers[i] = favorites[i].getSearcher();
+          mFieldTypes[i] = favorites[i].getSearchFieldTypes();
+        }
+      } catch (TvBrowserException e) {
+        // the favorite is checked for every program and reports the error there
+        terms = null;
+        mSearchers[i] = null;
+      }
+
+      termArrs.add(terms);
+    }
+
+    mMatcher = new MultiSearcherMatcher<Favorite>(Arrays.asList(mFavorites), Arrays.asList(mFieldTypes), termArrs);
+
+    mLog.info("Favorite matcher created for " + favorites.length + " favorites, "
+        + mMatcher.getAlwaysCandidateCount() + " without required terms, "
+        + mMatcher.getFieldGroupCount() + " field sets");
+  }
+
+  /**
+   * Checks if this matcher was created for the given favorites with their
+   * current search settings.
+   *
+   * @param favorites The favorites to check.
+   * @return <code>true</code> if this matcher can be used for the favorites.
+   */
+  public boolean isValidFor(Favorite[] favorites) {
+    if (favorites.length != mFavorites.length) {
+      return false;
+    }
+
+    for (int i = 0; i < favorites.length; i++) {
+      if (favorites[i] != mFavorites[i]) {
+        return false;
+      }
+
+      // favorites without required terms are always checked, so changes don't matter
+      if (mSearchers[i] != null) {
+        try {
+          if (favorites[i].getSearcher() != mSearchers[i]
+              || !Arrays.equals(favorites[i].getSearchFieldTypes(), mFieldTypes[i])) {
+            return false;
+          }
+        } catch (TvBrowserException e) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Gets the favorites that may match the given program.
+   *
+   * @param prog The program to check.
+   * @return The candidates in the order of the favorites.
+   */
+  public List<Favorite> getCandidates(Program prog) {
+    return mMatcher.getCandidates(prog);
+  }
+}
@@ -162,6 +162,12 @@ public class FilterFavorite extends Favorite implements PendingFilterLoader {
     return foundPrograms.toArray(new Program[foundPrograms.size()]);
   }
   
+  @Override
+  public String[] getRequiredTerms() {
+    // only the filter is used
+    return null;
+  }
+
   @Override
   public boolean matches(Program p) {
     ProgramFilter test = getProgramFilter();
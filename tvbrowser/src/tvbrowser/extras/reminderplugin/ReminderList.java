@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 
 import tvbrowser.core.ChannelList;
+import tvbrowser.core.SubscribedChannels;
 import util.io.IOUtilities;
 import devplugin.Date;
 import devplugin.Plugin;
@@ -217,9 +218,10 @@ public class ReminderList implements ActionListener {
   public void removeExpiredItems() {
     ArrayList<ReminderListItem> localItems = (ArrayList<ReminderListItem>) mList
             .clone();
+    SubscribedChannels subscribed = ChannelList.getSubscribedChannelsSnapshot();
     for (ReminderListItem item : localItems) {
       final Program program = item.getProgram();
-      if (program == null || program.isExpired() || !ChannelList.isSubscribedChannel(program.getChannel())) {
+      if (program == null || program.isExpired() || !subscribed.contains(program.getChannel())) {
         remove(item);
       }
     }
@@ -118,6 +118,8 @@ import javax.swing.plaf.basic.BasicTabbedPaneUI;
 
 import tvbrowser.TVBrowser;
 import tvbrowser.core.ChannelList;
+import tvbrowser.core.OnAirIndex;
+import tvbrowser.core.OnAirListener;
 import tvbrowser.core.DateListener;
 import tvbrowser.core.DummyChannel;
 import tvbrowser.core.PluginLoader;
@@ -229,6 +231,9 @@ public class MainFrame extends JFrame implements DateListener,DropTargetListener
 
   private Thread downloadingThread;
 
+  /** If the on air state changed and the program table was not updated for it yet, like during a download */
+  private boolean mOnAirChangePending;
+
   private JPanel jcontentPane;
 
   private DefaultToolBarModel mToolBarModel;
@@ -280,9 +285,6 @@ public class MainFrame extends JFrame implements DateListener,DropTargetListener
 
   private int mLastTimerMinutesAfterMidnight;
 
-  private static Date[] mChannelDateArr;
-  private static int[] mOnAirRowProgramsArr;
-
   private boolean mSettingsWillBeOpened;
 
   private long mLastAutoUpdateRun;
@@ -355,8 +357,6 @@ public class MainFrame extends JFrame implements DateListener,DropTargetListener
     mLastTimerMinutesAfterMidnight = -1;
     mLastAutoUpdateRun = System.currentTimeMillis();
 
-    mChannelDateArr = null;
-    mOnAirRowProgramsArr = null;
     mStatusBar = new StatusBar(mGlobalFindAsYouTypeKeyListener);
     mStatusBar.setOpaque(false);
     mStatusBar.getProgressBar().setOpaque(false);
@@ -619,6 +619,12 @@ public class MainFrame extends JFrame implements DateListener,DropTargetListener
     });
     mTimer.start();
     
+    OnAirIndex.getInstance().addOnAirListener(new OnAirListener() {
+      public void minuteTick(Date date, int minutesAfterMidnight, Program[] started, Program[] ended) {
+        handleOnAirChanged(started, ended);
+      }
+    });
+    
     setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
 
     //create the drop target for installation of Plugins with Drag'N'Drop on MainFrame
@@ -1665,8 +1671,7 @@ public class MainFrame extends JFrame implements DateListener,DropTargetListener
    * Resets the arrays of on air programs for reloading all.
    */
   public static void resetOnAirArrays() {
-    mChannelDateArr = null;
-    mOnAirRowProgramsArr = null;
+    OnAirIndex.getInstance().reset();
   }
 
   private void handleTimerEvent() {
@@ -1681,94 +1686,13 @@ public class MainFrame extends JFrame implements DateListener,DropTargetListener
     // Avoid a repaint 6 times a minute (Once a minute is enough)
     try {
       int minutesAfterMidnight = IOUtilities.getMinutesAfterMidnight();
-      boolean onAirChanged = false;
       if (minutesAfterMidnight != mLastTimerMinutesAfterMidnight && (downloadingThread == null || !downloadingThread.isAlive())) {
         mLastTimerMinutesAfterMidnight = minutesAfterMidnight;
-        Channel[] ch = ChannelList.getSubscribedChannels();
-
-        if(ch != null) {
-          /* If no date array is available we have to find
-           * the on air programs */
-          if(mChannelDateArr == null) {
-            onAirChanged = true;
-            fillOnAirArrays(ch);
-          }
-          else {
-            /* We have a date array and can test the programs */
-            for(int i = 0; i < mChannelDateArr.length; i++) {
-              if(mChannelDateArr[i] != null) {
-                ChannelDayProgram chProg = TvDataBase.getInstance().getDayProgram(mChannelDateArr[i],ch[i]);
-
-                if(chProg != null && chProg.getProgramCount() > 0 && mOnAirRowProgramsArr[i] != -1) {
-                  if (mOnAirRowProgramsArr[i] >= chProg.getProgramCount()) {
-                    fillOnAirArrays(ch);
-                    mLog.warning("Reset of on-air-arrays");
-                  }
-                  Program p = chProg.getProgramAt(mOnAirRowProgramsArr[i]);
-
-                  if(p.isOnAir()) {
-                    p.validateMarking();
-                  } else if(p.isExpired()) {
-                    onAirChanged = true;
-                    p.validateMarking();
-
-                    int n = mOnAirRowProgramsArr[i]+1;
-
-                    if(n < chProg.getProgramCount()) {
-                      mOnAirRowProgramsArr[i] = n;
-                      chProg.getProgramAt(mOnAirRowProgramsArr[i]).validateMarking();
-                    }
-                    else {
-                      /* The last day program is expired so we have to
-                       * look for the on air program on the next day */
-                      mChannelDateArr[i] = mChannelDateArr[i].addDays(1);
-
-                      chProg = TvDataBase.getInstance().getDayProgram(mChannelDateArr[i],ch[i]);
-
-                      // The next day has no data
-                      if(chProg == null || chProg.getProgramCount() < 1) {
-                        mOnAirRowProgramsArr[i] = -1;
-                      } else {
-                        mOnAirRowProgramsArr[i] = 0;
-                        chProg.getProgramAt(mOnAirRowProgramsArr[i]).validateMarking();
-                      }
-                    }
-                  }
-                }
-                else if(mChannelDateArr[i].compareTo(Date.getCurrentDate()) < 0) {
-                  /* If the date array for the channel contains a date
-                   * earlier than today we have to use today instead */
-                  mChannelDateArr[i] = Date.getCurrentDate();
-                  onAirChanged = true;
-
-                  chProg = TvDataBase.getInstance().getDayProgram(mChannelDateArr[i],ch[i]);
-
-                  if(chProg != null && chProg.getProgramCount() > 0) {
-                    mOnAirRowProgramsArr[i] = 0;
-                    chProg.getProgramAt(mOnAirRowProgramsArr[i]).validateMarking();
-                  }
-                }
-              }
-            }
-          }
-        }
         
         for(PluginCenterPanelWrapper wrapper : mCenterPanelWrapperList) {
           wrapper.timeEvent();
         }
       }
-
-      if (onAirChanged) {
-        if(Settings.propTableLayout.getString().equals(Settings.LAYOUT_OPTIMIZED_COMPACT_TIME_BLOCK)) {
-          mProgramTableScrollPane.getProgramTable().updateLayout();
-          mProgramTableScrollPane.updateUI();
-        }
-
-        // update filtered view if the "on air" condition changed for any program
-        if(!getProgramFilter().equals(FilterManagerImpl.getInstance().getDefaultFilter())) {
-          setProgramFilter(getProgramFilter());
-        }
-      }
     }catch(Exception e) {}
 
     if (mPluginView != null) {
@@ -1838,41 +1762,37 @@ public class MainFrame extends JFrame implements DateListener,DropTargetListener
     }
   }
 
-  private void fillOnAirArrays(Channel[] ch) {
-    mChannelDateArr = new Date[ch.length];
-    mOnAirRowProgramsArr = new int[ch.length];
-
-    Arrays.fill(mOnAirRowProgramsArr, -1);
-
-    Date currentDate = Date.getCurrentDate();
-    for(int i = 0; i < ch.length; i++) {
-      ChannelDayProgram chProg = TvDataBase.getInstance().getDayProgram(currentDate,ch[i]);
+  /**
+   * Validates the markings of the programs that started or ended and
+   * updates the program table and the filter if needed. A change during
+   * a download is remembered and applied on the first tick after it.
+   *
+   * @param started The programs that started since the last call.
+   * @param ended The programs that ended since the last call.
+   */
+  private void handleOnAirChanged(Program[] started, Program[] ended) {
+    for (Program p : started) {
+      p.validateMarking();
+    }
+    for (Program p : ended) {
+      p.validateMarking();
+    }
 
-      if(chProg == null) {
-        mChannelDateArr[i] = null;
-      } else {
-        int n = chProg.getProgramCount();
-
-        for(int j = 0; j < n; j++) {
-          Program p = chProg.getProgramAt(j);
-          if(p.isOnAir() || !p.isExpired()) {
-            p.validateMarking();
-            mOnAirRowProgramsArr[i] = j;
-            mChannelDateArr[i] = currentDate;
-            break;
-          }
-        }
+    if (started.length > 0 || ended.length > 0) {
+      mOnAirChangePending = true;
+    }
 
-        if(mOnAirRowProgramsArr[i] == -1) {
-          chProg = TvDataBase.getInstance().getDayProgram(currentDate.addDays(1),ch[i]);
+    if (mOnAirChangePending && (downloadingThread == null || !downloadingThread.isAlive())) {
+      mOnAirChangePending = false;
 
-          if(chProg != null && chProg.getProgramCount() > 0 && chProg.getProgramAt(0).isOnAir()) {
-            chProg.getProgramAt(0).validateMarking();
-            mOnAirRowProgramsArr[i] = 0;
-          }
+      if(Settings.propTableLayout.getString().equals(Settings.LAYOUT_OPTIMIZED_COMPACT_TIME_BLOCK)) {
+        mProgramTableScrollPane.getProgramTable().updateLayout();
+        mProgramTableScrollPane.updateUI();
+      }
 
-          mChannelDateArr[i] = currentDate.addDays(1);
-        }
+      // update filtered view if the "on air" condition changed for any program
+      if(!getProgramFilter().equals(FilterManagerImpl.getInstance().getDefaultFilter())) {
+        setProgramFilter(getProgramFilter());
       }
     }
   }
@@ -1132,13 +1132,19 @@ public abstract class MenuBar extends JMenuBar implements ActionListener {
 		  infoBuilder.append("\nPersona: ").append(Persona.getInstance().getName());
 		  infoBuilder.append("\nIcons: ").append(Settings.propIcontheme.getString());
 		  infoBuilder.append("\nInfo-Icons: ").append(Settings.propInfoIconThemeID.getString());
-		  infoBuilder.append("\nNumber of markings: ").append(MarkedProgramsMap.getInstance().getMarkedPrograms().length);
+		  infoBuilder.append("\nMarkings: ").append(MarkedProgramsMap.getInstance().getStatistics());
 		  infoBuilder.append("\n\nInstalled plugins:");
 		  
 		  PluginProxy[] plugins = PluginProxyManager.getInstance().getAllPlugins();
 		  
 		  for(PluginProxy plugin : plugins) {
 		    infoBuilder.append("\n  ").append(plugin.getId()).append(" ").append(plugin.isActivated());
+		    
+		    String eventStatistics = PluginProxyManager.getInstance().getEventQueueStatistics(plugin);
+		    
+		    if(eventStatistics != null) {
+		      infoBuilder.append(" (events ").append(eventStatistics).append(")");
+		    }
 		  }
 		  
 		  infoBuilder.append("\n\nSubscribed channels:");
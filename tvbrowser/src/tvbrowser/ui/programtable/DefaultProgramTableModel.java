@@ -25,26 +25,36 @@
  */
 package tvbrowser.ui.programtable;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.SwingUtilities;
-import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
+import tvbrowser.core.OnAirIndex;
+import tvbrowser.core.OnAirListener;
 import tvbrowser.core.TvDataBase;
+import tvbrowser.core.plugin.ProgramTableIconLoader;
 import tvbrowser.ui.mainframe.MainFrame;
 import util.io.IOUtilities;
+import util.misc.NamedThreadFactory;
 import util.program.ProgramUtilities;
 import util.ui.ProgramPanel;
 import devplugin.Channel;
@@ -60,8 +70,13 @@ import devplugin.ProgressMonitor;
  * @author  Til
  */
 public class DefaultProgramTableModel implements ProgramTableModel, ChangeListener {
+  private static final Logger mLog = Logger.getLogger(DefaultProgramTableModel.class.getName());
+
   private static final int MAXIMUM_WAIT_TIME_FOR_THREAD_POOL_IN_SECONDS = 30;
   
+  /** The thread pool for filling the columns, shared by all models */
+  private static ExecutorService mThreadPool;
+  
   private int mTomorrowLatestTime;
   private int mTodayEarliestTime;
 
@@ -73,7 +88,6 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
   private ArrayList<ProgramPanel>[] mProgramColumn, mShownProgramColumn;
   
   private int mLastTimerMinutesAfterMidnight;
-  private Timer mTimer;
   
   private ProgramFilter mProgramFilter=null;
 
@@ -85,6 +99,22 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
    * the currently active channel filter
    */
   private ChannelFilter mChannelFilter = null;
+  
+  /** The day programs every column was created from, by the channel of the column */
+  private HashMap<Channel, ColumnContent> mColumnContent = new HashMap<Channel, ColumnContent>();
+  
+  /** If the filters have to be checked again for all programs */
+  private boolean mFilterChanged = true;
+  
+  /** If the program panels have to be created again */
+  private boolean mRecreatePanels;
+  
+  /** Repaints the cell of a panel when its plugin icons were loaded in the background */
+  private final ChangeListener mPluginIconListener = new ChangeListener() {
+    public void stateChanged(ChangeEvent e) {
+      firePanelHasChanged((ProgramPanel) e.getSource());
+    }
+  };
 
   /**
    * Creates a new instance of DefaultProgramTableModel.
@@ -105,12 +135,12 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
 	  setChannels(channelArr);
 
 
-    mTimer = new Timer(10000, new ActionListener() {
-      public void actionPerformed(ActionEvent evt) {
+    // repaint the programs on air once a minute
+    OnAirIndex.getInstance().addOnAirListener(new OnAirListener() {
+      public void minuteTick(Date date, int minutesAfterMidnight, Program[] started, Program[] ended) {
         handleTimerEvent();
       }
     });
-    mTimer.start();
   }
 
 
@@ -166,10 +196,17 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
 
   private void updateDateRange() {
     mDateRangeForChannel.clear();
+    int firstDay = 0;
+    int lastDay = 0;
     for (Channel channel : mChannelArr) {
       DateRange dateRange = getDateRangeForChannel(channel);
       mDateRangeForChannel.put(channel, dateRange);
+      firstDay = Math.min(firstDay, dateRange.getBegin());
+      lastDay = Math.max(lastDay, dateRange.getBegin() + dateRange.getCount() - 1);
     }
+
+    // keep the shown day programs in memory
+    TvDataBase.getInstance().setPinnedDates(mMainDay.addDays(firstDay), mMainDay.addDays(lastDay));
   }
 
 
@@ -203,14 +240,20 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
   
   public void setProgramFilter(ProgramFilter filter) {
     mProgramFilter=filter;
-    updateTableContent();
-    fireTableDataChanged(null);
+    mFilterChanged = true;
+    
+    if (!updateTableContent(null, null)) {
+      fireTableDataChanged(null);
+    }
   }
   
   public void setChannelFilter(ChannelFilter channelFilter) {
     mChannelFilter = channelFilter;
-    updateTableContent();
-    fireTableDataChanged(null);
+    mFilterChanged = true;
+    
+    if (!updateTableContent(null, null)) {
+      fireTableDataChanged(null);
+    }
   }
 
 
@@ -245,7 +288,7 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
 
 
 
-  private void addChannelDayProgram(int col, ChannelDayProgram[] cdpArr, ChannelDayProgram[] jointChannelProgArr, Date fromDate, int fromMinutes, Date toDate, int toMinutes)
+  private void addChannelDayProgram(int col, ChannelDayProgram[] cdpArr, ChannelDayProgram[] jointChannelProgArr, Date fromDate, int fromMinutes, Date toDate, int toMinutes, PanelReuse reuse)
   {
     if (cdpArr == null) {
       return;
@@ -304,8 +347,7 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
             // program starts after or at given end time
             if (compareDateTime(progDate, progTime, fromDate, fromMinutes) >= 0)  {
   		        if (filterAccepts(prog)) {
-                ProgramPanel panel = new ProgramPanel(prog);
-                mProgramColumn[col].add(panel);
+                mProgramColumn[col].add(reuse.getPanel(prog));
               }
             }
   	        else {
@@ -313,8 +355,7 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
   	          if (mProgramColumn[col].isEmpty()) {
   	            if (compareDateTime(progDate, progTime + prog.getLength(), fromDate, fromMinutes) > 0) {
                   if (filterAccepts(prog)) {
-                    ProgramPanel panel = new ProgramPanel(prog);
-                    mProgramColumn[col].add(panel);
+                    mProgramColumn[col].add(reuse.getPanel(prog));
                   }
                 }
   	          }
@@ -341,11 +382,68 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
     return mMainDay;
   }
   
+  /**
+   * Checks the filters again for all programs of the table.
+   */
   public void updateTableContent() {
+    mFilterChanged = true;
     updateTableContent(null, null);
   }
+  
+  /**
+   * Creates all program panels of the table again, use it if
+   * the settings for the program panels were changed.
+   * 
+   * @since 3.4.5
+   */
+  public void recreateTableContent() {
+    mFilterChanged = true;
+    mRecreatePanels = true;
+    updateTableContent(null, null);
+  }
+  
+  private static synchronized ExecutorService getThreadPool() {
+    if (mThreadPool == null) {
+      mThreadPool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(),3),
+          new NamedThreadFactory("Program table model", true, Thread.NORM_PRIORITY));
+    }
+    
+    return mThreadPool;
+  }
+  
+  /**
+   * Runs the tasks in the shared thread pool and waits for them.
+   */
+  private static void runTasks(List<Callable<Object>> tasks) {
+    if (tasks.isEmpty()) {
+      return;
+    }
+    
+    try {
+      List<Future<Object>> results = getThreadPool().invokeAll(tasks, MAXIMUM_WAIT_TIME_FOR_THREAD_POOL_IN_SECONDS, TimeUnit.SECONDS);
+      
+      for (Future<Object> result : results) {
+        try {
+          result.get();
+        } catch (CancellationException e) {
+          mLog.warning("Program table task did not finish in time");
+        } catch (ExecutionException e) {
+          mLog.log(Level.SEVERE, "Program table task failed", e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 
-  private synchronized void updateTableContent(final ProgressMonitor monitor, final Runnable callback)
+  /**
+   * Updates the columns of the table. Only the columns whose day programs
+   * have changed are filled again unless the filters were changed, the panels
+   * of programs that were already shown are reused.
+   * 
+   * @return <code>true</code> if the listeners were informed about the change.
+   */
+  private synchronized boolean updateTableContent(final ProgressMonitor monitor, final Runnable callback)
   {
     // if this is the initial update, skip every UI related operation, just set
     // necessary members. the UI update will be forced when setting the initial
@@ -353,12 +451,18 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
     if (mProgramFilter == null || MainFrame.isStarting()) {
       mShownProgramColumn = mProgramColumn.clone();
       mShownChannelArr = mChannelArr.clone();
-      return;
+      return false;
     }
     
     checkThread();
+    long startTime = System.currentTimeMillis();
+    
     mOnAirRows = null;
-    deregisterFromPrograms(mProgramColumn);
+    
+    // the columns may have been replaced by setChannels, so the panels of the content are used
+    for (ColumnContent content : mColumnContent.values()) {
+      deregisterFromPrograms(content.mPanels);
+    }
     
     TvDataBase db = TvDataBase.getInstance();
     
@@ -367,23 +471,34 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
       monitor.setValue(0);
     }
 
+    final boolean filterChanged = mFilterChanged;
+    final boolean recreatePanels = mRecreatePanels;
+    mFilterChanged = false;
+    mRecreatePanels = false;
+    
+    HashMap<Channel, ColumnContent> oldContent = mColumnContent;
+    mColumnContent = new HashMap<Channel, ColumnContent>();
+    
     final Date nextDay = mMainDay.addDays(1);
     int jointChannelCount = 0;
+    int keptColumns = 0;
+    final AtomicInteger reusedPanels = new AtomicInteger();
+    final AtomicInteger createdPanels = new AtomicInteger();
     
-    ExecutorService threadPool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(),3));
+    ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
     
     for (int i = 0; i < mChannelArr.length; i++) {
-      mProgramColumn[i-jointChannelCount].clear();
-      DateRange dateRange = mDateRangeForChannel.get(mChannelArr[i]);
+      Channel channel = mChannelArr[i];
+      DateRange dateRange = mDateRangeForChannel.get(channel);
       final ChannelDayProgram[] cdp = new ChannelDayProgram[dateRange.getCount()];
 
       for (int d = 0; d<cdp.length; d++) {
-        cdp[d] = db.getDayProgram(mMainDay.addDays(dateRange.getBegin() + d), mChannelArr[i]);
+        cdp[d] = db.getDayProgram(mMainDay.addDays(dateRange.getBegin() + d), channel);
       }
       
       ChannelDayProgram[] jointChannelDayProgram = null;
       
-      Channel jointChannel = mChannelArr[i].getJointChannel();
+      Channel jointChannel = channel.getJointChannel();
       
       if(jointChannel != null) {
         jointChannelCount++;
@@ -401,24 +516,37 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
       final int index = i-jointChannelCount;
       final ChannelDayProgram[] use = jointChannelDayProgram;
       
-      threadPool.execute(new Thread("ADD CHANNEL DAY PROGRAM TO PROGRAM TABLE MODEL THREAD") {
-        @Override
-        public void run() {
-          addChannelDayProgram(index, cdp, use, mMainDay, mTodayEarliestTime, nextDay, mTomorrowLatestTime);
-          
-          if (monitor != null) {
-            monitor.setValue(finalI);
+      ColumnContent old = oldContent.get(channel);
+      ColumnContent content = new ColumnContent(cdp, use, mMainDay, mTodayEarliestTime, mTomorrowLatestTime);
+      
+      if (!filterChanged && old != null && content.hasSameDayPrograms(old)) {
+        // nothing has changed for this column
+        content.mPanels = old.mPanels;
+        keptColumns++;
+      }
+      else {
+        content.mPanels = new ArrayList<ProgramPanel>();
+        
+        final PanelReuse reuse = new PanelReuse(recreatePanels || old == null ? null : old.mPanels, reusedPanels, createdPanels, mPluginIconListener);
+        
+        tasks.add(new Callable<Object>() {
+          public Object call() {
+            addChannelDayProgram(index, cdp, use, mMainDay, mTodayEarliestTime, nextDay, mTomorrowLatestTime, reuse);
+            
+            if (monitor != null) {
+              monitor.setValue(finalI);
+            }
+            
+            return null;
           }
-        }
-      });
-
+        });
+      }
+      
+      mProgramColumn[index] = content.mPanels;
+      mColumnContent.put(channel, content);
     }
 
-    threadPool.shutdown();
-    
-    try {
-      threadPool.awaitTermination(MAXIMUM_WAIT_TIME_FOR_THREAD_POOL_IN_SECONDS, TimeUnit.SECONDS);
-    } catch (InterruptedException e) {}
+    runTasks(tasks);
     
     boolean showEmptyColumns = (mProgramFilter instanceof tvbrowser.core.filters.ShowAllFilter) && (mChannelFilter == null);
 
@@ -442,10 +570,37 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
 
     newShownColumns.toArray(mShownProgramColumn);
     newShownChannels.toArray(mShownChannelArr);
+    
+    prefetchPluginIcons();
 
     handleTimerEvent();
     registerAtPrograms(mProgramColumn);
+    
+    if (mLog.isLoggable(Level.FINE)) {
+      mLog.fine("Program table content updated in " + (System.currentTimeMillis() - startTime) + " ms: "
+          + (mProgramColumn.length - keptColumns) + " of " + mProgramColumn.length + " columns filled, "
+          + reusedPanels.get() + " program panels reused, " + createdPanels.get() + " created");
+    }
+    
     fireTableDataChanged(callback);
+    
+    return true;
+  }
+
+  /**
+   * Requests the plugin icons that are loaded in the background for all shown
+   * programs, so they are mostly loaded before the programs are painted.
+   */
+  private void prefetchPluginIcons() {
+    ArrayList<Program> programs = new ArrayList<Program>();
+    
+    for (ArrayList<ProgramPanel> column : mShownProgramColumn) {
+      for (ProgramPanel panel : column) {
+        programs.add(panel.getProgram());
+      }
+    }
+    
+    ProgramTableIconLoader.getInstance().prefetch(programs.toArray(new Program[programs.size()]));
   }
 
   public void addProgramTableModelListener(ProgramTableModelListener listener) {
@@ -481,14 +636,12 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
     return list.get(row);
   }
 
-  private void deregisterFromPrograms(ArrayList<ProgramPanel>[] columns) {
-    for (ArrayList<ProgramPanel> list : columns) {
-      Iterator<ProgramPanel> it=list.iterator();
-      while (it.hasNext()) {
-        ProgramPanel panel = it.next();
-        Program prog = panel.getProgram();
-        prog.removeChangeListener(this);
-      }
+  private void deregisterFromPrograms(ArrayList<ProgramPanel> list) {
+    Iterator<ProgramPanel> it=list.iterator();
+    while (it.hasNext()) {
+      ProgramPanel panel = it.next();
+      Program prog = panel.getProgram();
+      prog.removeChangeListener(this);
     }
   }
 
@@ -571,40 +724,41 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
 
     mLastTimerMinutesAfterMidnight = minutesAfterMidnight;
 
-    ExecutorService threadPool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(),3));
+    ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
     
     // Force a repaint of all programs on air
     // (so the progress background will be updated)
     if(mOnAirRows == null) {
       int columnCount = getColumnCount();
-	  mOnAirRows = new int[columnCount];
+      mOnAirRows = new int[columnCount];
       Arrays.fill(mOnAirRows, -1);
       for (int col1 = 0; col1 < columnCount; col1++) {
         final int col = col1;
-        final int rowCount = getRowCount(col);
-		for (int row1 = 0; row1 < rowCount; row1++) {
-		  final int row = row1;
-		  
-		  threadPool.execute(new Thread("FORCE REPAINT ON AIR PROGRAMS THREAD NEW") {
-		    @Override
-		    public void run() {
-		      ProgramPanel panel = getProgramPanel(col, row);
-	          if (panel.getProgram().isOnAir()) {
-	            mOnAirRows[col] = row;
-	            fireTableCellUpdated(col, row);
-	          }
-		    }
-		  });
-        }
+        
+        tasks.add(new Callable<Object>() {
+          public Object call() {
+            int rowCount = getRowCount(col);
+            
+            for (int row = 0; row < rowCount; row++) {
+              ProgramPanel panel = getProgramPanel(col, row);
+              if (panel.getProgram().isOnAir()) {
+                mOnAirRows[col] = row;
+                fireTableCellUpdated(col, row);
+              }
+            }
+            
+            return null;
+          }
+        });
       }
     }
     else {
       for (int col1 = 0; col1 < mOnAirRows.length; col1++) {
         final int col = col1;
         
-        threadPool.execute(new Thread("FORCE REPAINT ON AIR PROGRAMS THREAD CURRENT") {
-          public void run() {
-            if(mOnAirRows[col] != -1) {
+        if(mOnAirRows[col] != -1) {
+          tasks.add(new Callable<Object>() {
+            public Object call() {
               ProgramPanel panel = getProgramPanel(col, mOnAirRows[col]);
               
               if(panel.getProgram().isOnAir()) {
@@ -622,17 +776,15 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
                   fireTableCellUpdated(col, mOnAirRows[col]);
                 }
               }
+              
+              return null;
             }
-          };
-        });
+          });
+        }
       }
     }
     
-    threadPool.shutdown();
-    
-    try {
-      threadPool.awaitTermination(MAXIMUM_WAIT_TIME_FOR_THREAD_POOL_IN_SECONDS, TimeUnit.SECONDS);
-    } catch (InterruptedException e) {}
+    runTasks(tasks);
   }
 
 
@@ -681,6 +833,33 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
     }
   }
   
+  /**
+   * Fires the event for the cell of the given panel, if the panel
+   * is still shown in this table.
+   * 
+   * @param panel The panel that has changed.
+   */
+  private void firePanelHasChanged(ProgramPanel panel) {
+    final Program program = panel.getProgram();
+    
+    if (program == null) {
+      return;
+    }
+    
+    int col = getColumnOfChannel(program.getChannel());
+    if (col == -1) {
+      return;
+    }
+    
+    int rowCount = getRowCount(col);
+    for (int row = 0; row < rowCount; row++) {
+      if (getProgramPanel(col, row) == panel) {
+        fireTableCellUpdated(col, row);
+        return;
+      }
+    }
+  }
+  
   private void checkThread() {
     if (! SwingUtilities.isEventDispatchThread()) {
       throw new IllegalStateException("The table model must be used in the "
@@ -688,6 +867,93 @@ public class DefaultProgramTableModel implements ProgramTableModel, ChangeListen
     }
   }
   
+  /**
+   * The day programs a column was filled with and the panels of the column.
+   */
+  private static class ColumnContent {
+    private ChannelDayProgram[] mDayPrograms;
+    private ChannelDayProgram[] mJointDayPrograms;
+    private Date mMainDay;
+    private int mEarliestTime;
+    private int mLatestTime;
+    private ArrayList<ProgramPanel> mPanels;
+    
+    public ColumnContent(ChannelDayProgram[] dayPrograms, ChannelDayProgram[] jointDayPrograms, Date mainDay, int earliestTime, int latestTime) {
+      mDayPrograms = dayPrograms;
+      mJointDayPrograms = jointDayPrograms;
+      mMainDay = mainDay;
+      mEarliestTime = earliestTime;
+      mLatestTime = latestTime;
+    }
+    
+    /**
+     * Checks if the column was filled with the same day program instances
+     * for the same time range as the given column.
+     */
+    public boolean hasSameDayPrograms(ColumnContent other) {
+      return mMainDay.equals(other.mMainDay) && mEarliestTime == other.mEarliestTime
+          && mLatestTime == other.mLatestTime && isSame(mDayPrograms, other.mDayPrograms)
+          && isSame(mJointDayPrograms, other.mJointDayPrograms);
+    }
+    
+    private static boolean isSame(ChannelDayProgram[] a, ChannelDayProgram[] b) {
+      if (a == null || b == null) {
+        return a == b;
+      }
+      if (a.length != b.length) {
+        return false;
+      }
+      for (int i = 0; i < a.length; i++) {
+        if (a[i] != b[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+  
+  /**
+   * Gives the panels of a column that is filled again, the panel
+   * of a program that was shown in the column before is reused.
+   */
+  private static class PanelReuse {
+    private IdentityHashMap<Program, ProgramPanel> mOldPanels;
+    private AtomicInteger mReused;
+    private AtomicInteger mCreated;
+    private ChangeListener mPluginIconListener;
+    
+    public PanelReuse(ArrayList<ProgramPanel> oldPanels, AtomicInteger reused, AtomicInteger created, ChangeListener pluginIconListener) {
+      mReused = reused;
+      mCreated = created;
+      mPluginIconListener = pluginIconListener;
+      
+      if (oldPanels != null && !oldPanels.isEmpty()) {
+        mOldPanels = new IdentityHashMap<Program, ProgramPanel>(oldPanels.size());
+        
+        for (ProgramPanel panel : oldPanels) {
+          mOldPanels.put(panel.getProgram(), panel);
+        }
+      }
+    }
+    
+    public ProgramPanel getPanel(Program prog) {
+      ProgramPanel panel = mOldPanels != null ? mOldPanels.remove(prog) : null;
+      
+      // the picture has to be added or removed, so a new panel is needed
+      if (panel != null && !panel.pictureStateChanged()) {
+        mReused.incrementAndGet();
+        return panel;
+      }
+      
+      mCreated.incrementAndGet();
+      
+      final ProgramPanel newPanel = new ProgramPanel(prog);
+      newPanel.setPluginIconListener(mPluginIconListener);
+      
+      return newPanel;
+    }
+  }
+  
   private static class DateRange {
     private int mCnt;
     private int mBegin;
@@ -29,11 +29,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.SwingUtilities;
 
@@ -48,6 +49,11 @@ import devplugin.ProgramFilter;
 
 /**
  * A class that contains all markings for programs.
+ * <p>
+ * The markings are kept in a concurrent map with the unique id of the
+ * programs as key. Changes of the markings of a program are synchronized
+ * on one of several locks chosen by the key, so plugins that mark
+ * different programs don't wait for each other.
  * 
  * @author René Mach
  * @since 3.3.4
@@ -55,19 +61,38 @@ import devplugin.ProgramFilter;
 public class MarkedProgramsMap {
   private static MarkedProgramsMap mInstance;
   
-  private final Map<String, MarkedHolder> mMarkedMap = Collections.synchronizedMap(new 
-      HashMap<String, MarkedHolder>()); 
+  /** The number of locks for the changes of the markings */
+  private static final int LOCK_COUNT = 64;
+  
+  private final Map<String, MarkedHolder> mMarkedMap = new ConcurrentHashMap<String, MarkedHolder>(1024, 0.75f, LOCK_COUNT); 
+  
+  private final Object[] mLocks;
+  
+  /** The programs with changed markings of the running batch of the current thread */
+  private final ThreadLocal<ArrayList<Program>> mBatchPrograms = new ThreadLocal<ArrayList<Program>>();
+  
+  private final AtomicLong mMarkCount = new AtomicLong();
+  private final AtomicLong mUnmarkCount = new AtomicLong();
+  private final AtomicLong mBatchCount = new AtomicLong();
+  private final AtomicLong mFilterCheckCount = new AtomicLong();
+  private final AtomicLong mTableRefreshCount = new AtomicLong();
   
   private Thread mProgramTableRefreshThread;
 
-  private int mProgramTableRefreshThreadWaitTime;
+  private volatile int mProgramTableRefreshThreadWaitTime;
   
-  private MarkedProgramsMap() {}
+  private MarkedProgramsMap() {
+    mLocks = new Object[LOCK_COUNT];
+    
+    for(int i = 0; i < mLocks.length; i++) {
+      mLocks[i] = new Object();
+    }
+  }
   
   /**
    * @return The instance of this class.
    */
-  public static MarkedProgramsMap getInstance() {
+  public static synchronized MarkedProgramsMap getInstance() {
     if(mInstance == null) {
       mInstance = new MarkedProgramsMap();
     }
@@ -75,83 +100,184 @@ public class MarkedProgramsMap {
     return mInstance;
   }
   
-  synchronized void setMarkerForProgram(Program p, Marker[] markerArr) {
-    synchronized (mMarkedMap) {
-      MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
+  private Object getLock(String key) {
+    return mLocks[(key.hashCode() & 0x7FFFFFFF) % mLocks.length];
+  }
+  
+  void setMarkerForProgram(Program p, Marker[] markerArr) {
+    String key = p.getUniqueID();
+    
+    synchronized (getLock(key)) {
+      MarkedHolder markedHolder = mMarkedMap.get(key);
       
       if(markedHolder == null) {
         markedHolder = new MarkedHolder(p);
         
-        mMarkedMap.put(p.getUniqueID(), markedHolder);
+        mMarkedMap.put(key, markedHolder);
       }
       
       markedHolder.setMarkerArr(markerArr);
-      
-      handleFilterMarking(p);
     }
+    
+    mMarkCount.incrementAndGet();
+    handleFilterMarking(p);
   }
     
-  synchronized void addMarkerForProgram(Program p, Marker marker) {
-    synchronized (mMarkedMap) {
-      MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
+  void addMarkerForProgram(Program p, Marker marker) {
+    String key = p.getUniqueID();
+    
+    synchronized (getLock(key)) {
+      MarkedHolder markedHolder = mMarkedMap.get(key);
       
       if(markedHolder == null) {
         markedHolder = new MarkedHolder(p);
         
-        mMarkedMap.put(p.getUniqueID(), markedHolder);
+        mMarkedMap.put(key, markedHolder);
       }
       
       markedHolder.addMarker(marker);
-      
-      handleFilterMarking(p);
     }
+    
+    mMarkCount.incrementAndGet();
+    handleFilterMarking(p);
   }
   
-  synchronized void removeMarkerForProgram(Program p, Marker marker) {
-    synchronized (mMarkedMap) {
-      MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
+  void removeMarkerForProgram(Program p, Marker marker) {
+    String key = p.getUniqueID();
+    boolean changed = false;
+    
+    synchronized (getLock(key)) {
+      MarkedHolder markedHolder = mMarkedMap.get(key);
       
       if(markedHolder != null) {
         boolean removed = markedHolder.removeMarker(marker);
         
         if(removed) {
-          mMarkedMap.remove(p.getUniqueID());
+          mMarkedMap.remove(key);
         }
         
-        handleFilterMarking(p);
+        changed = true;
+      }
+    }
+    
+    if(changed) {
+      mUnmarkCount.incrementAndGet();
+      handleFilterMarking(p);
+    }
+  }
+  
+  /**
+   * Marks the given programs for the given marker. The current filter
+   * is checked once for all programs after the marking.
+   * 
+   * @param programs The programs to mark.
+   * @param marker The marker to mark the programs for.
+   * @since 3.4.5
+   */
+  public void mark(Program[] programs, Marker marker) {
+    startBatch();
+    
+    try {
+      for(Program p : programs) {
+        p.mark(marker);
       }
+    }finally {
+      finishBatch();
+    }
+  }
+  
+  /**
+   * Removes the marking of the given marker from the given programs.
+   * The current filter is checked once for all programs after the removing.
+   * 
+   * @param programs The programs to unmark.
+   * @param marker The marker to remove.
+   * @since 3.4.5
+   */
+  public void unmark(Program[] programs, Marker marker) {
+    startBatch();
+    
+    try {
+      for(Program p : programs) {
+        p.unmark(marker);
+      }
+    }finally {
+      finishBatch();
+    }
+  }
+  
+  /**
+   * Starts a batch of marking changes in the current thread. Until the
+   * batch is finished the changed programs are only collected, the
+   * current filter is checked for them when the batch is finished.
+   * <p>
+   * Every call of this method must be followed by a call of
+   * {@link #finishBatch()}, batches in the same thread can be nested.
+   * 
+   * @since 3.4.5
+   */
+  public void startBatch() {
+    ArrayList<Program> batchPrograms = mBatchPrograms.get();
+    
+    if(batchPrograms == null) {
+      mBatchPrograms.set(new ArrayList<Program>());
+      mBatchCount.incrementAndGet();
+    }
+    else {
+      // nested batch, the null marks the nesting level
+      batchPrograms.add(null);
+    }
+  }
+  
+  /**
+   * Finishes a batch of marking changes started with {@link #startBatch()}.
+   * 
+   * @since 3.4.5
+   */
+  public void finishBatch() {
+    ArrayList<Program> batchPrograms = mBatchPrograms.get();
+    
+    if(batchPrograms == null) {
+      return;
+    }
+    
+    int nesting = batchPrograms.lastIndexOf(null);
+    
+    if(nesting != -1) {
+      batchPrograms.remove(nesting);
+      return;
+    }
+    
+    mBatchPrograms.remove();
+    
+    if(!batchPrograms.isEmpty()) {
+      handleFilterMarking(batchPrograms.toArray(new Program[batchPrograms.size()]));
     }
   }
   
   Marker[] getMarkerForProgram(Program p) {
-    synchronized (mMarkedMap) {
-      MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
+    MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
       
-      if(markedHolder != null) {
-        return markedHolder.getMarkerArr();
-      }
+    if(markedHolder != null) {
+      return markedHolder.getMarkerArr();
     }
     
     return MutableProgram.EMPTY_MARKER_ARR;
   }
   
   void setMarkPriorityForProgram(Program p, int markPriority) {
-    synchronized (mMarkedMap) {
-      MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
+    MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
       
-      if(markedHolder != null) {
-        markedHolder.setMarkPriority(markPriority);
-      }
-    }    
+    if(markedHolder != null) {
+      markedHolder.setMarkPriority(markPriority);
+    }
   }
   
   int getMarkPriorityForProgram(Program p) {
-    synchronized (mMarkedMap) {
-      MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
+    MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
       
-      if(markedHolder != null) {
-        return markedHolder.getMarkPriority();
-      }
+    if(markedHolder != null) {
+      return markedHolder.getMarkPriority();
     }
     
     return Program.NO_MARK_PRIORITY;
@@ -160,67 +286,75 @@ public class MarkedProgramsMap {
   boolean validateMarkingForProgram(Program p) {
     boolean validated = false;
     
-    synchronized (mMarkedMap) {
-      MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
+    MarkedHolder markedHolder = mMarkedMap.get(p.getUniqueID());
       
-      if(markedHolder != null) {
-        markedHolder.validateMarking();
-        validated = true;
-      }
+    if(markedHolder != null) {
+      markedHolder.validateMarking();
+      validated = true;
     }
     
     return validated;
   }
   
   public void revalidatePrograms() {
-    synchronized(mMarkedMap) {
-      Iterator<MarkedHolder> markedHolderIterator =  mMarkedMap.values().iterator();
-      
-      ArrayList<String> toRemoveKeys = new ArrayList<String>();
+    Iterator<Map.Entry<String, MarkedHolder>> entryIterator = mMarkedMap.entrySet().iterator();
+    
+    while(entryIterator.hasNext()) {
+      Map.Entry<String, MarkedHolder> entry = entryIterator.next();
       
-      while(markedHolderIterator.hasNext()) {
-        MarkedHolder holder = markedHolderIterator.next();
+      synchronized (getLock(entry.getKey())) {
+        MarkedHolder holder = entry.getValue();
         
-        if(!holder.validate()) {
-          toRemoveKeys.add(holder.getCurrentProgramInstance().getUniqueID());
+        if(mMarkedMap.get(entry.getKey()) == holder && !holder.validate()) {
+          mMarkedMap.remove(entry.getKey());
         }
       }
+    }
+  }
+  
+  public void validateMarkings() {
+    for(MarkedHolder marked : mMarkedMap.values()) {
+      marked.validateMarking();
       
-      for(String key : toRemoveKeys) {
-        mMarkedMap.remove(key);
+      if(marked.getCurrentProgramInstance() != null) {
+        ((MutableProgram)marked.getCurrentProgramInstance()).fireStateChanged();
       }
     }
   }
   
-  public void validateMarkings() {
-    synchronized (mMarkedMap) {
-      for(String key : mMarkedMap.keySet()) {
-        MarkedHolder marked = mMarkedMap.get(key);
-        
-        if(marked != null) {
-          marked.validateMarking();
-          
-          if(marked.getCurrentProgramInstance() != null) {
-            ((MutableProgram)marked.getCurrentProgramInstance()).fireStateChanged();
-          }
+  private boolean isFilterMarkingToHandle() {
+    return !MainFrame.isStarting() && !MainFrame.isShuttingDown() && PluginManagerImpl.getInstance().getFilterManager() != null && !PluginManagerImpl.getInstance().getFilterManager().getCurrentFilter().equals(PluginManagerImpl.getInstance().getFilterManager().getDefaultFilter());
+  }
+  
+  private void handleFilterMarking(Program p) {
+    ArrayList<Program> batchPrograms = mBatchPrograms.get();
+    
+    if(batchPrograms != null) {
+      batchPrograms.add(p);
+    }
+    else if(isFilterMarkingToHandle()) {
+      try {
+        if(isFilterStateChanged(p)) {
+          refreshProgramTable();
         }
+      }catch(Exception e) {
+        // ignore
       }
     }
   }
   
-  private void handleFilterMarking(Program p) {
-    if(!MainFrame.isStarting() && !MainFrame.isShuttingDown() && PluginManagerImpl.getInstance().getFilterManager() != null && !PluginManagerImpl.getInstance().getFilterManager().getCurrentFilter().equals(PluginManagerImpl.getInstance().getFilterManager().getDefaultFilter())) {
+  /**
+   * Checks the current filter for the programs of a batch like the single
+   * program path does. The program table is refreshed once if the filter
+   * state of at least one program has changed.
+   */
+  private void handleFilterMarking(Program[] programs) {
+    if(isFilterMarkingToHandle()) {
       try {
-        boolean contained = MainFrame.getInstance().getProgramTableModel().contains(p);
-        boolean accepted = PluginManagerImpl.getInstance().getFilterManager().getCurrentFilter().accept(p);
-
-        if((contained && !accepted) || (!contained && accepted)) {
-          if(mProgramTableRefreshThread == null || !mProgramTableRefreshThread.isAlive()) {
-            mProgramTableRefreshThread = getProgramTableRefreshThread();
-            mProgramTableRefreshThread.start();
-          }
-          else {
-            mProgramTableRefreshThreadWaitTime = 500;
+        for(Program p : programs) {
+          if(p != null && isFilterStateChanged(p)) {
+            refreshProgramTable();
+            break;
           }
         }
       }catch(Exception e) {
@@ -229,6 +363,25 @@ public class MarkedProgramsMap {
     }
   }
   
+  private boolean isFilterStateChanged(Program p) throws Exception {
+    mFilterCheckCount.incrementAndGet();
+    
+    boolean contained = MainFrame.getInstance().getProgramTableModel().contains(p);
+    boolean accepted = PluginManagerImpl.getInstance().getFilterManager().getCurrentFilter().accept(p);
+    
+    return (contained && !accepted) || (!contained && accepted);
+  }
+  
+  private synchronized void refreshProgramTable() {
+    if(mProgramTableRefreshThread == null || !mProgramTableRefreshThread.isAlive()) {
+      mProgramTableRefreshThread = getProgramTableRefreshThread();
+      mProgramTableRefreshThread.start();
+    }
+    else {
+      mProgramTableRefreshThreadWaitTime = 500;
+    }
+  }
+  
   private Thread getProgramTableRefreshThread() {
     mProgramTableRefreshThreadWaitTime = 500;
     return new Thread("Program table refresh") {
@@ -240,6 +393,8 @@ public class MarkedProgramsMap {
           }catch(Exception e) {}
         }
 
+        mTableRefreshCount.incrementAndGet();
+        
         SwingUtilities.invokeLater(new Runnable() {
           public void run() {
             MainFrame.getInstance().getProgramTableModel().updateTableContent();
@@ -249,27 +404,28 @@ public class MarkedProgramsMap {
     };
   }
   
+  /**
+   * @return The counters of the marking operations.
+   * @since 3.4.5
+   */
+  public String getStatistics() {
+    return "markings: " + mMarkedMap.size() + ", marked: " + mMarkCount.get()
+        + ", unmarked: " + mUnmarkCount.get() + ", batches: " + mBatchCount.get()
+        + ", filter checks: " + mFilterCheckCount.get() + ", table refreshes: " + mTableRefreshCount.get();
+  }
+  
 
   /**
    * @return All marked programs.
    */
   public Program[] getMarkedPrograms() {
-    Program[] p = null;
-
-    synchronized(mMarkedMap) {
-      Iterator<MarkedHolder> markedHolderIterator =  mMarkedMap.values().iterator();
-      
-      ArrayList<Program> markedList = new ArrayList<Program>();
-      
-      while(markedHolderIterator.hasNext()) {
-        markedList.add(markedHolderIterator.next().getCurrentProgramInstance());
-      }
-      
-      p = new Program[markedList.size()];
-      markedList.toArray(p);
+    ArrayList<Program> markedList = new ArrayList<Program>(mMarkedMap.size());
+    
+    for(MarkedHolder holder : mMarkedMap.values()) {
+      markedList.add(holder.getCurrentProgramInstance());
     }
-
-    return p;
+    
+    return markedList.toArray(new Program[markedList.size()]);
   }
   
   /**
@@ -295,23 +451,19 @@ public class MarkedProgramsMap {
   public Program[] getTimeSortedProgramsForTray(ProgramFilter filter, int markPriority, int numberOfPrograms, boolean includeOnAirPrograms, boolean useTrayFilterSettings, ArrayList<Program> excludePrograms) {
     List<Program> programs = new ArrayList<Program>();
     
-    synchronized(mMarkedMap) {
-      Iterator<MarkedHolder> markedHolderIterator =  mMarkedMap.values().iterator();
-              
-      while(markedHolderIterator.hasNext()) {
-        Program p = markedHolderIterator.next().getCurrentProgramInstance();
-        
-        boolean dontAccept = !filter.accept(p);
+    for(MarkedHolder holder : mMarkedMap.values()) {
+      Program p = holder.getCurrentProgramInstance();
+      
+      boolean dontAccept = !filter.accept(p);
 
-        if(dontAccept && useTrayFilterSettings) {
-          dontAccept = !(Settings.propTrayFilterNot.getBoolean() || (Settings.propTrayFilterNotMarked.getBoolean() && p.getMarkerArr().length > 0));
-        }
+      if(dontAccept && useTrayFilterSettings) {
+        dontAccept = !(Settings.propTrayFilterNot.getBoolean() || (Settings.propTrayFilterNotMarked.getBoolean() && p.getMarkerArr().length > 0));
+      }
 
-        if((p.isOnAir() && !includeOnAirPrograms) || p.isExpired() || dontAccept || p.getMarkPriority() < markPriority) {
-          continue;
-        }
-        programs.add(p);
+      if((p.isOnAir() && !includeOnAirPrograms) || p.isExpired() || dontAccept || p.getMarkPriority() < markPriority) {
+        continue;
       }
+      programs.add(p);
     }
 
     if (excludePrograms != null) {
@@ -446,7 +598,7 @@ public class MarkedProgramsMap {
       return mMarkPriority;
     }
     
-    Marker[] getMarkerArr() {
+    synchronized Marker[] getMarkerArr() {
       Marker[] markerArr = mMarkerSet.toArray(new Marker[mMarkerSet.size()]);
       
       Arrays.sort(markerArr, MARKER_COMPARTOR);
@@ -468,7 +620,7 @@ public class MarkedProgramsMap {
       }
     }
     
-    Program getCurrentProgramInstance() {
+    synchronized Program getCurrentProgramInstance() {
       return mCurrentProgramInstance;
     }
     
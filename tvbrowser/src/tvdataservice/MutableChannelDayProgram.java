@@ -26,6 +26,7 @@
 package tvdataservice;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 import util.program.ProgramUtilities;
@@ -56,6 +57,16 @@ public class MutableChannelDayProgram implements ChannelDayProgram {
   /** The program list itself. */
   private ArrayList<Program> mProgramList;
 
+  /**
+   * The positions of the programs in the list ordered by the start time,
+   * every value is the start time in minutes shifted by {@link #INDEX_SHIFT}
+   * plus the position. Created when needed and dropped when the list changes.
+   */
+  private volatile int[] mStartTimeIndex;
+
+  /** The bits for the position of a program in the start time index */
+  private static final int INDEX_SHIFT = 20;
+
   private boolean mLastProgramHadEndOnUpdate, mWasChangedByPlugin;
 
   /**
@@ -125,47 +136,146 @@ public class MutableChannelDayProgram implements ChannelDayProgram {
     // avoid split operation
     int strLen = progID.length();
     int idlength = 1;
+    int index = -1;
     for (int i = 0; i < strLen; i++) {
       if (progID.charAt(i) == '_') {
         idlength++;
+        index = i;
       }
     }
 
-    ArrayList<Program> foundPrograms = new ArrayList<Program>();
-    
-    for(Program prog : mProgramList) {
-      String id = prog.getID();
-      if (idlength > 4) {
-        if (progID.compareTo(id) == 0) {
-          if(onlyFirst) {
+    if (idlength <= 4) {
+      // IDs without the full channel ID are not supported any more
+      return null;
+    }
+
+    Program[] found = findPrograms(progID, getStartTime(progID, index + 1), onlyFirst);
+
+    if (found == null) {
+      // the start time of a program may have changed after it was added
+      found = findPrograms(progID, -1, onlyFirst);
+    }
+
+    return found;
+  }
+
+  /**
+   * Gets the start time in minutes after midnight from the time part
+   * <code>hours:minutes:offset</code> of a program ID.
+   *
+   * @param progID The ID of the program.
+   * @param start The index of the time part in the ID.
+   * @return The start time or <code>-1</code> if the time could not be read.
+   */
+  private static int getStartTime(String progID, int start) {
+    int hours = 0;
+    int minutes = 0;
+    int part = 0;
+
+    for (int i = start; i < progID.length(); i++) {
+      char c = progID.charAt(i);
+
+      if (c == ':') {
+        if (++part == 2) {
+          break;
+        }
+      } else if (c >= '0' && c <= '9') {
+        if (part == 0) {
+          hours = hours * 10 + (c - '0');
+        } else {
+          minutes = minutes * 10 + (c - '0');
+        }
+      } else {
+        return -1;
+      }
+    }
+
+    if (part < 1 || hours > 23 || minutes > 59) {
+      return -1;
+    }
+
+    return hours * 60 + minutes;
+  }
+
+  /**
+   * Finds the programs with the given ID.
+   *
+   * @param progID The ID of the wanted programs.
+   * @param startTime The start time of the programs in minutes after midnight,
+   *          <code>-1</code> to look at all programs.
+   * @param onlyFirst If only the first program should be returned.
+   * @return The programs or <code>null</code> if there are none.
+   */
+  private Program[] findPrograms(String progID, int startTime, boolean onlyFirst) {
+    ArrayList<Program> foundPrograms = null;
+
+    if (startTime >= 0) {
+      int[] startTimeIndex = getStartTimeIndex();
+      int key = startTime << INDEX_SHIFT;
+      int i = Arrays.binarySearch(startTimeIndex, key);
+
+      if (i < 0) {
+        i = -i - 1;
+      }
+
+      for (; i < startTimeIndex.length && (startTimeIndex[i] >>> INDEX_SHIFT) == startTime; i++) {
+        Program prog = mProgramList.get(startTimeIndex[i] & ((1 << INDEX_SHIFT) - 1));
+
+        if (progID.equals(prog.getID())) {
+          if (onlyFirst) {
             return new Program[] {prog};
           }
-          else {
-            foundPrograms.add(prog);
+          if (foundPrograms == null) {
+            foundPrograms = new ArrayList<Program>(2);
           }
+          foundPrograms.add(prog);
         }
       }
-      else if(idlength < 4) {
-        String[] temp = id.split("_");
-       
-        id = temp[temp.length - 2] + "_" + temp[temp.length - 1];
-      }
-      else if(idlength == 4) {
-        String[] temp = id.split("_");
-        
-        id = temp[0] + "_" + temp[1] + "_" + temp[temp.length - 2] + "_" + temp[temp.length - 1];
+    } else {
+      for (Program prog : mProgramList) {
+        if (progID.equals(prog.getID())) {
+          if (onlyFirst) {
+            return new Program[] {prog};
+          }
+          if (foundPrograms == null) {
+            foundPrograms = new ArrayList<Program>(2);
+          }
+          foundPrograms.add(prog);
+        }
       }
-      
     }
 
-    if(!foundPrograms.isEmpty()) {
+    if (foundPrograms != null) {
       return foundPrograms.toArray(new Program[foundPrograms.size()]);
     }
-    
+
     // nothing found
     return null;
   }
 
+  /**
+   * Gets the start time index of the programs, it's created if it's needed.
+   *
+   * @return The start time index.
+   */
+  private int[] getStartTimeIndex() {
+    int[] startTimeIndex = mStartTimeIndex;
+
+    if (startTimeIndex == null || startTimeIndex.length != mProgramList.size()) {
+      startTimeIndex = new int[mProgramList.size()];
+
+      for (int i = 0; i < startTimeIndex.length; i++) {
+        int startTime = mProgramList.get(i).getStartTime();
+        startTimeIndex[i] = (startTime >= 0 && startTime < 24 * 60 ? startTime << INDEX_SHIFT : 0) | i;
+      }
+
+      Arrays.sort(startTimeIndex);
+      mStartTimeIndex = startTimeIndex;
+    }
+
+    return startTimeIndex;
+  }
+
 
 
   /**
@@ -224,6 +334,7 @@ public class MutableChannelDayProgram implements ChannelDayProgram {
     }
 
     mProgramList.add(addIdx, program);
+    mStartTimeIndex = null;
   }
 
 
@@ -232,6 +343,7 @@ public class MutableChannelDayProgram implements ChannelDayProgram {
    */
   public void removeAllPrograms() {
     mProgramList.clear();
+    mStartTimeIndex = null;
   }
 
 
@@ -26,13 +26,13 @@
 
 package tvdataservice;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Iterator;
 import java.util.TimeZone;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import javax.swing.event.ChangeEvent;
@@ -86,10 +86,10 @@ public class MutableProgram implements Program {
   /** Tracks if the program is current loading/ being created. */
   private boolean mIsLoading;
 
-  /** The cached ID of this program. */
+  /** The cached ID of this program, created when it is needed. */
   private String mId;
 
-  /** The cached unique ID of this program. */
+  /** The cached unique ID of this program, created when it is needed. */
   private String mUniqueId;
 
   /** The date format, which is used in the unique ID */
@@ -202,29 +202,153 @@ public class MutableProgram implements Program {
   }
 
   private void normalizeTimeZone(final int localStartTime) {
-    final Calendar userTimeZoneCal = getNormalizedCalendarForTime(localStartTime);
-        
-    mNormalizedStartTime = (short)(userTimeZoneCal.get(Calendar.HOUR_OF_DAY) * 60 + userTimeZoneCal.get(Calendar.MINUTE));
-    mNormalizedDate = new Date(userTimeZoneCal);
+    final ZoneDay zoneDay = ZoneDay.getZoneDay(mChannel.getTimeZone(), mChannel.getTimeZoneCorrectionMinutes(), mLocalDate);
     
-    String dataServiceId = mChannel.getDataServiceId() != null ? mChannel.getDataServiceId() : "UnknownDataService";
-    String groupId = mChannel.getGroup() != null ? mChannel.getGroup().getId() : "UnknownChannelGroup";
-    String channelId = mChannel.getId() != null ? mChannel.getId() : "UnknownChannelId";
-    String country = mChannel.getBaseCountry() != null ? mChannel.getBaseCountry() : "UnknownCountry";
+    if(zoneDay.isConstant()) {
+      final int minutes = localStartTime + zoneDay.mOffsetMinutes;
+      final int dayShift = (minutes < 0 ? minutes - 1439 : minutes) / 1440;
+      
+      mNormalizedStartTime = (short)(minutes - dayShift * 1440);
+      mNormalizedDate = zoneDay.getDate(dayShift);
+    }
+    else {
+      final Calendar userTimeZoneCal = getNormalizedCalendarForTime(localStartTime);
+      
+      mNormalizedStartTime = (short)(userTimeZoneCal.get(Calendar.HOUR_OF_DAY) * 60 + userTimeZoneCal.get(Calendar.MINUTE));
+      mNormalizedDate = new Date(userTimeZoneCal);
+    }
     
-    String date = new SimpleDateFormat(ID_DATE_FORMAT).format(getDate().getCalendar().getTime());
-
-    mId = (new StringBuilder(dataServiceId).append('_').append(groupId)
-        .append('_').append(country).append('_').append(channelId).append(
-            '_').append(getHours()).append(':').append(getMinutes())
-        .append(':').append(TimeZone.getDefault().getRawOffset() / 60000))
-        .toString();      
+    // the IDs are created again when they are needed
+    mId = null;
+    mUniqueId = null;
+  }
+  
+  private String createId(final boolean unique) {
+    final StringBuilder id = new StringBuilder(mChannel.getUniqueId()).append('_');
+    
+    if(unique) {
+      final Date date = getDate();
+      
+      id.append(date.getYear()).append('-');
+      appendTwoDigits(id, date.getMonth()).append('-');
+      appendTwoDigits(id, date.getDayOfMonth()).append('_');
+    }
+    
+    return id.append(getHours()).append(':').append(getMinutes()).append(':')
+        .append(TimeZone.getDefault().getRawOffset() / 60000).toString();
+  }
+  
+  private static StringBuilder appendTwoDigits(final StringBuilder builder, final int value) {
+    if(value < 10) {
+      builder.append('0');
+    }
+    
+    return builder.append(value);
+  }
 
-    mUniqueId = (new StringBuilder(dataServiceId).append('_').append(
-        groupId).append('_').append(country).append('_').append(channelId)
-        .append('_').append(date).append('_').append(getHours())
-        .append(':').append(getMinutes()).append(':').append(TimeZone
-        .getDefault().getRawOffset() / 60000)).toString();
+  /**
+   * The difference between the time zone of channels and the time zone of
+   * the user for one day of the channels. The programs of a day of a channel
+   * use it to normalize their start time without creating calendars.
+   */
+  private static final class ZoneDay {
+    /** The offset that marks a day with a change of the offset of one of the time zones */
+    private static final int NOT_CONSTANT = Integer.MIN_VALUE;
+    
+    private static final ConcurrentHashMap<ZoneDay, ZoneDay> CACHE = new ConcurrentHashMap<ZoneDay, ZoneDay>();
+    
+    /** The last used day, the programs are mostly created day by day for one channel */
+    private static volatile ZoneDay mLastZoneDay;
+    
+    private final TimeZone mChannelTimeZone;
+    private final int mCorrectionMinutes;
+    private final Date mLocalDate;
+    
+    private int mOffsetMinutes;
+    private Date[] mDates;
+    
+    private ZoneDay(final TimeZone channelTimeZone, final int correctionMinutes, final Date localDate) {
+      mChannelTimeZone = channelTimeZone;
+      mCorrectionMinutes = correctionMinutes;
+      mLocalDate = localDate;
+    }
+    
+    private static ZoneDay getZoneDay(final TimeZone channelTimeZone, final int correctionMinutes, final Date localDate) {
+      ZoneDay zoneDay = mLastZoneDay;
+      
+      if(zoneDay == null || zoneDay.mChannelTimeZone != channelTimeZone || zoneDay.mCorrectionMinutes != correctionMinutes || !zoneDay.mLocalDate.equals(localDate)) {
+        final ZoneDay key = new ZoneDay(channelTimeZone, correctionMinutes, localDate);
+        zoneDay = CACHE.get(key);
+        
+        if(zoneDay == null) {
+          if(CACHE.size() > 5000) {
+            CACHE.clear();
+          }
+          
+          key.calculate();
+          zoneDay = CACHE.putIfAbsent(key, key);
+          
+          if(zoneDay == null) {
+            zoneDay = key;
+          }
+        }
+        
+        mLastZoneDay = zoneDay;
+      }
+      
+      return zoneDay;
+    }
+    
+    private void calculate() {
+      final Calendar channelTimeZoneCal = Calendar.getInstance(mChannelTimeZone);
+      channelTimeZoneCal.set(mLocalDate.getYear(), mLocalDate.getMonth()-1, mLocalDate.getDayOfMonth(), 0, 0);
+      channelTimeZoneCal.set(Calendar.SECOND, 0);
+      channelTimeZoneCal.set(Calendar.MILLISECOND, 0);
+      
+      final long correction = mCorrectionMinutes * 60000L;
+      final long dayStart = channelTimeZoneCal.getTimeInMillis();
+      final long dayEnd = dayStart + 1439 * 60000L;
+      
+      final int channelOffset = mChannelTimeZone.getOffset(dayStart);
+      final int userOffset = mLocalTimeZone.getOffset(dayStart + correction);
+      
+      if(channelOffset == mChannelTimeZone.getOffset(dayEnd) && userOffset == mLocalTimeZone.getOffset(dayEnd + correction)
+          && (userOffset - channelOffset) % 60000 == 0) {
+        mOffsetMinutes = (userOffset - channelOffset) / 60000 + mCorrectionMinutes;
+        mDates = new Date[] {mLocalDate.addDays(-1), mLocalDate, mLocalDate.addDays(1)};
+      }
+      else {
+        mOffsetMinutes = NOT_CONSTANT;
+      }
+    }
+    
+    private boolean isConstant() {
+      return mOffsetMinutes != NOT_CONSTANT;
+    }
+    
+    private Date getDate(final int dayShift) {
+      if(dayShift >= -1 && dayShift <= 1) {
+        return mDates[dayShift + 1];
+      }
+      
+      return mLocalDate.addDays(dayShift);
+    }
+    
+    @Override
+    public int hashCode() {
+      return (mChannelTimeZone.hashCode() * 31 + mCorrectionMinutes) * 31 + mLocalDate.hashCode();
+    }
+    
+    @Override
+    public boolean equals(final Object obj) {
+      if(obj instanceof ZoneDay) {
+        final ZoneDay other = (ZoneDay)obj;
+        
+        return mCorrectionMinutes == other.mCorrectionMinutes && mLocalDate.equals(other.mLocalDate) && mChannelTimeZone.equals(other.mChannelTimeZone);
+      }
+      
+      return false;
+    }
   }
 
 
@@ -405,7 +529,14 @@ public class MutableProgram implements Program {
    * @return The ID of this program.
    */
   public /*synchronized*/ String getID() {
-    return mId;
+    String id = mId;
+    
+    if(id == null) {
+      id = createId(false);
+      mId = id;
+    }
+    
+    return id;
   }
 
   /**
@@ -413,7 +544,14 @@ public class MutableProgram implements Program {
    */
   @Override
   public /*synchronized*/ String getUniqueID() {
-    return mUniqueId;
+    String uniqueId = mUniqueId;
+    
+    if(uniqueId == null) {
+      uniqueId = createId(true);
+      mUniqueId = uniqueId;
+    }
+    
+    return uniqueId;
   }
 
 
@@ -491,6 +629,12 @@ public class MutableProgram implements Program {
     if (value == -1) {
       return null;
     } else {
+      final ZoneDay zoneDay = ZoneDay.getZoneDay(mChannel.getTimeZone(), mChannel.getTimeZoneCorrectionMinutes(), mLocalDate);
+      
+      if(zoneDay.isConstant()) {
+        return IOUtilities.timeToString(((value + zoneDay.mOffsetMinutes) % 1440 + 1440) % 1440);
+      }
+      
       final Calendar userTimeZoneCal = getNormalizedCalendarForTime(value);
       
       return IOUtilities.timeToString(userTimeZoneCal.get(Calendar.HOUR_OF_DAY) * 60 + userTimeZoneCal.get(Calendar.MINUTE));
@@ -0,0 +1,263 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package util.io;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A DataInput that reads from a ByteBuffer, usually a memory mapped file.
+ * <p>
+ * Every read is bounds checked against the limit of the buffer, reading
+ * beyond it throws an EOFException like the stream based implementations do.
+ * The position of the given buffer is not changed, this class works on
+ * a duplicate of it.
+ *
+ * @since 3.4.5
+ */
+public class ByteBufferDataInput implements DataInput {
+
+  private ByteBuffer mBuffer;
+
+  /**
+   * Creates an instance that reads from the start of the given buffer.
+   *
+   * @param buffer The buffer to read from.
+   */
+  public ByteBufferDataInput(ByteBuffer buffer) {
+    this(buffer, 0);
+  }
+
+  /**
+   * Creates an instance that reads from the given position of the buffer.
+   *
+   * @param buffer The buffer to read from.
+   * @param position The position to start reading at.
+   * @throws IllegalArgumentException If the position is outside of the buffer.
+   */
+  public ByteBufferDataInput(ByteBuffer buffer, int position) {
+    mBuffer = buffer.duplicate();
+    mBuffer.position(position);
+  }
+
+  /**
+   * Maps the given file read only into memory.
+   * <p>
+   * The file is closed afterwards, the mapping stays valid
+   * until the buffer is garbage collected or {@link #unmap(ByteBuffer)} is called.
+   *
+   * @param file The file to map.
+   * @return The mapped buffer.
+   * @throws IOException If the file could not be mapped.
+   */
+  public static MappedByteBuffer map(File file) throws IOException {
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = in.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Releases the mapping of the given buffer immediately instead of waiting
+   * for the garbage collector. This is needed on Windows to be able to
+   * delete or rename a mapped file.
+   * <p>
+   * The buffer must not be accessed after calling this method.
+   * If the running VM does not support releasing a mapping this
+   * method does nothing.
+   *
+   * @param buffer The buffer to release, <code>null</code> value acceptable.
+   */
+  public static void unmap(ByteBuffer buffer) {
+    if (buffer == null || !buffer.isDirect()) {
+      return;
+    }
+
+    try {
+      // Java 9 and newer
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      java.lang.reflect.Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      invokeCleaner.invoke(theUnsafe.get(null), buffer);
+      return;
+    } catch (Throwable t) {
+      // Try the old way
+    }
+
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+
+      if (cleaner != null) {
+        Method clean = cleaner.getClass().getMethod("clean");
+        clean.setAccessible(true);
+        clean.invoke(cleaner);
+      }
+    } catch (Throwable t) {
+      // Not supported, the mapping is released by the garbage collector
+    }
+  }
+
+  /**
+   * @return The current read position.
+   */
+  public int getPosition() {
+    return mBuffer.position();
+  }
+
+  /**
+   * Sets the read position.
+   *
+   * @param position The new read position.
+   * @throws EOFException If the position is outside of the buffer.
+   */
+  public void seek(int position) throws EOFException {
+    if (position < 0 || position > mBuffer.limit()) {
+      throw new EOFException("Position " + position + " is outside of buffer with size " + mBuffer.limit());
+    }
+
+    mBuffer.position(position);
+  }
+
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    try {
+      mBuffer.get(b, off, len);
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  public int skipBytes(int n) throws IOException {
+    int skip = Math.max(0, Math.min(n, mBuffer.remaining()));
+    mBuffer.position(mBuffer.position() + skip);
+    return skip;
+  }
+
+  public boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  public byte readByte() throws IOException {
+    try {
+      return mBuffer.get();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  public int readUnsignedByte() throws IOException {
+    return readByte() & 0xFF;
+  }
+
+  public short readShort() throws IOException {
+    try {
+      return mBuffer.getShort();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  public int readUnsignedShort() throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  public char readChar() throws IOException {
+    try {
+      return mBuffer.getChar();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  public int readInt() throws IOException {
+    try {
+      return mBuffer.getInt();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  public long readLong() throws IOException {
+    try {
+      return mBuffer.getLong();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  public String readLine() throws IOException {
+    if (!mBuffer.hasRemaining()) {
+      return null;
+    }
+
+    StringBuilder line = new StringBuilder();
+
+    while (mBuffer.hasRemaining()) {
+      int c = mBuffer.get() & 0xFF;
+
+      if (c == '\n') {
+        break;
+      } else if (c == '\r') {
+        if (mBuffer.hasRemaining() && mBuffer.get(mBuffer.position()) == '\n') {
+          mBuffer.get();
+        }
+        break;
+      }
+
+      line.append((char) c);
+    }
+
+    return line.toString();
+  }
+
+  public String readUTF() throws IOException {
+    return DataInputStream.readUTF(this);
+  }
+}
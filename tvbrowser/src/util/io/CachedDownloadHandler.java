@@ -0,0 +1,47 @@
+package util.io;
+
+import java.io.File;
+
+import util.exc.TvBrowserException;
+
+/**
+ * A download handler that keeps local copies of the downloaded files.
+ * <p>
+ * The {@link DownloadManager} asks the server only for a newer version of
+ * a file that has a local copy, using the modification time of the copy
+ * and the entity tag the server sent for it. If the copy is up to date the
+ * file is not downloaded again.
+ *
+ * @since 3.4.5
+ */
+public interface CachedDownloadHandler extends DownloadHandler {
+
+  /**
+   * @param fileName The name of the file to download.
+   * @return The local copy of the file or <code>null</code> if there is none.
+   */
+  public File getLocalFile(String fileName);
+
+  /**
+   * @param fileName The name of the file to download.
+   * @return The entity tag the server sent for the local copy,
+   *         <code>null</code> if it's unknown.
+   */
+  public String getEntityTag(String fileName);
+
+  /**
+   * Sets the entity tag the server sent for a downloaded file.
+   *
+   * @param fileName The name of the downloaded file.
+   * @param entityTag The entity tag of the file.
+   */
+  public void setEntityTag(String fileName, String entityTag);
+
+  /**
+   * Handles a file that has an up to date local copy.
+   *
+   * @param job The job of the file.
+   * @throws TvBrowserException If handling the file failed.
+   */
+  public void handleNotModified(DownloadJob job) throws TvBrowserException;
+}
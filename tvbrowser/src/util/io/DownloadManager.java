@@ -1,50 +1,111 @@
 package util.io;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import tvbrowser.core.Settings;
+import util.misc.NamedThreadFactory;
+
 /**
+ * Downloads files with several threads.
+ * <p>
+ * The threads take the jobs from a common list, the number of concurrent
+ * downloads from one server can be limited. The connections to a server are
+ * reused, so a new connection is only opened if the server closed the last
+ * one. If getting a file fails it's tried again after a delay that is doubled
+ * for every try, with the next server if the job has several servers.
+ * <p>
+ * {@link #runDownload()} returns as soon as the last job is done.
+ *
  * @author Til Schneider, www.murfman.de
  */
 public class DownloadManager {
 
   private static final Logger mLog
     = Logger.getLogger(DownloadManager.class.getName());
-    
+
+  /** The number of tries to get a file */
+  private static final int MAX_TRIES = 3;
+
+  /** The delay before the second try to get a file, doubled for every further try */
+  private static final long RETRY_DELAY = 1000;
+
+  private static final int MAX_REDIRECTS = 5;
+
   private int mConcurrentDownloads;
-  
-  private LinkedList<DownloadJob> mJobList;
-  
-  private AtomicInteger mActiveThreadCount;
-  
-  private Thread mWaitingThread;
+
+  private int mDownloadsPerServer;
+
+  private LinkedList<Task> mJobList;
+
+  /** The number of running downloads for every server, guarded by mJobList */
+  private HashMap<String, Integer> mActiveDownloadsMap;
+
+  /** The number of running downloads, guarded by mJobList */
+  private int mActiveDownloadCount;
+
+  /** The number of running download threads, guarded by mJobList */
+  private int mActiveThreadCount;
 
 
 
-  
   public DownloadManager() {
     this(10);
   }
-  
-  
+
+
   public DownloadManager(int concurrentDownloads) {
-     
-      mConcurrentDownloads = concurrentDownloads;
-    
-      mJobList = new LinkedList<DownloadJob>();
-    }
-  
-  
+    this(concurrentDownloads, concurrentDownloads);
+  }
+
+
+  /**
+   * Creates a download manager.
+   *
+   * @param concurrentDownloads The number of concurrent downloads.
+   * @param downloadsPerServer The number of concurrent downloads from one server.
+   * @since 3.4.5
+   */
+  public DownloadManager(int concurrentDownloads, int downloadsPerServer) {
+    mConcurrentDownloads = concurrentDownloads;
+    mDownloadsPerServer = Math.max(1, downloadsPerServer);
+
+    mJobList = new LinkedList<Task>();
+    mActiveDownloadsMap = new HashMap<String, Integer>();
+  }
+
+
+
 
-  
   public void addDownloadJob(String serverUrl, String fileName, DownloadHandler handler) {
+    addDownloadJob(new String[] {serverUrl}, fileName, handler);
+  }
+
+
+  /**
+   * Adds a job for a file that is available from several servers.
+   * The file is loaded from the first server, the others are used if
+   * getting the file failed.
+   *
+   * @param serverUrls The URLs of the servers.
+   * @param fileName The name of the file.
+   * @param handler The handler for the downloaded file.
+   * @since 3.4.5
+   */
+  public void addDownloadJob(String[] serverUrls, String fileName, DownloadHandler handler) {
     synchronized(mJobList) {
-      mJobList.add(new DownloadJob(serverUrl, fileName, handler));
+      mJobList.add(new Task(serverUrls, fileName, handler));
+      mJobList.notifyAll();
     }
   }
 
@@ -53,6 +114,7 @@ public class DownloadManager {
   public void removeAllDownloadJobs() {
     synchronized(mJobList) {
       mJobList.clear();
+      mJobList.notifyAll();
     }
   }
 
@@ -62,15 +124,12 @@ public class DownloadManager {
       return mJobList.size();
     }
   }
-  
-  
+
+
   public void runDownload() {
-    mActiveThreadCount = new AtomicInteger(0);
-    
     if (mConcurrentDownloads < 1) {
       mConcurrentDownloads = 1;
     }
-    mWaitingThread = Thread.currentThread();
 
     // Set the max. connections
     if (mConcurrentDownloads > 5) {
@@ -79,88 +138,295 @@ public class DownloadManager {
       // This is the default
       System.setProperty("http.maxConnections", "5");
     }
-    
-    for (int i = 0; i < mConcurrentDownloads; i++) {
-      Thread downloadThread = new Thread("Download manager") {
-        public void run() {
-          downloadThreadRun();
+
+    NamedThreadFactory threadFactory = new NamedThreadFactory("Download manager");
+
+    synchronized (mJobList) {
+      int threadCount = Math.min(mConcurrentDownloads, mJobList.size());
+
+      for (int i = 0; i < threadCount; i++) {
+        mActiveThreadCount++;
+        threadFactory.newThread(new Runnable() {
+          public void run() {
+            downloadThreadRun();
+          }
+        }).start();
+      }
+
+      // Wait until all jobs are processed
+      boolean interrupted = false;
+      while (mActiveThreadCount > 0) {
+        try {
+          mJobList.wait();
+        } catch (InterruptedException exc) {
+          interrupted = true;
         }
-      };
-      downloadThread.start();
-    }
+      }
 
-    // Wait until all jobs are processed
-    boolean isFinished;
-    do {
-      try {
-        Thread.sleep(5000);
-      } catch (InterruptedException exc) {}
-      
-      synchronized (mJobList) {
-        isFinished = mJobList.isEmpty() && (mActiveThreadCount.get() == 0);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
       }
-      
-    } while (! isFinished);
+    }
   }
 
 
 
   private void downloadThreadRun() {
-    mActiveThreadCount.getAndIncrement();
+    try {
+      Task task;
+      while ((task = takeTask()) != null) {
+        // the server of a job that is tried again changes
+        String server = task.getServerUrl();
 
-    boolean isFinished = false;
-    do {
-      // Get the next job
-      DownloadJob job = null;
-      
-      synchronized (mJobList) {
-        if (mJobList.isEmpty()) {
-          isFinished = true;
-        } else {
-          job = mJobList.removeFirst();
-        }
-      }
-      
-      if (job != null) {
-        String url = job.getServerUrl() + (job.getServerUrl().endsWith("/") ? "" : "/") + job.getFileName();
-        mLog.info("Loading " + url + "...");
-        InputStream stream = null;
         try {
-          stream = IOUtilities.getStream(new URL(url));
+          download(task);
         }
-        catch (Throwable thr) {
-          if (isFileNotFound(thr)) {
-            try {
-              job.getDownloadHandler().handleFileNotFound(job.getFileName());
-            }
-            catch (Throwable thr2) {
-              mLog.log(Level.WARNING, "File not found " + url, thr2);
-            }
-          } else {
-            mLog.log(Level.WARNING, "Error getting file " + url, thr);
+        finally {
+          synchronized (mJobList) {
+            mActiveDownloadsMap.put(server, mActiveDownloadsMap.get(server) - 1);
+            mActiveDownloadCount--;
+            mJobList.notifyAll();
           }
         }
+      }
+    }
+    finally {
+      synchronized (mJobList) {
+        mActiveThreadCount--;
+        mJobList.notifyAll();
+      }
+    }
+  }
+
+
+
+  /**
+   * Waits for the next job that may be started.
+   *
+   * @return The job or <code>null</code> if all jobs are done.
+   */
+  private Task takeTask() {
+    synchronized (mJobList) {
+      while (!mJobList.isEmpty() || mActiveDownloadCount > 0) {
+        long now = System.currentTimeMillis();
+        long waitTime = 0;
+
+        for (Iterator<Task> it = mJobList.iterator(); it.hasNext();) {
+          Task task = it.next();
 
-        if (stream != null) {
-          try {
-            job.getDownloadHandler().handleDownload(job, stream);
-            stream.close();
+          if (task.mStartTime > now) {
+            // a job that is tried again after a delay
+            if (waitTime == 0 || task.mStartTime - now < waitTime) {
+              waitTime = task.mStartTime - now;
+            }
+            continue;
           }
-          catch (Throwable thr) {
-            mLog.log(Level.WARNING, "Error downloading " + url, thr);
+
+          String server = task.getServerUrl();
+          Integer count = mActiveDownloadsMap.get(server);
+
+          if (count == null || count < mDownloadsPerServer) {
+            it.remove();
+            mActiveDownloadsMap.put(server, count == null ? 1 : count + 1);
+            mActiveDownloadCount++;
+            return task;
           }
-          finally {
-            if (stream != null) {
-              try { stream.close(); } catch (Throwable thr) {}
-            }
+        }
+
+        // wait until a download is done or a job is added
+        try {
+          mJobList.wait(waitTime);
+        } catch (InterruptedException exc) {
+          // check the jobs again
+        }
+      }
+
+      return null;
+    }
+  }
+
+
+
+  private void download(Task task) {
+    String url = task.getUrl();
+    DownloadJob job = new DownloadJob(task.getServerUrl(), task.mFileName, task.mHandler);
+    CachedDownloadHandler cachedHandler = task.mHandler instanceof CachedDownloadHandler ? (CachedDownloadHandler) task.mHandler : null;
+
+    mLog.info("Loading " + url + "...");
+    URLConnection conn = null;
+    InputStream stream = null;
+    try {
+      conn = openConnection(new URL(url), cachedHandler, task.mFileName);
+
+      if (conn instanceof HttpURLConnection) {
+        int responseCode = ((HttpURLConnection) conn).getResponseCode();
+
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          conn.getInputStream().close();
+          cachedHandler.handleNotModified(job);
+          return;
+        }
+        if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE) {
+          closeErrorStream(conn);
+          throw new FileNotFoundException(url);
+        }
+        if (responseCode >= 500) {
+          closeErrorStream(conn);
+          throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+        }
+        if (responseCode >= 400) {
+          // trying again wouldn't help
+          closeErrorStream(conn);
+          mLog.warning("Error getting file " + url + ": HTTP response code " + responseCode);
+          return;
+        }
+      }
+
+      stream = conn.getInputStream();
+    }
+    catch (Throwable thr) {
+      if (isFileNotFound(thr)) {
+        try {
+          task.mHandler.handleFileNotFound(task.mFileName);
+        }
+        catch (Throwable thr2) {
+          mLog.log(Level.WARNING, "File not found " + url, thr2);
+        }
+      } else if (thr instanceof IOException && task.mTries < MAX_TRIES) {
+        retry(task, thr);
+      } else {
+        mLog.log(Level.WARNING, "Error getting file " + url, thr);
+      }
+    }
+
+    if (stream != null) {
+      try {
+        task.mHandler.handleDownload(job, stream);
+
+        if (cachedHandler != null) {
+          updateCacheValidators(conn, cachedHandler, task.mFileName);
+        }
+      }
+      catch (Throwable thr) {
+        mLog.log(Level.WARNING, "Error downloading " + url, thr);
+      }
+      finally {
+        // closing the stream keeps the connection for the next job
+        try { stream.close(); } catch (Throwable thr) {}
+      }
+    }
+  }
+
+
+
+  private void retry(Task task, Throwable thr) {
+    long delay = RETRY_DELAY << (task.mTries - 1);
+
+    mLog.log(Level.WARNING, "Error getting file " + task.getUrl() + ", trying again in " + delay + " ms", thr);
+
+    synchronized (mJobList) {
+      task.mTries++;
+      task.mStartTime = System.currentTimeMillis() + delay;
+      // the job is started as soon as the delay is over
+      mJobList.addFirst(task);
+      mJobList.notifyAll();
+    }
+  }
+
+
+
+  private URLConnection openConnection(URL url, CachedDownloadHandler cachedHandler, String fileName)
+    throws IOException
+  {
+    int timeout = Settings.propDefaultNetworkConnectionTimeout.getInt();
+
+    for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+      URLConnection conn = url.openConnection();
+
+      if (timeout > 0) {
+        conn.setConnectTimeout(timeout);
+        conn.setReadTimeout(timeout);
+      }
+
+      if (!(conn instanceof HttpURLConnection)) {
+        return conn;
+      }
+
+      HttpURLConnection hconn = (HttpURLConnection) conn;
+      hconn.setInstanceFollowRedirects(false);
+
+      if (cachedHandler != null) {
+        File localFile = cachedHandler.getLocalFile(fileName);
+
+        if (localFile != null && localFile.isFile()) {
+          hconn.setIfModifiedSince(localFile.lastModified());
+
+          String entityTag = cachedHandler.getEntityTag(fileName);
+          if (entityTag != null) {
+            hconn.setRequestProperty("If-None-Match", entityTag);
           }
         }
       }
-    } while (! isFinished);
-    
-    mActiveThreadCount.getAndDecrement();
 
-    mWaitingThread.interrupt();
+      int responseCode = hconn.getResponseCode();
+
+      if (responseCode < 300 || responseCode > 399 || responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return hconn;
+      }
+
+      // In the case of a redirect, we want to actually change the URL
+      // that was input to the new, redirected URL
+      String loc = hconn.getHeaderField("Location");
+      closeErrorStream(hconn);
+
+      if (loc == null) {
+        throw new FileNotFoundException("URL points to a redirect without "
+          + "target location: " + url);
+      }
+
+      url = new URL(url, loc);
+    }
+
+    throw new IOException("Too many redirects: " + url);
+  }
+
+
+
+  private void updateCacheValidators(URLConnection conn, CachedDownloadHandler cachedHandler, String fileName) {
+    File localFile = cachedHandler.getLocalFile(fileName);
+
+    if (localFile != null && localFile.isFile()) {
+      // the modification time of the copy is the one on the server, so it can be compared by the server
+      if (conn.getLastModified() > 0) {
+        localFile.setLastModified(conn.getLastModified());
+      }
+
+      String entityTag = conn.getHeaderField("ETag");
+      if (entityTag != null) {
+        cachedHandler.setEntityTag(fileName, entityTag);
+      }
+    }
+  }
+
+
+
+  /**
+   * Reads the content of an error response, so the connection may be used again.
+   */
+  private void closeErrorStream(URLConnection conn) {
+    InputStream errorStream = ((HttpURLConnection) conn).getErrorStream();
+
+    if (errorStream != null) {
+      try {
+        byte[] buffer = new byte[1024];
+        while (errorStream.read(buffer) != -1) {
+          // ignore the content
+        }
+        errorStream.close();
+      } catch (IOException exc) {
+        // the connection is not used again
+      }
+    }
   }
 
 
@@ -172,7 +438,42 @@ public class DownloadManager {
       }
       thr = thr.getCause();
     }
-    
+
     return false;
   }
+
+
+
+  /**
+   * A job with the state of its tries.
+   */
+  private static class Task {
+    private String[] mServerUrls;
+    private String mFileName;
+    private DownloadHandler mHandler;
+
+    /** The number of the current try */
+    private int mTries = 1;
+
+    /** The time the job may be started, used for the delay before trying again */
+    private long mStartTime;
+
+    private Task(String[] serverUrls, String fileName, DownloadHandler handler) {
+      mServerUrls = serverUrls;
+      mFileName = fileName;
+      mHandler = handler;
+    }
+
+    /**
+     * @return The server of the current try.
+     */
+    private String getServerUrl() {
+      return mServerUrls[(mTries - 1) % mServerUrls.length];
+    }
+
+    private String getUrl() {
+      String serverUrl = getServerUrl();
+      return serverUrl + (serverUrl.endsWith("/") ? "" : "/") + mFileName;
+    }
+  }
 }
@@ -22,6 +22,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Locale;
+import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,11 +48,29 @@ public abstract class AbstractXmlTvDataHandler extends DefaultHandler {
    * RegEx-Pattern for the Actor
    */
   private static final Pattern ACTOR_PATTERN = Pattern.compile("(.*)\\((.*)\\)");
-  private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyyMMddHHmmss ZZZZ");
   /**
    * Holds the text of the current tag.
    */
-  private StringBuffer mText = new StringBuffer();
+  private StringBuilder mText = new StringBuilder();
+
+  /**
+   * The calendars to parse the time values. A handler is only used by the
+   * thread that parses its document, so they are not shared.
+   */
+  private final Calendar mUtcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+  private final Calendar mCalendar = Calendar.getInstance();
+
+  /**
+   * The format for time values that don't have a numeric time zone,
+   * only created if such a value is found.
+   */
+  private SimpleDateFormat mDateFormat;
+
+  /**
+   * The last successfully parsed time value, the start time of a program
+   * is used for the date and the time.
+   */
+  private String mParsedDateTime;
 
   /**
    * Value for some elements (e.g. star-rating)
@@ -547,18 +566,96 @@ public abstract class AbstractXmlTvDataHandler extends DefaultHandler {
     return new devplugin.Date(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
   }
 
-  private synchronized Calendar parseDateTime(final String time) {
+  /**
+   * Parses a XMLTV time value like <code>20140512201500 +0200</code>.
+   * <p>
+   * The returned calendar is reused for the next value.
+   *
+   * @param time
+   *          The value to parse.
+   * @return The calendar with the parsed time or <code>null</code> if the
+   *         value is invalid.
+   */
+  private Calendar parseDateTime(final String time) {
+    if (time != null && time.equals(mParsedDateTime)) {
+      return mCalendar;
+    }
+
+    mParsedDateTime = null;
+
     try {
-      Calendar calendar = Calendar.getInstance();
-      calendar.setTime(DATE_FORMAT.parse(time.substring(0, 20)));
-      calendar.setTimeInMillis(calendar.getTimeInMillis() - calendar.getTimeZone().getRawOffset());
-      return calendar;
+      if (time == null || time.length() < 20) {
+        throw new ParseException(time, 0);
+      }
+
+      long millis = parseNumericDateTime(time);
+
+      if (millis == Long.MIN_VALUE) {
+        if (mDateFormat == null) {
+          mDateFormat = new SimpleDateFormat("yyyyMMddHHmmss ZZZZ");
+        }
+        millis = mDateFormat.parse(time.substring(0, 20)).getTime();
+      }
+
+      mCalendar.setTimeInMillis(millis - mCalendar.getTimeZone().getRawOffset());
+      mParsedDateTime = time;
+      return mCalendar;
     } catch (ParseException e) {
       logMessage("invalid time format: " + time);
       return null;
     }
   }
 
+  /**
+   * Parses a time value with a numeric time zone without creating objects.
+   *
+   * @return The time in milliseconds or <code>Long.MIN_VALUE</code> if the
+   *         value has another format.
+   */
+  long parseNumericDateTime(final String time) {
+    char sign = time.charAt(15);
+
+    if (time.charAt(14) != ' ' || (sign != '+' && sign != '-')) {
+      return Long.MIN_VALUE;
+    }
+
+    int year = parseDigits(time, 0, 4);
+    int month = parseDigits(time, 4, 2);
+    int day = parseDigits(time, 6, 2);
+    int hour = parseDigits(time, 8, 2);
+    int minute = parseDigits(time, 10, 2);
+    int second = parseDigits(time, 12, 2);
+    int offsetHours = parseDigits(time, 16, 2);
+    int offsetMinutes = parseDigits(time, 18, 2);
+
+    if ((year | month | day | hour | minute | second | offsetHours | offsetMinutes) < 0) {
+      return Long.MIN_VALUE;
+    }
+
+    mUtcCalendar.clear();
+    mUtcCalendar.set(year, month - 1, day, hour, minute, second);
+
+    long offset = (offsetHours * 60 + offsetMinutes) * 60000L;
+
+    return mUtcCalendar.getTimeInMillis() - (sign == '+' ? offset : -offset);
+  }
+
+  private static int parseDigits(final String text, final int start, final int count) {
+    int value = 0;
+
+    for (int i = start; i < start + count; i++) {
+      char c = text.charAt(i);
+
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+
+      value = value * 10 + c - '0';
+    }
+
+    return value;
+  }
+
   /**
    * XMLTV channel id of currently parsed program
    *
@@ -0,0 +1,245 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package util.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Finds many strings in a text with one pass over the text.
+ * <p>
+ * This is the Aho-Corasick algorithm: all patterns are compiled into one
+ * automaton, so the time for searching a text doesn't depend on the number
+ * of patterns. The automaton is immutable after creation and may be
+ * used by several threads at the same time.
+ *
+ * @since 3.4.5
+ */
+public class AhoCorasick {
+
+  /** The characters of the transitions of every state, sorted */
+  private char[][] mTransitionChars;
+
+  /** The target states of the transitions of every state */
+  private int[][] mTransitionTargets;
+
+  /** The state to continue with if there is no transition for a character */
+  private int[] mFailure;
+
+  /** The patterns that end in every state, <code>null</code> if none */
+  private int[][] mOutput;
+
+  /** The next state on the failure path that has an output, -1 if none */
+  private int[] mOutputLink;
+
+  private int mPatternCount;
+
+  /**
+   * Creates the automaton for the given patterns.
+   * <p>
+   * The patterns are matched exactly, so for a case insensitive search
+   * the patterns and the texts must be converted to lower case.
+   *
+   * @param patterns The patterns to find, empty patterns are never found.
+   */
+  public AhoCorasick(String[] patterns) {
+    mPatternCount = patterns.length;
+
+    ArrayList<StringBuilder> chars = new ArrayList<StringBuilder>();
+    ArrayList<ArrayList<Integer>> targets = new ArrayList<ArrayList<Integer>>();
+    ArrayList<ArrayList<Integer>> outputs = new ArrayList<ArrayList<Integer>>();
+
+    chars.add(new StringBuilder());
+    targets.add(new ArrayList<Integer>());
+    outputs.add(null);
+
+    // Build the trie of the patterns
+    for (int i = 0; i < patterns.length; i++) {
+      String pattern = patterns[i];
+
+      if (pattern == null || pattern.length() == 0) {
+        continue;
+      }
+
+      int state = 0;
+      for (int j = 0; j < pattern.length(); j++) {
+        char c = pattern.charAt(j);
+        int index = chars.get(state).indexOf(String.valueOf(c));
+
+        if (index >= 0) {
+          state = targets.get(state).get(index);
+        }
+        else {
+          int newState = chars.size();
+          chars.add(new StringBuilder());
+          targets.add(new ArrayList<Integer>());
+          outputs.add(null);
+
+          chars.get(state).append(c);
+          targets.get(state).add(newState);
+          state = newState;
+        }
+      }
+
+      if (outputs.get(state) == null) {
+        outputs.set(state, new ArrayList<Integer>(1));
+      }
+      outputs.get(state).add(i);
+    }
+
+    int stateCount = chars.size();
+    mTransitionChars = new char[stateCount][];
+    mTransitionTargets = new int[stateCount][];
+    mOutput = new int[stateCount][];
+
+    for (int state = 0; state < stateCount; state++) {
+      // sort the transitions for the binary search
+      String stateChars = chars.get(state).toString();
+      ArrayList<Integer> stateTargets = targets.get(state);
+      Integer[] order = new Integer[stateChars.length()];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      final String sortChars = stateChars;
+      Arrays.sort(order, new java.util.Comparator<Integer>() {
+        public int compare(Integer o1, Integer o2) {
+          return sortChars.charAt(o1) - sortChars.charAt(o2);
+        }
+      });
+
+      mTransitionChars[state] = new char[order.length];
+      mTransitionTargets[state] = new int[order.length];
+      for (int i = 0; i < order.length; i++) {
+        mTransitionChars[state][i] = stateChars.charAt(order[i]);
+        mTransitionTargets[state][i] = stateTargets.get(order[i]);
+      }
+
+      ArrayList<Integer> output = outputs.get(state);
+      if (output != null) {
+        mOutput[state] = new int[output.size()];
+        for (int i = 0; i < output.size(); i++) {
+          mOutput[state][i] = output.get(i);
+        }
+      }
+    }
+
+    // Create the failure links with a breadth first search
+    mFailure = new int[stateCount];
+    mOutputLink = new int[stateCount];
+    Arrays.fill(mOutputLink, -1);
+
+    int[] queue = new int[stateCount];
+    int head = 0;
+    int tail = 0;
+
+    for (int target : mTransitionTargets[0]) {
+      mFailure[target] = 0;
+      queue[tail++] = target;
+    }
+
+    while (head < tail) {
+      int state = queue[head++];
+
+      for (int i = 0; i < mTransitionChars[state].length; i++) {
+        char c = mTransitionChars[state][i];
+        int target = mTransitionTargets[state][i];
+
+        int failure = mFailure[state];
+        int next;
+        while ((next = getTransition(failure, c)) == -1 && failure != 0) {
+          failure = mFailure[failure];
+        }
+        mFailure[target] = next == -1 ? 0 : next;
+
+        int failureState = mFailure[target];
+        mOutputLink[target] = mOutput[failureState] != null ? failureState : mOutputLink[failureState];
+
+        queue[tail++] = target;
+      }
+    }
+  }
+
+  private int getTransition(int state, char c) {
+    int index = Arrays.binarySearch(mTransitionChars[state], c);
+    return index >= 0 ? mTransitionTargets[state][index] : -1;
+  }
+
+  private int nextState(int state, char c) {
+    int next;
+
+    while ((next = getTransition(state, c)) == -1 && state != 0) {
+      state = mFailure[state];
+    }
+
+    return next == -1 ? 0 : next;
+  }
+
+  /**
+   * @return The number of patterns of this automaton.
+   */
+  public int getPatternCount() {
+    return mPatternCount;
+  }
+
+  /**
+   * Finds all patterns that are contained in the text.
+   *
+   * @param text The text to search in.
+   * @param found The indices of the found patterns are set in this set.
+   */
+  public void findAll(CharSequence text, BitSet found) {
+    int state = 0;
+
+    for (int i = 0; i < text.length(); i++) {
+      state = nextState(state, text.charAt(i));
+
+      for (int outState = mOutput[state] != null ? state : mOutputLink[state]; outState != -1; outState = mOutputLink[outState]) {
+        for (int pattern : mOutput[outState]) {
+          found.set(pattern);
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks if at least one pattern is contained in the text.
+   *
+   * @param text The text to search in.
+   * @return <code>true</code> if a pattern was found.
+   */
+  public boolean containsAny(CharSequence text) {
+    int state = 0;
+
+    for (int i = 0; i < text.length(); i++) {
+      state = nextState(state, text.charAt(i));
+
+      if (mOutput[state] != null || mOutputLink[state] != -1) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package util.misc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class implements a cache with a limited size that removes the
+ * least recently used objects first.
+ * <p>
+ * The size of the cache is limited by the number of objects and by their
+ * total weight. Subclasses define the weight of an object by overriding
+ * {@link #getWeight(Object, Object)} and can protect objects from being
+ * removed by overriding {@link #isPinned(Object, Object)}.
+ * <p>
+ * The cache counts hits, misses, evictions and the time needed to load
+ * the objects that were not found.
+ *
+ * @since 3.4.5
+ */
+public class LruCache<T,K> {
+  /**
+   * The cached objects in the order of their last usage, the eldest first
+   */
+  private LinkedHashMap<T, Entry<K>> mCacheMap = new LinkedHashMap<T, Entry<K>>(256, 0.75f, true);
+
+  private int mMaxEntries;
+
+  private long mMaxWeight;
+
+  private long mWeight;
+
+  private long mHitCount;
+  private long mMissCount;
+  private long mEvictionCount;
+  private long mLoadCount;
+  private long mLoadTime;
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxEntries The maximum number of objects in the cache.
+   * @param maxWeight The maximum total weight of the objects in the cache.
+   */
+  public LruCache(int maxEntries, long maxWeight) {
+    setLimits(maxEntries, maxWeight);
+  }
+
+  /**
+   * Sets the size limits of the cache, objects are removed if the
+   * cache is bigger than the new limits.
+   *
+   * @param maxEntries The maximum number of objects in the cache.
+   * @param maxWeight The maximum total weight of the objects in the cache.
+   */
+  public synchronized void setLimits(int maxEntries, long maxWeight) {
+    mMaxEntries = Math.max(1, maxEntries);
+    mMaxWeight = Math.max(1, maxWeight);
+    evict();
+  }
+
+  /**
+   * Gets the weight of an object, by default every object weighs 1.
+   * <p>
+   * The weight is determined when the object is put into the cache.
+   *
+   * @param key The key of the object.
+   * @param object The object.
+   * @return The weight of the object.
+   */
+  protected long getWeight(T key, K object) {
+    return 1;
+  }
+
+  /**
+   * Gets if an object is currently not allowed to be removed
+   * to keep the cache in its limits. By default no object is pinned.
+   *
+   * @param key The key of the object.
+   * @param object The object.
+   * @return <code>true</code> if the object must stay in the cache.
+   */
+  protected boolean isPinned(T key, K object) {
+    return false;
+  }
+
+  /**
+   * Get the value from the Cache
+   * @param key get value for this key
+   * @return The value or <code>null</code> if the cache doesn't contain it.
+   */
+  public synchronized K get(T key) {
+    Entry<K> entry = mCacheMap.get(key);
+
+    if (entry != null) {
+      mHitCount++;
+      return entry.mValue;
+    }
+
+    mMissCount++;
+    return null;
+  }
+
+  /**
+   * Put a object into the cache
+   *
+   * @param key key for this object
+   * @param object object to store in the cache
+   */
+  public synchronized void put(T key, K object) {
+    Entry<K> entry = new Entry<K>(object, getWeight(key, object));
+    Entry<K> old = mCacheMap.put(key, entry);
+
+    if (old != null) {
+      mWeight -= old.mWeight;
+    }
+
+    mWeight += entry.mWeight;
+    evict();
+  }
+
+  /**
+   * Remove item from cache
+   * @param key remove item that references this key
+   */
+  public synchronized void remove(T key) {
+    Entry<K> entry = mCacheMap.remove(key);
+
+    if (entry != null) {
+      mWeight -= entry.mWeight;
+    }
+  }
+
+  /**
+   * Remove item from cache if the key still references it
+   * @param key remove item that references this key
+   * @param object the item to remove
+   */
+  public synchronized void remove(T key, K object) {
+    Entry<K> entry = mCacheMap.get(key);
+
+    if (entry != null && entry.mValue == object) {
+      mCacheMap.remove(key);
+      mWeight -= entry.mWeight;
+    }
+  }
+
+  /**
+   * Clear the cache
+   */
+  public synchronized void clear() {
+    mCacheMap.clear();
+    mWeight = 0;
+  }
+
+  /**
+   * Checks if the cache contains a specific key
+   *
+   * @param key search for this key
+   * @return <code>true</code> if this cache contains this key
+   */
+  public synchronized boolean containsKey(T key) {
+    return mCacheMap.containsKey(key);
+  }
+
+  /**
+   * Removes the least recently used objects that are not pinned
+   * until the cache is in its limits again.
+   */
+  private void evict() {
+    Iterator<Map.Entry<T, Entry<K>>> it = mCacheMap.entrySet().iterator();
+
+    while ((mCacheMap.size() > mMaxEntries || mWeight > mMaxWeight) && it.hasNext()) {
+      Map.Entry<T, Entry<K>> eldest = it.next();
+
+      if (!isPinned(eldest.getKey(), eldest.getValue().mValue)) {
+        it.remove();
+        mWeight -= eldest.getValue().mWeight;
+        mEvictionCount++;
+      }
+    }
+  }
+
+  /**
+   * Records the time needed to load an object that was not in the cache.
+   *
+   * @param nanos The load time in nanoseconds.
+   */
+  public synchronized void recordLoad(long nanos) {
+    mLoadCount++;
+    mLoadTime += nanos;
+  }
+
+  /**
+   * @return The number of objects in the cache.
+   */
+  public synchronized int size() {
+    return mCacheMap.size();
+  }
+
+  /**
+   * @return The total weight of the objects in the cache.
+   */
+  public synchronized long getWeight() {
+    return mWeight;
+  }
+
+  /**
+   * @return The number of successful lookups.
+   */
+  public synchronized long getHitCount() {
+    return mHitCount;
+  }
+
+  /**
+   * @return The number of lookups that didn't find an object.
+   */
+  public synchronized long getMissCount() {
+    return mMissCount;
+  }
+
+  /**
+   * @return The number of objects removed to keep the cache in its limits.
+   */
+  public synchronized long getEvictionCount() {
+    return mEvictionCount;
+  }
+
+  /**
+   * @return The number of recorded loads.
+   */
+  public synchronized long getLoadCount() {
+    return mLoadCount;
+  }
+
+  /**
+   * @return The total time of the recorded loads in nanoseconds.
+   */
+  public synchronized long getLoadTime() {
+    return mLoadTime;
+  }
+
+  /**
+   * @return A short description of the size and usage of the cache.
+   */
+  public synchronized String getStatistics() {
+    long lookups = mHitCount + mMissCount;
+
+    return mCacheMap.size() + " entries, weight " + mWeight + " of " + mMaxWeight + ", "
+        + mHitCount + " hits, " + mMissCount + " misses, hit ratio "
+        + (lookups > 0 ? Math.round(100.0 * mHitCount / lookups) : 0) + "%, "
+        + mEvictionCount + " evictions, " + mLoadCount + " loads in "
+        + (mLoadTime / 1000000) + " ms";
+  }
+
+  private static final class Entry<K> {
+    private K mValue;
+    private long mWeight;
+
+    private Entry(K value, long weight) {
+      mValue = value;
+      mWeight = weight;
+    }
+  }
+}
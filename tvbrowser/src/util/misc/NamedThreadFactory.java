@@ -0,0 +1,73 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package util.misc;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread factory that creates numbered threads with a given name,
+ * so the threads of a pool can be identified in thread dumps.
+ *
+ * @since 3.4.5
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+  private final String mName;
+
+  private final boolean mDaemon;
+
+  private final int mPriority;
+
+  private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+
+  /**
+   * Creates a factory for daemon threads with normal priority.
+   *
+   * @param name The name of the threads, the number of the thread is appended.
+   */
+  public NamedThreadFactory(String name) {
+    this(name, true, Thread.NORM_PRIORITY);
+  }
+
+  /**
+   * Creates a factory for threads.
+   *
+   * @param name The name of the threads, the number of the thread is appended.
+   * @param daemon If the threads should be daemon threads.
+   * @param priority The priority of the threads.
+   */
+  public NamedThreadFactory(String name, boolean daemon, int priority) {
+    mName = name;
+    mDaemon = daemon;
+    mPriority = priority;
+  }
+
+  public Thread newThread(Runnable r) {
+    Thread thread = new Thread(r, mName + " " + mThreadNumber.getAndIncrement());
+    thread.setDaemon(mDaemon);
+    thread.setPriority(mPriority);
+    return thread;
+  }
+}
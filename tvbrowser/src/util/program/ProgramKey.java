@@ -0,0 +1,58 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package util.program;
+
+import devplugin.Program;
+
+/**
+ * A key for caches that compares the programs by their instance,
+ * the equals method of the programs only compares channel, date,
+ * start time and title.
+ *
+ * @since 3.4.5
+ */
+public final class ProgramKey {
+  private Program mProgram;
+
+  /**
+   * Creates the key for the given program.
+   *
+   * @param prog The program of the key.
+   */
+  public ProgramKey(Program prog) {
+    mProgram = prog;
+  }
+
+  /**
+   * @return The program of this key.
+   */
+  public Program getProgram() {
+    return mProgram;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(mProgram);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof ProgramKey && ((ProgramKey) obj).mProgram == mProgram;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package util.program;
+
+import org.apache.commons.lang3.text.StrBuilder;
+
+import tvbrowser.core.search.AbstractSearcher;
+import util.misc.LruCache;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * Caches the normalized text of some fields of programs.
+ * <p>
+ * The normalized text contains the values of the fields in lower case,
+ * separated by a space. Filters that are checked for the same programs
+ * again and again, for example on every repaint of the program table, use
+ * it to create the text only once for every program.
+ * <p>
+ * The programs are identified by their ID, so the cache doesn't keep the
+ * programs in memory. The owner of the cache has to clear it when the
+ * TV data changes. The texts of programs without ID are not cached.
+ *
+ * @since 3.4.5
+ */
+public class ProgramTextCache {
+
+  /** The default maximum number of characters in a cache */
+  private static final long DEFAULT_MAX_CHARS = 4000000;
+
+  private ProgramFieldType[] mFieldArr;
+
+  private LruCache<String, String> mCache;
+
+  /**
+   * Creates a cache for the text of the given fields.
+   *
+   * @param fieldArr The fields of the text.
+   */
+  public ProgramTextCache(ProgramFieldType[] fieldArr) {
+    this(fieldArr, DEFAULT_MAX_CHARS);
+  }
+
+  /**
+   * Creates a cache for the text of the given fields.
+   *
+   * @param fieldArr The fields of the text.
+   * @param maxChars The maximum number of characters of all cached texts.
+   */
+  public ProgramTextCache(ProgramFieldType[] fieldArr, long maxChars) {
+    mFieldArr = fieldArr;
+    mCache = new LruCache<String, String>(Integer.MAX_VALUE, maxChars) {
+      @Override
+      protected long getWeight(String key, String text) {
+        return Math.max(1, text.length());
+      }
+    };
+  }
+
+  /**
+   * Gets the normalized text of the fields of the given program.
+   *
+   * @param prog The program to get the text for.
+   * @return The text, empty if the program has none of the fields.
+   */
+  public String getText(Program prog) {
+    String key = prog.getUniqueID();
+
+    if (key == null) {
+      return createText(prog, mFieldArr);
+    }
+
+    String text = mCache.get(key);
+
+    if (text == null) {
+      text = createText(prog, mFieldArr);
+      mCache.put(key, text);
+    }
+
+    return text;
+  }
+
+  /**
+   * Removes all texts from the cache.
+   */
+  public void clear() {
+    mCache.clear();
+  }
+
+  /**
+   * Creates the normalized text of the given fields of a program.
+   *
+   * @param prog The program to get the text for.
+   * @param fieldArr The fields of the text.
+   * @return The text, empty if the program has none of the fields.
+   */
+  public static String createText(Program prog, ProgramFieldType[] fieldArr) {
+    StrBuilder text = new StrBuilder();
+
+    for (ProgramFieldType type : fieldArr) {
+      if (type != null) {
+        String value = AbstractSearcher.getSearchableFieldValue(prog, type);
+
+        if (value != null) {
+          if (!text.isEmpty()) {
+            text.append(' ');
+          }
+          text.append(value);
+        }
+      }
+    }
+
+    return text.toString().toLowerCase();
+  }
+}
@@ -497,6 +497,14 @@ public class ProgramUtilities {
    */
   public static String getTimeZoneCorrectedProgramId(String progID) {
     int index = progID.lastIndexOf('_');
+    int offsetStart = progID.lastIndexOf(':');
+
+    if(offsetStart > progID.indexOf(':', index + 1)
+        && parseOffset(progID, offsetStart + 1) == TimeZone.getDefault().getRawOffset()/60000) {
+      // the ID is already in the current time zone, nothing to create
+      return progID;
+    }
+
     String timeString = progID.substring(index + 1);
     int hourIndex = timeString.indexOf(':');
     int offsetIndex = timeString.lastIndexOf(':');
@@ -540,6 +548,37 @@ public class ProgramUtilities {
     return progID;
   }
 
+  /**
+   * Parses the time zone offset at the end of a program ID without
+   * creating a new String.
+   *
+   * @param progID The ID of the program.
+   * @param start The index of the offset in the ID.
+   * @return The offset or {@link Integer#MIN_VALUE} if it's not a number.
+   */
+  private static int parseOffset(String progID, int start) {
+    boolean negative = start < progID.length() && progID.charAt(start) == '-';
+    int i = negative ? start + 1 : start;
+
+    if(i >= progID.length()) {
+      return Integer.MIN_VALUE;
+    }
+
+    int offset = 0;
+
+    for(; i < progID.length(); i++) {
+      char c = progID.charAt(i);
+
+      if(c < '0' || c > '9') {
+        return Integer.MIN_VALUE;
+      }
+
+      offset = offset * 10 + (c - '0');
+    }
+
+    return negative ? -offset : offset;
+  }
+
   /**
    * extract a list of person names out of the given string
    *
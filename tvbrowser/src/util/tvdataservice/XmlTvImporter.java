@@ -0,0 +1,397 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin_oat@yahoo.de)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package util.tvdataservice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import tvdataservice.MutableChannelDayProgram;
+import tvdataservice.MutableProgram;
+import tvdataservice.TvDataUpdateManager;
+import util.misc.AbstractXmlTvDataHandler;
+import devplugin.Channel;
+import devplugin.Date;
+import devplugin.ProgramFieldType;
+
+/**
+ * Imports the programs of a XMLTV document into day programs.
+ * <p>
+ * The document is read with a pull parser and a day program of a channel
+ * is given to the {@link TvDataUpdateManager} as soon as a program of the
+ * channel starts on a later day, so only the days that are currently read
+ * are held in memory, even for very large documents. Like it's done by the
+ * XMLTV grabbers the programs of every channel must be in the order of
+ * their start time, the channels may be mixed. Programs for a day that was
+ * already given to the update manager are ignored.
+ * <p>
+ * The remaining days are given to the update manager when the end of the
+ * document is reached. If the document is invalid or the download is
+ * canceled they are discarded. Data that is split into several documents,
+ * for example one document for every day, is imported by reading the
+ * documents in the order of their dates with {@link #readDocument(InputStream)}
+ * and calling {@link #finish()} after the last one.
+ *
+ * @since 3.4.5
+ */
+public abstract class XmlTvImporter extends AbstractXmlTvDataHandler {
+
+  private static final Logger mLog = Logger.getLogger(XmlTvImporter.class.getName());
+
+  private TvDataUpdateManager mUpdateManager;
+
+  /**
+   * The days of the channels, key is the XMLTV channel ID.
+   */
+  private HashMap<String, ChannelDays> mChannelDays = new HashMap<String, ChannelDays>();
+
+  private MutableChannelDayProgram mDayProgram;
+
+  private MutableProgram mProgram;
+
+  private int mProgramCount;
+
+  private int mDayProgramCount;
+
+  private int mIgnoredProgramCount;
+
+  /** The time the import started, 0 if no document was read yet */
+  private long mStartTime;
+
+  /**
+   * Creates a new importer.
+   *
+   * @param updateManager
+   *          The update manager to give the day programs to.
+   */
+  protected XmlTvImporter(final TvDataUpdateManager updateManager) {
+    mUpdateManager = updateManager;
+  }
+
+  /**
+   * Gets the channel for the given XMLTV channel ID.
+   *
+   * @param channelId
+   *          The ID of the channel in the XMLTV document.
+   * @return The channel or <code>null</code> if the programs of the channel
+   *         shall not be imported.
+   */
+  protected abstract Channel getChannel(String channelId);
+
+  /**
+   * Imports the programs of the given XMLTV document.
+   *
+   * @param in
+   *          The stream to read the document from, it is not closed.
+   * @throws IOException
+   *           If the document could not be read.
+   */
+  public void importData(final InputStream in) throws IOException {
+    readDocument(in);
+    finish();
+  }
+
+  /**
+   * Reads the programs of one of several XMLTV documents of an import.
+   * The days that are not complete at the end of the document are kept
+   * for the next document, if the document is invalid or the download
+   * is canceled they are discarded.
+   *
+   * @param in
+   *          The stream to read the document from, it is not closed.
+   * @throws IOException
+   *           If the document could not be read.
+   * @see #finish()
+   */
+  public void readDocument(final InputStream in) throws IOException {
+    if (mStartTime == 0) {
+      mStartTime = System.currentTimeMillis();
+    }
+
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+    AttributesImpl attributes = new AttributesImpl();
+    XMLStreamReader reader = null;
+    boolean complete = false;
+
+    try {
+      reader = factory.createXMLStreamReader(in);
+
+      while (reader.hasNext() && !mUpdateManager.cancelDownload()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT: {
+            attributes.clear();
+
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+              String name = reader.getAttributeLocalName(i);
+              attributes.addAttribute("", name, name, "CDATA", reader.getAttributeValue(i));
+            }
+
+            String name = reader.getLocalName();
+            startElement("", name, name, attributes);
+            break;
+          }
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE: {
+            characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            break;
+          }
+          case XMLStreamConstants.END_ELEMENT: {
+            String name = reader.getLocalName();
+            endElement("", name, name);
+            break;
+          }
+          case XMLStreamConstants.END_DOCUMENT: {
+            complete = true;
+            break;
+          }
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Invalid XMLTV document", e);
+    } catch (SAXException e) {
+      throw new IOException("Invalid XMLTV document", e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // ignore
+        }
+      }
+
+      if (!complete) {
+        for (ChannelDays days : mChannelDays.values()) {
+          days.mDays.clear();
+        }
+      }
+    }
+  }
+
+  /**
+   * Gives the remaining days of the read documents to the update manager.
+   *
+   * @see #readDocument(InputStream)
+   */
+  public void finish() {
+    for (ChannelDays days : mChannelDays.values()) {
+      days.updateDaysBefore(null);
+    }
+
+    mLog.info("Imported " + mProgramCount + " programs in " + mDayProgramCount + " day programs in "
+        + (System.currentTimeMillis() - mStartTime) + " ms" + (mIgnoredProgramCount > 0 ? ", ignored "
+        + mIgnoredProgramCount + " programs of days that were already complete" : ""));
+  }
+
+  @Override
+  protected void startProgram(final Date startDate, final int startTime) {
+    mProgram = null;
+    mDayProgram = null;
+
+    String channelId = getChannelId();
+    ChannelDays days = mChannelDays.get(channelId);
+
+    if (days == null) {
+      days = new ChannelDays(getChannel(channelId));
+      mChannelDays.put(channelId, days);
+    }
+
+    if (days.mChannel == null) {
+      return;
+    }
+
+    if (days.mLastUpdatedDate != null && startDate.compareTo(days.mLastUpdatedDate) <= 0) {
+      mIgnoredProgramCount++;
+      return;
+    }
+
+    days.updateDaysBefore(startDate);
+
+    mDayProgram = days.getDayProgram(startDate);
+    mProgram = new MutableProgram(days.mChannel, startDate, startTime / 60, startTime % 60, true);
+  }
+
+  @Override
+  protected boolean isValid() {
+    return super.isValid() && mProgram != null;
+  }
+
+  @Override
+  protected void endProgram() {
+    mProgram.setProgramLoadingIsComplete();
+    mDayProgram.addProgram(mProgram);
+    mProgramCount++;
+
+    mProgram = null;
+    mDayProgram = null;
+  }
+
+  @Override
+  protected String getChannelCountry() {
+    return mProgram.getChannel().getBaseCountry();
+  }
+
+  @Override
+  protected void addField(final ProgramFieldType fieldType, final byte[] value) {
+    mProgram.setBinaryField(fieldType, value);
+  }
+
+  @Override
+  protected void addField(final ProgramFieldType fieldType, final String value) {
+    if (fieldType == ProgramFieldType.TITLE_TYPE) {
+      mProgram.setTitle(value);
+    } else {
+      mProgram.setTextField(fieldType, value);
+    }
+  }
+
+  @Override
+  protected void addField(final ProgramFieldType fieldType, final int value) {
+    // the times are added for ignored programs, too
+    if (mProgram == null) {
+      return;
+    }
+
+    if (fieldType.getFormat() == ProgramFieldType.TIME_FORMAT) {
+      mProgram.setTimeField(fieldType, value);
+    } else {
+      mProgram.setIntField(fieldType, value);
+    }
+
+    if (fieldType == ProgramFieldType.END_TIME_TYPE) {
+      int length = value - mProgram.getTimeField(ProgramFieldType.START_TIME_TYPE);
+
+      // a negative length means that the program runs over midnight
+      if (length < 0) {
+        length += 24 * 60;
+      }
+
+      // longer programs are most likely wrong because of the daylight saving time
+      if (length > 0 && length < 12 * 60) {
+        mProgram.setLength(length);
+      }
+    }
+  }
+
+  @Override
+  protected void addToList(final ProgramFieldType fieldType, final String value, final String separator) {
+    String currentValue = mProgram.getTextField(fieldType);
+
+    if (currentValue != null && currentValue.length() > 0) {
+      mProgram.setTextField(fieldType, currentValue + separator + value);
+    } else {
+      mProgram.setTextField(fieldType, value);
+    }
+  }
+
+  @Override
+  protected void setInfoBit(final int bit) {
+    int info = mProgram.getIntField(ProgramFieldType.INFO_TYPE);
+
+    if (info == -1) {
+      info = 0;
+    }
+
+    mProgram.setIntField(ProgramFieldType.INFO_TYPE, info | bit);
+  }
+
+  @Override
+  protected void logMessage(final String message) {
+    mLog.info(message);
+  }
+
+  @Override
+  protected void logException(final Exception exc) {
+    mLog.warning(exc.getMessage());
+  }
+
+  /**
+   * The days of a channel that are currently read.
+   */
+  private final class ChannelDays {
+    private Channel mChannel;
+
+    /** The day programs that are not complete yet, usually not more than two */
+    private ArrayList<MutableChannelDayProgram> mDays = new ArrayList<MutableChannelDayProgram>(2);
+
+    /** The date of the last day program that was given to the update manager */
+    private Date mLastUpdatedDate;
+
+    private ChannelDays(final Channel channel) {
+      mChannel = channel;
+    }
+
+    private MutableChannelDayProgram getDayProgram(final Date date) {
+      for (MutableChannelDayProgram dayProgram : mDays) {
+        if (dayProgram.getDate().equals(date)) {
+          return dayProgram;
+        }
+      }
+
+      MutableChannelDayProgram dayProgram = new MutableChannelDayProgram(date, mChannel);
+      mDays.add(dayProgram);
+
+      return dayProgram;
+    }
+
+    /**
+     * Gives the days before the given date to the update manager.
+     *
+     * @param date
+     *          The date of the first day that is not complete,
+     *          <code>null</code> for all days.
+     */
+    private void updateDaysBefore(final Date date) {
+      while (!mDays.isEmpty()) {
+        MutableChannelDayProgram first = null;
+
+        for (MutableChannelDayProgram dayProgram : mDays) {
+          if (first == null || dayProgram.getDate().compareTo(first.getDate()) < 0) {
+            first = dayProgram;
+          }
+        }
+
+        if (date != null && first.getDate().compareTo(date) >= 0) {
+          return;
+        }
+
+        mDays.remove(first);
+        mLastUpdatedDate = first.getDate();
+
+        if (first.getProgramCount() > 0) {
+          mUpdateManager.updateDayProgram(first);
+          mDayProgramCount++;
+        }
+      }
+    }
+  }
+}
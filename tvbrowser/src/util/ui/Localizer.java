@@ -40,6 +40,7 @@ import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Logger;
@@ -127,8 +128,11 @@ public class Localizer {
    */
   private static final Object[] THREE_ARGS_ARR = new Object[3];
 
-  /** Contains for a Class (key) a Localizer (value). */
-  private static final HashMap<Class, Localizer> mLocalizerCache = new HashMap<Class, Localizer>();
+  /**
+   * Contains for a Class (key) a Localizer (value), the classes of the core
+   * and the plugins are initialized by several threads at the start.
+   */
+  private static final ConcurrentHashMap<Class, Localizer> mLocalizerCache = new ConcurrentHashMap<Class, Localizer>();
 
   /** The base name of the ResourceBundle used by this Localizer. */
   private String mBaseName;
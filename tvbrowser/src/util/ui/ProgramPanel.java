@@ -59,6 +59,7 @@ import tvbrowser.core.icontheme.InfoThemeLoader;
 import tvbrowser.core.plugin.PluginProxy;
 import tvbrowser.core.plugin.PluginProxyManager;
 import tvbrowser.core.plugin.PluginStateListener;
+import tvbrowser.core.plugin.ProgramTableIconLoader;
 import tvbrowser.extras.common.InternalPluginProxyIf;
 import tvbrowser.extras.common.InternalPluginProxyList;
 import tvbrowser.extras.favoritesplugin.FavoritesPluginProxy;
@@ -193,6 +194,12 @@ public class ProgramPanel extends JComponent implements ChangeListener, PluginSt
   private byte mProgramImportance;
   
   private int mLogoWidth = 0;
+  
+  /**
+   * Is informed when plugin icons were loaded in the background,
+   * <code>null</code> if the icons are loaded when painting
+   */
+  private ChangeListener mPluginIconListener;
 
   /**
    * Creates a new instance of ProgramPanel.
@@ -521,7 +528,8 @@ private static Font getDynamicFontSize(Font font, int offset) {
       mTitleIcon.setText(program.getTitle());
 
       if(mProgram.getProgramState() == Program.IS_VALID_STATE) {
-        programHasChanged();
+        // a new program, so the icons loaded in the background are still valid
+        mHasChanged = true;
       }
     }
     
@@ -686,7 +694,9 @@ private static Font getDynamicFontSize(Font font, int offset) {
 
           // Now add the icons
           if ((plugin != null) && plugin.isActivated()) {
-            Icon[] iconArr = plugin.getProgramTableIcons(program);
+            Icon[] iconArr = plugin.isProvidingProgramTableIconsAtOnce() && mPluginIconListener != null ?
+                ProgramTableIconLoader.getInstance().getIcons(plugin, program, this) :
+                plugin.getProgramTableIcons(program);
             if (iconArr != null) {
               // Add the icons
               for (Icon icon : iconArr) {
@@ -1127,6 +1137,42 @@ private static Font getDynamicFontSize(Font font, int offset) {
     // we need to remember changed state so we can update the plugin icons
     // before painting
     mHasChanged = true;
+    
+    if(mProgram != null) {
+      ProgramTableIconLoader.getInstance().invalidate(mProgram);
+    }
+  }
+
+  /**
+   * Sets the listener that is informed when the plugin icons of this panel
+   * were loaded in the background, so the owner of the panel can repaint it.
+   * The panels that are painted by a renderer have no listener, they load
+   * the plugin icons when they are painted.
+   * 
+   * @param listener The listener or <code>null</code> to load the plugin
+   *        icons when painting.
+   * @see ProgramTableIconLoader
+   * @since 3.4.5
+   */
+  public void setPluginIconListener(ChangeListener listener) {
+    mPluginIconListener = listener;
+  }
+
+  /**
+   * Informs the listener of this panel that the plugin icons were loaded
+   * in the background, the icons are updated before this panel is painted.
+   * 
+   * @see ProgramTableIconLoader
+   * @since 3.4.5
+   */
+  public void pluginIconsLoaded() {
+    mHasChanged = true;
+    
+    final ChangeListener listener = mPluginIconListener;
+    
+    if (listener != null) {
+      listener.stateChanged(new ChangeEvent(this));
+    }
   }
 
   // implements ChangeListener
@@ -37,6 +37,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.BorderFactory;
 import javax.swing.DefaultListModel;
@@ -69,6 +72,7 @@ import com.jgoodies.forms.factories.Borders;
 import com.jgoodies.forms.factories.CC;
 import com.jgoodies.forms.layout.FormLayout;
 
+import devplugin.CancelableProgressMonitor;
 import devplugin.Program;
 import devplugin.ProgramFilter;
 import devplugin.ProgramSearcher;
@@ -335,7 +339,20 @@ public class SearchHelper {
     if (programArr.length == 0) {
       mProgressBar = new JProgressBar();
 
-      mProgressMonitor = new ProgressMonitor() {
+      // stop searching if the dialog is closed
+      final AtomicBoolean dialogClosed = new AtomicBoolean(false);
+      dlg.addWindowListener(new WindowAdapter() {
+        @Override
+        public void windowClosed(WindowEvent e) {
+          dialogClosed.set(true);
+        }
+      });
+
+      mProgressMonitor = new CancelableProgressMonitor() {
+
+        public boolean isCanceled() {
+          return dialogClosed.get();
+        }
 
         public void setMaximum(final int maximum) {
           UIThreadRunner.invokeLater(new Runnable() {
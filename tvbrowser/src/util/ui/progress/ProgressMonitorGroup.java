@@ -25,6 +25,7 @@
  */
 package util.ui.progress;
 
+import java.util.ArrayList;
 import java.util.logging.Logger;
 
 import javax.swing.JLabel;
@@ -49,6 +50,10 @@ public class ProgressMonitorGroup {
 
   private int mCurrentMonitorWeight;
   private int mCurrentMonitorMaximum;
+  private int mCurrentMonitorValue;
+
+  /** The monitors of the parts that run at the same time */
+  private ArrayList<ParallelProgressMonitor> mParallelMonitors = new ArrayList<ParallelProgressMonitor>();
 
 
   public ProgressMonitorGroup(ProgressMonitor delegate, int totalWeight) {
@@ -64,12 +69,13 @@ public class ProgressMonitorGroup {
   }
 
 
-  public ProgressMonitor getNextProgressMonitor(int weight) {
+  public synchronized ProgressMonitor getNextProgressMonitor(int weight) {
     // Add the weight of the last monitor
     mUsedWeight += mCurrentMonitorWeight;
 
     // Remember the weight of the current monitor
     mCurrentMonitorWeight = weight;
+    mCurrentMonitorValue = 0;
 
     return new ProgressMonitor() {
       public void setMaximum(int maximum) {
@@ -87,7 +93,25 @@ public class ProgressMonitorGroup {
   }
 
 
-  private void setCurrentMonitorValue(int value) {
+  /**
+   * Gets the monitor for a part that runs at the same time as other parts.
+   * <p>
+   * The progress of all parallel parts is added, the parts of
+   * {@link #getNextProgressMonitor(int)} follow after them.
+   *
+   * @param weight The weight of the part.
+   * @return The monitor for the part.
+   * @since 3.4.5
+   */
+  public synchronized ProgressMonitor getParallelProgressMonitor(int weight) {
+    ParallelProgressMonitor monitor = new ParallelProgressMonitor(weight);
+    mParallelMonitors.add(monitor);
+
+    return monitor;
+  }
+
+
+  private synchronized void setCurrentMonitorValue(int value) {
     // Ensure that the value is in the range
     if ((value < 0) || (value > mCurrentMonitorMaximum)) {
       mLog.severe("Progress value " + value
@@ -95,14 +119,64 @@ public class ProgressMonitorGroup {
       return;
     }
 
+    mCurrentMonitorValue = value;
+    updateValue();
+  }
+
+
+  private void updateValue() {
     int groupStartValue = MAXIMUM * mUsedWeight / mTotalWeight;
-    int groupValue = MAXIMUM * mCurrentMonitorWeight
-                   * value / mCurrentMonitorMaximum / mTotalWeight;
+    int groupValue = 0;
+    if (mCurrentMonitorMaximum > 0) {
+      groupValue = MAXIMUM * mCurrentMonitorWeight
+                   * mCurrentMonitorValue / mCurrentMonitorMaximum / mTotalWeight;
+    }
 
     int result = groupStartValue + groupValue;
+    for (ParallelProgressMonitor monitor : mParallelMonitors) {
+      if (monitor.mMaximum > 0) {
+        result += MAXIMUM * monitor.mWeight * monitor.mValue / monitor.mMaximum / mTotalWeight;
+      }
+    }
+
     if (result >= 0) {
       mDelegate.setValue(result);
     }
   }
 
+
+  private class ParallelProgressMonitor implements ProgressMonitor {
+    private int mWeight;
+    private int mMaximum;
+    private int mValue;
+
+    public ParallelProgressMonitor(int weight) {
+      mWeight = weight;
+    }
+
+    public void setMaximum(int maximum) {
+      synchronized (ProgressMonitorGroup.this) {
+        mMaximum = maximum;
+        mValue = Math.min(mValue, maximum);
+      }
+    }
+
+    public void setValue(int value) {
+      synchronized (ProgressMonitorGroup.this) {
+        if ((value < 0) || (value > mMaximum)) {
+          mLog.severe("Progress value " + value
+            + " is out of range [0.." + mMaximum + "]");
+          return;
+        }
+
+        mValue = value;
+        updateValue();
+      }
+    }
+
+    public void setMessage(String msg) {
+      mDelegate.setMessage(msg);
+    }
+  }
+
 }
@@ -0,0 +1,133 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core;
+
+import java.util.ArrayList;
+
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+import devplugin.Program;
+
+/**
+ * Compares finding the programs on air and the next programs of all
+ * channels by looking at every program of yesterday, today and tomorrow,
+ * like the main frame and the plugins did, with the on air index.
+ * The programs that start and end are also collected for every minute of
+ * a day and checked against the programs on air.
+ */
+public class OnAirIndexBenchmark {
+
+  private static final int CHANNELS = 300;
+
+  private static final int PROGRAMS_PER_DAY = 40;
+
+  private static final int QUERIES = 200;
+
+  private static final int ROUNDS = 10;
+
+  public static void main(String[] args) {
+    Date today = Date.getCurrentDate();
+    SyntheticTvData data = new SyntheticTvData(CHANNELS, today.addDays(-1), 3, PROGRAMS_PER_DAY);
+    Channel[] channels = data.getChannels();
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      OnAirIndex.ChannelPrograms[] index = new OnAirIndex.ChannelPrograms[CHANNELS];
+      for (int i = 0; i < CHANNELS; i++) {
+        ChannelDayProgram[] dayPrograms = new ChannelDayProgram[3];
+        for (int day = -1; day <= 1; day++) {
+          dayPrograms[day + 1] = data.getDayProgram(today.addDays(day), channels[i]);
+        }
+        index[i] = new OnAirIndex.ChannelPrograms(dayPrograms, today);
+      }
+      long build = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      long found = 0;
+      for (int q = 0; q < QUERIES; q++) {
+        int time = q * 7 % (24 * 60);
+        for (Channel channel : channels) {
+          found += findRunning(data, channel, today, time).size();
+        }
+      }
+      long scan = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      long foundIndex = 0;
+      for (int q = 0; q < QUERIES; q++) {
+        int time = q * 7 % (24 * 60);
+        for (OnAirIndex.ChannelPrograms programs : index) {
+          foundIndex += programs.getRunning(time).length;
+          foundIndex += programs.getNext(time, 1).length;
+        }
+      }
+      long indexed = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int startedCount = 0;
+      int endedCount = 0;
+      for (int minute = 1; minute < 24 * 60; minute++) {
+        ArrayList<Program> started = new ArrayList<Program>();
+        ArrayList<Program> ended = new ArrayList<Program>();
+        for (OnAirIndex.ChannelPrograms programs : index) {
+          programs.getChanges(minute - 1, minute, started, ended);
+        }
+        startedCount += started.size();
+        endedCount += ended.size();
+      }
+      long ticks = System.nanoTime() - start;
+
+      System.out.println("round " + round + ": index of " + CHANNELS + " channels built in " + (build / 1000000)
+          + " ms; " + QUERIES + " queries of all channels: scan " + (scan / 1000000) + " ms (" + found
+          + " on air), index " + (indexed / 1000000) + " ms (" + foundIndex + " on air and next); minute ticks of a day "
+          + (ticks / 1000000) + " ms (" + startedCount + " started, " + endedCount + " ended)");
+    }
+  }
+
+  /**
+   * Finds the programs on air by looking at every program, like
+   * {@link util.program.ProgramUtilities#isOnAir(Program)} for the given time.
+   */
+  private static ArrayList<Program> findRunning(SyntheticTvData data, Channel channel, Date today, int time) {
+    ArrayList<Program> running = new ArrayList<Program>(1);
+
+    for (int day = -1; day <= 1; day++) {
+      ChannelDayProgram dayProg = data.getDayProgram(today.addDays(day), channel);
+
+      for (int i = 0; dayProg != null && i < dayProg.getProgramCount(); i++) {
+        Program p = dayProg.getProgramAt(i);
+        int t = time;
+
+        if (today.compareTo(p.getDate()) < 0 || p.getDate().addDays(1).compareTo(today) < 0) {
+          continue;
+        }
+        if (p.getDate().addDays(1).compareTo(today) == 0) {
+          t += 24 * 60;
+        }
+        if (p.getStartTime() <= t && p.getStartTime() + p.getLength() > t) {
+          running.add(p);
+        }
+      }
+    }
+
+    return running;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tvdataservice.MutableChannelDayProgram;
+import tvdataservice.MutableProgram;
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+import devplugin.Program;
+
+/**
+ * Checks the programs on air and the started and ended programs
+ * of a channel around midnight.
+ */
+public class OnAirIndexTest extends TestCase {
+
+  private static final Channel CHANNEL = SyntheticTvData.createChannels(1)[0];
+
+  private static final Date TODAY = new Date(2014, 5, 12);
+
+  private static final Date YESTERDAY = TODAY.addDays(-1);
+
+  private static final Date TOMORROW = TODAY.addDays(1);
+
+  private OnAirIndex.ChannelPrograms mPrograms;
+
+  @Override
+  protected void setUp() throws Exception {
+    MutableChannelDayProgram yesterday = new MutableChannelDayProgram(YESTERDAY, CHANNEL);
+    yesterday.addProgram(createProgram("early", YESTERDAY, 20 * 60, 120));
+    yesterday.addProgram(createProgram("night", YESTERDAY, 22 * 60, 150));
+
+    MutableChannelDayProgram today = new MutableChannelDayProgram(TODAY, CHANNEL);
+    today.addProgram(createProgram("first", TODAY, 30, 60));
+    today.addProgram(createProgram("second", TODAY, 90, 30));
+    today.addProgram(createProgram("day", TODAY, 120, 22 * 60));
+    today.addProgram(createProgram("late", TODAY, 23 * 60 + 30, 60));
+
+    MutableChannelDayProgram tomorrow = new MutableChannelDayProgram(TOMORROW, CHANNEL);
+    tomorrow.addProgram(createProgram("morning", TOMORROW, 0, 60));
+
+    mPrograms = new OnAirIndex.ChannelPrograms(new ChannelDayProgram[] {yesterday, today, tomorrow}, TODAY);
+  }
+
+  public void testTimesRelativeToBaseDate() {
+    assertEquals(-1, OnAirIndex.getTime(TODAY, YESTERDAY, 24 * 60 - 1));
+    assertEquals(24 * 60 + 10, OnAirIndex.getTime(TODAY, TOMORROW, 10));
+    assertEquals(-24 * 60, OnAirIndex.getTime(new Date(2014, 1, 1), new Date(2013, 12, 31), 0));
+    assertEquals(2 * 24 * 60, OnAirIndex.getTime(new Date(2012, 2, 28), new Date(2012, 3, 1), 0));
+    assertEquals(24 * 60, OnAirIndex.getTime(new Date(2014, 2, 28), new Date(2014, 3, 1), 0));
+  }
+
+  public void testRunningBeforeAndAfterMidnight() {
+    assertRunning(YESTERDAY, 21 * 60 + 59, "early");
+    assertRunning(YESTERDAY, 22 * 60, "night");
+    assertRunning(YESTERDAY, 24 * 60 - 1, "night");
+    assertRunning(TODAY, 0, "night");
+    assertRunning(TODAY, 29, "night");
+    assertRunning(TODAY, 30, "first");
+  }
+
+  public void testOverlappingProgramsIntoNextDay() {
+    assertRunning(TODAY, 23 * 60 + 29, "day");
+    assertRunning(TODAY, 23 * 60 + 30, "day", "late");
+    assertRunning(TOMORROW, 0, "late", "morning");
+    assertRunning(TOMORROW, 30, "morning");
+    assertRunning(TOMORROW, 60);
+  }
+
+  public void testNoProgramBeforeFirstStart() {
+    assertRunning(YESTERDAY, 19 * 60 + 59);
+    assertEquals(Arrays.asList("early", "night"), getTitles(mPrograms.getNext(time(YESTERDAY, 0), 2)));
+  }
+
+  public void testNextAfterMidnight() {
+    assertEquals(Arrays.asList("first", "second"), getTitles(mPrograms.getNext(time(YESTERDAY, 24 * 60 - 1), 2)));
+    assertEquals(Arrays.asList("morning"), getTitles(mPrograms.getNext(time(TODAY, 23 * 60 + 59), 5)));
+    assertEquals(0, mPrograms.getNext(time(TOMORROW, 0), 5).length);
+  }
+
+  public void testChangesAcrossMidnight() {
+    assertChanges(time(YESTERDAY, 24 * 60 - 5), time(TODAY, 35), Arrays.asList("first"), Arrays.asList("night"));
+    assertChanges(time(TODAY, 24 * 60 - 5), time(TOMORROW, 5), Arrays.asList("morning"), Arrays.asList("day"));
+    assertChanges(time(TOMORROW, 5), time(TOMORROW, 35), Arrays.<String>asList(), Arrays.asList("late"));
+  }
+
+  public void testChangesOfEveryMinute() {
+    // collecting the changes minute by minute must give every program once
+    ArrayList<Program> started = new ArrayList<Program>();
+    ArrayList<Program> ended = new ArrayList<Program>();
+
+    for (int time = time(YESTERDAY, 0); time < time(TOMORROW, 2 * 60); time++) {
+      mPrograms.getChanges(time, time + 1, started, ended);
+    }
+
+    List<String> all = Arrays.asList("early", "night", "first", "second", "day", "late", "morning");
+    assertEquals(all, getTitles(started.toArray(new Program[started.size()])));
+    assertEquals(all, getTitles(ended.toArray(new Program[ended.size()])));
+  }
+
+  private void assertRunning(Date date, int minutes, String... titles) {
+    assertEquals(date + " " + minutes, Arrays.asList(titles), getTitles(mPrograms.getRunning(time(date, minutes))));
+  }
+
+  private void assertChanges(int last, int now, List<String> started, List<String> ended) {
+    ArrayList<Program> startedPrograms = new ArrayList<Program>();
+    ArrayList<Program> endedPrograms = new ArrayList<Program>();
+    mPrograms.getChanges(last, now, startedPrograms, endedPrograms);
+
+    assertEquals(started, getTitles(startedPrograms.toArray(new Program[startedPrograms.size()])));
+    assertEquals(ended, getTitles(endedPrograms.toArray(new Program[endedPrograms.size()])));
+  }
+
+  private static int time(Date date, int minutes) {
+    return OnAirIndex.getTime(TODAY, date, minutes);
+  }
+
+  private static List<String> getTitles(Program[] programs) {
+    ArrayList<String> titles = new ArrayList<String>(programs.length);
+
+    for (Program program : programs) {
+      titles.add(program.getTitle());
+    }
+
+    return titles;
+  }
+
+  private static MutableProgram createProgram(String title, Date date, int startTime, int length) {
+    MutableProgram program = new MutableProgram(CHANNEL, date, startTime / 60, startTime % 60, true);
+    program.setTitle(title);
+    program.setLength(length);
+    program.setProgramLoadingIsComplete();
+    return program;
+  }
+}
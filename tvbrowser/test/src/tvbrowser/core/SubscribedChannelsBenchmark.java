@@ -0,0 +1,99 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+
+/**
+ * Compares the membership test and the copy of the subscribed channels
+ * done with a list, like the channel list did before, with the snapshot
+ * of the subscribed channels.
+ */
+public class SubscribedChannelsBenchmark {
+
+  private static final int CHANNELS = 300;
+
+  private static final int LOOKUPS = 1000000;
+
+  private static final int COPIES = 100000;
+
+  private static final int ROUNDS = 10;
+
+  public static void main(String[] args) {
+    Channel[] available = SyntheticTvData.createChannels(CHANNELS * 2);
+    ArrayList<Channel> list = new ArrayList<Channel>(Arrays.asList(available).subList(0, CHANNELS));
+    SubscribedChannels snapshot = new SubscribedChannels(list, 1);
+
+    Random random = new Random(42);
+    Channel[] lookups = new Channel[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      lookups[i] = available[random.nextInt(available.length)];
+    }
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      int found = 0;
+      for (Channel channel : lookups) {
+        for (Channel subscribed : list) {
+          if (subscribed.equals(channel)) {
+            found++;
+            break;
+          }
+        }
+      }
+      long listLookup = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int foundSnapshot = 0;
+      for (Channel channel : lookups) {
+        if (snapshot.contains(channel)) {
+          foundSnapshot++;
+        }
+      }
+      long snapshotLookup = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      long length = 0;
+      for (int i = 0; i < COPIES; i++) {
+        ArrayList<Channel> result = new ArrayList<Channel>();
+        for (Channel channel : list) {
+          result.add(channel);
+        }
+        length += result.toArray(new Channel[result.size()]).length;
+      }
+      long listCopy = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < COPIES; i++) {
+        length += snapshot.toArray(true).length;
+      }
+      long snapshotCopy = System.nanoTime() - start;
+
+      System.out.println("round " + round + ": " + LOOKUPS + " lookups list " + (listLookup / 1000000) + " ms ("
+          + found + " found), snapshot " + (snapshotLookup / 1000000) + " ms (" + foundSnapshot + " found); "
+          + COPIES + " copies list " + (listCopy / 1000000) + " ms, snapshot " + (snapshotCopy / 1000000) + " ms ("
+          + length + ")");
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import tvdataservice.MutableChannelDayProgram;
+import tvdataservice.MutableProgram;
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+import devplugin.Date;
+import devplugin.ProgramFieldType;
+
+public class TvDataTextIndexTest extends TestCase {
+
+  private static final ProgramFieldType[] TITLE = {ProgramFieldType.TITLE_TYPE};
+
+  private Channel[] mChannels;
+
+  private Date mDate;
+
+  private TvDataTextIndex mIndex;
+
+  @Override
+  protected void setUp() throws Exception {
+    mChannels = SyntheticTvData.createChannels(4);
+    mDate = new Date(2014, 5, 12);
+    mIndex = new TvDataTextIndex();
+
+    mIndex.addDayProgram(createDayProgram(mChannels[0], mDate, "Tatort Berlin"));
+    mIndex.addDayProgram(createDayProgram(mChannels[1], mDate, "Krimi"));
+    mIndex.addDayProgram(createDayProgram(mChannels[2], mDate, "Tatortreiniger"));
+  }
+
+  public void testCandidatesContainParts() {
+    TvDataTextIndex.Candidates candidates = mIndex.getCandidates(TITLE, new String[] {"ATOR"});
+
+    assertTrue(candidates.mightContain(mDate, mChannels[0]));
+    assertFalse(candidates.mightContain(mDate, mChannels[1]));
+    assertTrue(candidates.mightContain(mDate, mChannels[2]));
+
+    // all pieces of the term must be contained
+    candidates = mIndex.getCandidates(TITLE, new String[] {"tort ber"});
+
+    assertTrue(candidates.mightContain(mDate, mChannels[0]));
+    assertFalse(candidates.mightContain(mDate, mChannels[1]));
+    assertFalse(candidates.mightContain(mDate, mChannels[2]));
+
+    candidates = mIndex.getCandidates(TITLE, new String[] {"western"});
+
+    assertFalse(candidates.mightContain(mDate, mChannels[0]));
+  }
+
+  public void testNotIndexedDayProgramsAreCandidates() {
+    TvDataTextIndex.Candidates candidates = mIndex.getCandidates(TITLE, new String[] {"western"});
+
+    assertTrue(candidates.mightContain(mDate, mChannels[3]));
+    assertTrue(candidates.mightContain(mDate.addDays(1), mChannels[0]));
+
+    // the fields of other formats can't be answered by the index
+    assertNull(mIndex.getCandidates(new ProgramFieldType[] {ProgramFieldType.START_TIME_TYPE},
+        new String[] {"20"}));
+  }
+
+  public void testReplacedDayProgram() {
+    mIndex.addDayProgram(createDayProgram(mChannels[1], mDate, "Western"));
+
+    TvDataTextIndex.Candidates candidates = mIndex.getCandidates(TITLE, new String[] {"krimi"});
+    assertFalse(candidates.mightContain(mDate, mChannels[1]));
+
+    candidates = mIndex.getCandidates(TITLE, new String[] {"west"});
+    assertTrue(candidates.mightContain(mDate, mChannels[1]));
+    assertEquals(3, mIndex.getDayProgramCount());
+  }
+
+  public void testCompactedWordsAreRemoved() {
+    // enough removed day programs to compact the index
+    for (int i = 1; i <= 1001; i++) {
+      mIndex.addDayProgram(createDayProgram(mChannels[3], mDate.addDays(i), "Western" + i));
+      mIndex.removeDayProgram(TvDataBase.getDayProgramKey(mDate.addDays(i), mChannels[3]));
+    }
+
+    assertEquals(3, mIndex.getDayProgramCount());
+    assertEquals(4, mIndex.getWordCount());
+
+    TvDataTextIndex.Candidates candidates = mIndex.getCandidates(TITLE, new String[] {"tatort"});
+    assertTrue(candidates.mightContain(mDate, mChannels[0]));
+    assertFalse(candidates.mightContain(mDate, mChannels[1]));
+
+    // the n-grams of the removed words are gone
+    mIndex.addDayProgram(createDayProgram(mChannels[3], mDate, "Krimi"));
+    candidates = mIndex.getCandidates(TITLE, new String[] {"western"});
+    assertFalse(candidates.mightContain(mDate, mChannels[3]));
+  }
+
+  public void testSavedIndexIsDeletedWhenChanged() throws Exception {
+    File file = File.createTempFile("tv-data-index", ".dat");
+
+    try {
+      mIndex.writeData(file);
+
+      TvDataTextIndex index = new TvDataTextIndex();
+      index.readData(file);
+
+      assertEquals(3, index.getDayProgramCount());
+      assertEquals(mIndex.getWordCount(), index.getWordCount());
+
+      TvDataTextIndex.Candidates candidates = index.getCandidates(TITLE, new String[] {"ATOR"});
+      assertTrue(candidates.mightContain(mDate, mChannels[0]));
+      assertFalse(candidates.mightContain(mDate, mChannels[1]));
+
+      // the saved index doesn't contain the new day program
+      index.addDayProgram(createDayProgram(mChannels[3], mDate, "Western"));
+      assertFalse(file.exists());
+
+      index.writeData(file);
+      assertTrue(file.exists());
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static MutableChannelDayProgram createDayProgram(Channel channel, Date date, String title) {
+    MutableChannelDayProgram dayProg = new MutableChannelDayProgram(date, channel);
+
+    MutableProgram prog = new MutableProgram(channel, date, 20, 15, true);
+    prog.setTitle(title);
+    prog.setProgramLoadingIsComplete();
+    dayProg.addProgram(prog);
+
+    return dayProg;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import tvbrowser.core.ChannelList;
+import tvbrowser.core.plugin.PluginManagerImpl;
+import tvdataservice.MutableChannelDayProgram;
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+import devplugin.Date;
+import devplugin.Plugin;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * Checks the file format version 3 of the day program files and the
+ * conversion of files in version 2.
+ */
+public class OnDemandDayProgramFileTest extends TestCase {
+
+  /** The channel of the day programs, it must be subscribed to be read from a file */
+  private static final Channel CHANNEL = SyntheticTvData.createChannels(1)[0];
+
+  private static final Date DATE = new Date(2014, 5, 12);
+
+  private File mFile;
+
+  private MutableChannelDayProgram mExpected;
+
+  @Override
+  protected void setUp() throws Exception {
+    Plugin.setPluginManager(PluginManagerImpl.getInstance());
+    ChannelList.subscribeChannel(CHANNEL);
+
+    mFile = File.createTempFile("dayprog", ".prog");
+    mExpected = SyntheticTvData.createDayProgram(DATE, CHANNEL, 25, new Random(42));
+    mExpected.setLastProgramHadEndOnUpdate(true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    mFile.delete();
+  }
+
+  public void testSaveAndLoad() throws Exception {
+    new OnDemandDayProgramFile(mFile, mExpected).saveDayProgram();
+    assertEquals(3, readFileVersion());
+
+    OnDemandDayProgramFile file = new OnDemandDayProgramFile(mFile, DATE, CHANNEL);
+    file.loadDayProgram(true);
+
+    assertSamePrograms(file.getDayProgram());
+  }
+
+  public void testLoadLargeFieldsAfterReload() throws Exception {
+    new OnDemandDayProgramFile(mFile, mExpected).saveDayProgram();
+
+    OnDemandDayProgramFile file = new OnDemandDayProgramFile(mFile, DATE, CHANNEL);
+    file.loadDayProgram(true);
+    file.loadDayProgram(false);
+
+    // the descriptions are large fields that are read from the file on access
+    MutableChannelDayProgram dayProgram = file.getDayProgram();
+    for (int i = dayProgram.getProgramCount() - 1; i >= 0; i--) {
+      assertTrue(mExpected.getProgramAt(i).getDescription().length() >= 50);
+      assertEquals(mExpected.getProgramAt(i).getDescription(), dayProgram.getProgramAt(i).getDescription());
+    }
+  }
+
+  public void testConvertVersion2() throws Exception {
+    writeVersion2File();
+    assertEquals(2, readFileVersion());
+
+    OnDemandDayProgramFile file = new OnDemandDayProgramFile(mFile, DATE, CHANNEL);
+    file.loadDayProgram(true);
+
+    assertEquals(3, readFileVersion());
+    assertFalse(new File(mFile.getPath() + "_to_ver_3_update").exists());
+    assertSamePrograms(file.getDayProgram());
+
+    // the converted file is read like every other file in version 3
+    OnDemandDayProgramFile converted = new OnDemandDayProgramFile(mFile, DATE, CHANNEL);
+    converted.loadDayProgram(true);
+    assertSamePrograms(converted.getDayProgram());
+  }
+
+  private void assertSamePrograms(MutableChannelDayProgram dayProgram) {
+    assertEquals(mExpected.getProgramCount(), dayProgram.getProgramCount());
+    assertEquals(mExpected.getLastProgramHadEndOnUpdate(), dayProgram.getLastProgramHadEndOnUpdate());
+    assertEquals(DATE, dayProgram.getDate());
+    assertSame(CHANNEL, dayProgram.getChannel());
+
+    for (int i = 0; i < mExpected.getProgramCount(); i++) {
+      Program expected = mExpected.getProgramAt(i);
+      Program program = dayProgram.getProgramAt(i);
+
+      assertEquals(expected.getTitle(), program.getTitle());
+      assertEquals(expected.getShortInfo(), program.getShortInfo());
+      assertEquals(expected.getDescription(), program.getDescription());
+      assertEquals(expected.getTextField(ProgramFieldType.ACTOR_LIST_TYPE),
+          program.getTextField(ProgramFieldType.ACTOR_LIST_TYPE));
+      assertEquals(expected.getTextField(ProgramFieldType.GENRE_TYPE),
+          program.getTextField(ProgramFieldType.GENRE_TYPE));
+      assertEquals(expected.getStartTime(), program.getStartTime());
+      assertEquals(expected.getLength(), program.getLength());
+    }
+  }
+
+  private int readFileVersion() throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(mFile));
+
+    try {
+      return in.readInt();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the day program like TV-Browser did before the offset table
+   * of the programs was added to the file.
+   */
+  private void writeVersion2File() throws IOException {
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+
+    try {
+      out.writeInt(2);
+      out.writeBoolean(mExpected.getLastProgramHadEndOnUpdate());
+      DATE.writeData((DataOutput) out);
+      CHANNEL.writeToDataFile(out);
+
+      out.writeInt(mExpected.getProgramCount());
+      for (int i = 0; i < mExpected.getProgramCount(); i++) {
+        writeProgram(mExpected.getProgramAt(i), out);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void writeProgram(Program program, DataOutput out) throws IOException {
+    out.writeInt(3);
+    out.writeInt(program.getFieldCount());
+
+    for (Iterator<ProgramFieldType> it = program.getFieldIterator(); it.hasNext();) {
+      ProgramFieldType type = it.next();
+      out.writeInt(type.getTypeId());
+
+      if (type.getFormat() == ProgramFieldType.BINARY_FORMAT) {
+        byte[] value = program.getBinaryField(type);
+        out.writeInt(value.length);
+        out.write(value);
+      } else if (type.getFormat() == ProgramFieldType.TEXT_FORMAT) {
+        out.writeUTF(program.getTextField(type));
+      } else if (type.getFormat() == ProgramFieldType.INT_FORMAT) {
+        out.writeInt(program.getIntField(type));
+      } else if (type.getFormat() == ProgramFieldType.TIME_FORMAT) {
+        out.writeInt(program.getTimeField(type));
+      }
+    }
+  }
+}
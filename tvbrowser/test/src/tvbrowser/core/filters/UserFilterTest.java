@@ -0,0 +1,199 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (darras@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+import tvbrowser.core.filters.filtercomponents.DayFilterComponent;
+import tvbrowser.core.filters.filtercomponents.KeywordFilterComponent;
+import tvbrowser.core.filters.filtercomponents.ProgramLengthFilterComponent;
+import tvbrowser.core.filters.filtercomponents.ProgramTypeFilterComponent;
+import tvbrowser.core.plugin.PluginManagerImpl;
+import tvdataservice.SyntheticTvData;
+import util.ui.SearchFormSettings;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.ChannelGroupImpl;
+import devplugin.Date;
+import devplugin.Plugin;
+import devplugin.Program;
+
+/**
+ * Checks that the compiled filter trees accept the same programs
+ * as the trees that are not compiled.
+ */
+public class UserFilterTest extends TestCase {
+
+  private static final int[] CATEGORIES = {
+    Channel.CATEGORY_TV, Channel.CATEGORY_RADIO,
+    Channel.CATEGORY_TV | Channel.CATEGORY_SPECIAL_NEWS, Channel.CATEGORY_NONE
+  };
+
+  private ArrayList<Program> mPrograms;
+
+  @Override
+  protected void setUp() throws Exception {
+    // the keyword filter components get their searchers from the plugin manager
+    Plugin.setPluginManager(PluginManagerImpl.getInstance());
+
+    ChannelGroupImpl group = new ChannelGroupImpl("synthetic", "Synthetic", "Synthetic test data");
+    Random random = new Random(42);
+    Date startDate = new Date(2011, 3, 14);
+
+    mPrograms = new ArrayList<Program>();
+
+    for (int i = 0; i < 8; i++) {
+      Channel channel = new Channel("tvdataservice.SyntheticTvData", "Channel " + i, "channel" + i,
+          TimeZone.getDefault(), "de", "", "", group, null, CATEGORIES[i % CATEGORIES.length],
+          "Channel " + i, new String[] {"de"}, null, false);
+
+      for (int day = 0; day < 7; day++) {
+        ChannelDayProgram dayProg = SyntheticTvData.createDayProgram(startDate.addDays(day),
+            channel, 20 + 10 * (i % 3), random);
+
+        for (Iterator<Program> it = dayProg.getPrograms(); it.hasNext();) {
+          mPrograms.add(it.next());
+        }
+      }
+    }
+  }
+
+  public void testItemNodes() throws Exception {
+    assertSameResults(new ItemNode(createKeywordComponent("Tatort")));
+    assertSameResults(new ItemNode(createProgramTypeComponent(Channel.CATEGORY_TV)));
+    assertSameResults(new ItemNode(createDayComponent(1 | 4 | 64)));
+    assertSameResults(new ItemNode(createLengthComponent(60)));
+  }
+
+  public void testCombinedNodes() throws Exception {
+    Node tvKeyword = new AndNode();
+    tvKeyword.addNode(new ItemNode(createKeywordComponent("Krimi")));
+    tvKeyword.addNode(new ItemNode(createProgramTypeComponent(Channel.CATEGORY_TV)));
+
+    Node notDay = new NotNode();
+    notDay.addNode(new ItemNode(createDayComponent(2 | 8)));
+
+    Node shortOnOtherDays = new AndNode();
+    shortOnOtherDays.addNode(notDay);
+    shortOnOtherDays.addNode(new ItemNode(createLengthComponent(48)));
+
+    Node root = new OrNode();
+    root.addNode(tvKeyword);
+    root.addNode(shortOnOtherDays);
+    root.addNode(new ItemNode(createKeywordComponent("Sport")));
+
+    assertSameResults(root);
+  }
+
+  /**
+   * Checks the programs with the node before it is compiled, after
+   * it is compiled and again with the filled caches.
+   */
+  private void assertSameResults(Node node) {
+    boolean[] expected = new boolean[mPrograms.size()];
+    int accepted = 0;
+
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = node.accept(mPrograms.get(i));
+
+      if (expected[i]) {
+        accepted++;
+      }
+    }
+
+    // the filter should neither accept all nor no programs
+    assertTrue(accepted > 0);
+    assertTrue(accepted < expected.length);
+
+    node.compile();
+
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(mPrograms.get(i).getUniqueID(), expected[i], node.accept(mPrograms.get(i)));
+      }
+    }
+  }
+
+  private static KeywordFilterComponent createKeywordComponent(String keyword) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    new SearchFormSettings(keyword).writeData(out);
+    out.close();
+
+    KeywordFilterComponent component = new KeywordFilterComponent("keyword", "");
+    component.read(toInput(bytes), component.getVersion());
+    return component;
+  }
+
+  private static ProgramTypeFilterComponent createProgramTypeComponent(int categories) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeInt(categories);
+    out.close();
+
+    ProgramTypeFilterComponent component = new ProgramTypeFilterComponent("type", "");
+    component.read(toInput(bytes), component.getVersion());
+    return component;
+  }
+
+  private static DayFilterComponent createDayComponent(int days) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeInt(days);
+    out.close();
+
+    DayFilterComponent component = new DayFilterComponent("day", "");
+    component.read(toInput(bytes), component.getVersion());
+    return component;
+  }
+
+  private static ProgramLengthFilterComponent createLengthComponent(int maxLength) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeBoolean(false);
+    out.writeBoolean(true);
+    out.writeInt(0);
+    out.writeInt(maxLength);
+    out.close();
+
+    ProgramLengthFilterComponent component = new ProgramLengthFilterComponent("length", "");
+    component.read(toInput(bytes), component.getVersion());
+    return component;
+  }
+
+  private static ObjectInputStream toInput(ByteArrayOutputStream bytes) throws IOException {
+    return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+  }
+}
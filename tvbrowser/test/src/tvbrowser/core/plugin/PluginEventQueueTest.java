@@ -0,0 +1,201 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin_oat@yahoo.de)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import tvdataservice.MutableChannelDayProgram;
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+import devplugin.Plugin;
+
+/**
+ * Checks that the events of a plugin are handled in the order they were
+ * added and that only waiting data events of the same channel day are merged.
+ */
+public class PluginEventQueueTest extends TestCase {
+
+  private static final Channel[] CHANNELS = SyntheticTvData.createChannels(2);
+
+  private static final Date DATE = new Date(2014, 5, 12);
+
+  /** The handled events in the order of handling */
+  private List<String> mEvents;
+
+  /** The names of the day programs given to the plugin */
+  private Map<ChannelDayProgram, String> mNames;
+
+  private PluginEventQueue mQueue;
+
+  /** Holds the handling of the events until all events of the test are added */
+  private CountDownLatch mRelease;
+
+  @Override
+  protected void setUp() throws Exception {
+    mEvents = Collections.synchronizedList(new ArrayList<String>());
+    mNames = Collections.synchronizedMap(new IdentityHashMap<ChannelDayProgram, String>());
+
+    JavaPluginProxy proxy = new JavaPluginProxy(new RecordingPlugin(), "RecordingPlugin.jar");
+    proxy.setActivated(true);
+    mQueue = new PluginEventQueue(proxy);
+
+    mRelease = new CountDownLatch(1);
+    mQueue.add("block", new Runnable() {
+      public void run() {
+        try {
+          mRelease.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+  }
+
+  public void testEventsInOrderOfAdding() throws Exception {
+    mQueue.addDataAdded(dayProgram("a1", 0, 0));
+    mQueue.addDataDeleted(dayProgram("b1", 1, 0));
+    addTask("task");
+    mQueue.addDataTouched(dayProgram("a2", 0, 1), dayProgram("a3", 0, 1), false);
+    mQueue.addDataAdded(dayProgram("b2", 1, 1));
+
+    assertEquals(Arrays.asList("added a1", "deleted b1", "task", "touched a2 a3", "added b2"), handleEvents());
+  }
+
+  public void testWaitingEventsOfSameDayMerged() throws Exception {
+    mQueue.addDataAdded(dayProgram("a1", 0, 0));
+    mQueue.addDataAdded(dayProgram("b1", 1, 0));
+    mQueue.addDataAdded(dayProgram("a2", 0, 0));
+    mQueue.addDataDeleted(dayProgram("c1", 0, 1));
+    mQueue.addDataDeleted(dayProgram("c2", 0, 1));
+
+    // the last added program of the day is given at the place of the first event
+    assertEquals(Arrays.asList("added a2", "added b1", "deleted c2"), handleEvents());
+    assertTrue(mQueue.getStatistics(), mQueue.getStatistics().contains("coalesced: 2"));
+  }
+
+  public void testNotMergedOverOtherEvents() throws Exception {
+    mQueue.addDataAdded(dayProgram("a1", 0, 0));
+    mQueue.addDataDeleted(dayProgram("a2", 0, 0));
+    mQueue.addDataAdded(dayProgram("a3", 0, 0));
+    mQueue.addDataAdded(dayProgram("b1", 1, 0));
+    addTask("task");
+    mQueue.addDataAdded(dayProgram("b2", 1, 0));
+
+    assertEquals(Arrays.asList("added a1", "deleted a2", "added a3", "added b1", "task", "added b2"), handleEvents());
+  }
+
+  public void testNotMergedWithHandledEvent() throws Exception {
+    mQueue.addDataAdded(dayProgram("a1", 0, 0));
+    assertEquals(Arrays.asList("added a1"), handleEvents());
+
+    mQueue.addDataAdded(dayProgram("a2", 0, 0));
+    assertEquals(Arrays.asList("added a1", "added a2"), handleEvents());
+  }
+
+  public void testCollectedTouchedData() throws Exception {
+    mQueue.addDataTouched(dayProgram("a1", 0, 0), dayProgram("a2", 0, 0), true);
+    mQueue.addDataTouched(dayProgram("b1", 1, 0), dayProgram("b2", 1, 0), true);
+    mQueue.addDataTouched(dayProgram("a3", 0, 0), dayProgram("a4", 0, 0), true);
+    addTask("task");
+    mQueue.flushTouchedData();
+    mQueue.flushTouchedData();
+
+    // the touched data is given at once when it is flushed
+    assertEquals(Arrays.asList("task", "touched [a1, b1] [a4, b2]"), handleEvents());
+  }
+
+  private MutableChannelDayProgram dayProgram(String name, int channel, int day) {
+    MutableChannelDayProgram dayProgram = new MutableChannelDayProgram(DATE.addDays(day), CHANNELS[channel]);
+    mNames.put(dayProgram, name);
+    return dayProgram;
+  }
+
+  private void addTask(final String name) {
+    mQueue.add(name, new Runnable() {
+      public void run() {
+        mEvents.add(name);
+      }
+    });
+  }
+
+  /**
+   * Lets the queue handle the added events and waits until all are handled.
+   */
+  private List<String> handleEvents() throws InterruptedException {
+    final CountDownLatch handled = new CountDownLatch(1);
+
+    mQueue.add("handled", new Runnable() {
+      public void run() {
+        handled.countDown();
+      }
+    });
+
+    mRelease.countDown();
+    assertTrue(handled.await(10, TimeUnit.SECONDS));
+
+    synchronized (mEvents) {
+      return new ArrayList<String>(mEvents);
+    }
+  }
+
+  private String names(ChannelDayProgram[] dayPrograms) {
+    StringBuilder names = new StringBuilder("[");
+
+    for (ChannelDayProgram dayProgram : dayPrograms) {
+      if (names.length() > 1) {
+        names.append(", ");
+      }
+      names.append(mNames.get(dayProgram));
+    }
+
+    return names.append(']').toString();
+  }
+
+  public class RecordingPlugin extends Plugin {
+    @Override
+    public void handleTvDataAdded(ChannelDayProgram newProg) {
+      mEvents.add("added " + mNames.get(newProg));
+    }
+
+    @Override
+    public void handleTvDataDeleted(ChannelDayProgram oldProg) {
+      mEvents.add("deleted " + mNames.get(oldProg));
+    }
+
+    @Override
+    public void handleTvDataTouched(ChannelDayProgram removedDayProgram, ChannelDayProgram addedDayProgram) {
+      mEvents.add("touched " + mNames.get(removedDayProgram) + " " + mNames.get(addedDayProgram));
+    }
+
+    @Override
+    public void handleTvDataTouched(ChannelDayProgram[] removedDayPrograms, ChannelDayProgram[] addedDayPrograms) {
+      mEvents.add("touched " + names(removedDayPrograms) + " " + names(addedDayPrograms));
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package tvbrowser.core.plugin;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TimeZone;
+
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+import devplugin.Program;
+
+/**
+ * Measures the time to restore 10 000 saved unique program IDs, like the
+ * plugins do at the start, with the old lookup that splits the ID, parses
+ * the date with a new SimpleDateFormat and compares every program of the
+ * day, the new lookup by start time and the lookup that is grouped by day.
+ */
+public class ProgramLookupBenchmark {
+
+  private static final int CHANNELS = 100;
+
+  private static final int DAYS = 14;
+
+  private static final int PROGRAMS_PER_DAY = 40;
+
+  private static final int IDS = 10000;
+
+  private static final int ROUNDS = 20;
+
+  private static SyntheticTvData mData;
+
+  private static HashMap<String, Channel> mChannels = new HashMap<String, Channel>();
+
+  public static void main(String[] args) throws Exception {
+    mData = new SyntheticTvData(CHANNELS, Date.getCurrentDate(), DAYS, PROGRAMS_PER_DAY);
+
+    for (Channel channel : mData.getChannels()) {
+      mChannels.put(channel.getUniqueId(), channel);
+    }
+
+    Random random = new Random(42);
+    String[] uniqueIDs = new String[IDS];
+
+    for (int i = 0; i < IDS; i++) {
+      Channel channel = mData.getChannels()[random.nextInt(CHANNELS)];
+      ChannelDayProgram dayProg = mData.getDayProgram(mData.getStartDate().addDays(random.nextInt(DAYS)), channel);
+      uniqueIDs[i] = dayProg.getProgramAt(random.nextInt(PROGRAMS_PER_DAY)).getUniqueID();
+    }
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      int found = 0;
+      for (String uniqueID : uniqueIDs) {
+        if (getProgramOld(uniqueID) != null) {
+          found++;
+        }
+      }
+      long old = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int foundNew = 0;
+      for (String uniqueID : uniqueIDs) {
+        if (getProgram(uniqueID) != null) {
+          foundNew++;
+        }
+      }
+      long single = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int foundBulk = 0;
+      for (Program program : getPrograms(uniqueIDs)) {
+        if (program != null) {
+          foundBulk++;
+        }
+      }
+      long bulk = System.nanoTime() - start;
+
+      System.out.println("round " + round + ": old " + (old / 1000) + " us (" + found + " found), by start time "
+          + (single / 1000) + " us (" + foundNew + " found), grouped by day " + (bulk / 1000) + " us (" + foundBulk
+          + " found)");
+    }
+  }
+
+  /**
+   * The lookup like it was done before the start time index.
+   */
+  private static Program getProgramOld(String uniqueID) throws Exception {
+    String[] id = uniqueID.split("_");
+    java.util.Date parsed = new SimpleDateFormat("yyyy-MM-dd").parse(id[4]);
+    Calendar cal = Calendar.getInstance();
+    cal.setTimeInMillis(parsed.getTime());
+    Date date = new Date(cal);
+    String progID = new StringBuilder(id[0]).append('_').append(id[1]).append('_').append(id[2]).append('_')
+        .append(id[3]).append('_').append(id[5]).toString();
+
+    ChannelDayProgram dayProg = mData.getDayProgram(date, mChannels.get(progID.substring(0, progID.lastIndexOf('_'))));
+
+    String timeString = progID.substring(progID.lastIndexOf('_') + 1);
+    if (Integer.parseInt(timeString.substring(timeString.lastIndexOf(':') + 1)) != TimeZone.getDefault().getRawOffset() / 60000) {
+      return null;
+    }
+
+    for (int i = 0; i < dayProg.getProgramCount(); i++) {
+      Program prog = dayProg.getProgramAt(i);
+      if (progID.compareTo(prog.getID()) == 0) {
+        return prog;
+      }
+    }
+
+    return null;
+  }
+
+  private static Program getProgram(String uniqueID) {
+    Object[] values = PluginManagerImpl.getDateAndProgIDforUniqueID(uniqueID);
+    String progID = (String) values[1];
+    Channel channel = mChannels.get(progID.substring(0, progID.lastIndexOf('_')));
+
+    return mData.getDayProgram((Date) values[0], channel).getProgram(progID);
+  }
+
+  /**
+   * The lookup of {@link PluginManagerImpl#getPrograms(String[])} without the data base.
+   */
+  private static Program[] getPrograms(String[] uniqueIDs) {
+    Program[] programs = new Program[uniqueIDs.length];
+    HashMap<Channel, HashMap<Date, ChannelDayProgram>> dayPrograms = new HashMap<Channel, HashMap<Date, ChannelDayProgram>>();
+
+    for (int i = 0; i < uniqueIDs.length; i++) {
+      Object[] values = PluginManagerImpl.getDateAndProgIDforUniqueID(uniqueIDs[i]);
+      String progID = (String) values[1];
+      Channel channel = mChannels.get(progID.substring(0, progID.lastIndexOf('_')));
+
+      HashMap<Date, ChannelDayProgram> channelDayPrograms = dayPrograms.get(channel);
+      if (channelDayPrograms == null) {
+        channelDayPrograms = new HashMap<Date, ChannelDayProgram>();
+        dayPrograms.put(channel, channelDayPrograms);
+      }
+
+      ChannelDayProgram dayProg = channelDayPrograms.get(values[0]);
+      if (dayProg == null) {
+        dayProg = mData.getDayProgram((Date) values[0], channel);
+        channelDayPrograms.put((Date) values[0], dayProg);
+      }
+
+      programs[i] = dayProg.getProgram(progID);
+    }
+
+    return programs;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core.search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import tvbrowser.core.search.booleansearch.BooleanSearcher;
+import tvbrowser.core.search.regexsearch.RegexSearcher;
+import tvbrowser.extras.favoritesplugin.core.ActorSearcher;
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+import devplugin.Date;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * Compares checking every program of one day of 300 channels against
+ * 500 favorite like searches one by one and with the
+ * {@link MultiSearcherMatcher}.
+ */
+public class MultiSearcherMatcherBenchmark {
+
+  private static final int ROUNDS = 3;
+
+  private static final int SEARCHER_COUNT = 500;
+
+  private static final String[] WORDS = {
+    "Tatort", "Krimi", "Dokumentation", "Fussball", "Western", "Polizei", "Arzt",
+    "Berlin", "Hamburg", "Muenchen", "Afrika", "Meer", "Berge", "Nacht"
+  };
+
+  private static final String[] ACTORS = {
+    "Til Schneider", "Bodo Tasche", "Jane Roe", "Erika Mustermann"
+  };
+
+  public static void main(String[] args) throws Exception {
+    Date date = Date.getCurrentDate();
+    SyntheticTvData data = new SyntheticTvData(300, date, 1, 40);
+
+    ArrayList<Program> programs = new ArrayList<Program>();
+    for (Channel channel : data.getChannels()) {
+      Iterator<Program> it = data.getDayProgram(date, channel).getPrograms();
+      while (it.hasNext()) {
+        programs.add(it.next());
+      }
+    }
+
+    ProgramFieldType[] titleFields = new ProgramFieldType[] {ProgramFieldType.TITLE_TYPE};
+    ProgramFieldType[] textFields = new ProgramFieldType[] {
+        ProgramFieldType.TITLE_TYPE, ProgramFieldType.SHORT_DESCRIPTION_TYPE,
+        ProgramFieldType.DESCRIPTION_TYPE};
+    ProgramFieldType[] actorFields = new ProgramFieldType[] {
+        ProgramFieldType.ACTOR_LIST_TYPE, ProgramFieldType.DESCRIPTION_TYPE,
+        ProgramFieldType.SHORT_DESCRIPTION_TYPE};
+
+    // Most favorites are titles that are rarely found
+    Random random = new Random(42);
+    ArrayList<AbstractSearcher> searchers = new ArrayList<AbstractSearcher>();
+    ArrayList<ProgramFieldType[]> fieldArrs = new ArrayList<ProgramFieldType[]>();
+    ArrayList<String[]> termArrs = new ArrayList<String[]>();
+
+    for (int i = 0; i < SEARCHER_COUNT; i++) {
+      AbstractSearcher searcher;
+      ProgramFieldType[] fields;
+
+      if (i % 10 < 7) {
+        String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+        searcher = new RegexSearcher(RegexSearcher.searchTextToRegex(title, RegexSearcher.TYPE_KEYWORD), false, title);
+        fields = titleFields;
+      }
+      else if (i % 10 < 9) {
+        // a few searches match many programs
+        searcher = new BooleanSearcher(WORDS[random.nextInt(WORDS.length)] + " AND "
+            + WORDS[random.nextInt(WORDS.length)] + (i % 30 == 7 ? "" : " AND Staffel " + i), false);
+        fields = textFields;
+      }
+      else {
+        searcher = new ActorSearcher(ACTORS[random.nextInt(ACTORS.length)]);
+        fields = actorFields;
+      }
+
+      searchers.add(searcher);
+      fieldArrs.add(fields);
+      termArrs.add(searcher.getRequiredTerms());
+    }
+
+    System.out.println(programs.size() + " programs, " + searchers.size() + " searchers");
+
+    long bestAll = Long.MAX_VALUE;
+    long bestMatcher = Long.MAX_VALUE;
+    long bestCreate = Long.MAX_VALUE;
+    int hitsAll = 0;
+    int hitsMatcher = 0;
+    long candidates = 0;
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      hitsAll = 0;
+      for (Program prog : programs) {
+        for (int i = 0; i < searchers.size(); i++) {
+          if (searchers.get(i).matches(prog, fieldArrs.get(i))) {
+            hitsAll++;
+          }
+        }
+      }
+      bestAll = Math.min(bestAll, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      MultiSearcherMatcher<Integer> matcher = createMatcher(fieldArrs, termArrs);
+      bestCreate = Math.min(bestCreate, System.nanoTime() - start);
+
+      hitsMatcher = 0;
+      candidates = 0;
+      for (Program prog : programs) {
+        for (int i : matcher.getCandidates(prog)) {
+          candidates++;
+          if (searchers.get(i).matches(prog, fieldArrs.get(i))) {
+            hitsMatcher++;
+          }
+        }
+      }
+      bestMatcher = Math.min(bestMatcher, System.nanoTime() - start);
+    }
+
+    System.out.println("every searcher: " + (bestAll / 1000000) + " ms, " + hitsAll + " hits");
+    System.out.println("matcher:        " + (bestMatcher / 1000000) + " ms (creation " + (bestCreate / 1000000)
+        + " ms), " + hitsMatcher + " hits, " + candidates + " candidates checked");
+
+    if (hitsAll != hitsMatcher) {
+      System.out.println("ERROR: the matcher lost hits");
+    }
+  }
+
+  private static MultiSearcherMatcher<Integer> createMatcher(ArrayList<ProgramFieldType[]> fieldArrs, ArrayList<String[]> termArrs) {
+    ArrayList<Integer> items = new ArrayList<Integer>();
+    for (int i = 0; i < fieldArrs.size(); i++) {
+      items.add(i);
+    }
+
+    return new MultiSearcherMatcher<Integer>(items, fieldArrs, termArrs);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvbrowser.core.search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import tvbrowser.core.search.booleansearch.BooleanSearcher;
+import tvbrowser.core.search.regexsearch.RegexSearcher;
+import tvbrowser.extras.favoritesplugin.core.ActorSearcher;
+import tvdataservice.MutableProgram;
+import tvdataservice.SyntheticTvData;
+import devplugin.Channel;
+import devplugin.Date;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * Checks that the {@link MultiSearcherMatcher} finds the same matches
+ * as checking every program with every single searcher.
+ */
+public class MultiSearcherMatcherTest extends TestCase {
+
+  private static final ProgramFieldType[] TITLE_FIELDS = {ProgramFieldType.TITLE_TYPE};
+
+  private static final ProgramFieldType[] TEXT_FIELDS = {
+    ProgramFieldType.TITLE_TYPE, ProgramFieldType.SHORT_DESCRIPTION_TYPE,
+    ProgramFieldType.DESCRIPTION_TYPE
+  };
+
+  private static final ProgramFieldType[] ACTOR_FIELDS = {
+    ProgramFieldType.ACTOR_LIST_TYPE, ProgramFieldType.DESCRIPTION_TYPE,
+    ProgramFieldType.SHORT_DESCRIPTION_TYPE
+  };
+
+  private ArrayList<Program> mPrograms;
+
+  private ArrayList<AbstractSearcher> mSearchers;
+
+  private ArrayList<ProgramFieldType[]> mFieldArrs;
+
+  private ArrayList<String[]> mTermArrs;
+
+  @Override
+  protected void setUp() throws Exception {
+    Date date = new Date(2014, 5, 12);
+    SyntheticTvData data = new SyntheticTvData(10, date, 2, 30);
+
+    mPrograms = new ArrayList<Program>();
+    for (int day = 0; day < data.getDays(); day++) {
+      for (Channel channel : data.getChannels()) {
+        for (Iterator<Program> it = data.getDayProgram(date.addDays(day), channel).getPrograms(); it.hasNext();) {
+          mPrograms.add(it.next());
+        }
+      }
+    }
+
+    mSearchers = new ArrayList<AbstractSearcher>();
+    mFieldArrs = new ArrayList<ProgramFieldType[]>();
+    mTermArrs = new ArrayList<String[]>();
+
+    addRegexSearcher("Tatort", RegexSearcher.TYPE_KEYWORD, false, TITLE_FIELDS);
+    addRegexSearcher("Krimi", RegexSearcher.TYPE_WHOLE_TERM, false, TEXT_FIELDS);
+    addRegexSearcher("Sport", RegexSearcher.TYPE_EXACT, false, TITLE_FIELDS);
+    addRegexSearcher("nachrichten", RegexSearcher.TYPE_KEYWORD, true, TEXT_FIELDS);
+    addRegexSearcher("Berge Stadt", RegexSearcher.TYPE_KEYWORD, false, TEXT_FIELDS);
+    addRegexSearcher("Natur-Film", RegexSearcher.TYPE_KEYWORD, false, TEXT_FIELDS);
+    addSearcher(new RegexSearcher(".*(western|quiz).*", false), TITLE_FIELDS);
+    addSearcher(new BooleanSearcher("Krimi AND Berlin", false), TEXT_FIELDS);
+    addSearcher(new BooleanSearcher("Sport OR Natur", false), TEXT_FIELDS);
+    addSearcher(new BooleanSearcher("Film AND NOT Serie", false), TEXT_FIELDS);
+    addSearcher(new ActorSearcher("Til Schneider"), ACTOR_FIELDS);
+    addSearcher(new ActorSearcher("Erika Mustermann"), ACTOR_FIELDS);
+  }
+
+  public void testSameMatchesAsSingleSearchers() throws Exception {
+    assertSameMatches(createMatcher(false));
+  }
+
+  public void testSameMatchesWithCachedTexts() throws Exception {
+    MultiSearcherMatcher<Integer> matcher = createMatcher(true);
+
+    // the second round uses the cached texts
+    assertSameMatches(matcher);
+    assertSameMatches(matcher);
+  }
+
+  public void testChangedProgramAfterClearingCaches() throws Exception {
+    MultiSearcherMatcher<Integer> matcher = createMatcher(true);
+    MutableProgram prog = (MutableProgram) mPrograms.get(0);
+
+    prog.setTitle("Heute");
+    assertEquals(getMatches(prog), getMatches(matcher, prog));
+    assertFalse(getMatches(prog).contains(0));
+
+    prog.setTitle("Tatort: Heute");
+    matcher.clearTextCaches();
+    assertEquals(getMatches(prog), getMatches(matcher, prog));
+    assertTrue(getMatches(prog).contains(0));
+  }
+
+  private void assertSameMatches(MultiSearcherMatcher<Integer> matcher) throws Exception {
+    int hits = 0;
+
+    for (Program prog : mPrograms) {
+      ArrayList<Integer> expected = getMatches(prog);
+      assertEquals(prog.getUniqueID(), expected, getMatches(matcher, prog));
+      hits += expected.size();
+    }
+
+    // the searches should neither find nothing nor everything
+    assertTrue(hits > 0);
+    assertTrue(hits < mPrograms.size() * mSearchers.size());
+  }
+
+  /**
+   * Gets the indices of the searchers matching the program by checking every searcher.
+   */
+  private ArrayList<Integer> getMatches(Program prog) throws Exception {
+    ArrayList<Integer> matches = new ArrayList<Integer>();
+
+    for (int i = 0; i < mSearchers.size(); i++) {
+      if (mSearchers.get(i).matches(prog, mFieldArrs.get(i))) {
+        matches.add(i);
+      }
+    }
+
+    return matches;
+  }
+
+  /**
+   * Gets the indices of the searchers matching the program by checking only the candidates.
+   */
+  private ArrayList<Integer> getMatches(MultiSearcherMatcher<Integer> matcher, Program prog) throws Exception {
+    ArrayList<Integer> matches = new ArrayList<Integer>();
+
+    for (int i : matcher.getCandidates(prog)) {
+      if (mSearchers.get(i).matches(prog, mFieldArrs.get(i))) {
+        matches.add(i);
+      }
+    }
+
+    return matches;
+  }
+
+  private MultiSearcherMatcher<Integer> createMatcher(boolean cacheTexts) {
+    ArrayList<Integer> items = new ArrayList<Integer>();
+    for (int i = 0; i < mSearchers.size(); i++) {
+      items.add(i);
+    }
+
+    return new MultiSearcherMatcher<Integer>(items, mFieldArrs, mTermArrs, cacheTexts);
+  }
+
+  private void addRegexSearcher(String text, int type, boolean caseSensitive, ProgramFieldType[] fields)
+      throws Exception {
+    addSearcher(new RegexSearcher(RegexSearcher.searchTextToRegex(text, type), caseSensitive, text), fields);
+  }
+
+  private void addSearcher(AbstractSearcher searcher, ProgramFieldType[] fields) {
+    mSearchers.add(searcher);
+    mFieldArrs.add(fields);
+    mTermArrs.add(searcher.getRequiredTerms());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core.search;
+
+import java.util.Arrays;
+
+import tvbrowser.core.Settings;
+import tvbrowser.core.search.regexsearch.RegexSearcher;
+import tvdataservice.SyntheticTvData;
+import util.exc.TvBrowserException;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * Compares the sequential and the parallel search on a synthetic
+ * data base with 300 channels and 28 days.
+ * <p>
+ * To see the scaling over cores run it several times with
+ * <code>-XX:ActiveProcessorCount=n</code>.
+ */
+public class ParallelSearchBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) throws TvBrowserException {
+    Date startDate = Date.getCurrentDate();
+    final SyntheticTvData data = new SyntheticTvData(300, startDate, 28, 40);
+
+    RegexSearcher searcher = new RegexSearcher(".*tatort berlin.*afrika.*", false) {
+      @Override
+      protected ChannelDayProgram getDayProgram(Date date, Channel channel) {
+        return data.getDayProgram(date, channel);
+      }
+    };
+
+    ProgramFieldType[] fields = new ProgramFieldType[] {
+        ProgramFieldType.TITLE_TYPE, ProgramFieldType.SHORT_DESCRIPTION_TYPE,
+        ProgramFieldType.DESCRIPTION_TYPE, ProgramFieldType.ACTOR_LIST_TYPE };
+
+    System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+
+    Program[] expected = null;
+
+    for (boolean parallel : new boolean[] {false, true}) {
+      Settings.propParallelSearch.setBoolean(parallel);
+
+      long best = Long.MAX_VALUE;
+      Program[] result = null;
+
+      for (int i = 0; i < ROUNDS; i++) {
+        long start = System.nanoTime();
+        result = searcher.search(fields, startDate, data.getDays() - 1, data.getChannels(), true);
+        best = Math.min(best, System.nanoTime() - start);
+      }
+
+      System.out.println((parallel ? "parallel:   " : "sequential: ") + (best / 1000000) + " ms, " + result.length + " hits");
+
+      if (expected == null) {
+        expected = result;
+      }
+      else if (!Arrays.equals(expected, result)) {
+        System.out.println("ERROR: the parallel search has another result than the sequential search");
+      }
+    }
+  }
+}
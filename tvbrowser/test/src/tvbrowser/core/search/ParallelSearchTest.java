@@ -0,0 +1,119 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvbrowser.core.search;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import tvbrowser.core.TvDataTextIndex;
+import tvbrowser.core.search.regexsearch.RegexSearcher;
+import tvdataservice.SyntheticTvData;
+import util.exc.TvBrowserException;
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.Date;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * Checks that the parallel search finds the same programs in the
+ * same order as the sequential search.
+ */
+public class ParallelSearchTest extends TestCase {
+
+  private static final ProgramFieldType[] FIELDS = {
+    ProgramFieldType.TITLE_TYPE, ProgramFieldType.SHORT_DESCRIPTION_TYPE,
+    ProgramFieldType.DESCRIPTION_TYPE, ProgramFieldType.ACTOR_LIST_TYPE
+  };
+
+  private SyntheticTvData mData;
+
+  @Override
+  protected void setUp() throws Exception {
+    mData = new SyntheticTvData(20, new Date(2014, 5, 12), 5, 30);
+  }
+
+  public void testSortedByStartTime() throws Exception {
+    assertSameResult(".*tatort.*", true);
+    assertSameResult(".*berlin.*afrika.*", true);
+    assertSameResult(".*(krimi|sport).*", true);
+  }
+
+  public void testInSearchOrder() throws Exception {
+    assertSameResult(".*tatort.*", false);
+    assertSameResult(".*mustermann.*", false);
+  }
+
+  public void testChannelsWithoutData() throws Exception {
+    Channel[] channels = Arrays.copyOf(mData.getChannels(), mData.getChannels().length + 2);
+    channels[channels.length - 2] = SyntheticTvData.createChannels(25)[24];
+
+    Program[] sequential = createSearcher(".*wetter.*", false).search(FIELDS, mData.getStartDate(),
+        20, channels, true);
+    Program[] parallel = createSearcher(".*wetter.*", true).search(FIELDS, mData.getStartDate(),
+        20, channels, true);
+
+    assertTrue(sequential.length > 0);
+    assertTrue(Arrays.equals(sequential, parallel));
+  }
+
+  /**
+   * Searches with both searches, the days after the data are searched, too.
+   */
+  private void assertSameResult(String regex, boolean sortByStartTime) throws TvBrowserException {
+    int nrDays = mData.getDays() + 14;
+
+    Program[] sequential = createSearcher(regex, false).search(FIELDS, mData.getStartDate(), nrDays,
+        mData.getChannels(), sortByStartTime);
+    Program[] parallel = createSearcher(regex, true).search(FIELDS, mData.getStartDate(), nrDays,
+        mData.getChannels(), sortByStartTime);
+
+    assertTrue(regex, sequential.length > 0);
+    assertEquals(regex, sequential.length, parallel.length);
+
+    for (int i = 0; i < sequential.length; i++) {
+      assertSame(regex + " hit " + i, sequential[i], parallel[i]);
+    }
+  }
+
+  private RegexSearcher createSearcher(String regex, final boolean parallel) throws TvBrowserException {
+    return new RegexSearcher(regex, false) {
+      @Override
+      boolean isSearchingParallel() {
+        return parallel;
+      }
+
+      @Override
+      protected ChannelDayProgram getDayProgram(Date date, Channel channel) {
+        return mData.getDayProgram(date, channel);
+      }
+
+      @Override
+      protected TvDataTextIndex.Candidates getTextIndexCandidates(ProgramFieldType[] fieldArr) {
+        // the day programs are not in the data base
+        return null;
+      }
+    };
+  }
+}
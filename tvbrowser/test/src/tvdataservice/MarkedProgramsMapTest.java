@@ -0,0 +1,221 @@
+/*
+ * TV-Browser
+ * Copyright (C) 2014 TV-Browser team (dev@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvdataservice;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.Icon;
+
+import junit.framework.TestCase;
+import devplugin.Channel;
+import devplugin.Date;
+import devplugin.Marker;
+import devplugin.Program;
+
+/**
+ * Checks that changes of the markings from several threads don't get lost.
+ */
+public class MarkedProgramsMapTest extends TestCase {
+
+  private static final int THREAD_COUNT = 4;
+
+  private MarkedProgramsMap mMap;
+
+  private ArrayList<Program> mPrograms;
+
+  @Override
+  protected void setUp() throws Exception {
+    mMap = MarkedProgramsMap.getInstance();
+
+    Date date = new Date(2014, 5, 12);
+    SyntheticTvData data = new SyntheticTvData(5, date, 1, 40);
+
+    mPrograms = new ArrayList<Program>();
+    for (Channel channel : data.getChannels()) {
+      for (Iterator<Program> it = data.getDayProgram(date, channel).getPrograms(); it.hasNext();) {
+        mPrograms.add(it.next());
+      }
+    }
+  }
+
+  public void testMarkSameProgramsConcurrently() throws Exception {
+    final TestMarker[] markers = createMarkers("concurrent");
+
+    runConcurrently(new MarkerTask() {
+      public void run(TestMarker marker) {
+        for (Program p : mPrograms) {
+          mMap.addMarkerForProgram(p, marker);
+        }
+
+        // every marker stays on different programs
+        for (int i = 0; i < mPrograms.size(); i++) {
+          if (i % THREAD_COUNT != marker.mIndex) {
+            mMap.removeMarkerForProgram(mPrograms.get(i), marker);
+          }
+        }
+      }
+    }, markers);
+
+    for (int i = 0; i < mPrograms.size(); i++) {
+      Marker[] markerArr = mMap.getMarkerForProgram(mPrograms.get(i));
+
+      assertEquals(1, markerArr.length);
+      assertSame(markers[i % THREAD_COUNT], markerArr[0]);
+    }
+
+    removeMarkers(markers);
+  }
+
+  public void testMarkWhileLastMarkerIsRemoved() throws Exception {
+    final TestMarker[] markers = createMarkers("last");
+    final Program p = mPrograms.get(0);
+    final AtomicReference<String> lost = new AtomicReference<String>();
+
+    // removing the last marker removes the markings of the program,
+    // a marker added at the same time must not get lost
+    runConcurrently(new MarkerTask() {
+      public void run(TestMarker marker) {
+        for (int i = 0; i < 20000 && lost.get() == null; i++) {
+          mMap.addMarkerForProgram(p, marker);
+
+          if (!contains(mMap.getMarkerForProgram(p), marker)) {
+            lost.set(marker.getId() + " lost in iteration " + i);
+          }
+
+          mMap.removeMarkerForProgram(p, marker);
+        }
+      }
+    }, markers);
+
+    assertNull(lost.get());
+    assertEquals(0, mMap.getMarkerForProgram(p).length);
+  }
+
+  public void testMarkerArrSortedById() throws Exception {
+    TestMarker[] markers = createMarkers("sorted");
+    Program p = mPrograms.get(1);
+
+    for (int i = markers.length - 1; i >= 0; i--) {
+      mMap.addMarkerForProgram(p, markers[i]);
+    }
+
+    Marker[] markerArr = mMap.getMarkerForProgram(p);
+    assertEquals(markers.length, markerArr.length);
+    for (int i = 0; i < markers.length; i++) {
+      assertSame(markers[i], markerArr[i]);
+    }
+
+    removeMarkers(markers);
+    assertEquals(0, mMap.getMarkerForProgram(p).length);
+  }
+
+  private void runConcurrently(final MarkerTask task, TestMarker[] markers) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[markers.length];
+
+    for (int i = 0; i < threads.length; i++) {
+      final TestMarker marker = markers[i];
+
+      threads[i] = new Thread("Marking " + marker.getId()) {
+        public void run() {
+          try {
+            start.await();
+            task.run(marker);
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+
+    start.countDown();
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    if (failure.get() != null) {
+      throw new Exception(failure.get());
+    }
+  }
+
+  private void removeMarkers(TestMarker[] markers) {
+    for (Program p : mPrograms) {
+      for (TestMarker marker : markers) {
+        mMap.removeMarkerForProgram(p, marker);
+      }
+    }
+  }
+
+  private static TestMarker[] createMarkers(String name) {
+    TestMarker[] markers = new TestMarker[THREAD_COUNT];
+
+    for (int i = 0; i < markers.length; i++) {
+      markers[i] = new TestMarker(MarkedProgramsMapTest.class.getName() + "." + name + i, i);
+    }
+
+    return markers;
+  }
+
+  private static boolean contains(Marker[] markerArr, Marker marker) {
+    for (Marker test : markerArr) {
+      if (test == marker) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private interface MarkerTask {
+    void run(TestMarker marker);
+  }
+
+  private static class TestMarker implements Marker {
+    private String mId;
+
+    private int mIndex;
+
+    TestMarker(String id, int index) {
+      mId = id;
+      mIndex = index;
+    }
+
+    public String getId() {
+      return mId;
+    }
+
+    public Icon getMarkIcon() {
+      return null;
+    }
+
+    public Icon[] getMarkIcons(Program p) {
+      return null;
+    }
+
+    public int getMarkPriorityForProgram(Program p) {
+      return Program.MIN_MARK_PRIORITY;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tvdataservice;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import devplugin.Channel;
+import devplugin.Date;
+import devplugin.Program;
+import devplugin.ProgramFieldType;
+
+/**
+ * Checks finding the programs of a day program by their IDs
+ * with the start time index.
+ */
+public class MutableChannelDayProgramTest extends TestCase {
+
+  private static final Channel CHANNEL = SyntheticTvData.createChannels(1)[0];
+
+  private static final Date DATE = new Date(2014, 5, 12);
+
+  /** 30 programs of 48 minutes each */
+  private MutableChannelDayProgram mDayProgram;
+
+  @Override
+  protected void setUp() throws Exception {
+    mDayProgram = SyntheticTvData.createDayProgram(DATE, CHANNEL, 30, new Random(42));
+  }
+
+  public void testProgramsFoundById() {
+    for (int i = 0; i < mDayProgram.getProgramCount(); i++) {
+      Program prog = mDayProgram.getProgramAt(i);
+      assertSame(prog.getID(), prog, mDayProgram.getProgram(prog.getID()));
+    }
+  }
+
+  public void testUnknownId() {
+    // no program starts at 0:01
+    assertNull(mDayProgram.getProgram(createProgram(1).getID()));
+    assertNull(mDayProgram.getProgram("other_channel_0:0:0"));
+  }
+
+  public void testProgramsWithSameStartTime() {
+    Program first = mDayProgram.getProgramAt(5);
+    MutableProgram second = createProgram(first.getStartTime());
+    mDayProgram.addProgram(second);
+
+    Program[] programs = mDayProgram.getPrograms(first.getID());
+
+    assertEquals(2, programs.length);
+    assertSame(first, programs[0]);
+    assertSame(second, programs[1]);
+    assertSame(first, mDayProgram.getProgram(first.getID()));
+  }
+
+  public void testAddedProgramFound() {
+    Program existing = mDayProgram.getProgramAt(3);
+    assertSame(existing, mDayProgram.getProgram(existing.getID()));
+
+    // the index was created by the first search and must contain the added program
+    MutableProgram added = createProgram(existing.getStartTime() + 1);
+    mDayProgram.addProgram(added);
+
+    assertSame(added, mDayProgram.getProgram(added.getID()));
+    assertSame(existing, mDayProgram.getProgram(existing.getID()));
+    assertSame(added, mDayProgram.getProgramAt(4));
+  }
+
+  public void testChangedStartTime() {
+    MutableProgram prog = (MutableProgram) mDayProgram.getProgramAt(10);
+    String oldId = prog.getID();
+    assertSame(prog, mDayProgram.getProgram(oldId));
+
+    // the start time index still has the old start time of the program
+    prog.setTimeField(ProgramFieldType.START_TIME_TYPE, prog.getStartTime() + 7);
+    String newId = prog.getID();
+
+    assertFalse(oldId.equals(newId));
+    assertSame(prog, mDayProgram.getProgram(newId));
+    assertNull(mDayProgram.getProgram(oldId));
+
+    // the other programs are still found with the index
+    assertSame(mDayProgram.getProgramAt(9), mDayProgram.getProgram(mDayProgram.getProgramAt(9).getID()));
+    assertSame(mDayProgram.getProgramAt(11), mDayProgram.getProgram(mDayProgram.getProgramAt(11).getID()));
+  }
+
+  public void testRemovedPrograms() {
+    Program prog = mDayProgram.getProgramAt(0);
+    assertSame(prog, mDayProgram.getProgram(prog.getID()));
+
+    mDayProgram.removeAllPrograms();
+
+    assertNull(mDayProgram.getProgram(prog.getID()));
+  }
+
+  private static MutableProgram createProgram(int startTime) {
+    MutableProgram prog = new MutableProgram(CHANNEL, DATE, startTime / 60, startTime % 60, true);
+    prog.setTitle("Added");
+    prog.setProgramLoadingIsComplete();
+    return prog;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvdataservice;
+
+import java.util.ArrayList;
+
+import devplugin.Channel;
+import devplugin.Date;
+import devplugin.Program;
+
+/**
+ * Measures the time and the heap needed to create the programs of
+ * 28 days of 300 channels and the time to create their unique IDs.
+ */
+public class MutableProgramBenchmark {
+
+  private static final int CHANNELS = 300;
+
+  private static final int DAYS = 28;
+
+  private static final int PROGRAMS_PER_DAY = 40;
+
+  private static final int ROUNDS = 3;
+
+  public static void main(String[] args) throws Exception {
+    Channel[] channels = SyntheticTvData.createChannels(CHANNELS);
+    Date startDate = Date.getCurrentDate();
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long heapBefore = getUsedHeap();
+      long start = System.nanoTime();
+
+      ArrayList<Program> programs = new ArrayList<Program>(CHANNELS * DAYS * PROGRAMS_PER_DAY);
+
+      for (int day = 0; day < DAYS; day++) {
+        Date date = startDate.addDays(day);
+
+        for (Channel channel : channels) {
+          for (int i = 0; i < PROGRAMS_PER_DAY; i++) {
+            int startTime = i * 1440 / PROGRAMS_PER_DAY;
+            programs.add(new MutableProgram(channel, date, startTime / 60, startTime % 60, false));
+          }
+        }
+      }
+
+      long created = System.nanoTime() - start;
+      long heapCreated = getUsedHeap() - heapBefore;
+
+      start = System.nanoTime();
+      long length = 0;
+      for (Program program : programs) {
+        length += program.getUniqueID().length();
+      }
+      long ids = System.nanoTime() - start;
+      long heapIds = getUsedHeap() - heapBefore;
+
+      System.out.println(programs.size() + " programs: created in " + (created / 1000000) + " ms, "
+          + (heapCreated / programs.size()) + " bytes per program; unique IDs in " + (ids / 1000000)
+          + " ms, " + (heapIds / programs.size()) + " bytes per program with IDs (" + length + " chars)");
+    }
+  }
+
+  private static long getUsedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package tvdataservice;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TimeZone;
+
+import devplugin.Channel;
+import devplugin.ChannelDayProgram;
+import devplugin.ChannelGroupImpl;
+import devplugin.Date;
+import devplugin.ProgramFieldType;
+
+/**
+ * Generates a synthetic TV data base in memory for tests and benchmarks.
+ * <p>
+ * The data is deterministic, the same parameters always create the same programs.
+ */
+public class SyntheticTvData {
+
+  private static final String[] WORDS = {
+    "Tatort", "Nachrichten", "Wetter", "Krimi", "Dokumentation", "Talk", "Show",
+    "Sport", "Fussball", "Film", "Serie", "Magazin", "Kinder", "Musik", "Natur",
+    "Reise", "Kochen", "Wissen", "Geschichte", "Politik", "Comedy", "Quiz",
+    "Abenteuer", "Western", "Liebe", "Familie", "Polizei", "Arzt", "Berlin",
+    "Hamburg", "Muenchen", "Afrika", "Meer", "Berge", "Stadt", "Zeit", "Nacht"
+  };
+
+  private static final String[] ACTORS = {
+    "Til Schneider", "Martin Oberhauser", "Bodo Tasche", "Rene Mach",
+    "John Doe", "Jane Roe", "Max Mustermann", "Erika Mustermann"
+  };
+
+  private Channel[] mChannels;
+
+  private Date mStartDate;
+
+  private int mDays;
+
+  private int mProgramsPerDay;
+
+  private HashMap<String, MutableChannelDayProgram> mDayPrograms;
+
+  /**
+   * Creates a synthetic data base.
+   *
+   * @param channelCount The number of channels.
+   * @param startDate The first date with data.
+   * @param days The number of days with data.
+   * @param programsPerDay The number of programs of every day program.
+   */
+  public SyntheticTvData(int channelCount, Date startDate, int days, int programsPerDay) {
+    mStartDate = startDate;
+    mDays = days;
+    mProgramsPerDay = programsPerDay;
+    mChannels = createChannels(channelCount);
+    mDayPrograms = new HashMap<String, MutableChannelDayProgram>();
+
+    Random random = new Random(42);
+
+    for (int day = 0; day < days; day++) {
+      Date date = startDate.addDays(day);
+
+      for (Channel channel : mChannels) {
+        mDayPrograms.put(getKey(date, channel), createDayProgram(date, channel, programsPerDay, random));
+      }
+    }
+  }
+
+  /**
+   * Creates channels of a synthetic data service.
+   *
+   * @param count The number of channels.
+   * @return The channels.
+   */
+  public static Channel[] createChannels(int count) {
+    ChannelGroupImpl group = new ChannelGroupImpl("synthetic", "Synthetic", "Synthetic test data");
+    Channel[] channels = new Channel[count];
+
+    for (int i = 0; i < count; i++) {
+      channels[i] = new Channel("tvdataservice.SyntheticTvData", "Channel " + i, "channel" + i, TimeZone.getDefault(), "de",
+          "", "", group, null, Channel.CATEGORY_NONE, "Channel " + i, new String[] {"de"}, null, false);
+    }
+
+    return channels;
+  }
+
+  /**
+   * Creates a day program with programs of equal length.
+   *
+   * @param date The date of the day program.
+   * @param channel The channel of the day program.
+   * @param count The number of programs.
+   * @param random The source of the random titles.
+   * @return The day program.
+   */
+  public static MutableChannelDayProgram createDayProgram(Date date, Channel channel, int count, Random random) {
+    MutableChannelDayProgram dayProg = new MutableChannelDayProgram(date, channel);
+    int length = Math.max(1, 24 * 60 / Math.max(1, count));
+
+    for (int i = 0; i < count; i++) {
+      int startTime = i * length;
+
+      MutableProgram prog = new MutableProgram(channel, date, startTime / 60, startTime % 60, true);
+      prog.setTitle(createText(random, 1 + random.nextInt(3)));
+      prog.setShortInfo(createText(random, 10));
+      prog.setDescription(createText(random, 40 + random.nextInt(40)));
+      prog.setTextField(ProgramFieldType.ACTOR_LIST_TYPE, ACTORS[random.nextInt(ACTORS.length)] + ", " + ACTORS[random.nextInt(ACTORS.length)]);
+      prog.setTextField(ProgramFieldType.GENRE_TYPE, WORDS[random.nextInt(WORDS.length)]);
+      prog.setLength(length);
+      prog.setProgramLoadingIsComplete();
+
+      dayProg.addProgram(prog);
+    }
+
+    return dayProg;
+  }
+
+  private static String createText(Random random, int words) {
+    StringBuilder text = new StringBuilder();
+
+    for (int i = 0; i < words; i++) {
+      if (i > 0) {
+        text.append(' ');
+      }
+      text.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+
+    return text.toString();
+  }
+
+  private static String getKey(Date date, Channel channel) {
+    return channel.getId() + "." + date.getDateString();
+  }
+
+  /**
+   * @return The channels of this data base.
+   */
+  public Channel[] getChannels() {
+    return mChannels;
+  }
+
+  /**
+   * @return The first date with data.
+   */
+  public Date getStartDate() {
+    return mStartDate;
+  }
+
+  /**
+   * @return The number of days with data.
+   */
+  public int getDays() {
+    return mDays;
+  }
+
+  /**
+   * @return The number of programs of every day program.
+   */
+  public int getProgramsPerDay() {
+    return mProgramsPerDay;
+  }
+
+  /**
+   * Gets a day program of this data base.
+   *
+   * @param date The date of the day program.
+   * @param channel The channel of the day program.
+   * @return The day program or <code>null</code> if there is no data.
+   */
+  public ChannelDayProgram getDayProgram(Date date, Channel channel) {
+    return mDayPrograms.get(getKey(date, channel));
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package util.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.exc.TvBrowserException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Downloads files from a local HTTP server with the {@link DownloadManager}
+ * and measures the jobs per second, the latency of the jobs and the number
+ * of connections.
+ * <p>
+ * Every job is given to the handler of the file, the latency of a job is
+ * the time from the request to the end of the handler. In the mode
+ * <code>cached</code> the files are downloaded a second time with local
+ * copies, in the mode <code>failing</code> the first request for every
+ * tenth file fails.
+ * <p>
+ * Usage: DownloadManagerBenchmark [jobs] [file size in KB] [plain|cached|failing]
+ */
+public class DownloadManagerBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int size = (args.length > 1 ? Integer.parseInt(args[1]) : 20) * 1024;
+    final String mode = args.length > 2 ? args[2] : "plain";
+
+    final byte[] data = new byte[size];
+    Arrays.fill(data, (byte) 'x');
+
+    final ConcurrentHashMap<String, Long> requestTimes = new ConcurrentHashMap<String, Long>();
+    Map<String, String> entityTags = new ConcurrentHashMap<String, String>();
+    final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    final Set<String> failedOnce = Collections.synchronizedSet(new HashSet<String>());
+    final AtomicInteger notModifiedCount = new AtomicInteger();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 50);
+    server.setExecutor(Executors.newFixedThreadPool(20));
+    server.createContext("/", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        String fileName = exchange.getRequestURI().getPath().substring(1);
+        // the latency of a job that is tried again starts with the first request
+        requestTimes.putIfAbsent(fileName, System.nanoTime());
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+
+        if ("failing".equals(mode) && fileName.hashCode() % 10 == 0 && failedOnce.add(fileName)) {
+          exchange.sendResponseHeaders(503, -1);
+        } else if (exchange.getRequestHeaders().getFirst("If-None-Match") != null) {
+          notModifiedCount.incrementAndGet();
+          exchange.sendResponseHeaders(304, -1);
+        } else {
+          exchange.getResponseHeaders().set("ETag", "\"" + fileName + "\"");
+          exchange.sendResponseHeaders(200, data.length);
+          OutputStream out = exchange.getResponseBody();
+          out.write(data);
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+
+    String url = "http://127.0.0.1:" + server.getAddress().getPort();
+    File dir = new File(System.getProperty("java.io.tmpdir"), "downloadbenchmark");
+    dir.mkdirs();
+
+    try {
+      for (int round = 0; round < ("cached".equals(mode) ? 2 : 3); round++) {
+        requestTimes.clear();
+        clientPorts.clear();
+        failedOnce.clear();
+        notModifiedCount.set(0);
+
+        BenchmarkHandler handler = new BenchmarkHandler(dir, requestTimes, entityTags,
+            "cached".equals(mode) && round > 0);
+        DownloadManager manager = new DownloadManager();
+        for (int i = 0; i < jobs; i++) {
+          manager.addDownloadJob(url, "file" + i, handler);
+        }
+
+        long start = System.nanoTime();
+        manager.runDownload();
+        long time = System.nanoTime() - start;
+
+        long[] latencies = handler.getLatencies();
+        System.out.println(mode + " round " + round + ": " + latencies.length + " jobs in " + (time / 1000000) + " ms, "
+            + (jobs * 1000000000L / time) + " jobs/s, latency p50 " + percentile(latencies, 50) + " ms, p99 "
+            + percentile(latencies, 99) + " ms, max " + percentile(latencies, 100) + " ms, " + clientPorts.size()
+            + " connections, " + notModifiedCount.get() + " not modified");
+      }
+    } finally {
+      server.stop(0);
+      for (File file : dir.listFiles()) {
+        file.delete();
+      }
+      dir.delete();
+      System.exit(0);
+    }
+  }
+
+  private static long percentile(long[] values, int percentile) {
+    if (values.length == 0) {
+      return 0;
+    }
+    int index = Math.min(values.length - 1, (int) Math.ceil(values.length * percentile / 100.0) - 1);
+    return values[Math.max(0, index)] / 1000000;
+  }
+
+  private static class BenchmarkHandler implements CachedDownloadHandler {
+    private File mDir;
+    private Map<String, Long> mRequestTimes;
+    private boolean mCached;
+    private Map<String, Long> mLatencies = new ConcurrentHashMap<String, Long>();
+    private Map<String, String> mEntityTags;
+
+    private BenchmarkHandler(File dir, Map<String, Long> requestTimes, Map<String, String> entityTags, boolean cached) {
+      mDir = dir;
+      mRequestTimes = requestTimes;
+      mEntityTags = entityTags;
+      mCached = cached;
+    }
+
+    public void handleDownload(DownloadJob job, InputStream stream) throws TvBrowserException {
+      try {
+        OutputStream out = new FileOutputStream(new File(mDir, job.getFileName()));
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = stream.read(buffer)) != -1) {
+          out.write(buffer, 0, len);
+        }
+        out.close();
+      } catch (IOException e) {
+        throw new TvBrowserException(getClass(), "error", "Saving failed", e);
+      }
+      done(job.getFileName());
+    }
+
+    public void handleFileNotFound(String fileName) throws TvBrowserException {
+      done(fileName);
+    }
+
+    public File getLocalFile(String fileName) {
+      return new File(mDir, fileName);
+    }
+
+    public String getEntityTag(String fileName) {
+      return mCached ? mEntityTags.get(fileName) : null;
+    }
+
+    public void setEntityTag(String fileName, String entityTag) {
+      mEntityTags.put(fileName, entityTag);
+    }
+
+    public void handleNotModified(DownloadJob job) throws TvBrowserException {
+      done(job.getFileName());
+    }
+
+    private void done(String fileName) {
+      mLatencies.put(fileName, System.nanoTime() - mRequestTimes.get(fileName));
+    }
+
+    private long[] getLatencies() {
+      long[] latencies = new long[mLatencies.size()];
+      int i = 0;
+      for (Long latency : mLatencies.values()) {
+        latencies[i++] = latency;
+      }
+      Arrays.sort(latencies);
+      return latencies;
+    }
+  }
+}
@@ -0,0 +1,282 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package util.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import util.exc.TvBrowserException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks how the download manager tries to get a file again and
+ * how it handles files that were not modified.
+ */
+public class DownloadManagerTest extends TestCase {
+
+  private static final String CONTENT = "content";
+
+  private static final String ENTITY_TAG = "\"v1\"";
+
+  private HttpServer mServer;
+
+  private String mUrl;
+
+  /** The response codes the server sends for the paths, 200 if there is none left */
+  private HashMap<String, LinkedList<Integer>> mResponses;
+
+  /** The requests in the order they were received */
+  private List<String> mRequests;
+
+  /** The times of the requests in milliseconds */
+  private List<Long> mRequestTimes;
+
+  /** The value of the If-Modified-Since header of the last request */
+  private volatile String mIfModifiedSince;
+
+  private TestHandler mHandler;
+
+  @Override
+  protected void setUp() throws Exception {
+    mResponses = new HashMap<String, LinkedList<Integer>>();
+    mRequests = Collections.synchronizedList(new ArrayList<String>());
+    mRequestTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+    mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 10);
+    mServer.createContext("/", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        mRequests.add(path);
+        mRequestTimes.add(System.currentTimeMillis());
+        mIfModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+
+        if (ENTITY_TAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          exchange.sendResponseHeaders(304, -1);
+        } else {
+          int code = getResponseCode(path);
+
+          if (code == 200) {
+            byte[] data = CONTENT.getBytes("UTF-8");
+            exchange.getResponseHeaders().set("ETag", ENTITY_TAG);
+            exchange.getResponseHeaders().set("Last-Modified", "Mon, 12 May 2014 10:00:00 GMT");
+            exchange.sendResponseHeaders(200, data.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(data);
+          } else {
+            exchange.sendResponseHeaders(code, -1);
+          }
+        }
+
+        exchange.close();
+      }
+    });
+    mServer.start();
+
+    mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+    mHandler = new TestHandler();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    mServer.stop(0);
+    mHandler.deleteFiles();
+  }
+
+  public void testTriedAgainAfterServerError() throws Exception {
+    setResponses("/file", 500, 503);
+
+    download(new String[] {mUrl}, "file");
+
+    assertEquals(Arrays.asList("/file", "/file", "/file"), mRequests);
+    assertEquals(Arrays.asList("download file " + CONTENT), mHandler.mEvents);
+
+    // the delay before the next try is doubled
+    long firstDelay = mRequestTimes.get(1) - mRequestTimes.get(0);
+    long secondDelay = mRequestTimes.get(2) - mRequestTimes.get(1);
+    assertTrue("first delay " + firstDelay, firstDelay >= 900);
+    assertTrue("second delay " + secondDelay, secondDelay >= 1900);
+  }
+
+  public void testGivenUpAfterLastTry() throws Exception {
+    setResponses("/file", 500, 500, 500, 500);
+
+    download(new String[] {mUrl}, "file");
+
+    assertEquals(3, mRequests.size());
+    assertEquals(Collections.emptyList(), mHandler.mEvents);
+  }
+
+  public void testTriedAgainWithNextServer() throws Exception {
+    setResponses("/a/file", 503);
+
+    download(new String[] {mUrl + "/a", mUrl + "/b/"}, "file");
+
+    assertEquals(Arrays.asList("/a/file", "/b/file"), mRequests);
+    assertEquals(Arrays.asList("download file " + CONTENT), mHandler.mEvents);
+  }
+
+  public void testFileNotFoundNotTriedAgain() throws Exception {
+    setResponses("/file", 404);
+
+    download(new String[] {mUrl}, "file");
+
+    assertEquals(Arrays.asList("/file"), mRequests);
+    assertEquals(Arrays.asList("not found file"), mHandler.mEvents);
+  }
+
+  public void testClientErrorNotTriedAgain() throws Exception {
+    setResponses("/file", 403);
+
+    download(new String[] {mUrl}, "file");
+
+    assertEquals(Arrays.asList("/file"), mRequests);
+    assertEquals(Collections.emptyList(), mHandler.mEvents);
+  }
+
+  public void testRedirectFollowed() throws Exception {
+    mServer.createContext("/moved", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        mRequests.add(exchange.getRequestURI().getPath());
+        exchange.getResponseHeaders().set("Location", "/file");
+        exchange.sendResponseHeaders(302, -1);
+        exchange.close();
+      }
+    });
+
+    download(new String[] {mUrl}, "moved");
+
+    assertEquals(Arrays.asList("/moved", "/file"), mRequests);
+    assertEquals(Arrays.asList("download moved " + CONTENT), mHandler.mEvents);
+  }
+
+  public void testCacheValidatorsOfDownloadStored() throws Exception {
+    download(new String[] {mUrl}, "file");
+
+    assertEquals(Arrays.asList("download file " + CONTENT), mHandler.mEvents);
+    assertEquals(ENTITY_TAG, mHandler.getEntityTag("file"));
+    assertNull(mIfModifiedSince);
+
+    // the local copy has the modification time of the server
+    assertEquals(1399888800000L, mHandler.getLocalFile("file").lastModified());
+  }
+
+  public void testNotModified() throws Exception {
+    download(new String[] {mUrl}, "file");
+    mHandler.mEvents.clear();
+
+    download(new String[] {mUrl}, "file");
+
+    assertEquals(Arrays.asList("not modified file"), mHandler.mEvents);
+    assertNotNull(mIfModifiedSince);
+  }
+
+  private void setResponses(String path, Integer... codes) {
+    synchronized (mResponses) {
+      mResponses.put(path, new LinkedList<Integer>(Arrays.asList(codes)));
+    }
+  }
+
+  private int getResponseCode(String path) {
+    synchronized (mResponses) {
+      LinkedList<Integer> codes = mResponses.get(path);
+      return codes == null || codes.isEmpty() ? 200 : codes.removeFirst();
+    }
+  }
+
+  private void download(String[] serverUrls, String fileName) {
+    DownloadManager manager = new DownloadManager(2);
+    manager.addDownloadJob(serverUrls, fileName, mHandler);
+    manager.runDownload();
+  }
+
+  private static class TestHandler implements CachedDownloadHandler {
+    private List<String> mEvents = Collections.synchronizedList(new ArrayList<String>());
+
+    private HashMap<String, String> mEntityTags = new HashMap<String, String>();
+
+    private ArrayList<File> mFiles = new ArrayList<File>();
+
+    public void handleDownload(DownloadJob job, InputStream stream) throws TvBrowserException {
+      try {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int len;
+        while ((len = stream.read(buffer)) != -1) {
+          content.write(buffer, 0, len);
+        }
+
+        OutputStream out = new FileOutputStream(getLocalFile(job.getFileName()));
+        out.write(content.toByteArray());
+        out.close();
+
+        mEvents.add("download " + job.getFileName() + " " + content.toString("UTF-8"));
+      } catch (IOException e) {
+        throw new TvBrowserException(getClass(), "error", "Saving failed", e);
+      }
+    }
+
+    public void handleFileNotFound(String fileName) throws TvBrowserException {
+      mEvents.add("not found " + fileName);
+    }
+
+    public synchronized File getLocalFile(String fileName) {
+      File file = new File(System.getProperty("java.io.tmpdir"), "DownloadManagerTest." + fileName);
+
+      if (!mFiles.contains(file)) {
+        file.delete();
+        mFiles.add(file);
+      }
+
+      return file;
+    }
+
+    public synchronized String getEntityTag(String fileName) {
+      return mEntityTags.get(fileName);
+    }
+
+    public synchronized void setEntityTag(String fileName, String entityTag) {
+      mEntityTags.put(fileName, entityTag);
+    }
+
+    public void handleNotModified(DownloadJob job) throws TvBrowserException {
+      mEvents.add("not modified " + job.getFileName());
+    }
+
+    private synchronized void deleteFiles() {
+      for (File file : mFiles) {
+        file.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package util.misc;
+
+import java.text.SimpleDateFormat;
+
+import junit.framework.TestCase;
+import devplugin.Date;
+import devplugin.ProgramFieldType;
+
+/**
+ * Compares the parsing of numeric XMLTV time values with the
+ * SimpleDateFormat that was used before.
+ */
+public class AbstractXmlTvDataHandlerTest extends TestCase {
+
+  private static final String[] TIMES = {
+    "20140512201500 +0200",
+    "20140512201500 +0000",
+    "20140512201500 -0000",
+    "20140101000000 -0500",
+    "20141231235959 -0800",
+    "20140630120000 +0530",
+    "20140630120000 -0330",
+    "20140301004500 +0545",
+    "20121231233000 +1345",
+    "20120229120000 +0100",
+    "20140330020000 +0100",
+    "20141026023000 +0200",
+  };
+
+  public void testNumericTimesLikeSimpleDateFormat() throws Exception {
+    SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss ZZZZ");
+    TestHandler handler = new TestHandler();
+
+    for (String time : TIMES) {
+      assertEquals(time, format.parse(time).getTime(), handler.parseNumericDateTime(time));
+    }
+  }
+
+  public void testSameResultTwice() {
+    TestHandler handler = new TestHandler();
+
+    long first = handler.parseNumericDateTime(TIMES[5]);
+    handler.parseNumericDateTime(TIMES[6]);
+
+    assertEquals(first, handler.parseNumericDateTime(TIMES[5]));
+  }
+
+  public void testOtherFormats() {
+    TestHandler handler = new TestHandler();
+
+    assertEquals(Long.MIN_VALUE, handler.parseNumericDateTime("20140512201500 CEST"));
+    assertEquals(Long.MIN_VALUE, handler.parseNumericDateTime("20140512201500 GMT+2"));
+    assertEquals(Long.MIN_VALUE, handler.parseNumericDateTime("20140512201500+0200 "));
+    assertEquals(Long.MIN_VALUE, handler.parseNumericDateTime("2014051220150a +0200"));
+    assertEquals(Long.MIN_VALUE, handler.parseNumericDateTime("20140512201500 +02a0"));
+  }
+
+  private static class TestHandler extends AbstractXmlTvDataHandler {
+    @Override
+    protected void startProgram(Date startDate, int startTime) {
+    }
+
+    @Override
+    protected String getChannelCountry() {
+      return null;
+    }
+
+    @Override
+    protected void endProgram() {
+    }
+
+    @Override
+    protected void setInfoBit(int bit) {
+    }
+
+    @Override
+    protected void addField(ProgramFieldType fieldType, byte[] value) {
+    }
+
+    @Override
+    protected void addField(ProgramFieldType fieldType, String value) {
+    }
+
+    @Override
+    protected void addField(ProgramFieldType fieldType, int value) {
+    }
+
+    @Override
+    protected void logMessage(String message) {
+    }
+
+    @Override
+    protected void logException(Exception exc) {
+    }
+
+    @Override
+    protected void addToList(ProgramFieldType fieldType, String value, String separator) {
+    }
+  }
+}
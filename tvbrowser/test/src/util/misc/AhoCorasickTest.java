@@ -0,0 +1,67 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (darras@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package util.misc;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+public class AhoCorasickTest extends TestCase {
+
+  public void testFindAll() {
+    AhoCorasick automaton = new AhoCorasick(new String[] {"he", "she", "his", "hers", "", "xyz"});
+    BitSet found = new BitSet();
+
+    automaton.findAll("ushers", found);
+
+    assertTrue(found.get(0));
+    assertTrue(found.get(1));
+    assertFalse(found.get(2));
+    assertTrue(found.get(3));
+    assertFalse(found.get(4));
+    assertFalse(found.get(5));
+  }
+
+  public void testOverlappingPatterns() {
+    AhoCorasick automaton = new AhoCorasick(new String[] {"tatort", "tort", "ort", "berlin"});
+    BitSet found = new BitSet();
+
+    automaton.findAll("tatatort in berli", found);
+
+    assertTrue(found.get(0));
+    assertTrue(found.get(1));
+    assertTrue(found.get(2));
+    assertFalse(found.get(3));
+  }
+
+  public void testContainsAny() {
+    AhoCorasick automaton = new AhoCorasick(new String[] {"krimi", "western"});
+
+    assertTrue(automaton.containsAny("ein spaetwestern"));
+    assertFalse(automaton.containsAny("ein krim-weste"));
+    assertFalse(new AhoCorasick(new String[0]).containsAny("text"));
+  }
+}
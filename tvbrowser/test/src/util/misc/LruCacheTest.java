@@ -0,0 +1,106 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (darras@users.sourceforge.net)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * CVS information:
+ *  $RCSfile$
+ *   $Source$
+ *     $Date$
+ *   $Author$
+ * $Revision$
+ */
+package util.misc;
+
+import junit.framework.TestCase;
+
+public class LruCacheTest extends TestCase {
+
+  public void testEvictsLeastRecentlyUsed() {
+    LruCache<String, String> cache = new LruCache<String, String>(2, Long.MAX_VALUE);
+    cache.put("a", "A");
+    cache.put("b", "B");
+
+    // use "a", so "b" is the eldest
+    assertEquals("A", cache.get("a"));
+    cache.put("c", "C");
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get("b"));
+    assertEquals("A", cache.get("a"));
+    assertEquals("C", cache.get("c"));
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(3, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  public void testWeightLimit() {
+    LruCache<String, String> cache = new LruCache<String, String>(100, 10) {
+      @Override
+      protected long getWeight(String key, String object) {
+        return object.length();
+      }
+    };
+
+    cache.put("a", "12345");
+    cache.put("b", "1234");
+    assertEquals(9, cache.getWeight());
+
+    cache.put("c", "123");
+    assertFalse(cache.containsKey("a"));
+    assertEquals(7, cache.getWeight());
+
+    cache.remove("b");
+    assertEquals(3, cache.getWeight());
+  }
+
+  public void testRemoveOnlyCurrentObject() {
+    LruCache<String, String> cache = new LruCache<String, String>(100, Long.MAX_VALUE);
+    String first = new String("A");
+    String second = new String("A");
+
+    cache.put("a", first);
+    cache.put("a", second);
+
+    // the key doesn't reference the first object anymore
+    cache.remove("a", first);
+    assertSame(second, cache.get("a"));
+
+    cache.remove("a", second);
+    assertFalse(cache.containsKey("a"));
+    assertEquals(0, cache.getWeight());
+  }
+
+  public void testPinnedEntriesStay() {
+    LruCache<String, String> cache = new LruCache<String, String>(2, Long.MAX_VALUE) {
+      @Override
+      protected boolean isPinned(String key, String object) {
+        return key.startsWith("pinned");
+      }
+    };
+
+    cache.put("pinned1", "1");
+    cache.put("pinned2", "2");
+    cache.put("other", "3");
+
+    assertTrue(cache.containsKey("pinned1"));
+    assertTrue(cache.containsKey("pinned2"));
+
+    cache.put("pinned3", "4");
+    assertFalse(cache.containsKey("other"));
+    assertEquals(3, cache.size());
+  }
+}
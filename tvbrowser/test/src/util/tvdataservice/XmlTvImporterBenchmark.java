@@ -0,0 +1,251 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package util.tvdataservice;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import tvdataservice.MutableChannelDayProgram;
+import tvdataservice.TvDataUpdateManager;
+import devplugin.Channel;
+import devplugin.Date;
+
+/**
+ * Generates a XMLTV file and measures the time and the heap needed to
+ * import it.
+ * <p>
+ * The file is imported with the pull parser of the {@link XmlTvImporter}
+ * that gives every complete day to the update manager, with a SAX parser
+ * and with an update manager that holds all days until the end of the file
+ * like the data services did before.
+ * <p>
+ * Usage: XmlTvImporterBenchmark [size in MB] [sax|collect]
+ */
+public class XmlTvImporterBenchmark {
+
+  private static final int CHANNELS = 300;
+
+  private static final int PROGRAMS_PER_DAY = 40;
+
+  private static final int ROUNDS = 3;
+
+  private static final String[] WORDS = {
+    "Abend", "Reise", "Berlin", "Geschichte", "Nacht", "Spiel", "Leben", "Welt", "Wetter", "Musik",
+    "Familie", "Krimi", "Liebe", "Stadt", "Natur", "Sport", "Zeit", "Wissen", "Kinder", "Report"
+  };
+
+  public static void main(String[] args) throws Exception {
+    long size = (args.length > 0 ? Long.parseLong(args[0]) : 500) * 1024 * 1024;
+    String mode = args.length > 1 ? args[1] : "pull";
+
+    File file = File.createTempFile("xmltv", ".xml");
+    file.deleteOnExit();
+
+    long start = System.nanoTime();
+    int programs = writeFile(file, size);
+    System.out.println("Generated " + (file.length() / 1024 / 1024) + " MB with " + programs + " programs in "
+        + ((System.nanoTime() - start) / 1000000) + " ms");
+
+    final Channel[] channels = new Channel[CHANNELS];
+    for (int i = 0; i < CHANNELS; i++) {
+      channels[i] = new Channel("test" + i, TimeZone.getDefault(), "de");
+    }
+
+    for (int round = 0; round < ROUNDS; round++) {
+      CountingUpdateManager updateManager = new CountingUpdateManager("collect".equals(mode));
+      XmlTvImporter importer = new XmlTvImporter(updateManager) {
+        @Override
+        protected Channel getChannel(String channelId) {
+          return channels[Integer.parseInt(channelId.substring(7))];
+        }
+      };
+
+      System.gc();
+      resetPeakHeap();
+      start = System.nanoTime();
+
+      InputStream in = new BufferedInputStream(new FileInputStream(file), 65536);
+      try {
+        if ("sax".equals(mode)) {
+          SAXParserFactory factory = SAXParserFactory.newInstance();
+          factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+          factory.newSAXParser().parse(in, importer);
+        } else {
+          importer.importData(in);
+        }
+      } finally {
+        in.close();
+      }
+
+      long time = System.nanoTime() - start;
+
+      System.out.println(mode + ": " + updateManager.mDayPrograms + " day programs with " + updateManager.mPrograms
+          + " programs in " + (time / 1000000) + " ms, " + (file.length() * 1000 / time) + " MB/s, peak heap "
+          + (getPeakHeap() / 1024 / 1024) + " MB");
+    }
+  }
+
+  /**
+   * Writes the programs of the channels day by day until the file has the
+   * given size, the programs of the channels are mixed like in files that
+   * are sorted by the start time.
+   */
+  private static int writeFile(File file, long size) throws IOException {
+    Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 65536);
+    int count = 0;
+
+    try {
+      out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!DOCTYPE tv SYSTEM \"xmltv.dtd\">\n<tv>\n");
+
+      for (int i = 0; i < CHANNELS; i++) {
+        out.write("  <channel id=\"channel" + i + "\">\n    <display-name>Channel " + i
+            + "</display-name>\n  </channel>\n");
+      }
+
+      Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+      cal.set(2014, Calendar.MAY, 1, 0, 0, 0);
+      long written = 0;
+      StringBuilder text = new StringBuilder();
+
+      while (written < size) {
+        for (int i = 0; i < PROGRAMS_PER_DAY; i++) {
+          int minutes = i * 1440 / PROGRAMS_PER_DAY;
+          String startTime = format(cal, minutes);
+          String endTime = format(cal, minutes + 1440 / PROGRAMS_PER_DAY);
+
+          for (int channel = 0; channel < CHANNELS; channel++) {
+            text.setLength(0);
+            text.append("  <programme start=\"").append(startTime).append("\" stop=\"").append(endTime)
+                .append("\" channel=\"channel").append(channel).append("\">\n    <title lang=\"de\">")
+                .append(words(count, 3)).append("</title>\n    <sub-title lang=\"de\">")
+                .append(words(count + 7, 4)).append("</sub-title>\n    <desc lang=\"de\">");
+            for (int k = 0; k < 8; k++) {
+              text.append(words(count + k * 11, 6)).append(". ");
+            }
+            text.append("</desc>\n    <credits>\n      <director>").append(words(count + 3, 2))
+                .append("</director>\n      <actor>").append(words(count + 5, 2)).append("</actor>\n      <actor>")
+                .append(words(count + 9, 2)).append("</actor>\n    </credits>\n    <date>2012</date>\n")
+                .append("    <category lang=\"en\">series</category>\n")
+                .append("    <episode-num system=\"xmltv_ns\">2.").append(count % 20).append("/20.</episode-num>\n")
+                .append("    <video>\n      <aspect>16:9</aspect>\n    </video>\n  </programme>\n");
+
+            out.write(text.toString());
+            written += text.length();
+            count++;
+          }
+        }
+
+        cal.add(Calendar.DAY_OF_MONTH, 1);
+      }
+
+      out.write("</tv>\n");
+    } finally {
+      out.close();
+    }
+
+    return count;
+  }
+
+  private static String format(Calendar day, int minutes) {
+    Calendar cal = (Calendar) day.clone();
+    cal.add(Calendar.MINUTE, minutes);
+
+    return String.format("%1$tY%1$tm%1$td%1$tH%1$tM00 +0000", cal);
+  }
+
+  private static String words(int seed, int count) {
+    StringBuilder text = new StringBuilder();
+
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        text.append(' ');
+      }
+      text.append(WORDS[(seed * 31 + i * 7) % WORDS.length]);
+    }
+
+    return text.toString();
+  }
+
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  private static long getPeakHeap() {
+    long peak = 0;
+
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+
+    return peak;
+  }
+
+  private static class CountingUpdateManager implements TvDataUpdateManager {
+    private boolean mCollect;
+    private ArrayList<MutableChannelDayProgram> mCollected = new ArrayList<MutableChannelDayProgram>();
+    private int mDayPrograms;
+    private long mPrograms;
+
+    private CountingUpdateManager(boolean collect) {
+      mCollect = collect;
+    }
+
+    public void updateDayProgram(MutableChannelDayProgram program) {
+      mDayPrograms++;
+      mPrograms += program.getProgramCount();
+
+      if (mCollect) {
+        mCollected.add(program);
+      }
+    }
+
+    public boolean isDayProgramAvailable(Date date, Channel channel) {
+      return false;
+    }
+
+    public boolean cancelDownload() {
+      return false;
+    }
+
+    public boolean checkConnection() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * TV-Browser
+ * Copyright (C) 04-2003 Martin Oberhauser (martin@tvbrowser.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package util.tvdataservice;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+import tvdataservice.MutableChannelDayProgram;
+import tvdataservice.TvDataUpdateManager;
+import devplugin.Channel;
+import devplugin.ChannelGroupImpl;
+import devplugin.Date;
+import devplugin.ProgramFieldType;
+
+/**
+ * Checks that the importer hands over every day as soon as it is complete.
+ */
+public class XmlTvImporterTest extends TestCase {
+
+  private TimeZone mDefaultTimeZone;
+
+  /** The programs and the handed over days in the order of the events */
+  private ArrayList<String> mEvents;
+
+  @Override
+  protected void setUp() throws Exception {
+    // the dates of the programs depend on the time zone
+    mDefaultTimeZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+
+    mEvents = new ArrayList<String>();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    TimeZone.setDefault(mDefaultTimeZone);
+  }
+
+  public void testDaysHandedOverWhenComplete() throws Exception {
+    importData(
+        program("a", "20140512200000", "A1"),
+        program("b", "20140512210000", "B1"),
+        program("a", "20140512230000", "A2"),
+        program("a", "20140513010000", "A3"),
+        program("b", "20140513020000", "B2"),
+        program("a", "20140514010000", "A4"));
+
+    assertEquals(Arrays.asList(
+        "program A1", "program B1", "program A2",
+        "update a 20140512 2", "program A3",
+        "update b 20140512 1", "program B2",
+        "update a 20140513 1", "program A4",
+        "update a 20140514 1", "update b 20140513 1"), sortEnd(mEvents, 2));
+  }
+
+  public void testLateProgramsIgnored() throws Exception {
+    importData(
+        program("a", "20140512200000", "A1"),
+        program("a", "20140513010000", "A2"),
+        program("a", "20140512220000", "late"),
+        program("a", "20140513030000", "A3"));
+
+    assertEquals(Arrays.asList(
+        "program A1",
+        "update a 20140512 1", "program A2", "program A3",
+        "update a 20140513 2"), mEvents);
+  }
+
+  public void testChannelsNotImported() throws Exception {
+    importData(
+        program("a", "20140512200000", "A1"),
+        program("unknown", "20140512210000", "U1"),
+        program("a", "20140513010000", "A2"));
+
+    assertEquals(Arrays.asList(
+        "program A1",
+        "update a 20140512 1", "program A2",
+        "update a 20140513 1"), mEvents);
+  }
+
+  public void testDaysContinuedInNextDocument() throws Exception {
+    XmlTvImporter importer = createImporter();
+
+    importer.readDocument(document(
+        program("a", "20140512200000", "A1"),
+        program("a", "20140513010000", "A2")));
+    importer.readDocument(document(
+        program("a", "20140513030000", "A3"),
+        program("a", "20140514010000", "A4")));
+
+    // the second day is not complete at the end of the first document
+    assertEquals(Arrays.asList(
+        "program A1",
+        "update a 20140512 1", "program A2", "program A3",
+        "update a 20140513 2", "program A4"), mEvents);
+
+    importer.finish();
+    assertEquals("update a 20140514 1", mEvents.get(mEvents.size() - 1));
+  }
+
+  /**
+   * Sorts the last events, the order of the days that are handed
+   * over at the end of the document is not defined.
+   */
+  private static ArrayList<String> sortEnd(ArrayList<String> events, int count) {
+    ArrayList<String> result = new ArrayList<String>(events);
+    Collections.sort(result.subList(result.size() - count, result.size()));
+    return result;
+  }
+
+  private static String program(String channel, String start, String title) {
+    return "<programme start=\"" + start + " +0000\" channel=\"" + channel + "\"><title>"
+        + title + "</title></programme>";
+  }
+
+  private void importData(String... programs) throws IOException {
+    createImporter().importData(document(programs));
+  }
+
+  private static InputStream document(String... programs) throws IOException {
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><tv>");
+
+    for (String program : programs) {
+      xml.append(program);
+    }
+
+    xml.append("</tv>");
+
+    return new ByteArrayInputStream(xml.toString().getBytes("UTF-8"));
+  }
+
+  private XmlTvImporter createImporter() {
+    final ChannelGroupImpl group = new ChannelGroupImpl("test", "Test", "Test");
+    final Channel[] channels = {
+      createChannel("a", group), createChannel("b", group)
+    };
+
+    TvDataUpdateManager updateManager = new TvDataUpdateManager() {
+      public void updateDayProgram(MutableChannelDayProgram program) {
+        mEvents.add("update " + program.getChannel().getId() + " " + program.getDate().getDateString()
+            + " " + program.getProgramCount());
+      }
+
+      public boolean isDayProgramAvailable(Date date, Channel channel) {
+        return false;
+      }
+
+      public boolean cancelDownload() {
+        return false;
+      }
+
+      public boolean checkConnection() {
+        return true;
+      }
+    };
+
+    return new XmlTvImporter(updateManager) {
+      @Override
+      protected Channel getChannel(String channelId) {
+        for (Channel channel : channels) {
+          if (channel.getId().equals(channelId)) {
+            return channel;
+          }
+        }
+
+        return null;
+      }
+
+      @Override
+      protected void addField(ProgramFieldType fieldType, String value) {
+        if (fieldType == ProgramFieldType.TITLE_TYPE) {
+          mEvents.add("program " + value);
+        }
+
+        super.addField(fieldType, value);
+      }
+    };
+  }
+
+  private static Channel createChannel(String id, ChannelGroupImpl group) {
+    return new Channel("util.tvdataservice.XmlTvImporterTest", id, id, TimeZone.getTimeZone("UTC"), "de",
+        "", "", group, null, Channel.CATEGORY_TV, id, new String[] {"de"}, null, false);
+  }
+}